@@ -18,10 +18,10 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.collect.ImmutableSet.toImmutableSet;
 import static com.google.common.collect.Sets.difference;
 import static google.registry.mapreduce.MapreduceRunner.PARAM_DRY_RUN;
-import static google.registry.mapreduce.inputs.EppResourceInputs.createChildEntityInput;
 import static google.registry.model.common.Cursor.CursorType.RECURRING_BILLING;
 import static google.registry.model.domain.Period.Unit.YEARS;
 import static google.registry.model.ofy.ObjectifyService.ofy;
+import static google.registry.model.registry.Registries.getTlds;
 import static google.registry.model.reporting.HistoryEntry.Type.DOMAIN_AUTORENEW;
 import static google.registry.pricing.PricingEngineProxy.getDomainRenewCost;
 import static google.registry.util.CollectionUtils.union;
@@ -41,6 +41,7 @@ import com.google.common.flogger.FluentLogger;
 import com.googlecode.objectify.Key;
 import google.registry.mapreduce.MapreduceRunner;
 import google.registry.mapreduce.inputs.NullInput;
+import google.registry.mapreduce.inputs.RecurringBillingEventKeyInput;
 import google.registry.model.EppResource;
 import google.registry.model.ImmutableObject;
 import google.registry.model.billing.BillingEvent;
@@ -48,7 +49,6 @@ import google.registry.model.billing.BillingEvent.Flag;
 import google.registry.model.billing.BillingEvent.OneTime;
 import google.registry.model.billing.BillingEvent.Recurring;
 import google.registry.model.common.Cursor;
-import google.registry.model.domain.DomainResource;
 import google.registry.model.domain.Period;
 import google.registry.model.registry.Registry;
 import google.registry.model.reporting.DomainTransactionRecord;
@@ -59,11 +59,13 @@ import google.registry.request.Parameter;
 import google.registry.request.Response;
 import google.registry.request.auth.Auth;
 import google.registry.util.Clock;
+import java.util.Comparator;
 import java.util.Optional;
 import java.util.Set;
 import javax.inject.Inject;
 import org.joda.money.Money;
 import org.joda.time.DateTime;
+import org.joda.time.Duration;
 
 /**
  * A mapreduce that expands {@link Recurring} billing events into synthetic {@link OneTime} events.
@@ -72,6 +74,11 @@ import org.joda.time.DateTime;
  * {@code cursorTime}) represents the inclusive lower bound on the range of billing times that will
  * be expanded as a result of the job (the exclusive upper bound being the execution time of the
  * job).
+ *
+ * <p>Only the recurring events whose time of year falls within that range, less the autorenew
+ * grace period, are mapped over, so a daily run reads about as many events as there are renewals
+ * due rather than every recurring event in the system. A range of a year or more maps over all of
+ * them.
  */
 @Action(
   path = "/_dr/task/expandRecurringBillingEvents",
@@ -81,6 +88,9 @@ public class ExpandRecurringBillingEventsAction implements Runnable {
 
   public static final String PARAM_CURSOR_TIME = "cursorTime";
   private static final String ERROR_COUNTER = "errors";
+
+  /** Number of pieces to split the range of times of year into, for parallelism. */
+  private static final int NUM_TIME_OF_YEAR_RANGES = 24;
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
 
   @Inject Clock clock;
@@ -111,13 +121,31 @@ public class ExpandRecurringBillingEventsAction implements Runnable {
             // Add an extra shard that maps over a null recurring event (see the mapper for why).
             ImmutableList.of(
                 new NullInput<>(),
-                createChildEntityInput(
-                    ImmutableSet.of(DomainResource.class), ImmutableSet.of(Recurring.class))))));
+                new RecurringBillingEventKeyInput(
+                    getEventTimesInScope(cursorTime, executeTime), NUM_TIME_OF_YEAR_RANGES)))));
+  }
+
+  /**
+   * Returns the range of event times whose billing times can fall within [cursorTime,
+   * executeTime), given the autorenew grace periods of all TLDs.
+   */
+  private static Range<DateTime> getEventTimesInScope(DateTime cursorTime, DateTime executeTime) {
+    ImmutableSet<Duration> gracePeriods =
+        getTlds()
+            .stream()
+            .map(tld -> Registry.get(tld).getAutoRenewGracePeriodLength())
+            .collect(toImmutableSet());
+    Duration shortestGracePeriod =
+        gracePeriods.stream().min(Comparator.naturalOrder()).orElse(Duration.ZERO);
+    Duration longestGracePeriod =
+        gracePeriods.stream().max(Comparator.naturalOrder()).orElse(Duration.ZERO);
+    return Range.closed(
+        cursorTime.minus(longestGracePeriod), executeTime.minus(shortestGracePeriod));
   }
 
   /** Mapper to expand {@link Recurring} billing events into synthetic {@link OneTime} events. */
   public static class ExpandRecurringBillingEventsMapper
-      extends Mapper<Recurring, DateTime, DateTime> {
+      extends Mapper<Key<Recurring>, DateTime, DateTime> {
 
     private static final long serialVersionUID = 8376442755556228455L;
 
@@ -133,15 +161,21 @@ public class ExpandRecurringBillingEventsAction implements Runnable {
     }
 
     @Override
-    public final void map(final Recurring recurring) {
+    public final void map(final Key<Recurring> recurringKey) {
       // This single emit forces the reducer to run at the end of the map job, so that a mapper
       // that runs without error will advance the cursor at the end of processing (unless this was
       // a dry run, in which case the cursor should not be advanced).
-      if (recurring == null) {
+      if (recurringKey == null) {
         emit(cursorTime, executeTime);
         return;
       }
       getContext().incrementCounter("Recurring billing events encountered");
+      // The keys come from an eventually consistent query, so load the event itself by key.
+      final Recurring recurring = ofy().load().key(recurringKey).now();
+      if (recurring == null) {
+        getContext().incrementCounter("Recurring billing events ignored");
+        return;
+      }
       // Ignore any recurring billing events that have yet to apply.
       if (recurring.getEventTime().isAfter(executeTime)
           // This second case occurs when a domain is transferred or deleted before first renewal.
@@ -351,6 +351,18 @@ public final class RegistryConfig {
       return config.datastore.eppResourceIndexBucketsNum;
     }
 
+    /**
+     * Returns the number of Datastore RPCs that a request may make before it is logged as being
+     * over budget, or zero if requests shouldn't be checked against a budget.
+     *
+     * @see google.registry.monitoring.whitebox.DatastoreRpcMonitor
+     */
+    @Provides
+    @Config("datastoreRpcBudgetPerRequest")
+    public static int provideDatastoreRpcBudgetPerRequest(RegistryConfigSettings config) {
+      return config.datastore.rpcBudgetPerRequest;
+    }
+
     @Provides
     @Config("cloudDnsRootUrl")
     public static Optional<String> getCloudDnsRootUrl(RegistryConfigSettings config) {
@@ -363,6 +375,17 @@ public final class RegistryConfig {
       return Optional.ofNullable(config.cloudDns.servicePath);
     }
 
+    /**
+     * Returns whether {@code CloudDnsWriter} keeps a mirror of its zones' records in Datastore.
+     *
+     * @see google.registry.dns.writer.clouddns.ReconcileCloudDnsMirrorAction
+     */
+    @Provides
+    @Config("cloudDnsZoneMirrorEnabled")
+    public static boolean getCloudDnsZoneMirrorEnabled(RegistryConfigSettings config) {
+      return config.cloudDns.zoneMirrorEnabled;
+    }
+
     /**
      * Returns size of Google Cloud Storage client connection buffer in bytes.
      *
@@ -1217,6 +1240,21 @@ public final class RegistryConfig {
     return CONFIG_SETTINGS.get().datastore.commitLogBucketsNum;
   }
 
+  /**
+   * Returns whether the entities saved in commit log mutations should be compressed.
+   *
+   * <p>Compressed mutations can't be read by older binaries or by external consumers of commit log
+   * exports. Only enable this once every running version can decode them. Before rolling back to
+   * an older version, disable it and wait until the compressed mutations have been deleted from
+   * Datastore (see {@link #getCommitLogDatastoreRetention}) and are no longer in any export that
+   * might be restored.
+   *
+   * @see google.registry.model.ofy.CommitLogMutation
+   */
+  public static boolean isCommitLogMutationCompressionEnabled() {
+    return CONFIG_SETTINGS.get().datastore.compressCommitLogMutations;
+  }
+
   /**
    * Returns the length of time before commit logs should be deleted from Datastore.
    *
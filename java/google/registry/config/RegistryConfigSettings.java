@@ -88,6 +88,8 @@ public class RegistryConfigSettings {
     public int commitLogBucketsNum;
     public int eppResourceIndexBucketsNum;
     public int baseOfyRetryMillis;
+    public int rpcBudgetPerRequest;
+    public boolean compressCommitLogMutations;
   }
 
   /** Configuration for Cloud KMS. */
@@ -100,6 +102,7 @@ public class RegistryConfigSettings {
   public static class CloudDns {
     public String rootUrl;
     public String servicePath;
+    public boolean zoneMirrorEnabled;
   }
 
   /** Configuration for caching. */
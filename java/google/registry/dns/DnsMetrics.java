@@ -43,6 +43,9 @@ public class DnsMetrics {
   /** Disposition of the publish action. */
   public enum ActionStatus { SUCCESS, COMMIT_FAILURE, LOCK_FAILURE, BAD_WRITER, BAD_LOCK_INDEX }
 
+  /** Whether a DNS writer found a name's records in its zone mirror. */
+  public enum ZoneMirrorLookupResult { HIT, MISS }
+
   private static final ImmutableSet<LabelDescriptor> LABEL_DESCRIPTORS_FOR_PUBLISH_REQUESTS =
       ImmutableSet.of(
           LabelDescriptor.create("tld", "TLD"),
@@ -61,6 +64,11 @@ public class DnsMetrics {
           LabelDescriptor.create("status", "Whether the publish succeeded, or why it failed."),
           LabelDescriptor.create("dnsWriter", "The DnsWriter used."));
 
+  private static final ImmutableSet<LabelDescriptor> LABEL_DESCRIPTORS_FOR_ZONE_MIRROR =
+      ImmutableSet.of(
+          LabelDescriptor.create("tld", "TLD"),
+          LabelDescriptor.create("result", "Whether the name's records were in the mirror."));
+
   // Finer-grained fitter than the DEFAULT_FITTER, allows values between 100 ms and just over 29
   // hours.
   private static final DistributionFitter EXPONENTIAL_FITTER =
@@ -183,6 +191,14 @@ public class DnsMetrics {
               LABEL_DESCRIPTORS_FOR_LATENCY,
               EXPONENTIAL_FITTER);
 
+  private static final IncrementableMetric zoneMirrorLookups =
+      MetricRegistryImpl.getDefault()
+          .newIncrementableMetric(
+              "/dns/zone_mirror_lookups",
+              "Count of names looked up in a DNS writer's zone mirror",
+              "count",
+              LABEL_DESCRIPTORS_FOR_ZONE_MIRROR);
+
   @Inject RegistryEnvironment registryEnvironment;
   @Inject @Parameter(PARAM_TLD) String tld;
 
@@ -263,4 +279,20 @@ public class DnsMetrics {
         timeSinceUpdateRequest.getMillis(), numberOfItems, tld, status.name(), dnsWriter);
     publishQueueDelay.record(timeSinceActionEnqueued.getMillis(), tld, status.name(), dnsWriter);
   }
+
+  /**
+   * Increment the counts of names that a DNS writer did and didn't find in its zone mirror, per
+   * TLD.
+   *
+   * <p>Names that miss have to be read from the DNS provider instead, so the proportion of hits is
+   * the proportion of reads that the mirror saves.
+   */
+  public void recordZoneMirrorLookups(long hits, long misses) {
+    if (hits > 0) {
+      zoneMirrorLookups.incrementBy(hits, tld, ZoneMirrorLookupResult.HIT.name());
+    }
+    if (misses > 0) {
+      zoneMirrorLookups.incrementBy(misses, tld, ZoneMirrorLookupResult.MISS.name());
+    }
+  }
 }
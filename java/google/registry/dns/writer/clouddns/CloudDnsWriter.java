@@ -18,6 +18,7 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.collect.ImmutableSet.toImmutableSet;
 import static google.registry.model.EppResourceUtils.loadByForeignKey;
 import static google.registry.util.DomainNameUtils.getSecondLevelDomain;
+import static java.lang.Math.max;
 
 import com.google.api.client.googleapis.json.GoogleJsonError.ErrorInfo;
 import com.google.api.client.googleapis.json.GoogleJsonResponseException;
@@ -28,11 +29,13 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.common.flogger.FluentLogger;
 import com.google.common.net.InternetDomainName;
 import com.google.common.util.concurrent.RateLimiter;
 import google.registry.config.RegistryConfig.Config;
+import google.registry.dns.DnsMetrics;
 import google.registry.dns.writer.BaseDnsWriter;
 import google.registry.dns.writer.DnsWriter;
 import google.registry.dns.writer.DnsWriterZone;
@@ -41,13 +44,12 @@ import google.registry.model.domain.secdns.DelegationSignerData;
 import google.registry.model.host.HostResource;
 import google.registry.model.registry.Registries;
 import google.registry.util.Clock;
-import google.registry.util.Concurrent;
+import google.registry.util.ParallelTransformer;
 import google.registry.util.Retrier;
 import java.io.IOException;
 import java.net.Inet4Address;
 import java.net.Inet6Address;
 import java.net.InetAddress;
-import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -88,6 +90,8 @@ public class CloudDnsWriter extends BaseDnsWriter {
   private final String projectId;
   private final String zoneName;
   private final Dns dnsConnection;
+  private final CloudDnsZoneMirror zoneMirror;
+  private final DnsMetrics dnsMetrics;
   private final HashMap<String, ImmutableSet<ResourceRecordSet>> desiredRecords = new HashMap<>();
 
   @Inject
@@ -101,7 +105,9 @@ public class CloudDnsWriter extends BaseDnsWriter {
       @Named("cloudDns") RateLimiter rateLimiter,
       @Named("cloudDnsNumThreads") int numThreads,
       Clock clock,
-      Retrier retrier) {
+      Retrier retrier,
+      CloudDnsZoneMirror zoneMirror,
+      DnsMetrics dnsMetrics) {
     this.dnsConnection = dnsConnection;
     this.projectId = projectId;
     this.zoneName = zoneName.replace('.', '-');
@@ -112,6 +118,8 @@ public class CloudDnsWriter extends BaseDnsWriter {
     this.clock = clock;
     this.retrier = retrier;
     this.numThreads = numThreads;
+    this.zoneMirror = zoneMirror;
+    this.dnsMetrics = dnsMetrics;
   }
 
   /** Publish the domain and all subordinate hosts. */
@@ -268,6 +276,11 @@ public class CloudDnsWriter extends BaseDnsWriter {
    * <p>The relevant resource records (including those of all subordinate hosts) will be retrieved
    * and the operation will be retried until the state of the retrieved zone data matches the
    * representation built via this writer.
+   *
+   * <p>If the zone mirror is enabled, records are only retrieved for names that aren't in the
+   * mirror. A mirror that is out of date can't cause a wrong change to be made, since Cloud DNS
+   * rejects a change whose deletions don't match the zone; the names involved are then invalidated
+   * in the mirror, so that the retry reads them from Cloud DNS.
    */
   @Override
   protected void commitUnchecked() {
@@ -293,7 +306,7 @@ public class CloudDnsWriter extends BaseDnsWriter {
 
     // First, fetch the records for the given domains
     Map<String, List<ResourceRecordSet>> domainRecords =
-        getResourceRecordsForDomains(desiredRecords.keySet());
+        getExistingRecords(desiredRecords.keySet());
 
     // add the records to the list of existing records
     domainRecords.values().forEach(flattenedExistingRecords::addAll);
@@ -307,14 +320,50 @@ public class CloudDnsWriter extends BaseDnsWriter {
             .collect(toImmutableSet());
 
     // Then fetch and add the records for these hosts
-    getResourceRecordsForDomains(hostsToRead).values().forEach(flattenedExistingRecords::addAll);
+    getExistingRecords(hostsToRead).values().forEach(flattenedExistingRecords::addAll);
 
     // Flatten the desired records into one set.
     ImmutableSet.Builder<ResourceRecordSet> flattenedDesiredRecords = new ImmutableSet.Builder<>();
     desiredRecords.values().forEach(flattenedDesiredRecords::addAll);
 
     // Delete all existing records and add back the desired records
-    updateResourceRecords(flattenedDesiredRecords.build(), flattenedExistingRecords.build());
+    if (!zoneMirror.isEnabled()) {
+      updateResourceRecords(flattenedDesiredRecords.build(), flattenedExistingRecords.build());
+      return;
+    }
+    ImmutableSet<String> namesChanged =
+        Sets.union(desiredRecords.keySet(), hostsToRead).immutableCopy();
+    try {
+      updateResourceRecords(flattenedDesiredRecords.build(), flattenedExistingRecords.build());
+    } catch (RuntimeException e) {
+      zoneMirror.invalidate(zoneName, namesChanged);
+      throw e;
+    }
+    // Every name whose records were read has had them replaced by the desired records, if any.
+    zoneMirror.save(
+        zoneName,
+        Maps.toMap(namesChanged, name -> desiredRecords.getOrDefault(name, ImmutableSet.of())));
+  }
+
+  /**
+   * Returns the current {@link ResourceRecordSet}s for the given domain names under this zone.
+   *
+   * <p>If the zone mirror is enabled, names are looked up there first, and only the names it
+   * doesn't know about are fetched from Cloud DNS.
+   */
+  private Map<String, List<ResourceRecordSet>> getExistingRecords(Set<String> domainNames) {
+    if (!zoneMirror.isEnabled()) {
+      return getResourceRecordsForDomains(domainNames);
+    }
+    ImmutableMap<String, ImmutableList<ResourceRecordSet>> mirroredRecords =
+        zoneMirror.load(zoneName, domainNames);
+    ImmutableSet<String> namesToFetch =
+        Sets.difference(domainNames, mirroredRecords.keySet()).immutableCopy();
+    dnsMetrics.recordZoneMirrorLookups(mirroredRecords.size(), namesToFetch.size());
+    return new ImmutableMap.Builder<String, List<ResourceRecordSet>>()
+        .putAll(mirroredRecords)
+        .putAll(getResourceRecordsForDomains(namesToFetch))
+        .build();
   }
 
   /**
@@ -325,14 +374,13 @@ public class CloudDnsWriter extends BaseDnsWriter {
   private Map<String, List<ResourceRecordSet>> getResourceRecordsForDomains(
       Set<String> domainNames) {
     logger.atFine().log("Fetching records for %s", domainNames);
-    // As per Concurrent.transform() - if numThreads or domainNames.size() < 2, it will not use
-    // threading.
-    return ImmutableMap.copyOf(
-        Concurrent.transform(
-            domainNames,
-            numThreads,
-            domainName ->
-                new SimpleImmutableEntry<>(domainName, getResourceRecordsForDomain(domainName))));
+    // If numThreads or domainNames.size() < 2, this won't use threading.
+    ImmutableMap.Builder<String, List<ResourceRecordSet>> records = new ImmutableMap.Builder<>();
+    ParallelTransformer.builder("Cloud DNS record fetches")
+        .setMaxThreads(max(1, numThreads))
+        .build()
+        .forEachInCompletionOrder(domainNames, this::getResourceRecordsForDomain, records::put);
+    return records.build();
   }
 
   /**
@@ -14,11 +14,15 @@
 
 package google.registry.dns.writer.clouddns;
 
+import static com.google.appengine.api.taskqueue.QueueFactory.getQueue;
+import static google.registry.request.RequestParameters.extractOptionalParameter;
+
 import com.google.api.client.http.HttpRequestInitializer;
 import com.google.api.client.http.HttpTransport;
 import com.google.api.client.json.JsonFactory;
 import com.google.api.services.dns.Dns;
 import com.google.api.services.dns.DnsScopes;
+import com.google.appengine.api.taskqueue.Queue;
 import com.google.common.util.concurrent.RateLimiter;
 import dagger.Binds;
 import dagger.Module;
@@ -28,10 +32,12 @@ import dagger.multibindings.IntoSet;
 import dagger.multibindings.StringKey;
 import google.registry.config.RegistryConfig.Config;
 import google.registry.dns.writer.DnsWriter;
+import google.registry.request.Parameter;
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.Function;
 import javax.inject.Named;
+import javax.servlet.http.HttpServletRequest;
 
 /** Dagger module for Google Cloud DNS service connection objects. */
 @Module
@@ -86,5 +92,23 @@ public abstract class CloudDnsWriterModule {
     return 10;
   }
 
+  @Provides
+  @Parameter(ReconcileCloudDnsMirrorAction.PARAM_PAGE_TOKEN)
+  static Optional<String> providePageToken(HttpServletRequest req) {
+    return extractOptionalParameter(req, ReconcileCloudDnsMirrorAction.PARAM_PAGE_TOKEN);
+  }
+
+  @Provides
+  @Parameter(ReconcileCloudDnsMirrorAction.PARAM_SPLIT_NAME)
+  static Optional<String> provideSplitName(HttpServletRequest req) {
+    return extractOptionalParameter(req, ReconcileCloudDnsMirrorAction.PARAM_SPLIT_NAME);
+  }
+
+  @Provides
+  @Named(ReconcileCloudDnsMirrorAction.QUEUE)
+  static Queue provideReconcileQueue() {
+    return getQueue(ReconcileCloudDnsMirrorAction.QUEUE);
+  }
+
   private CloudDnsWriterModule() {}
 }
@@ -0,0 +1,235 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.dns.writer.clouddns;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
+import static google.registry.model.ofy.ObjectifyService.ofy;
+
+import com.google.api.services.dns.model.ResourceRecordSet;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.SetMultimap;
+import com.googlecode.objectify.Key;
+import google.registry.config.RegistryConfig.Config;
+import google.registry.model.dns.ZoneMirrorEntry;
+import google.registry.util.Clock;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import javax.inject.Inject;
+
+/**
+ * A mirror in Datastore of the records that Cloud DNS serves for the names in a zone.
+ *
+ * <p>Each name's records are kept in a {@link ZoneMirrorEntry}, as one row per resource record of
+ * the form {@code TYPE TTL RDATA}, e.g. {@code NS 180 ns1.example.tld.}.
+ */
+class CloudDnsZoneMirror {
+
+  private static final Splitter ROW_SPLITTER = Splitter.on(' ').limit(3);
+
+  private final boolean enabled;
+  private final Clock clock;
+
+  @Inject
+  CloudDnsZoneMirror(@Config("cloudDnsZoneMirrorEnabled") boolean enabled, Clock clock) {
+    this.enabled = enabled;
+    this.clock = clock;
+  }
+
+  /** Returns whether the mirror should be used at all. */
+  boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Returns the mirrored records for those of the given names whose records are known.
+   *
+   * <p>Names that have no entry, or whose entry has been invalidated, are left out of the result.
+   */
+  ImmutableMap<String, ImmutableList<ResourceRecordSet>> load(String zoneName, Set<String> names) {
+    ImmutableMap.Builder<String, ImmutableList<ResourceRecordSet>> records =
+        new ImmutableMap.Builder<>();
+    for (ZoneMirrorEntry entry : loadEntries(zoneName, names).values()) {
+      if (entry.isKnown()) {
+        records.put(entry.getOwnerName(), fromRows(entry.getOwnerName(), entry.getRecords()));
+      }
+    }
+    return records.build();
+  }
+
+  /**
+   * Records that the given names now have the given records in Cloud DNS.
+   *
+   * <p>This should only be called once Cloud DNS has accepted the change that gave the names those
+   * records. Entries that already hold the same records aren't rewritten.
+   */
+  void save(String zoneName, Map<String, ? extends Collection<ResourceRecordSet>> records) {
+    Map<String, ZoneMirrorEntry> existing = loadEntries(zoneName, records.keySet());
+    records.forEach(
+        (name, recordSets) -> {
+          ImmutableList<String> rows = toRows(recordSets);
+          if (!holdsRecords(existing.get(name), rows)) {
+            update(
+                zoneName,
+                name,
+                current ->
+                    holdsRecords(current, rows)
+                        ? null
+                        : ZoneMirrorEntry.create(zoneName, name, current, rows, clock.nowUtc()));
+          }
+        });
+  }
+
+  /**
+   * Marks the records of the given names as unknown, so that they are next read from Cloud DNS.
+   *
+   * <p>This should be called whenever a change to the names might have failed because the mirror
+   * didn't match Cloud DNS.
+   */
+  void invalidate(String zoneName, Set<String> names) {
+    // Each name is checked inside its transaction, since a writer may be saving it concurrently.
+    for (String name : names) {
+      update(
+          zoneName,
+          name,
+          current ->
+              (current == null || !current.isKnown())
+                  ? null
+                  : ZoneMirrorEntry.createInvalidated(zoneName, name, current, clock.nowUtc()));
+    }
+  }
+
+  /** Returns the existing entries for the given names, keyed by name. */
+  ImmutableMap<String, ZoneMirrorEntry> loadEntries(String zoneName, Set<String> names) {
+    ImmutableSet<Key<ZoneMirrorEntry>> keys =
+        names
+            .stream()
+            .map(name -> ZoneMirrorEntry.createKey(zoneName, name))
+            .collect(toImmutableSet());
+    return ofy()
+        .load()
+        .keys(keys)
+        .values()
+        .stream()
+        .collect(toImmutableMap(ZoneMirrorEntry::getOwnerName, entry -> entry));
+  }
+
+  /**
+   * Replaces the records of an entry with those read from Cloud DNS, unless the entry has been
+   * written since it was loaded.
+   *
+   * <p>The check on the version stops this from overwriting records that a writer saved after
+   * changing the zone, since the records read from Cloud DNS may predate the change.
+   *
+   * @return whether the entry was replaced
+   */
+  boolean repair(ZoneMirrorEntry entry, ImmutableList<String> rows) {
+    return ofy()
+        .transact(
+            () -> {
+              ZoneMirrorEntry current =
+                  ofy()
+                      .load()
+                      .key(ZoneMirrorEntry.createKey(entry.getZoneName(), entry.getOwnerName()))
+                      .now();
+              if (current == null || current.getVersion() != entry.getVersion()) {
+                return false;
+              }
+              ofy()
+                  .saveWithoutBackup()
+                  .entity(
+                      ZoneMirrorEntry.create(
+                          entry.getZoneName(),
+                          entry.getOwnerName(),
+                          current,
+                          rows,
+                          ofy().getTransactionTime()))
+                  .now();
+              return true;
+            });
+  }
+
+  /**
+   * Writes the next version of an entry in a transaction, so that concurrent writers each build on
+   * the version the other wrote rather than overwriting it.
+   *
+   * @param nextVersion returns the entry to save given the current one (or null if there is none),
+   *     or null to leave the entry as it is
+   */
+  private static void update(
+      String zoneName, String name, Function<ZoneMirrorEntry, ZoneMirrorEntry> nextVersion) {
+    ofy()
+        .transact(
+            () -> {
+              ZoneMirrorEntry next =
+                  nextVersion.apply(
+                      ofy().load().key(ZoneMirrorEntry.createKey(zoneName, name)).now());
+              if (next != null) {
+                ofy().saveWithoutBackup().entity(next).now();
+              }
+            });
+  }
+
+  private static boolean holdsRecords(ZoneMirrorEntry entry, ImmutableList<String> rows) {
+    return entry != null && entry.isKnown() && entry.getRecords().equals(rows);
+  }
+
+  /** Converts record sets to the rows stored in a {@link ZoneMirrorEntry}. */
+  static ImmutableList<String> toRows(Collection<ResourceRecordSet> recordSets) {
+    return recordSets
+        .stream()
+        .flatMap(
+            recordSet ->
+                recordSet
+                    .getRrdatas()
+                    .stream()
+                    .map(
+                        rrData ->
+                            String.format(
+                                "%s %d %s", recordSet.getType(), recordSet.getTtl(), rrData)))
+        .collect(toImmutableList());
+  }
+
+  /** Converts the rows stored in a {@link ZoneMirrorEntry} back to record sets. */
+  static ImmutableList<ResourceRecordSet> fromRows(String ownerName, List<String> rows) {
+    // Rows are grouped into record sets by their type and TTL, in the order they were stored.
+    SetMultimap<List<String>, String> rrDatas = LinkedHashMultimap.create();
+    for (String row : rows) {
+      List<String> fields = ROW_SPLITTER.splitToList(row);
+      rrDatas.put(ImmutableList.of(fields.get(0), fields.get(1)), fields.get(2));
+    }
+    return rrDatas
+        .asMap()
+        .entrySet()
+        .stream()
+        .map(
+            entry ->
+                new ResourceRecordSet()
+                    .setName(ownerName)
+                    .setType(entry.getKey().get(0))
+                    .setTtl(Integer.valueOf(entry.getKey().get(1)))
+                    .setKind("dns#resourceRecordSet")
+                    .setRrdatas(ImmutableList.copyOf(entry.getValue())))
+        .collect(toImmutableList());
+  }
+}
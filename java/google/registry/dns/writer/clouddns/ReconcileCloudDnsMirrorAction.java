@@ -0,0 +1,196 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.dns.writer.clouddns;
+
+import static com.google.common.net.MediaType.PLAIN_TEXT_UTF_8;
+import static com.google.appengine.api.taskqueue.TaskOptions.Builder.withUrl;
+import static google.registry.request.Action.Method.POST;
+import static google.registry.util.CollectionUtils.nullToEmpty;
+
+import com.google.api.services.dns.Dns;
+import com.google.api.services.dns.model.ResourceRecordSet;
+import com.google.api.services.dns.model.ResourceRecordSetsListResponse;
+import com.google.appengine.api.taskqueue.Queue;
+import com.google.appengine.api.taskqueue.TaskOptions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.MultimapBuilder;
+import com.google.common.flogger.FluentLogger;
+import com.google.common.util.concurrent.RateLimiter;
+import google.registry.config.RegistryConfig.Config;
+import google.registry.dns.writer.DnsWriterZone;
+import google.registry.model.dns.ZoneMirrorEntry;
+import google.registry.model.registry.Registry;
+import google.registry.request.Action;
+import google.registry.request.Parameter;
+import google.registry.request.RequestParameters;
+import google.registry.request.Response;
+import google.registry.request.auth.Auth;
+import google.registry.util.Clock;
+import google.registry.util.TaskQueueUtils;
+import java.io.IOException;
+import java.util.Optional;
+import javax.inject.Inject;
+import javax.inject.Named;
+import org.joda.time.DateTime;
+
+/**
+ * Action that repairs the {@link CloudDnsZoneMirror} of a TLD's zone from the zone in Cloud DNS.
+ *
+ * <p>The mirror can drift from Cloud DNS if the zone is changed by anything other than {@link
+ * CloudDnsWriter}, or if the writer fails between changing the zone and saving the mirror. Drift
+ * can't cause the writer to make a wrong change, but it does cause failed changes and retries,
+ * and records added to a name by hand won't be removed when the writer next publishes the name.
+ *
+ * <p>Each run of the action compares a single page of the zone against the mirror entries for the
+ * names on that page, and then enqueues a run for the next page, so that neither the zone nor the
+ * mirror is ever held in memory or read within a single request. Record sets for a name can span
+ * two pages, so the last name on a page is held back and read on its own by the next run. Each
+ * differing entry is replaced, unless a writer has written it since the page was read.
+ *
+ * <p>Mirror entries for names that have been deleted from Cloud DNS by hand aren't found this way,
+ * since nothing in the zone refers to them. They don't need to be: the next change the writer makes
+ * to such a name fails, which invalidates the entry and makes the retry read the name from Cloud
+ * DNS.
+ */
+@Action(
+  path = ReconcileCloudDnsMirrorAction.PATH,
+  method = POST,
+  auth = Auth.AUTH_INTERNAL_ONLY
+)
+public class ReconcileCloudDnsMirrorAction implements Runnable {
+
+  public static final String PATH = "/_dr/task/reconcileCloudDnsMirror";
+  public static final String QUEUE = "retryable-cron-tasks";
+
+  static final String PARAM_PAGE_TOKEN = "pageToken";
+  static final String PARAM_SPLIT_NAME = "splitName";
+
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  @Inject Clock clock;
+  @Inject Dns dnsConnection;
+  @Inject CloudDnsZoneMirror zoneMirror;
+  @Inject @Config("projectId") String projectId;
+  @Inject @DnsWriterZone String zoneName;
+  @Inject @Parameter(RequestParameters.PARAM_TLD) String tld;
+  @Inject @Parameter(PARAM_PAGE_TOKEN) Optional<String> pageToken;
+  @Inject @Parameter(PARAM_SPLIT_NAME) Optional<String> splitName;
+  @Inject @Named("cloudDns") RateLimiter rateLimiter;
+  @Inject @Named(QUEUE) Queue queue;
+  @Inject TaskQueueUtils taskQueueUtils;
+  @Inject Response response;
+  @Inject ReconcileCloudDnsMirrorAction() {}
+
+  @Override
+  public void run() {
+    response.setContentType(PLAIN_TEXT_UTF_8);
+    if (!zoneMirror.isEnabled()
+        || !Registry.get(tld).getDnsWriters().contains(CloudDnsWriter.NAME)) {
+      logger.atInfo().log("No Cloud DNS zone mirror to reconcile for TLD %s", tld);
+      response.setPayload("Zone mirror not in use");
+      return;
+    }
+    String cloudDnsZoneName = zoneName.replace('.', '-');
+    // Any entry written after this point may hold records newer than the ones read below.
+    DateTime readTime = clock.nowUtc();
+    ListMultimap<String, ResourceRecordSet> zoneRecords =
+        MultimapBuilder.linkedHashKeys().arrayListValues().build();
+    if (splitName.isPresent()) {
+      zoneRecords.putAll(splitName.get(), readName(cloudDnsZoneName, splitName.get()));
+    }
+    ResourceRecordSetsListResponse page = readPage(cloudDnsZoneName, pageToken.orElse(null));
+    ResourceRecordSet lastRecordSet = null;
+    for (ResourceRecordSet recordSet : nullToEmpty(page.getRrsets())) {
+      if (!splitName.isPresent() || !splitName.get().equals(recordSet.getName())) {
+        zoneRecords.put(recordSet.getName(), recordSet);
+      }
+      lastRecordSet = recordSet;
+    }
+    Optional<String> nextSplitName = Optional.empty();
+    if (page.getNextPageToken() != null && lastRecordSet != null) {
+      // The next page may hold more record sets for the last name on this one.
+      String lastName = lastRecordSet.getName();
+      if (!splitName.isPresent() || !splitName.get().equals(lastName)) {
+        zoneRecords.removeAll(lastName);
+        nextSplitName = Optional.of(lastName);
+      }
+    }
+    ImmutableMap<String, ZoneMirrorEntry> entries =
+        zoneMirror.loadEntries(cloudDnsZoneName, zoneRecords.keySet());
+    int repaired = 0;
+    int skipped = 0;
+    for (ZoneMirrorEntry entry : entries.values()) {
+      ImmutableList<String> rows = CloudDnsZoneMirror.toRows(zoneRecords.get(entry.getOwnerName()));
+      if (entry.isKnown() && entry.getRecords().equals(rows)) {
+        continue;
+      }
+      if (entry.getUpdateTime().isBefore(readTime) && zoneMirror.repair(entry, rows)) {
+        repaired++;
+      } else {
+        skipped++;
+      }
+    }
+    if (page.getNextPageToken() != null) {
+      TaskOptions nextRun =
+          withUrl(PATH)
+              .param(RequestParameters.PARAM_TLD, tld)
+              .param(PARAM_PAGE_TOKEN, page.getNextPageToken());
+      nextSplitName.ifPresent(name -> nextRun.param(PARAM_SPLIT_NAME, name));
+      taskQueueUtils.enqueue(queue, nextRun);
+    }
+    String message =
+        String.format(
+            "Repaired %d of %d mirrored names on this page of zone %s; "
+                + "%d changed while being compared",
+            repaired, entries.size(), cloudDnsZoneName, skipped);
+    logger.atInfo().log(message);
+    response.setPayload(message);
+  }
+
+  /** Returns the page of the zone that a given token fetches, or the first page if it's null. */
+  private ResourceRecordSetsListResponse readPage(String cloudDnsZoneName, String pageToken) {
+    try {
+      rateLimiter.acquire();
+      return dnsConnection
+          .resourceRecordSets()
+          .list(projectId, cloudDnsZoneName)
+          .setPageToken(pageToken)
+          .execute();
+    } catch (IOException e) {
+      throw new RuntimeException(
+          String.format("Failed to read zone %s from Cloud DNS", cloudDnsZoneName), e);
+    }
+  }
+
+  /** Returns all the record sets in the zone for a single name. */
+  private ImmutableList<ResourceRecordSet> readName(String cloudDnsZoneName, String name) {
+    try {
+      rateLimiter.acquire();
+      return ImmutableList.copyOf(
+          nullToEmpty(
+              dnsConnection
+                  .resourceRecordSets()
+                  .list(projectId, cloudDnsZoneName)
+                  .setName(name)
+                  .execute()
+                  .getRrsets()));
+    } catch (IOException e) {
+      throw new RuntimeException(
+          String.format("Failed to read %s in zone %s from Cloud DNS", name, cloudDnsZoneName), e);
+    }
+  }
+}
@@ -125,6 +125,7 @@ public final class EppController {
         bigQueryMetricsEnqueuer.export(metric);
         eppMetrics.incrementEppRequests(metric);
         eppMetrics.recordProcessingTime(metric);
+        eppMetrics.recordDatastoreRpcs(metric);
       }
     }
   }
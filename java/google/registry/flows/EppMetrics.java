@@ -21,6 +21,7 @@ import com.google.monitoring.metrics.EventMetric;
 import com.google.monitoring.metrics.IncrementableMetric;
 import com.google.monitoring.metrics.LabelDescriptor;
 import com.google.monitoring.metrics.MetricRegistryImpl;
+import google.registry.model.ofy.DatastoreRpcCounts;
 import google.registry.monitoring.whitebox.EppMetric;
 import javax.inject.Inject;
 
@@ -73,6 +74,27 @@ public class EppMetrics {
               LABEL_DESCRIPTORS_BY_TLD,
               DEFAULT_FITTER);
 
+  private static final ImmutableSet<LabelDescriptor> LABEL_DESCRIPTORS_BY_COMMAND =
+      ImmutableSet.of(LabelDescriptor.create("command", "The name of the command."));
+
+  private static final EventMetric datastoreRpcsByCommand =
+      MetricRegistryImpl.getDefault()
+          .newEventMetric(
+              "/epp/datastore_rpcs",
+              "Datastore RPCs Per EPP Request By Command",
+              "count",
+              LABEL_DESCRIPTORS_BY_COMMAND,
+              DEFAULT_FITTER);
+
+  private static final EventMetric datastoreWaitTimeByCommand =
+      MetricRegistryImpl.getDefault()
+          .newEventMetric(
+              "/epp/datastore_wait_time",
+              "Time Spent Waiting On Datastore Per EPP Request By Command",
+              "milliseconds",
+              LABEL_DESCRIPTORS_BY_COMMAND,
+              DEFAULT_FITTER);
+
   @Inject
   public EppMetrics() {}
 
@@ -108,4 +130,12 @@ public class EppMetrics {
         metric.getTld().orElse(""),
         eppStatusCode);
   }
+
+  /** Records the number of Datastore RPCs an EPP request made and how long it waited on them. */
+  public void recordDatastoreRpcs(EppMetric metric) {
+    String commandName = metric.getCommandName().orElse("");
+    DatastoreRpcCounts counts = metric.getDatastoreRpcCounts();
+    datastoreRpcsByCommand.record(counts.rpcs(), commandName);
+    datastoreWaitTimeByCommand.record(counts.waitMillis(), commandName);
+  }
 }
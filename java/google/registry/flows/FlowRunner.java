@@ -15,6 +15,7 @@
 package google.registry.flows;
 
 import static google.registry.model.ofy.ObjectifyService.ofy;
+import static google.registry.model.ofy.RpcCountingAsyncDatastoreService.getCountsForCurrentThread;
 import static google.registry.xml.XmlTransformer.prettyPrint;
 
 import com.google.common.base.Strings;
@@ -27,6 +28,7 @@ import google.registry.flows.FlowModule.Transactional;
 import google.registry.flows.session.LoginFlow;
 import google.registry.model.eppcommon.Trid;
 import google.registry.model.eppoutput.EppOutput;
+import google.registry.model.ofy.DatastoreRpcCounts;
 import google.registry.monitoring.whitebox.EppMetric;
 import javax.inject.Inject;
 import javax.inject.Provider;
@@ -71,6 +73,16 @@ public class FlowRunner {
       flowReporter.recordToLogs();
     }
     eppMetricBuilder.setCommandNameFromFlow(flowClass.getSimpleName());
+    DatastoreRpcCounts rpcCountsBefore = getCountsForCurrentThread();
+    try {
+      return runFlow(eppMetricBuilder);
+    } finally {
+      eppMetricBuilder.addDatastoreRpcs(getCountsForCurrentThread().minus(rpcCountsBefore));
+    }
+  }
+
+  /** Runs the EPP flow, in a transaction if it is transactional. */
+  private EppOutput runFlow(EppMetric.Builder eppMetricBuilder) throws EppException {
     if (!isTransactional) {
       eppMetricBuilder.incrementAttempts();
       EppOutput eppOutput = EppOutput.create(flowProvider.get().run());
@@ -0,0 +1,57 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.flows;
+
+import google.registry.model.registry.Registry;
+import google.registry.model.registry.Registry.RegistryNotFoundException;
+import java.util.HashMap;
+import java.util.Map;
+import javax.inject.Inject;
+
+/**
+ * The {@link Registry} of each TLD that a flow deals with, as of the first time the flow needs it.
+ *
+ * <p>Flows should get registries from here rather than from {@link Registry#get}, so that every
+ * part of a flow sees the same settings for a TLD even if the cached copy is refreshed partway
+ * through, and so that looking up the same TLD again, e.g. for each name in a domain check, doesn't
+ * go back through the cache. Like everything else in {@link FlowScope}, the snapshot survives
+ * transactional retries of the flow.
+ *
+ * <p>This only covers the lookups that flows make themselves. Pricing engines and other code that
+ * flows call into still use {@link Registry#get} internally, so they may see a newer copy of a
+ * TLD's settings than the one in this snapshot.
+ */
+@FlowScope
+public final class RegistrySnapshot {
+
+  private final Map<String, Registry> registries = new HashMap<>();
+
+  @Inject
+  RegistrySnapshot() {}
+
+  /**
+   * Returns the registry for a given TLD, throwing if none exists.
+   *
+   * @throws RegistryNotFoundException if the TLD doesn't exist
+   */
+  public Registry get(String tld) {
+    Registry registry = registries.get(tld);
+    if (registry == null) {
+      registry = Registry.get(tld);
+      registries.put(tld, registry);
+    }
+    return registry;
+  }
+}
@@ -56,6 +56,7 @@ import google.registry.flows.ExtensionManager;
 import google.registry.flows.FlowModule.ClientId;
 import google.registry.flows.FlowModule.Superuser;
 import google.registry.flows.FlowModule.TargetId;
+import google.registry.flows.RegistrySnapshot;
 import google.registry.flows.TransactionalFlow;
 import google.registry.flows.annotations.ReportingSpec;
 import google.registry.flows.custom.DomainApplicationCreateFlowCustomLogic;
@@ -185,6 +186,7 @@ public final class DomainApplicationCreateFlow implements TransactionalFlow {
   @Inject DomainApplicationCreateFlowCustomLogic flowCustomLogic;
   @Inject DomainFlowTmchUtils tmchUtils;
   @Inject DomainPricingLogic pricingLogic;
+  @Inject RegistrySnapshot registrySnapshot;
   @Inject DomainApplicationCreateFlow() {}
 
   @Override
@@ -212,7 +214,7 @@ public final class DomainApplicationCreateFlow implements TransactionalFlow {
       // Access to the TLD should be checked before the subsequent checks as it is a greater concern
       checkAllowedAccessToTld(clientId, tld);
     }
-    Registry registry = Registry.get(tld);
+    Registry registry = registrySnapshot.get(tld);
     FeesAndCredits feesAndCredits =
         pricingLogic.getCreatePrice(registry, targetId, now, command.getPeriod().getValue());
     verifyUnitIsYears(command.getPeriod());
@@ -227,7 +229,7 @@ public final class DomainApplicationCreateFlow implements TransactionalFlow {
     // Superusers can create reserved domains, force creations on domains that require a claims
     // notice without specifying a claims key, and override blocks on registering premium domains.
     if (!isSuperuser) {
-      verifyPremiumNameIsNotBlocked(targetId, now, clientId);
+      verifyPremiumNameIsNotBlocked(registry, targetId, now, clientId);
       prohibitLandrushIfExactlyOneSunrise(registry, now);
       if (!isAnchorTenant) {
         boolean isSunriseApplication = !launchCreate.getSignedMarks().isEmpty();
@@ -236,7 +238,7 @@ public final class DomainApplicationCreateFlow implements TransactionalFlow {
     }
     Optional<FeeCreateCommandExtension> feeCreate =
         eppInput.getSingleExtension(FeeCreateCommandExtension.class);
-    validateFeeChallenge(targetId, tld, clientId, now, feeCreate, feesAndCredits);
+    validateFeeChallenge(targetId, registry, clientId, now, feeCreate, feesAndCredits);
     Optional<SecDnsCreateExtension> secDnsCreate =
         validateSecDnsExtension(eppInput.getSingleExtension(SecDnsCreateExtension.class));
     flowCustomLogic.afterValidation(
@@ -55,6 +55,7 @@ import google.registry.flows.FlowModule.ApplicationId;
 import google.registry.flows.FlowModule.ClientId;
 import google.registry.flows.FlowModule.Superuser;
 import google.registry.flows.FlowModule.TargetId;
+import google.registry.flows.RegistrySnapshot;
 import google.registry.flows.TransactionalFlow;
 import google.registry.flows.annotations.ReportingSpec;
 import google.registry.model.ImmutableObject;
@@ -143,6 +144,7 @@ public class DomainApplicationUpdateFlow implements TransactionalFlow {
   @Inject HistoryEntry.Builder historyBuilder;
   @Inject EppResponse.Builder responseBuilder;
   @Inject DomainPricingLogic pricingLogic;
+  @Inject RegistrySnapshot registrySnapshot;
   @Inject DomainApplicationUpdateFlow() {}
 
   @Override
@@ -185,7 +187,7 @@ public class DomainApplicationUpdateFlow implements TransactionalFlow {
       throw new ApplicationStatusProhibitsUpdateException(
           existingApplication.getApplicationStatus());
     }
-    Registry registry = Registry.get(tld);
+    Registry registry = registrySnapshot.get(tld);
     FeesAndCredits feesAndCredits =
         pricingLogic.getApplicationUpdatePrice(registry, existingApplication, now);
     Optional<FeeUpdateCommandExtension> feeUpdate =
@@ -197,9 +199,8 @@ public class DomainApplicationUpdateFlow implements TransactionalFlow {
         add.getNameservers());
     validateContactsHaveTypes(add.getContacts());
     validateContactsHaveTypes(remove.getContacts());
-    validateRegistrantAllowedOnTld(tld, command.getInnerChange().getRegistrantContactId());
-    validateNameserversAllowedOnTld(
-        tld, add.getNameserverFullyQualifiedHostNames());
+    validateRegistrantAllowedOnTld(registry, command.getInnerChange().getRegistrantContactId());
+    validateNameserversAllowedOnTld(registry, add.getNameserverFullyQualifiedHostNames());
     InternetDomainName domainName =
         InternetDomainName.from(existingApplication.getFullyQualifiedDomainName());
     validateNameserversAllowedOnDomain(
@@ -247,7 +248,7 @@ public class DomainApplicationUpdateFlow implements TransactionalFlow {
     validateRequiredContactsPresent(newApplication.getRegistrant(), newApplication.getContacts());
     validateDsData(newApplication.getDsData());
     validateNameserversCountForTld(
-        newApplication.getTld(),
+        registrySnapshot.get(newApplication.getTld()),
         InternetDomainName.from(newApplication.getFullyQualifiedDomainName()),
         newApplication.getNameservers().size());
   }
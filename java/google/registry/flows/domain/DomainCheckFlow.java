@@ -39,6 +39,7 @@ import google.registry.flows.ExtensionManager;
 import google.registry.flows.Flow;
 import google.registry.flows.FlowModule.ClientId;
 import google.registry.flows.FlowModule.Superuser;
+import google.registry.flows.RegistrySnapshot;
 import google.registry.flows.annotations.ReportingSpec;
 import google.registry.flows.custom.DomainCheckFlowCustomLogic;
 import google.registry.flows.custom.DomainCheckFlowCustomLogic.BeforeResponseParameters;
@@ -118,6 +119,7 @@ public final class DomainCheckFlow implements Flow {
   @Inject AllocationTokenFlowUtils allocationTokenFlowUtils;
   @Inject DomainCheckFlowCustomLogic flowCustomLogic;
   @Inject DomainPricingLogic pricingLogic;
+  @Inject RegistrySnapshot registrySnapshot;
   @Inject DomainCheckFlow() {}
 
   @Override
@@ -142,7 +144,7 @@ public final class DomainCheckFlow implements Flow {
       boolean tldFirstTimeSeen = seenTlds.add(tld);
       if (tldFirstTimeSeen && !isSuperuser) {
         checkAllowedAccessToTld(clientId, tld);
-        verifyNotInPredelegation(Registry.get(tld), now);
+        verifyNotInPredelegation(registrySnapshot.get(tld), now);
       }
     }
     ImmutableMap<String, InternetDomainName> domainNames = domains.build();
@@ -190,7 +192,7 @@ public final class DomainCheckFlow implements Flow {
     if (existingIds.contains(domainName.toString())) {
       return Optional.of("In use");
     }
-    Registry registry = Registry.get(domainName.parent().toString());
+    Registry registry = registrySnapshot.get(domainName.parent().toString());
     if (PENDING_ALLOCATION_TLD_STATES.contains(registry.getTldState(now))
         && loadActiveApplicationsByDomainName(domainName.toString(), now)
             .stream()
@@ -218,10 +220,12 @@ public final class DomainCheckFlow implements Flow {
     for (FeeCheckCommandExtensionItem feeCheckItem : feeCheck.getItems()) {
       for (String domainName : getDomainNamesToCheckForFee(feeCheckItem, domainNames.keySet())) {
         FeeCheckResponseExtensionItem.Builder<?> builder = feeCheckItem.createResponseBuilder();
+        InternetDomainName internetDomainName = domainNames.get(domainName);
         handleFeeRequest(
             feeCheckItem,
             builder,
-            domainNames.get(domainName),
+            internetDomainName,
+            registrySnapshot.get(internetDomainName.parent().toString()),
             feeCheck.getCurrency(),
             now,
             pricingLogic);
@@ -64,6 +64,7 @@ import google.registry.flows.ExtensionManager;
 import google.registry.flows.FlowModule.ClientId;
 import google.registry.flows.FlowModule.Superuser;
 import google.registry.flows.FlowModule.TargetId;
+import google.registry.flows.RegistrySnapshot;
 import google.registry.flows.TransactionalFlow;
 import google.registry.flows.annotations.ReportingSpec;
 import google.registry.flows.custom.DomainCreateFlowCustomLogic;
@@ -216,6 +217,7 @@ public class DomainCreateFlow implements TransactionalFlow {
   @Inject DomainFlowTmchUtils tmchUtils;
   @Inject DomainPricingLogic pricingLogic;
   @Inject DnsQueue dnsQueue;
+  @Inject RegistrySnapshot registrySnapshot;
   @Inject DomainCreateFlow() {}
 
   @Override
@@ -240,7 +242,7 @@ public class DomainCreateFlow implements TransactionalFlow {
     // Validate that this is actually a legal domain name on a TLD that the registrar has access to.
     InternetDomainName domainName = validateDomainName(command.getFullyQualifiedDomainName());
     String domainLabel = domainName.parts().get(0);
-    Registry registry = Registry.get(domainName.parent().toString());
+    Registry registry = registrySnapshot.get(domainName.parent().toString());
     validateCreateCommandContactsAndNameservers(command, registry, domainName);
     if (registry.getDomainCreateRestricted()) {
       validateDomainAllowedOnCreateRestrictedTld(domainName);
@@ -275,7 +277,7 @@ public class DomainCreateFlow implements TransactionalFlow {
       if (now.isBefore(registry.getClaimsPeriodEnd())) {
         verifyClaimsNoticeIfAndOnlyIfNeeded(domainName, hasSignedMarks, hasClaimsNotice);
       }
-      verifyPremiumNameIsNotBlocked(targetId, now, clientId);
+      verifyPremiumNameIsNotBlocked(registry, targetId, now, clientId);
       verifyNoOpenApplications(now);
       verifyIsGaOrIsSpecialCase(tldState, isAnchorTenant, hasSignedMarks);
       verifySignedMarkOnlyInSunrise(hasSignedMarks, tldState);
@@ -300,7 +302,7 @@ public class DomainCreateFlow implements TransactionalFlow {
     Optional<FeeCreateCommandExtension> feeCreate =
         eppInput.getSingleExtension(FeeCreateCommandExtension.class);
     FeesAndCredits feesAndCredits = pricingLogic.getCreatePrice(registry, targetId, now, years);
-    validateFeeChallenge(targetId, registry.getTldStr(), clientId, now, feeCreate, feesAndCredits);
+    validateFeeChallenge(targetId, registry, clientId, now, feeCreate, feesAndCredits);
     Optional<SecDnsCreateExtension> secDnsCreate =
         validateSecDnsExtension(eppInput.getSingleExtension(SecDnsCreateExtension.class));
     String repoId = createDomainRepoId(ObjectifyService.allocateId(), registry.getTldStr());
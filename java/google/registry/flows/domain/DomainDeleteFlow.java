@@ -146,6 +146,7 @@ public final class DomainDeleteFlow implements TransactionalFlow {
     DomainResource existingDomain = loadAndVerifyExistence(DomainResource.class, targetId, now);
     Registry registry = Registry.get(existingDomain.getTld());
     verifyDeleteAllowed(existingDomain, registry, now);
+    prefetchReferences(existingDomain);
     flowCustomLogic.afterValidation(
         AfterValidationParameters.newBuilder().setExistingDomain(existingDomain).build());
     ImmutableSet.Builder<ImmutableObject> entitiesToSave = new ImmutableSet.Builder<>();
@@ -308,6 +309,19 @@ public final class DomainDeleteFlow implements TransactionalFlow {
         .build();
   }
 
+  /**
+   * Starts loading, in one batch, the autorenew events that are closed below and the grace period
+   * billing events that the fee extension reports credits for.
+   */
+  private void prefetchReferences(DomainResource existingDomain) {
+    DomainReferencePrefetcher prefetcher =
+        new DomainReferencePrefetcher().addAutorenewEvents(existingDomain);
+    if (getDeleteResponseBuilder() != null) {
+      prefetcher.addGracePeriodBillingEvents(existingDomain.getGracePeriods());
+    }
+    prefetcher.prefetch();
+  }
+
   @Nullable
   private ImmutableList<FeeTransformResponseExtension> getResponseExtensions(
       DomainResource existingDomain, DateTime now) {
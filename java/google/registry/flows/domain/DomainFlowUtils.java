@@ -18,6 +18,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Predicates.equalTo;
 import static com.google.common.collect.ImmutableMap.toImmutableMap;
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
 import static com.google.common.collect.Iterables.any;
 import static com.google.common.collect.Sets.difference;
 import static com.google.common.collect.Sets.intersection;
@@ -118,6 +119,7 @@ import java.math.BigDecimal;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
@@ -297,11 +299,10 @@ public class DomainFlowUtils {
     }
   }
 
-  static void validateNameserversCountForTld(String tld, InternetDomainName domainName, int count)
-      throws EppException {
+  static void validateNameserversCountForTld(
+      Registry registry, InternetDomainName domainName, int count) throws EppException {
     // For TLDs with a nameserver whitelist, all domains must have at least 1 nameserver.
-    ImmutableSet<String> tldNameserversWhitelist =
-        Registry.get(tld).getAllowedFullyQualifiedHostNames();
+    ImmutableSet<String> tldNameserversWhitelist = registry.getAllowedFullyQualifiedHostNames();
     if (!tldNameserversWhitelist.isEmpty() && count == 0) {
       throw new NameserversNotSpecifiedForTldWithNameserverWhitelistException(
           domainName.toString());
@@ -347,9 +348,9 @@ public class DomainFlowUtils {
     }
   }
 
-  static void validateRegistrantAllowedOnTld(String tld, String registrantContactId)
+  static void validateRegistrantAllowedOnTld(Registry registry, String registrantContactId)
       throws RegistrantNotAllowedException {
-    ImmutableSet<String> whitelist = Registry.get(tld).getAllowedRegistrantContactIds();
+    ImmutableSet<String> whitelist = registry.getAllowedRegistrantContactIds();
     // Empty whitelist or null registrantContactId are ignored.
     if (registrantContactId != null
         && !whitelist.isEmpty()
@@ -358,9 +359,9 @@ public class DomainFlowUtils {
     }
   }
 
-  static void validateNameserversAllowedOnTld(String tld, Set<String> fullyQualifiedHostNames)
-      throws EppException {
-    ImmutableSet<String> whitelist = Registry.get(tld).getAllowedFullyQualifiedHostNames();
+  static void validateNameserversAllowedOnTld(
+      Registry registry, Set<String> fullyQualifiedHostNames) throws EppException {
+    ImmutableSet<String> whitelist = registry.getAllowedFullyQualifiedHostNames();
     Set<String> hostnames = nullToEmpty(fullyQualifiedHostNames);
     if (!whitelist.isEmpty()) { // Empty whitelist is ignored.
       Set<String> disallowedNameservers = difference(hostnames, whitelist);
@@ -442,9 +443,10 @@ public class DomainFlowUtils {
    * where it would not be allowed is if domain name is premium, and premium names are blocked by
    * this registrar.
    */
-  static void verifyPremiumNameIsNotBlocked(String domainName, DateTime priceTime, String clientId)
+  static void verifyPremiumNameIsNotBlocked(
+      Registry registry, String domainName, DateTime priceTime, String clientId)
       throws EppException {
-    if (isDomainPremium(domainName, priceTime)) {
+    if (isDomainPremium(registry, domainName, priceTime)) {
       if (Registrar.loadByClientIdCached(clientId).get().getBlockPremiumNames()) {
         throw new PremiumNameBlockedException();
       }
@@ -493,6 +495,9 @@ public class DomainFlowUtils {
    * Re-saves the current autorenew billing event and poll message with a new end time. This may end
    * up deleting the poll message (if closing the message interval) or recreating it (if opening the
    * message interval).
+   *
+   * <p>Flows should {@link DomainReferencePrefetcher#addAutorenewEvents prefetch} both entities
+   * once their checks have passed, so that they load in one batch while the flow does other work.
    */
   @SuppressWarnings("unchecked")
   static void updateAutorenewRecurrenceEndTime(DomainResource domain, DateTime newEndTime) {
@@ -534,6 +539,7 @@ public class DomainFlowUtils {
       FeeQueryCommandExtensionItem feeRequest,
       FeeQueryResponseExtensionItem.Builder<?, ?> builder,
       InternetDomainName domain,
+      Registry registry,
       @Nullable CurrencyUnit topLevelCurrency,
       DateTime currentDate,
       DomainPricingLogic pricingLogic)
@@ -545,7 +551,6 @@ public class DomainFlowUtils {
       builder.setEffectiveDateIfSupported(now);
     }
     String domainNameString = domain.toString();
-    Registry registry = Registry.get(domain.parent().toString());
     int years = verifyUnitIsYears(feeRequest.getPeriod()).getValue();
     boolean isSunrise = registry.getTldState(now).equals(TldState.SUNRISE);
 
@@ -563,7 +568,7 @@ public class DomainFlowUtils {
         .setCommand(feeRequest.getCommandName(), feeRequest.getPhase(), feeRequest.getSubphase())
         .setCurrencyIfSupported(registry.getCurrency())
         .setPeriod(feeRequest.getPeriod())
-        .setClass(pricingLogic.getFeeClass(domainNameString, now).orElse(null));
+        .setClass(pricingLogic.getFeeClass(registry, domainNameString, now).orElse(null));
 
     ImmutableList<Fee> fees = ImmutableList.of();
     switch (feeRequest.getCommandName()) {
@@ -631,18 +636,19 @@ public class DomainFlowUtils {
    */
   public static void validateFeeChallenge(
       String domainName,
-      String tld,
+      Registry registry,
       String clientId,
       DateTime priceTime,
       final Optional<? extends FeeTransformCommandExtension> feeCommand,
       FeesAndCredits feesAndCredits)
       throws EppException {
 
-    Registry registry = Registry.get(tld);
     Registrar registrar = Registrar.loadByClientIdCached(clientId).get();
     boolean premiumAckRequired =
         registry.getPremiumPriceAckRequired() || registrar.getPremiumPriceAckRequired();
-    if (premiumAckRequired && isDomainPremium(domainName, priceTime) && !feeCommand.isPresent()) {
+    if (premiumAckRequired
+        && isDomainPremium(registry, domainName, priceTime)
+        && !feeCommand.isPresent()) {
       throw new FeesRequiredForPremiumNameException();
     }
     validateFeesAckedIfPresent(feeCommand, feesAndCredits);
@@ -869,14 +875,13 @@ public class DomainFlowUtils {
     verifyNotInPendingDelete(
         command.getContacts(), command.getRegistrant(), command.getNameservers());
     validateContactsHaveTypes(command.getContacts());
-    String tld = registry.getTldStr();
-    validateRegistrantAllowedOnTld(tld, command.getRegistrantContactId());
+    validateRegistrantAllowedOnTld(registry, command.getRegistrantContactId());
     validateNoDuplicateContacts(command.getContacts());
     validateRequiredContactsPresent(command.getRegistrant(), command.getContacts());
     Set<String> fullyQualifiedHostNames =
         nullToEmpty(command.getNameserverFullyQualifiedHostNames());
-    validateNameserversCountForTld(tld, domainName, fullyQualifiedHostNames.size());
-    validateNameserversAllowedOnTld(tld, fullyQualifiedHostNames);
+    validateNameserversCountForTld(registry, domainName, fullyQualifiedHostNames.size());
+    validateNameserversAllowedOnTld(registry, fullyQualifiedHostNames);
     validateNameserversAllowedOnDomain(domainName, fullyQualifiedHostNames);
   }
 
@@ -982,11 +987,14 @@ public class DomainFlowUtils {
 
   static ImmutableSet<ForeignKeyedDesignatedContact> loadForeignKeyedDesignatedContacts(
       ImmutableSet<DesignatedContact> contacts) {
+    ImmutableSet<Key<ContactResource>> contactKeys =
+        contacts.stream().map(DesignatedContact::getContactKey).collect(toImmutableSet());
+    Map<Key<ContactResource>, ContactResource> loadedContacts = ofy().load().keys(contactKeys);
     ImmutableSet.Builder<ForeignKeyedDesignatedContact> builder = new ImmutableSet.Builder<>();
     for (DesignatedContact contact : contacts) {
       builder.add(
           ForeignKeyedDesignatedContact.create(
-              contact.getType(), ofy().load().key(contact.getContactKey()).now().getContactId()));
+              contact.getType(), loadedContacts.get(contact.getContactKey()).getContactId()));
     }
     return builder.build();
   }
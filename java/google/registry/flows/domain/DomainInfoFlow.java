@@ -14,7 +14,6 @@
 
 package google.registry.flows.domain;
 
-import static com.google.common.collect.Sets.union;
 import static google.registry.flows.FlowUtils.validateClientIsLoggedIn;
 import static google.registry.flows.ResourceFlowUtils.verifyExistence;
 import static google.registry.flows.ResourceFlowUtils.verifyOptionalAuthInfo;
@@ -32,6 +31,7 @@ import google.registry.flows.ExtensionManager;
 import google.registry.flows.Flow;
 import google.registry.flows.FlowModule.ClientId;
 import google.registry.flows.FlowModule.TargetId;
+import google.registry.flows.RegistrySnapshot;
 import google.registry.flows.annotations.ReportingSpec;
 import google.registry.flows.custom.DomainInfoFlowCustomLogic;
 import google.registry.flows.custom.DomainInfoFlowCustomLogic.AfterValidationParameters;
@@ -84,6 +84,7 @@ public final class DomainInfoFlow implements Flow {
   @Inject EppResponse.Builder responseBuilder;
   @Inject DomainInfoFlowCustomLogic flowCustomLogic;
   @Inject DomainPricingLogic pricingLogic;
+  @Inject RegistrySnapshot registrySnapshot;
 
   @Inject
   DomainInfoFlow() {}
@@ -100,20 +101,29 @@ public final class DomainInfoFlow implements Flow {
     verifyOptionalAuthInfo(authInfo, domain);
     flowCustomLogic.afterValidation(
         AfterValidationParameters.newBuilder().setDomain(domain).build());
-    // Prefetch all referenced resources. Calling values() blocks until loading is done.
-    ofy().load()
-        .values(union(domain.getNameservers(), domain.getReferencedContacts())).values();
     // Registrars can only see a few fields on unauthorized domains.
     // This is a policy decision that is left up to us by the rfcs.
+    // If authInfo is non-null, then the caller is authorized to see the full information since we
+    // will have already verified the authInfo is valid.
+    boolean showAllFields =
+        clientId.equals(domain.getCurrentSponsorClientId()) || authInfo.isPresent();
+    HostsRequest hostsRequest = ((Info) resourceCommand).getHostsRequest();
+    // Load the referenced resources that are shown in one batch, rather than one at a time below.
+    DomainReferencePrefetcher prefetcher =
+        new DomainReferencePrefetcher().add(domain.getRegistrant());
+    if (showAllFields) {
+      prefetcher.addContacts(domain);
+      if (hostsRequest.requestDelegated()) {
+        prefetcher.addNameservers(domain);
+      }
+    }
+    prefetcher.prefetch();
     DomainInfoData.Builder infoBuilder = DomainInfoData.newBuilder()
         .setFullyQualifiedDomainName(domain.getFullyQualifiedDomainName())
         .setRepoId(domain.getRepoId())
         .setCurrentSponsorClientId(domain.getCurrentSponsorClientId())
         .setRegistrant(ofy().load().key(domain.getRegistrant()).now().getContactId());
-    // If authInfo is non-null, then the caller is authorized to see the full information since we
-    // will have already verified the authInfo is valid.
-    if (clientId.equals(domain.getCurrentSponsorClientId()) || authInfo.isPresent()) {
-      HostsRequest hostsRequest = ((Info) resourceCommand).getHostsRequest();
+    if (showAllFields) {
       infoBuilder
           .setStatusValues(domain.getStatusValues())
           .setContacts(loadForeignKeyedDesignatedContacts(domain.getContacts()))
@@ -160,6 +170,7 @@ public final class DomainInfoFlow implements Flow {
           feeInfo.get(),
           builder,
           InternetDomainName.from(targetId),
+          registrySnapshot.get(domain.getTld()),
           null,
           now,
           pricingLogic);
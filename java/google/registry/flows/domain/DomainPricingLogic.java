@@ -62,7 +62,8 @@ public final class DomainPricingLogic {
 
     // Get the vanilla create cost.
     BaseFee createFeeOrCredit =
-        Fee.create(getDomainCreateCost(domainName, date, years).getAmount(), FeeType.CREATE);
+        Fee.create(
+            getDomainCreateCost(registry, domainName, date, years).getAmount(), FeeType.CREATE);
 
     // Create fees for the cost and the EAP fee, if any.
     Fee eapFee = registry.getEapFeeFor(date);
@@ -92,7 +93,7 @@ public final class DomainPricingLogic {
       DateTime date,
       int years)
       throws EppException {
-    Money renewCost = getDomainRenewCost(domainName, date, years);
+    Money renewCost = getDomainRenewCost(registry, domainName, date, years);
     return customLogic.customizeRenewPrice(
         RenewPriceParameters.newBuilder()
             .setFeesAndCredits(
@@ -114,7 +115,8 @@ public final class DomainPricingLogic {
         new FeesAndCredits.Builder()
             .setCurrency(registry.getCurrency())
             .addFeeOrCredit(
-                Fee.create(getDomainRenewCost(domainName, date, 1).getAmount(), FeeType.RENEW))
+                Fee.create(
+                    getDomainRenewCost(registry, domainName, date, 1).getAmount(), FeeType.RENEW))
             .addFeeOrCredit(
                 Fee.create(registry.getStandardRestoreCost().getAmount(), FeeType.RESTORE))
             .build();
@@ -130,7 +132,7 @@ public final class DomainPricingLogic {
   /** Returns a new transfer price for the pricer. */
   public FeesAndCredits getTransferPrice(Registry registry, String domainName, DateTime date)
       throws EppException {
-    Money renewCost = getDomainRenewCost(domainName, date, 1);
+    Money renewCost = getDomainRenewCost(registry, domainName, date, 1);
     return customLogic.customizeTransferPrice(
         TransferPriceParameters.newBuilder()
             .setFeesAndCredits(
@@ -183,8 +185,8 @@ public final class DomainPricingLogic {
   }
 
   /** Returns the fee class for a given domain and date. */
-  public Optional<String> getFeeClass(String domainName, DateTime date) {
-    return getDomainFeeClass(domainName, date);
+  public Optional<String> getFeeClass(Registry registry, String domainName, DateTime date) {
+    return getDomainFeeClass(registry, domainName, date);
   }
 
   /**
@@ -0,0 +1,82 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.flows.domain;
+
+import static google.registry.model.ofy.ObjectifyService.ofy;
+
+import com.googlecode.objectify.Key;
+import google.registry.model.domain.DomainBase;
+import google.registry.model.domain.DomainResource;
+import google.registry.model.domain.GracePeriod;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * Gathers the keys of the entities that a domain flow is going to load, and starts loading all of
+ * them in one batched get.
+ *
+ * <p>Objectify keeps the pending load in its session cache, so when the flow later loads any of
+ * these entities, singly or in a batch, it waits on the prefetch instead of making a round trip of
+ * its own. Each transaction has its own session, so prefetch within the transaction that does the
+ * loading.
+ *
+ * <p>Only add keys that the flow is certain to load. A prefetched entity that is never used still
+ * costs a read, and within a transaction it also enlists its entity group.
+ */
+final class DomainReferencePrefetcher {
+
+  private final Set<Key<?>> keys = new LinkedHashSet<>();
+
+  /** Adds the contacts of a domain, including the registrant. */
+  DomainReferencePrefetcher addContacts(DomainBase domain) {
+    keys.addAll(domain.getReferencedContacts());
+    return this;
+  }
+
+  /** Adds the nameservers of a domain. */
+  DomainReferencePrefetcher addNameservers(DomainBase domain) {
+    keys.addAll(domain.getNameservers());
+    return this;
+  }
+
+  /** Adds the autorenew billing event and the autorenew poll message of a domain. */
+  DomainReferencePrefetcher addAutorenewEvents(DomainResource domain) {
+    return add(domain.getAutorenewBillingEvent()).add(domain.getAutorenewPollMessage());
+  }
+
+  /** Adds the billing events, one-time or recurring, that the given grace periods refer to. */
+  DomainReferencePrefetcher addGracePeriodBillingEvents(Iterable<GracePeriod> gracePeriods) {
+    for (GracePeriod gracePeriod : gracePeriods) {
+      add(gracePeriod.getOneTimeBillingEvent()).add(gracePeriod.getRecurringBillingEvent());
+    }
+    return this;
+  }
+
+  /** Adds a single key, which is ignored if it is null. */
+  DomainReferencePrefetcher add(@Nullable Key<?> key) {
+    if (key != null) {
+      keys.add(key);
+    }
+    return this;
+  }
+
+  /** Starts loading everything that was added, without waiting for the results. */
+  void prefetch() {
+    if (!keys.isEmpty()) {
+      ofy().load().values(keys);
+    }
+  }
+}
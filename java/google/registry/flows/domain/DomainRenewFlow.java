@@ -39,6 +39,7 @@ import google.registry.flows.ExtensionManager;
 import google.registry.flows.FlowModule.ClientId;
 import google.registry.flows.FlowModule.Superuser;
 import google.registry.flows.FlowModule.TargetId;
+import google.registry.flows.RegistrySnapshot;
 import google.registry.flows.TransactionalFlow;
 import google.registry.flows.annotations.ReportingSpec;
 import google.registry.flows.custom.DomainRenewFlowCustomLogic;
@@ -125,6 +126,7 @@ public final class DomainRenewFlow implements TransactionalFlow {
   @Inject EppResponse.Builder responseBuilder;
   @Inject DomainRenewFlowCustomLogic flowCustomLogic;
   @Inject DomainPricingLogic pricingLogic;
+  @Inject RegistrySnapshot registrySnapshot;
   @Inject DomainRenewFlow() {}
 
   @Override
@@ -144,17 +146,17 @@ public final class DomainRenewFlow implements TransactionalFlow {
     validateRegistrationPeriod(now, newExpirationTime);
     Optional<FeeRenewCommandExtension> feeRenew =
         eppInput.getSingleExtension(FeeRenewCommandExtension.class);
-    FeesAndCredits feesAndCredits =
-        pricingLogic.getRenewPrice(Registry.get(existingDomain.getTld()), targetId, now, years);
-    validateFeeChallenge(
-        targetId, existingDomain.getTld(), clientId, now, feeRenew, feesAndCredits);
+    Registry registry = registrySnapshot.get(existingDomain.getTld());
+    FeesAndCredits feesAndCredits = pricingLogic.getRenewPrice(registry, targetId, now, years);
+    validateFeeChallenge(targetId, registry, clientId, now, feeRenew, feesAndCredits);
+    // Start loading the autorenew events that are closed below, now that the checks have passed.
+    new DomainReferencePrefetcher().addAutorenewEvents(existingDomain).prefetch();
     flowCustomLogic.afterValidation(
         AfterValidationParameters.newBuilder()
             .setExistingDomain(existingDomain)
             .setNow(now)
             .setYears(years)
             .build());
-    Registry registry = Registry.get(existingDomain.getTld());
     HistoryEntry historyEntry = buildHistoryEntry(
         existingDomain, now, command.getPeriod(), registry.getRenewGracePeriodLength());
     String tld = existingDomain.getTld();
@@ -256,7 +258,7 @@ public final class DomainRenewFlow implements TransactionalFlow {
         .setPeriodYears(years)
         .setCost(renewCost)
         .setEventTime(now)
-        .setBillingTime(now.plus(Registry.get(tld).getRenewGracePeriodLength()))
+        .setBillingTime(now.plus(registrySnapshot.get(tld).getRenewGracePeriodLength()))
         .setParent(historyEntry)
         .build();
   }
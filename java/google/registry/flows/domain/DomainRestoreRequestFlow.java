@@ -40,6 +40,7 @@ import google.registry.flows.ExtensionManager;
 import google.registry.flows.FlowModule.ClientId;
 import google.registry.flows.FlowModule.Superuser;
 import google.registry.flows.FlowModule.TargetId;
+import google.registry.flows.RegistrySnapshot;
 import google.registry.flows.TransactionalFlow;
 import google.registry.flows.annotations.ReportingSpec;
 import google.registry.model.ImmutableObject;
@@ -61,7 +62,6 @@ import google.registry.model.eppinput.EppInput;
 import google.registry.model.eppinput.ResourceCommand;
 import google.registry.model.eppoutput.EppResponse;
 import google.registry.model.poll.PollMessage;
-import google.registry.model.registry.Registry;
 import google.registry.model.reporting.DomainTransactionRecord;
 import google.registry.model.reporting.DomainTransactionRecord.TransactionReportField;
 import google.registry.model.reporting.HistoryEntry;
@@ -119,6 +119,7 @@ public final class DomainRestoreRequestFlow implements TransactionalFlow  {
   @Inject DnsQueue dnsQueue;
   @Inject EppResponse.Builder responseBuilder;
   @Inject DomainPricingLogic pricingLogic;
+  @Inject RegistrySnapshot registrySnapshot;
   @Inject DomainRestoreRequestFlow() {}
 
   @Override
@@ -133,7 +134,7 @@ public final class DomainRestoreRequestFlow implements TransactionalFlow  {
     DateTime now = ofy().getTransactionTime();
     DomainResource existingDomain = loadAndVerifyExistence(DomainResource.class, targetId, now);
     FeesAndCredits feesAndCredits =
-        pricingLogic.getRestorePrice(Registry.get(existingDomain.getTld()), targetId, now);
+        pricingLogic.getRestorePrice(registrySnapshot.get(existingDomain.getTld()), targetId, now);
     Optional<FeeUpdateCommandExtension> feeUpdate =
         eppInput.getSingleExtension(FeeUpdateCommandExtension.class);
     verifyRestoreAllowed(command, existingDomain, feeUpdate, feesAndCredits, now);
@@ -193,7 +194,8 @@ public final class DomainRestoreRequestFlow implements TransactionalFlow  {
     if (!isSuperuser) {
       verifyResourceOwnership(clientId, existingDomain);
       verifyNotReserved(InternetDomainName.from(targetId), false);
-      verifyPremiumNameIsNotBlocked(targetId, now, clientId);
+      verifyPremiumNameIsNotBlocked(
+          registrySnapshot.get(existingDomain.getTld()), targetId, now, clientId);
       checkAllowedAccessToTld(clientId, existingDomain.getTld());
     }
     // No other changes can be specified on a restore request.
@@ -205,7 +207,12 @@ public final class DomainRestoreRequestFlow implements TransactionalFlow  {
       throw new DomainNotEligibleForRestoreException();
     }
     validateFeeChallenge(
-        targetId, existingDomain.getTld(), clientId, now, feeUpdate, feesAndCredits);
+        targetId,
+        registrySnapshot.get(existingDomain.getTld()),
+        clientId,
+        now,
+        feeUpdate,
+        feesAndCredits);
   }
 
   private ImmutableSet<BillingEvent.OneTime> createRestoreAndRenewBillingEvents(
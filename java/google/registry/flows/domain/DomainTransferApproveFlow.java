@@ -111,6 +111,8 @@ public final class DomainTransferApproveFlow implements TransactionalFlow {
     if (!isSuperuser) {
       checkAllowedAccessToTld(clientId, tld);
     }
+    // Start loading the autorenew events that are closed below, now that the checks have passed.
+    new DomainReferencePrefetcher().addAutorenewEvents(existingDomain).prefetch();
     TransferData transferData = existingDomain.getTransferData();
     String gainingClientId = transferData.getGainingClientId();
     Registry registry = Registry.get(existingDomain.getTld());
@@ -95,6 +95,8 @@ public final class DomainTransferCancelFlow implements TransactionalFlow {
     if (!isSuperuser) {
       checkAllowedAccessToTld(clientId, existingDomain.getTld());
     }
+    // Start loading the autorenew events that are reopened below, now that the checks have passed.
+    new DomainReferencePrefetcher().addAutorenewEvents(existingDomain).prefetch();
     Registry registry = Registry.get(existingDomain.getTld());
     HistoryEntry historyEntry = buildHistoryEntry(existingDomain, registry, now);
     DomainResource newDomain =
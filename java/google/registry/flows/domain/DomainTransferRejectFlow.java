@@ -99,6 +99,8 @@ public final class DomainTransferRejectFlow implements TransactionalFlow {
     if (!isSuperuser) {
       checkAllowedAccessToTld(clientId, existingDomain.getTld());
     }
+    // Start loading the autorenew events that are reopened below, now that the checks have passed.
+    new DomainReferencePrefetcher().addAutorenewEvents(existingDomain).prefetch();
     DomainResource newDomain =
         denyPendingTransfer(existingDomain, TransferStatus.CLIENT_REJECTED, now);
     ofy().save().<ImmutableObject>entities(
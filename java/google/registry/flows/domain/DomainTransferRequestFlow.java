@@ -40,6 +40,7 @@ import google.registry.flows.ExtensionManager;
 import google.registry.flows.FlowModule.ClientId;
 import google.registry.flows.FlowModule.Superuser;
 import google.registry.flows.FlowModule.TargetId;
+import google.registry.flows.RegistrySnapshot;
 import google.registry.flows.TransactionalFlow;
 import google.registry.flows.annotations.ReportingSpec;
 import google.registry.flows.async.AsyncFlowEnqueuer;
@@ -129,6 +130,7 @@ public final class DomainTransferRequestFlow implements TransactionalFlow {
   @Inject AsyncFlowEnqueuer asyncFlowEnqueuer;
   @Inject EppResponse.Builder responseBuilder;
   @Inject DomainPricingLogic pricingLogic;
+  @Inject RegistrySnapshot registrySnapshot;
   @Inject DomainTransferRequestFlow() {}
 
   @Override
@@ -149,7 +151,7 @@ public final class DomainTransferRequestFlow implements TransactionalFlow {
             : ((Transfer) resourceCommand).getPeriod();
     verifyTransferAllowed(existingDomain, period, now, superuserExtension);
     String tld = existingDomain.getTld();
-    Registry registry = Registry.get(tld);
+    Registry registry = registrySnapshot.get(tld);
     // An optional extension from the client specifying what they think the transfer should cost.
     Optional<FeeTransferCommandExtension> feeTransfer =
         eppInput.getSingleExtension(FeeTransferCommandExtension.class);
@@ -164,8 +166,11 @@ public final class DomainTransferRequestFlow implements TransactionalFlow {
             ? Optional.empty()
             : Optional.of(pricingLogic.getTransferPrice(registry, targetId, now));
     if (feesAndCredits.isPresent()) {
-      validateFeeChallenge(targetId, tld, gainingClientId, now, feeTransfer, feesAndCredits.get());
+      validateFeeChallenge(
+          targetId, registry, gainingClientId, now, feeTransfer, feesAndCredits.get());
     }
+    // Start loading the autorenew events that are closed below, now that the checks have passed.
+    new DomainReferencePrefetcher().addAutorenewEvents(existingDomain).prefetch();
     HistoryEntry historyEntry = buildHistoryEntry(existingDomain, registry, now, period);
     DateTime automaticTransferTime =
         superuserExtension.isPresent()
@@ -260,7 +265,8 @@ public final class DomainTransferRequestFlow implements TransactionalFlow {
     verifyTransferPeriod(period, superuserExtension);
     if (!isSuperuser) {
       checkAllowedAccessToTld(gainingClientId, existingDomain.getTld());
-      verifyPremiumNameIsNotBlocked(targetId, now, gainingClientId);
+      verifyPremiumNameIsNotBlocked(
+          registrySnapshot.get(existingDomain.getTld()), targetId, now, gainingClientId);
     }
   }
 
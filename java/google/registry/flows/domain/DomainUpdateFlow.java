@@ -53,6 +53,7 @@ import google.registry.flows.ExtensionManager;
 import google.registry.flows.FlowModule.ClientId;
 import google.registry.flows.FlowModule.Superuser;
 import google.registry.flows.FlowModule.TargetId;
+import google.registry.flows.RegistrySnapshot;
 import google.registry.flows.TransactionalFlow;
 import google.registry.flows.annotations.ReportingSpec;
 import google.registry.flows.custom.DomainUpdateFlowCustomLogic;
@@ -158,6 +159,7 @@ public final class DomainUpdateFlow implements TransactionalFlow {
   @Inject EppResponse.Builder responseBuilder;
   @Inject DomainUpdateFlowCustomLogic flowCustomLogic;
   @Inject DomainPricingLogic pricingLogic;
+  @Inject RegistrySnapshot registrySnapshot;
   @Inject DomainUpdateFlow() {}
 
   @Override
@@ -221,7 +223,7 @@ public final class DomainUpdateFlow implements TransactionalFlow {
       verifyAllStatusesAreClientSettable(union(add.getStatusValues(), remove.getStatusValues()));
       checkAllowedAccessToTld(clientId, tld);
     }
-    Registry registry = Registry.get(tld);
+    Registry registry = registrySnapshot.get(tld);
     Optional<FeeUpdateCommandExtension> feeUpdate =
         eppInput.getSingleExtension(FeeUpdateCommandExtension.class);
     FeesAndCredits feesAndCredits = pricingLogic.getUpdatePrice(registry, targetId, now);
@@ -232,9 +234,8 @@ public final class DomainUpdateFlow implements TransactionalFlow {
         add.getNameservers());
     validateContactsHaveTypes(add.getContacts());
     validateContactsHaveTypes(remove.getContacts());
-    validateRegistrantAllowedOnTld(tld, command.getInnerChange().getRegistrantContactId());
-    validateNameserversAllowedOnTld(
-        tld, add.getNameserverFullyQualifiedHostNames());
+    validateRegistrantAllowedOnTld(registry, command.getInnerChange().getRegistrantContactId());
+    validateNameserversAllowedOnTld(registry, add.getNameserverFullyQualifiedHostNames());
     InternetDomainName domainName =
         InternetDomainName.from(existingDomain.getFullyQualifiedDomainName());
     if (registry.getDomainCreateRestricted()) {
@@ -281,7 +282,7 @@ public final class DomainUpdateFlow implements TransactionalFlow {
             .removeContacts(remove.getContacts())
             .setRegistrant(firstNonNull(change.getRegistrant(), domain.getRegistrant()))
             .setAuthInfo(firstNonNull(change.getAuthInfo(), domain.getAuthInfo()));
-    if (Registry.get(domain.getTld()).getDomainCreateRestricted()) {
+    if (registrySnapshot.get(domain.getTld()).getDomainCreateRestricted()) {
       domainBuilder
           .addStatusValue(StatusValue.SERVER_TRANSFER_PROHIBITED)
           .addStatusValue(StatusValue.SERVER_UPDATE_PROHIBITED);
@@ -313,7 +314,7 @@ public final class DomainUpdateFlow implements TransactionalFlow {
     // sunrush add grace period expiration time (i.e. you can't get extra add grace period by
     // setting a nameserver).
     DateTime addGracePeriodExpirationTime = earliestOf(
-        now.plus(Registry.get(existingDomain.getTld()).getAddGracePeriodLength()),
+        now.plus(registrySnapshot.get(existingDomain.getTld()).getAddGracePeriodLength()),
         sunrushAddGracePeriod.getExpirationTime());
     // Create a new billing event for the add grace period. Note that we do this even if it would
     // occur at the same time as the sunrush add grace period, as the event time will differ
@@ -344,7 +345,7 @@ public final class DomainUpdateFlow implements TransactionalFlow {
     validateRequiredContactsPresent(newDomain.getRegistrant(), newDomain.getContacts());
     validateDsData(newDomain.getDsData());
     validateNameserversCountForTld(
-        newDomain.getTld(),
+        registrySnapshot.get(newDomain.getTld()),
         InternetDomainName.from(newDomain.getFullyQualifiedDomainName()),
         newDomain.getNameservers().size());
   }
@@ -366,7 +367,7 @@ public final class DomainUpdateFlow implements TransactionalFlow {
               .setReason(Reason.SERVER_STATUS)
               .setTargetId(targetId)
               .setClientId(clientId)
-              .setCost(Registry.get(existingDomain.getTld()).getServerStatusChangeCost())
+              .setCost(registrySnapshot.get(existingDomain.getTld()).getServerStatusChangeCost())
               .setEventTime(now)
               .setBillingTime(now)
               .setParent(historyEntry)
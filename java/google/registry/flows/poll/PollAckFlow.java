@@ -16,7 +16,8 @@ package google.registry.flows.poll;
 
 import static com.google.common.base.Preconditions.checkState;
 import static google.registry.flows.FlowUtils.validateClientIsLoggedIn;
-import static google.registry.flows.poll.PollFlowUtils.getPollMessagesQuery;
+import static google.registry.flows.poll.PollFlowUtils.countOtherPollMessages;
+import static google.registry.flows.poll.PollFlowUtils.loadPollMessageQueue;
 import static google.registry.model.eppoutput.Result.Code.SUCCESS_WITH_NO_MESSAGES;
 import static google.registry.model.ofy.ObjectifyService.ofy;
 import static google.registry.model.poll.PollMessageExternalKeyConverter.makePollMessageExternalId;
@@ -121,13 +122,11 @@ public class PollAckFlow implements TransactionalFlow {
       }
     }
     // We need to return the new queue length. If this was the last message in the queue being
-    // acked, then we return a special status code indicating that. Note that the query will
-    // include the message being acked.
-
-    int messageCount = ofy().doTransactionless(() -> getPollMessagesQuery(clientId, now).count());
-    if (!includeAckedMessageInCount) {
-      messageCount--;
-    }
+    // acked, then we return a special status code indicating that. Note that the queue may or may
+    // not include the message being acked, so it is always excluded from the count.
+    int messageCount =
+        countOtherPollMessages(loadPollMessageQueue(clientId, now), pollMessageKey)
+            + (includeAckedMessageInCount ? 1 : 0);
     if (messageCount <= 0) {
       return responseBuilder.setResultFromCode(SUCCESS_WITH_NO_MESSAGES).build();
     }
@@ -15,9 +15,13 @@
 package google.registry.flows.poll;
 
 import static google.registry.model.ofy.ObjectifyService.ofy;
+import static google.registry.util.DateTimeUtils.isBeforeOrAt;
 
+import com.google.common.collect.ImmutableList;
+import com.googlecode.objectify.Key;
 import com.googlecode.objectify.cmd.Query;
 import google.registry.model.poll.PollMessage;
+import javax.annotation.Nullable;
 import org.joda.time.DateTime;
 
 /** Static utility functions for poll flows. */
@@ -33,4 +37,64 @@ public final class PollFlowUtils {
         .filter("eventTime <=", now.toDate())
         .order("eventTime");
   }
+
+  /**
+   * Returns the keys of the poll messages in the registrar's queue, oldest first.
+   *
+   * <p>This is a single keys-only query, which yields both the queue length and the candidates for
+   * its head. It is run outside of any enclosing transaction.
+   */
+  static ImmutableList<Key<PollMessage>> loadPollMessageQueue(String clientId, DateTime now) {
+    return ofy()
+        .doTransactionless(
+            () -> ImmutableList.copyOf(getPollMessagesQuery(clientId, now).keys().list()));
+  }
+
+  /**
+   * Returns the poll message at the head of the registrar's queue and the queue length.
+   *
+   * <p>Candidates are loaded by key, and any that the eventually consistent query still returned
+   * after they were deleted, rescheduled into the future or reassigned are skipped.
+   */
+  static PollMessageQueue loadPollMessageQueueHead(String clientId, DateTime now) {
+    ImmutableList<Key<PollMessage>> keys = loadPollMessageQueue(clientId, now);
+    for (int i = 0; i < keys.size(); i++) {
+      PollMessage pollMessage = ofy().load().key(keys.get(i)).now();
+      if (pollMessage != null
+          && isBeforeOrAt(pollMessage.getEventTime(), now)
+          && clientId.equals(pollMessage.getClientId())) {
+        return new PollMessageQueue(pollMessage, keys.size() - i);
+      }
+    }
+    return new PollMessageQueue(null, 0);
+  }
+
+  /** Returns the number of messages in the queue other than the given one. */
+  static int countOtherPollMessages(
+      ImmutableList<Key<PollMessage>> keys, Key<PollMessage> excludedKey) {
+    return (int) keys.stream().filter(key -> !key.equals(excludedKey)).count();
+  }
+
+  /** The head of a registrar's poll message queue, along with the length of the queue. */
+  static final class PollMessageQueue {
+
+    @Nullable private final PollMessage head;
+    private final int length;
+
+    private PollMessageQueue(@Nullable PollMessage head, int length) {
+      this.head = head;
+      this.length = length;
+    }
+
+    /** Returns the oldest poll message in the queue, or null if the queue is empty. */
+    @Nullable
+    PollMessage getHead() {
+      return head;
+    }
+
+    /** Returns the number of poll messages in the queue, including the head. */
+    int getLength() {
+      return length;
+    }
+  }
 }
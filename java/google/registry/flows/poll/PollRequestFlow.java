@@ -15,7 +15,7 @@
 package google.registry.flows.poll;
 
 import static google.registry.flows.FlowUtils.validateClientIsLoggedIn;
-import static google.registry.flows.poll.PollFlowUtils.getPollMessagesQuery;
+import static google.registry.flows.poll.PollFlowUtils.loadPollMessageQueueHead;
 import static google.registry.model.eppoutput.Result.Code.SUCCESS_WITH_ACK_MESSAGE;
 import static google.registry.model.eppoutput.Result.Code.SUCCESS_WITH_NO_MESSAGES;
 import static google.registry.model.poll.PollMessageExternalKeyConverter.makePollMessageExternalId;
@@ -26,6 +26,7 @@ import google.registry.flows.ExtensionManager;
 import google.registry.flows.Flow;
 import google.registry.flows.FlowModule.ClientId;
 import google.registry.flows.FlowModule.PollMessageId;
+import google.registry.flows.poll.PollFlowUtils.PollMessageQueue;
 import google.registry.model.eppoutput.EppResponse;
 import google.registry.model.poll.MessageQueueInfo;
 import google.registry.model.poll.PollMessage;
@@ -37,11 +38,11 @@ import org.joda.time.DateTime;
 /**
  * An EPP flow for requesting {@link PollMessage}s.
  *
- * <p>This flow uses an eventually consistent Datastore query to return the oldest poll message for
- * the registrar, as well as the total number of pending messages. Note that poll messages whose
- * event time is in the future (i.e. they are speculative and could still be changed or rescinded)
- * are ignored. The externally visible id for the poll message that the registrar sees is generated
- * by {@link PollMessageExternalKeyConverter}.
+ * <p>This flow uses a single eventually consistent keys-only Datastore query to find the total
+ * number of pending messages for the registrar, and then loads the oldest of them by key. Note
+ * that poll messages whose event time is in the future (i.e. they are speculative and could still
+ * be changed or rescinded) are ignored. The externally visible id for the poll message that the
+ * registrar sees is generated by {@link PollMessageExternalKeyConverter}.
  *
  * @error {@link PollRequestFlow.UnexpectedMessageIdException}
  */
@@ -63,7 +64,8 @@ public class PollRequestFlow implements Flow {
     }
     // Return the oldest message from the queue.
     DateTime now = clock.nowUtc();
-    PollMessage pollMessage = getPollMessagesQuery(clientId, now).first().now();
+    PollMessageQueue queue = loadPollMessageQueueHead(clientId, now);
+    PollMessage pollMessage = queue.getHead();
     if (pollMessage == null) {
       return responseBuilder.setResultFromCode(SUCCESS_WITH_NO_MESSAGES).build();
     }
@@ -72,7 +74,7 @@ public class PollRequestFlow implements Flow {
         .setMessageQueueInfo(new MessageQueueInfo.Builder()
             .setQueueDate(pollMessage.getEventTime())
             .setMsg(pollMessage.getMsg())
-            .setQueueLength(getPollMessagesQuery(clientId, now).count())
+            .setQueueLength(queue.getLength())
             .setMessageId(makePollMessageExternalId(pollMessage))
             .build())
         .setMultipleResData(pollMessage.getResponseData())
@@ -29,6 +29,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.flogger.FluentLogger;
 import com.google.common.net.MediaType;
 import google.registry.config.RegistryConfig.Config;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -61,7 +62,14 @@ public class GcsUtils {
   /** Opens a GCS file for reading as an {@link InputStream} with prefetching. */
   @CheckReturnValue
   public InputStream openInputStream(GcsFilename filename) {
-    return Channels.newInputStream(gcsService.openPrefetchingReadChannel(filename, 0, bufferSize));
+    return openInputStream(filename, 0);
+  }
+
+  /** Opens a GCS file for reading, starting at the given byte position, with prefetching. */
+  @CheckReturnValue
+  public InputStream openInputStream(GcsFilename filename, long position) {
+    return Channels.newInputStream(
+        gcsService.openPrefetchingReadChannel(filename, position, bufferSize));
   }
 
   /** Opens a GCS file for writing as an {@link OutputStream}, overwriting existing files. */
@@ -75,6 +83,11 @@ public class GcsUtils {
     gcsService.createOrReplace(filename, getOptions(filename), ByteBuffer.wrap(bytes));
   }
 
+  /** Copies a GCS file within GCS, overwriting the destination if it exists. */
+  public void copy(GcsFilename source, GcsFilename destination) throws IOException {
+    gcsService.copy(source, destination);
+  }
+
   /**
    * Returns a list of all object names within a bucket for a given prefix.
    *
@@ -111,6 +124,19 @@ public class GcsUtils {
     return metadata != null && metadata.getLength() > 0;
   }
 
+  /**
+   * Returns the length in bytes of a file on Google Cloud Storage.
+   *
+   * @throws FileNotFoundException if the file doesn't exist
+   */
+  public long getLength(GcsFilename file) throws IOException {
+    GcsFileMetadata metadata = gcsService.getMetadata(file);
+    if (metadata == null) {
+      throw new FileNotFoundException(file.toString());
+    }
+    return metadata.getLength();
+  }
+
   /** Determines most appropriate {@link GcsFileOptions} based on filename extension. */
   private static GcsFileOptions getOptions(GcsFilename filename) {
     Builder builder = new GcsFileOptions.Builder().cacheControl("no-cache");
@@ -0,0 +1,103 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.mapreduce.inputs;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.appengine.tools.mapreduce.Input;
+import com.google.appengine.tools.mapreduce.InputReader;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Range;
+import com.googlecode.objectify.Key;
+import google.registry.model.billing.BillingEvent.Recurring;
+import google.registry.model.common.TimeOfYear;
+import java.util.List;
+import org.joda.time.DateTime;
+import org.joda.time.Duration;
+
+/**
+ * A MapReduce {@link Input} that loads the keys of the {@link Recurring} billing events that recur
+ * within a range of event times.
+ *
+ * <p>This uses the index on {@link Recurring#getRecurrenceTimeOfYear}, so that it only reads the
+ * recurring events whose time of year falls within the range, rather than all of them. The range
+ * is split into pieces for parallelism, and widened by a day at each end. It doesn't filter on
+ * recurrence start or end times, so callers must still check that each event actually recurs
+ * within the range.
+ *
+ * <p>The query isn't an ancestor query, so it's only eventually consistent. That's fine for
+ * recurring events, which are always created long before they first recur.
+ */
+public class RecurringBillingEventKeyInput extends Input<Key<Recurring>> {
+
+  private static final long serialVersionUID = 3960524785064346387L;
+
+  /** The start of a year that isn't a leap year, for splitting up a whole year of times. */
+  private static final DateTime START_OF_NON_LEAP_YEAR = DateTime.parse("2001-01-01T00:00:00Z");
+
+  private final ImmutableList<Range<String>> timeStringRanges;
+
+  public RecurringBillingEventKeyInput(Range<DateTime> eventTimes, int numReaders) {
+    checkArgument(numReaders > 0, "numReaders must be positive");
+    this.timeStringRanges = getTimeStringRanges(eventTimes, numReaders);
+  }
+
+  @Override
+  public List<InputReader<Key<Recurring>>> createReaders() {
+    ImmutableList.Builder<InputReader<Key<Recurring>>> readers = new ImmutableList.Builder<>();
+    for (Range<String> timeStrings : timeStringRanges) {
+      readers.add(new RecurringBillingEventKeyReader(timeStrings));
+    }
+    return readers.build();
+  }
+
+  /** Returns the ranges of stored times of year that cover a range of event times. */
+  @VisibleForTesting
+  static ImmutableList<Range<String>> getTimeStringRanges(
+      Range<DateTime> eventTimes, int numReaders) {
+    DateTime start = eventTimes.lowerEndpoint().minusDays(1);
+    DateTime end = eventTimes.upperEndpoint().plusDays(1);
+    ImmutableList.Builder<Range<String>> ranges = new ImmutableList.Builder<>();
+    boolean coversWholeYear = !start.plusYears(1).isAfter(end);
+    if (coversWholeYear) {
+      start = START_OF_NON_LEAP_YEAR;
+      end = START_OF_NON_LEAP_YEAR.plusYears(1);
+    }
+    Duration step = new Duration(start, end).dividedBy(numReaders);
+    for (int i = 0; i < numReaders; i++) {
+      String lower = toTimeString(start.plus(step.multipliedBy(i)));
+      String upper = toTimeString(i == numReaders - 1 ? end : start.plus(step.multipliedBy(i + 1)));
+      if (coversWholeYear && i == numReaders - 1) {
+        ranges.add(Range.atLeast(lower));
+      } else if (lower.compareTo(upper) < 0) {
+        ranges.add(Range.closedOpen(lower, upper));
+      } else if (lower.compareTo(upper) > 0) {
+        // This piece wraps around the end of the year.
+        ranges.add(Range.atLeast(lower));
+        ranges.add(Range.lessThan(upper));
+      }
+    }
+    return ranges.build();
+  }
+
+  private static String toTimeString(DateTime time) {
+    // No time of year ever recurs on February 29, so times on it sort like the start of March 1.
+    if (time.getMonthOfYear() == 2 && time.getDayOfMonth() == 29) {
+      time = time.plusDays(1).withTimeAtStartOfDay();
+    }
+    return TimeOfYear.fromDateTime(time).getTimeString();
+  }
+}
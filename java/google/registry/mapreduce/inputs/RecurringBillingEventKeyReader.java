@@ -0,0 +1,83 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.mapreduce.inputs;
+
+import static google.registry.model.ofy.ObjectifyService.ofy;
+
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.QueryResultIterator;
+import com.google.appengine.tools.mapreduce.InputReader;
+import com.google.common.collect.Range;
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.cmd.Query;
+import google.registry.model.billing.BillingEvent.Recurring;
+import java.util.NoSuchElementException;
+import javax.annotation.Nullable;
+
+/** Reader of the keys of {@link Recurring} billing events within a range of times of year. */
+class RecurringBillingEventKeyReader extends RetryingInputReader<Key<Recurring>, Key<Recurring>> {
+
+  private static final long serialVersionUID = -2398754319428712207L;
+
+  /** Number of bytes in 1MB of memory, used for memory estimates. */
+  private static final long ONE_MB = 1024 * 1024;
+
+  private static final String TIME_STRING_PROPERTY = "recurrenceTimeOfYear.timeString";
+
+  private final Range<String> timeStrings;
+
+  RecurringBillingEventKeyReader(Range<String> timeStrings) {
+    this.timeStrings = timeStrings;
+  }
+
+  @Override
+  public QueryResultIterator<Key<Recurring>> getQueryIterator(@Nullable Cursor cursor) {
+    return startQueryAt(query(), cursor).keys().iterator();
+  }
+
+  @Override
+  public int getTotal() {
+    return query().count();
+  }
+
+  /**
+   * Called for each map invocation.
+   *
+   * @throws NoSuchElementException if there are no more elements, as specified in the
+   *         {@link InputReader#next} Javadoc.
+   */
+  @Override
+  public Key<Recurring> next() throws NoSuchElementException {
+    return nextQueryResult();
+  }
+
+  /** Returns the estimated memory that will be used by this reader in bytes. */
+  @Override
+  public long estimateMemoryRequirement() {
+    return ONE_MB;
+  }
+
+  /** Query for the recurring events within this reader's range. */
+  private Query<Recurring> query() {
+    Query<Recurring> query = ofy().load().type(Recurring.class);
+    if (timeStrings.hasLowerBound()) {
+      query = query.filter(TIME_STRING_PROPERTY + " >=", timeStrings.lowerEndpoint());
+    }
+    if (timeStrings.hasUpperBound()) {
+      query = query.filter(TIME_STRING_PROPERTY + " <", timeStrings.upperEndpoint());
+    }
+    return query;
+  }
+}
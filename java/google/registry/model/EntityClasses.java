@@ -20,6 +20,7 @@ import google.registry.model.common.Cursor;
 import google.registry.model.common.EntityGroupRoot;
 import google.registry.model.common.GaeUserIdConverter;
 import google.registry.model.contact.ContactResource;
+import google.registry.model.dns.ZoneMirrorEntry;
 import google.registry.model.domain.DomainApplication;
 import google.registry.model.domain.DomainBase;
 import google.registry.model.domain.DomainResource;
@@ -105,7 +106,8 @@ public final class EntityClasses {
           ReservedList.class,
           ServerSecret.class,
           SignedMarkRevocationList.class,
-          TmchCrl.class);
+          TmchCrl.class,
+          ZoneMirrorEntry.class);
 
   private EntityClasses() {}
 }
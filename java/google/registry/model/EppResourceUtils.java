@@ -21,7 +21,14 @@ import static google.registry.util.DateTimeUtils.isAtOrAfter;
 import static google.registry.util.DateTimeUtils.isBeforeOrAt;
 import static google.registry.util.DateTimeUtils.latestOf;
 
+import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableTable;
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.SetMultimap;
+import com.google.common.collect.Table;
 import com.google.common.flogger.FluentLogger;
 import com.googlecode.objectify.Key;
 import com.googlecode.objectify.Result;
@@ -42,7 +49,11 @@ import google.registry.model.ofy.CommitLogMutation;
 import google.registry.model.registry.Registry;
 import google.registry.model.transfer.TransferData;
 import google.registry.model.transfer.TransferStatus;
+import google.registry.util.ParallelTransformer;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.function.Function;
@@ -55,6 +66,10 @@ public final class EppResourceUtils {
 
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
 
+  /** Deserializes commit log mutations in parallel. */
+  private static final ParallelTransformer MUTATION_TRANSFORMER =
+      ParallelTransformer.builder("Commit log mutation deserialization").build();
+
   /** Returns the full domain repoId in the format HEX-TLD for the specified long id and tld. */
   public static String createDomainRepoId(long repoId, String tld) {
     return createRepoId(repoId, Registry.get(tld).getRoidSuffix());
@@ -319,6 +334,77 @@ public final class EppResourceUtils {
     };
   }
 
+  /**
+   * Rewinds many {@link EppResource} objects to given points in time at once.
+   *
+   * <p>This is equivalent to calling {@link #loadAtPointInTime} for each resource at each of its
+   * timestamps, and the same warnings apply. The difference is that all of the revisions that need
+   * to be fetched are fetched in one batched get rather than one get each, and are then
+   * deserialized in parallel.
+   *
+   * @param resources the resources to rewind, which should be whatever's currently in Datastore
+   * @param timestamps function returning the points in time to rewind a given resource to
+   * @return a table holding each resource at each of its timestamps, with no cell for a resource at
+   *     a timestamp where it is deleted or not yet created
+   */
+  public static <T extends EppResource> ImmutableTable<Key<T>, DateTime, T> loadAtPointsInTime(
+      Iterable<T> resources, Function<? super T, ? extends Iterable<DateTime>> timestamps) {
+    // Work out which revision each resource needs at each timestamp. A resource that doesn't exist
+    // yet needs nothing, and one that hasn't been modified since the timestamp is used as-is.
+    Map<Key<T>, T> resourcesByKey = new LinkedHashMap<>();
+    SetMultimap<Key<T>, DateTime> activeTimestamps = LinkedHashMultimap.create();
+    Table<Key<T>, DateTime, Key<CommitLogMutation>> mutationKeys = HashBasedTable.create();
+    for (T resource : resources) {
+      Key<T> resourceKey = Key.create(resource);
+      resourcesByKey.put(resourceKey, resource);
+      for (DateTime timestamp : timestamps.apply(resource)) {
+        if (timestamp.isBefore(resource.getCreationTime())) {
+          continue;
+        }
+        activeTimestamps.put(resourceKey, timestamp);
+        if (isAtOrAfter(timestamp, resource.getUpdateAutoTimestamp().getTimestamp())) {
+          continue;
+        }
+        Key<CommitLogManifest> revision = findMostRecentRevisionAtTime(resource, timestamp);
+        if (revision == null) {
+          logger.atSevere().log("No revision found for %s, falling back to resource.", resourceKey);
+        } else {
+          mutationKeys.put(
+              resourceKey, timestamp, CommitLogMutation.createKey(revision, resourceKey));
+        }
+      }
+    }
+    // Fetch all of the mutations at once, and deserialize the ones that were found in parallel.
+    ImmutableMap<Key<CommitLogMutation>, CommitLogMutation> mutations =
+        ImmutableMap.copyOf(ofy().load().keys(ImmutableSet.copyOf(mutationKeys.values())));
+    Map<Key<CommitLogMutation>, T> revisionsByMutationKey = new HashMap<>();
+    MUTATION_TRANSFORMER.forEachInCompletionOrder(
+        mutations.keySet(),
+        key -> ofy().load().<T>fromEntity(mutations.get(key).getEntity()),
+        revisionsByMutationKey::put);
+    ImmutableTable.Builder<Key<T>, DateTime, T> results = new ImmutableTable.Builder<>();
+    for (Entry<Key<T>, DateTime> entry : activeTimestamps.entries()) {
+      Key<T> resourceKey = entry.getKey();
+      DateTime timestamp = entry.getValue();
+      T loadedResource = resourcesByKey.get(resourceKey);
+      Key<CommitLogMutation> mutationKey = mutationKeys.get(resourceKey, timestamp);
+      if (mutationKey != null) {
+        if (revisionsByMutationKey.containsKey(mutationKey)) {
+          loadedResource = revisionsByMutationKey.get(mutationKey);
+        } else {
+          logger.atSevere().log(
+              "Couldn't load mutation for revision at %s for %s, falling back to resource."
+                  + " Revision: %s",
+              timestamp, resourceKey, mutationKey.getParent());
+        }
+      }
+      if (isActive(loadedResource, timestamp)) {
+        results.put(resourceKey, timestamp, cloneProjectedAtTime(loadedResource, timestamp));
+      }
+    }
+    return results.build();
+  }
+
   /**
    * Returns an asynchronous result holding the most recent Datastore revision of a given
    * EppResource before or at the provided timestamp using the EppResource revisions map, falling
@@ -26,17 +26,17 @@ import com.google.common.base.Joiner;
 import com.google.common.collect.Maps;
 import com.googlecode.objectify.Key;
 import com.googlecode.objectify.annotation.Ignore;
+import google.registry.model.ModelUtils.FieldAccessor;
 import java.lang.annotation.Documented;
 import java.lang.annotation.Retention;
 import java.lang.annotation.Target;
 import java.lang.reflect.Field;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.NavigableMap;
+import java.util.Objects;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
@@ -59,9 +59,15 @@ public abstract class ImmutableObject implements Cloneable {
   Integer hashCode;
 
   private boolean equalsImmutableObject(ImmutableObject other) {
-    return getClass().equals(other.getClass())
-        && hashCode() == other.hashCode()
-        && ModelUtils.getFieldValues(this).equals(ModelUtils.getFieldValues(other));
+    if (!getClass().equals(other.getClass()) || hashCode() != other.hashCode()) {
+      return false;
+    }
+    for (FieldAccessor accessor : ModelUtils.getFieldAccessors(getClass())) {
+      if (!Objects.equals(accessor.get(this), accessor.get(other))) {
+        return false;
+      }
+    }
+    return true;
   }
 
   @Override
@@ -72,7 +78,12 @@ public abstract class ImmutableObject implements Cloneable {
   @Override
   public int hashCode() {
     if (hashCode == null) {
-      hashCode = Arrays.hashCode(ModelUtils.getFieldValues(this).values().toArray());
+      // Equivalent to Arrays.hashCode() over the field values, without collecting them first.
+      int result = 1;
+      for (FieldAccessor accessor : ModelUtils.getFieldAccessors(getClass())) {
+        result = 31 * result + Objects.hashCode(accessor.get(this));
+      }
+      hashCode = result;
     }
     return hashCode;
   }
@@ -111,8 +122,8 @@ public abstract class ImmutableObject implements Cloneable {
   @Override
   public String toString() {
     NavigableMap<String, Object> sortedFields = new TreeMap<>();
-    for (Entry<Field, Object> entry : ModelUtils.getFieldValues(this).entrySet()) {
-      sortedFields.put(entry.getKey().getName(), entry.getValue());
+    for (FieldAccessor accessor : ModelUtils.getFieldAccessors(getClass())) {
+      sortedFields.put(accessor.getName(), accessor.get(this));
     }
     return toStringHelper(sortedFields);
   }
@@ -121,9 +132,9 @@ public abstract class ImmutableObject implements Cloneable {
   public String toHydratedString() {
     // We can't use ImmutableSortedMap because we need to allow null values.
     NavigableMap<String, Object> sortedFields = new TreeMap<>();
-    for (Entry<Field, Object> entry : ModelUtils.getFieldValues(this).entrySet()) {
-      Field field = entry.getKey();
-      Object value = entry.getValue();
+    for (FieldAccessor accessor : ModelUtils.getFieldAccessors(getClass())) {
+      Field field = accessor.getField();
+      Object value = accessor.get(this);
       sortedFields.put(
           field.getName(), field.isAnnotationPresent(DoNotHydrate.class) ? value : hydrate(value));
     }
@@ -161,8 +172,8 @@ public abstract class ImmutableObject implements Cloneable {
       // LinkedHashMap to preserve field ordering and because ImmutableMap forbids null
       // values.
       Map<String, Object> result = new LinkedHashMap<>();
-      for (Entry<Field, Object> entry : ModelUtils.getFieldValues(o).entrySet()) {
-        result.put(entry.getKey().getName(), toMapRecursive(entry.getValue()));
+      for (FieldAccessor accessor : ModelUtils.getFieldAccessors(o.getClass())) {
+        result.put(accessor.getName(), toMapRecursive(accessor.get(o)));
       }
       return result;
     } else if (o instanceof Map) {
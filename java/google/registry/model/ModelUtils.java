@@ -17,6 +17,7 @@ package google.registry.model;
 import static com.google.common.base.Predicates.instanceOf;
 import static com.google.common.base.Predicates.isNull;
 import static com.google.common.base.Predicates.or;
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.collect.Maps.transformValues;
 import static java.util.stream.Collectors.toCollection;
 import static java.util.stream.Collectors.toList;
@@ -26,6 +27,7 @@ import com.google.common.base.Predicate;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedMap;
@@ -34,6 +36,9 @@ import com.googlecode.objectify.Key;
 import com.googlecode.objectify.annotation.Id;
 import com.googlecode.objectify.annotation.Ignore;
 import com.googlecode.objectify.annotation.Parent;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
@@ -85,11 +90,79 @@ public class ModelUtils {
                 }
               });
 
+  /** Caches precompiled accessors for all instance fields on an object, in field order. */
+  private static final LoadingCache<Class<?>, ImmutableList<FieldAccessor>>
+      FIELD_ACCESSORS_CACHE =
+          CacheBuilder.newBuilder()
+              .build(
+                  new CacheLoader<Class<?>, ImmutableList<FieldAccessor>>() {
+                    @Override
+                    public ImmutableList<FieldAccessor> load(Class<?> clazz) {
+                      return getAllFields(clazz)
+                          .values()
+                          .stream()
+                          .map(FieldAccessor::new)
+                          .collect(toImmutableList());
+                    }
+                  });
+
+  /**
+   * A field of a model class along with a {@link MethodHandle} that reads it.
+   *
+   * <p>{@link ImmutableObject#equals}, {@link ImmutableObject#hashCode} and friends are called
+   * constantly, so they use these directly rather than going through {@link #getFieldValues},
+   * which would reflectively read every field into a freshly allocated map on each call.
+   */
+  static final class FieldAccessor {
+
+    private final Field field;
+    private final MethodHandle getter;
+
+    private FieldAccessor(Field field) {
+      this.field = field;
+      try {
+        // Erase the getter's type to (Object)Object so that it can be called with invokeExact.
+        this.getter =
+            MethodHandles.lookup()
+                .unreflectGetter(field)
+                .asType(MethodType.methodType(Object.class, Object.class));
+      } catch (IllegalAccessException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    Field getField() {
+      return field;
+    }
+
+    String getName() {
+      return field.getName();
+    }
+
+    /** Returns the value of this field, with arrays converted to lists as in getFieldValues. */
+    Object get(Object instance) {
+      Object value;
+      try {
+        value = (Object) getter.invokeExact(instance);
+      } catch (RuntimeException | Error e) {
+        throw e;
+      } catch (Throwable e) {
+        throw new IllegalStateException(e);
+      }
+      return (value != null && value.getClass().isArray()) ? arrayAsList(value) : value;
+    }
+  }
+
   /** Lists all instance fields on an object, including non-public and inherited fields. */
   static Map<String, Field> getAllFields(Class<?> clazz) {
     return ALL_FIELDS_CACHE.getUnchecked(clazz);
   }
 
+  /** Returns accessors for all instance fields on an object, in the order of getAllFields. */
+  static ImmutableList<FieldAccessor> getFieldAccessors(Class<?> clazz) {
+    return FIELD_ACCESSORS_CACHE.getUnchecked(clazz);
+  }
+
   /** Return a string representing the persisted schema of a type or enum. */
   static String getSchema(Class<?> clazz) {
     StringBuilder stringBuilder = new StringBuilder();
@@ -193,27 +266,27 @@ public class ModelUtils {
   static Map<Field, Object> getFieldValues(Object instance) {
     // Don't make this ImmutableMap because field values can be null.
     Map<Field, Object> values = new LinkedHashMap<>();
-    for (Field field : getAllFields(instance.getClass()).values()) {
-      Object value = getFieldValue(instance, field);
-      if (value != null && value.getClass().isArray()) {
-        // It's surprisingly difficult to convert arrays into lists if the array might be primitive.
-        final Object arrayValue = value;
-        value = new AbstractList<Object>() {
-            @Override
-            public Object get(int index) {
-              return Array.get(arrayValue, index);
-            }
-
-            @Override
-            public int size() {
-              return Array.getLength(arrayValue);
-            }};
-      }
-      values.put(field, value);
+    for (FieldAccessor accessor : getFieldAccessors(instance.getClass())) {
+      values.put(accessor.getField(), accessor.get(instance));
     }
     return values;
   }
 
+  /** Returns a {@link List} view of an array, which may be an array of primitives. */
+  private static List<Object> arrayAsList(Object array) {
+    // It's surprisingly difficult to convert arrays into lists if the array might be primitive.
+    return new AbstractList<Object>() {
+        @Override
+        public Object get(int index) {
+          return Array.get(array, index);
+        }
+
+        @Override
+        public int size() {
+          return Array.getLength(array);
+        }};
+  }
+
   /** Functional helper for {@link #cloneEmptyToNull}. */
   private static Object cloneEmptyToNullRecursive(Object obj) {
     if (obj instanceof ImmutableSortedMap) {
@@ -269,5 +342,6 @@ public class ModelUtils {
   @VisibleForTesting
   static void resetCaches() {
     ALL_FIELDS_CACHE.invalidateAll();
+    FIELD_ACCESSORS_CACHE.invalidateAll();
   }
 }
@@ -69,6 +69,15 @@ public class TimeOfYear extends ImmutableObject {
     return instance;
   }
 
+  /**
+   * Returns the stored form of this time of year, which sorts in the same order as times of year.
+   *
+   * <p>This is what queries over indexed {@link TimeOfYear} fields filter on.
+   */
+  public String getTimeString() {
+    return timeString;
+  }
+
   /**
    * Returns an {@link Iterable} of {@link DateTime}s of every recurrence of this particular
    * time of year within a given {@link Range} (usually one spanning many years).
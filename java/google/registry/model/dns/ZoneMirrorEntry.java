@@ -0,0 +1,154 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.model.dns;
+
+import static com.google.common.base.Preconditions.checkState;
+import static google.registry.util.CollectionUtils.nullToEmptyImmutableCopy;
+
+import com.google.common.collect.ImmutableList;
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.annotation.Entity;
+import com.googlecode.objectify.annotation.Id;
+import google.registry.model.ImmutableObject;
+import google.registry.model.annotations.NotBackedUp;
+import google.registry.model.annotations.NotBackedUp.Reason;
+import java.util.List;
+import org.joda.time.DateTime;
+
+/**
+ * Datastore entity mirroring the records that a DNS provider serves for one owner name in a zone.
+ *
+ * <p>A DNS writer that keeps these up to date can work out the changes for a name locally, rather
+ * than asking the provider for the name's current records before every change. The mirror is only
+ * ever a hint: the provider remains the source of truth, and an entry that turns out to be wrong is
+ * invalidated, so that the next change reads the name from the provider again.
+ *
+ * <p>Each write of an entry increments its version, which lets a reconciliation job that compares
+ * the mirror against the provider's zone only overwrite an entry that nobody wrote to since it was
+ * read.
+ */
+@Entity
+@NotBackedUp(reason = Reason.EXTERNALLY_SOURCED)
+public final class ZoneMirrorEntry extends ImmutableObject {
+
+  /** The zone name and owner name, e.g. {@code tld/example.tld.}. */
+  @Id
+  String id;
+
+  /** The name of the zone at the DNS provider. */
+  String zoneName;
+
+  /** The absolute owner name of the records, e.g. {@code example.tld.}. */
+  String ownerName;
+
+  /**
+   * Whether {@link #records} is known to match the provider.
+   *
+   * <p>This is separate from the records because Objectify doesn't distinguish a name with no
+   * records from a name whose records are unknown: both would load as an empty set.
+   */
+  boolean known;
+
+  /**
+   * The records for the owner name, in a format and order chosen by the DNS writer that uses the
+   * mirror.
+   */
+  List<String> records;
+
+  /** The number of times this entry has been written. */
+  long version;
+
+  /** The time this entry was last written. */
+  DateTime updateTime;
+
+  public String getZoneName() {
+    return zoneName;
+  }
+
+  public String getOwnerName() {
+    return ownerName;
+  }
+
+  public boolean isKnown() {
+    return known;
+  }
+
+  /**
+   * Returns the records for the owner name.
+   *
+   * @throws IllegalStateException if the entry has been invalidated
+   */
+  public ImmutableList<String> getRecords() {
+    checkState(known, "Records for %s in zone %s are unknown", ownerName, zoneName);
+    return nullToEmptyImmutableCopy(records);
+  }
+
+  public long getVersion() {
+    return version;
+  }
+
+  public DateTime getUpdateTime() {
+    return updateTime;
+  }
+
+  /** Returns the key of the entry for a given owner name in a zone. */
+  public static Key<ZoneMirrorEntry> createKey(String zoneName, String ownerName) {
+    return Key.create(ZoneMirrorEntry.class, createId(zoneName, ownerName));
+  }
+
+  private static String createId(String zoneName, String ownerName) {
+    return zoneName + "/" + ownerName;
+  }
+
+  /**
+   * Returns the next version of an entry, holding a given set of records.
+   *
+   * @param previous the current entry, or null if there is none
+   */
+  public static ZoneMirrorEntry create(
+      String zoneName,
+      String ownerName,
+      ZoneMirrorEntry previous,
+      List<String> records,
+      DateTime now) {
+    ZoneMirrorEntry instance = createNextVersion(zoneName, ownerName, previous, now);
+    instance.known = true;
+    instance.records = ImmutableList.copyOf(records);
+    return instance;
+  }
+
+  /**
+   * Returns the next version of an entry, with its records marked as unknown.
+   *
+   * @param previous the current entry, or null if there is none
+   */
+  public static ZoneMirrorEntry createInvalidated(
+      String zoneName, String ownerName, ZoneMirrorEntry previous, DateTime now) {
+    ZoneMirrorEntry instance = createNextVersion(zoneName, ownerName, previous, now);
+    instance.known = false;
+    return instance;
+  }
+
+  private static ZoneMirrorEntry createNextVersion(
+      String zoneName, String ownerName, ZoneMirrorEntry previous, DateTime now) {
+    ZoneMirrorEntry instance = new ZoneMirrorEntry();
+    instance.id = createId(zoneName, ownerName);
+    instance.zoneName = zoneName;
+    instance.ownerName = ownerName;
+    instance.version = (previous == null) ? 1 : previous.version + 1;
+    instance.updateTime = now;
+    return instance;
+  }
+}
@@ -17,6 +17,8 @@ package google.registry.model.ofy;
 import static com.google.appengine.api.datastore.EntityTranslator.convertToPb;
 import static com.google.appengine.api.datastore.EntityTranslator.createFromPbBytes;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static google.registry.config.RegistryConfig.isCommitLogMutationCompressionEnabled;
+import static google.registry.model.ofy.CommitLogMutation.Encoding.DEFLATE;
 import static google.registry.model.ofy.ObjectifyService.ofy;
 
 import com.google.appengine.api.datastore.KeyFactory;
@@ -24,10 +26,13 @@ import com.google.common.annotations.VisibleForTesting;
 import com.googlecode.objectify.Key;
 import com.googlecode.objectify.annotation.Entity;
 import com.googlecode.objectify.annotation.Id;
+import com.googlecode.objectify.annotation.IgnoreSave;
 import com.googlecode.objectify.annotation.Parent;
+import com.googlecode.objectify.condition.IfNull;
 import google.registry.model.ImmutableObject;
 import google.registry.model.annotations.NotBackedUp;
 import google.registry.model.annotations.NotBackedUp.Reason;
+import google.registry.util.NonFinalForTesting;
 
 /** Representation of a saved entity in a {@link CommitLogManifest} (not deletes). */
 @Entity
@@ -42,6 +47,16 @@ public class CommitLogMutation extends ImmutableObject {
   @Id
   String entityKey;
 
+  /** The ways in which {@link #entityProtoBytes} can be encoded. */
+  public enum Encoding {
+    /** Compressed with {@link EntityProtoCompression}. */
+    DEFLATE
+  }
+
+  /** Whether to compress the entities in new mutations. */
+  @NonFinalForTesting
+  private static boolean compressEntities = isCommitLogMutationCompressionEnabled();
+
   /**
    * Raw entity that was saved during the transaction, serialized as a protocol buffer.
    *
@@ -49,13 +64,28 @@ public class CommitLogMutation extends ImmutableObject {
    */
   byte[] entityProtoBytes;
 
+  /**
+   * How {@link #entityProtoBytes} is encoded, or null if it's the protocol buffer itself.
+   *
+   * <p>The getters decode the entity, so this doesn't matter outside of this class, and mutations
+   * restored from commit log exports are read the same way whichever encoding they were saved in.
+   */
+  @IgnoreSave(IfNull.class)
+  Encoding encoding;
+
+  /** Returns the saved entity, serialized as a protocol buffer. */
   public byte[] getEntityProtoBytes() {
-    return entityProtoBytes.clone();
+    return encoding == DEFLATE
+        ? EntityProtoCompression.decompress(entityProtoBytes)
+        : entityProtoBytes.clone();
   }
 
   /** Deserializes embedded entity bytes and returns it. */
   public com.google.appengine.api.datastore.Entity getEntity() {
-    return createFromPbBytes(entityProtoBytes);
+    return createFromPbBytes(
+        encoding == DEFLATE
+            ? EntityProtoCompression.decompress(entityProtoBytes)
+            : entityProtoBytes);
   }
 
   /**
@@ -72,7 +102,8 @@ public class CommitLogMutation extends ImmutableObject {
    * Returns a new mutation entity created from a raw Datastore Entity instance.
    *
    * <p>The mutation key is generated deterministically from the {@code entity} key. The Entity
-   * itself is serialized to bytes and stored within the returned mutation.
+   * itself is serialized to bytes and stored within the returned mutation, compressed if that's
+   * enabled and makes it smaller.
    */
   @VisibleForTesting
   public static CommitLogMutation createFromRaw(
@@ -83,6 +114,14 @@ public class CommitLogMutation extends ImmutableObject {
     // Creates a web-safe key string.
     instance.entityKey = KeyFactory.keyToString(rawEntity.getKey());
     instance.entityProtoBytes = convertToPb(rawEntity).toByteArray();
+    if (compressEntities) {
+      byte[] compressed =
+          EntityProtoCompression.compress(rawEntity.getKind(), instance.entityProtoBytes);
+      if (compressed.length < instance.entityProtoBytes.length) {
+        instance.entityProtoBytes = compressed;
+        instance.encoding = DEFLATE;
+      }
+    }
     return instance;
   }
 
@@ -0,0 +1,165 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.model.ofy;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import com.google.auto.value.AutoValue;
+
+/**
+ * Counts of the RPCs sent to Datastore, as recorded by {@link RpcCountingAsyncDatastoreService}.
+ *
+ * <p>The counts for a thread are cumulative, so to attribute RPCs to a unit of work, take the
+ * counts before and after it with {@link
+ * RpcCountingAsyncDatastoreService#getCountsForCurrentThread} and subtract them with {@link
+ * #minus}.
+ */
+@AutoValue
+public abstract class DatastoreRpcCounts {
+
+  public static final DatastoreRpcCounts ZERO = builder().build();
+
+  /** Returns the number of get RPCs, each of which may fetch any number of entities. */
+  public abstract long gets();
+
+  /** Returns the number of entities requested by key, over all gets. */
+  public abstract long entitiesRead();
+
+  /** Returns the number of queries prepared. */
+  public abstract long queries();
+
+  /** Returns the number of put RPCs, each of which may write any number of entities. */
+  public abstract long puts();
+
+  /** Returns the number of entities written, over all puts. */
+  public abstract long entitiesWritten();
+
+  /** Returns the number of delete RPCs, each of which may delete any number of entities. */
+  public abstract long deletes();
+
+  /** Returns the number of entities deleted, over all deletes. */
+  public abstract long entitiesDeleted();
+
+  /** Returns the number of transactions begun. */
+  public abstract long transactions();
+
+  /** Returns the number of RPCs allocating ids. */
+  public abstract long idAllocations();
+
+  /**
+   * Returns the time spent blocked waiting for the results of gets, puts, deletes, transaction
+   * starts and id allocations, in nanoseconds.
+   *
+   * <p>This doesn't include time spent fetching query results or committing transactions, since
+   * those RPCs are made through objects that the service doesn't hand out itself.
+   */
+  public abstract long waitNanos();
+
+  /** Returns the total number of RPCs of all kinds. */
+  public long rpcs() {
+    return gets() + queries() + puts() + deletes() + transactions() + idAllocations();
+  }
+
+  /**
+   * Returns the number of read round trips, i.e. gets and queries.
+   *
+   * <p>Paging through the results of a query can take more round trips than are counted here.
+   */
+  public long readRoundTrips() {
+    return gets() + queries();
+  }
+
+  /** Returns the total number of entities written or deleted. */
+  public long entitiesMutated() {
+    return entitiesWritten() + entitiesDeleted();
+  }
+
+  /** Returns {@link #waitNanos} in milliseconds, rounded down. */
+  public long waitMillis() {
+    return NANOSECONDS.toMillis(waitNanos());
+  }
+
+  /** Returns the RPCs counted since {@code earlier} was taken from the same thread. */
+  public DatastoreRpcCounts minus(DatastoreRpcCounts earlier) {
+    return builder()
+        .setGets(gets() - earlier.gets())
+        .setEntitiesRead(entitiesRead() - earlier.entitiesRead())
+        .setQueries(queries() - earlier.queries())
+        .setPuts(puts() - earlier.puts())
+        .setEntitiesWritten(entitiesWritten() - earlier.entitiesWritten())
+        .setDeletes(deletes() - earlier.deletes())
+        .setEntitiesDeleted(entitiesDeleted() - earlier.entitiesDeleted())
+        .setTransactions(transactions() - earlier.transactions())
+        .setIdAllocations(idAllocations() - earlier.idAllocations())
+        .setWaitNanos(waitNanos() - earlier.waitNanos())
+        .build();
+  }
+
+  /** Returns the sum of these counts and {@code other}, e.g. over the attempts of a command. */
+  public DatastoreRpcCounts plus(DatastoreRpcCounts other) {
+    return builder()
+        .setGets(gets() + other.gets())
+        .setEntitiesRead(entitiesRead() + other.entitiesRead())
+        .setQueries(queries() + other.queries())
+        .setPuts(puts() + other.puts())
+        .setEntitiesWritten(entitiesWritten() + other.entitiesWritten())
+        .setDeletes(deletes() + other.deletes())
+        .setEntitiesDeleted(entitiesDeleted() + other.entitiesDeleted())
+        .setTransactions(transactions() + other.transactions())
+        .setIdAllocations(idAllocations() + other.idAllocations())
+        .setWaitNanos(waitNanos() + other.waitNanos())
+        .build();
+  }
+
+  public static Builder builder() {
+    return new AutoValue_DatastoreRpcCounts.Builder()
+        .setGets(0)
+        .setEntitiesRead(0)
+        .setQueries(0)
+        .setPuts(0)
+        .setEntitiesWritten(0)
+        .setDeletes(0)
+        .setEntitiesDeleted(0)
+        .setTransactions(0)
+        .setIdAllocations(0)
+        .setWaitNanos(0);
+  }
+
+  /** A builder for constructing {@link DatastoreRpcCounts}. */
+  @AutoValue.Builder
+  public abstract static class Builder {
+    public abstract Builder setGets(long gets);
+
+    public abstract Builder setEntitiesRead(long entitiesRead);
+
+    public abstract Builder setQueries(long queries);
+
+    public abstract Builder setPuts(long puts);
+
+    public abstract Builder setEntitiesWritten(long entitiesWritten);
+
+    public abstract Builder setDeletes(long deletes);
+
+    public abstract Builder setEntitiesDeleted(long entitiesDeleted);
+
+    public abstract Builder setTransactions(long transactions);
+
+    public abstract Builder setIdAllocations(long idAllocations);
+
+    public abstract Builder setWaitNanos(long waitNanos);
+
+    public abstract DatastoreRpcCounts build();
+  }
+}
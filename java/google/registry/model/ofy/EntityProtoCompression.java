@@ -0,0 +1,172 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.model.ofy;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableMap;
+import java.io.ByteArrayOutputStream;
+import java.util.function.Function;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compression of serialized entities stored in {@link CommitLogMutation}s.
+ *
+ * <p>Entities are deflated in the zlib format, with a preset dictionary for the kinds that make up
+ * most commit logs. A small entity has little repetition of its own, but most of its bytes are
+ * property names that every entity of its kind shares, so the dictionary is what makes the
+ * difference. The zlib header records the Adler-32 checksum of the dictionary, which is how it's
+ * found again on decompression, whatever kind the entity turns out to be.
+ *
+ * <p>A dictionary must never change once mutations have been written with it, or they can no
+ * longer be read. To improve the dictionary for a kind, add a new one and point the kind at it,
+ * keeping the old one in {@link #DICTIONARIES}. Within a dictionary, the strings most likely to
+ * match go last, since deflate encodes nearer matches in fewer bits.
+ */
+final class EntityProtoCompression {
+
+  private static final String EPP_RESOURCE_PROPERTIES =
+      "CommitLogManifestCommitLogBucketEntityGroupRootcross-tld"
+          + "deletionTimelastTransferTimetransferData.transferStatus"
+          + "transferData.gainingClientIdtransferData.losingClientId"
+          + "transferData.transferRequestTimetransferData.pendingTransferExpirationTime"
+          + "transferData.transferPeriod.unittransferData.transferPeriod.value"
+          + "transferData.transferRequestTrid.clientTransactionId"
+          + "transferData.transferRequestTrid.serverTransactionIdtransferData.serverApproveEntities"
+          + "creationTime.timestampcreationClientIdcurrentSponsorClientIdstatus"
+          + "lastEppUpdateClientIdlastEppUpdateTimeupdateTimestamp.timestamp"
+          + "revisions.keyrevisions.value";
+
+  /** Dictionaries by name. Only ever add to this. */
+  @VisibleForTesting
+  static final ImmutableMap<String, byte[]> DICTIONARIES =
+      ImmutableMap.of(
+          "DomainBase-1",
+          toBytes(
+              "transferData.serverApproveBillingEventtransferData.serverApproveAutorenewEvent"
+                  + "transferData.serverApproveAutorenewPollMessagetransferredRegistration"
+                  + "ExpirationTimeapplicationTimeapplicationlaunchNoticesmdIdidnTableName"
+                  + "subordinateHostsgracePeriods.typegracePeriods.clientId"
+                  + "gracePeriods.expirationTimegracePeriods.billingEventOneTime"
+                  + "gracePeriods.billingEventRecurringBillingEventOneTimeRecurringPollMessage"
+                  + "autorenewBillingEventautorenewPollMessagedeletePollMessage"
+                  + "dsData.keyTagdsData.algorithmdsData.digestTypedsData.digest"
+                  + EPP_RESOURCE_PROPERTIES
+                  + "authInfo.pw.repoIdauthInfo.pw.valueregistrationExpirationTime"
+                  + "ContactResourceallContacts.contactallContacts.typeADMINTECHBILLING"
+                  + "HostResourcensHoststldfullyQualifiedDomainName^dDomainResourceDomainBase"),
+          "HostResource-1",
+          toBytes(
+              EPP_RESOURCE_PROPERTIES
+                  + "lastSuperordinateChangeinetAddressessuperordinateDomainDomainBase"
+                  + "fullyQualifiedHostNameHostResource"),
+          "ContactResource-1",
+          toBytes(
+              "transferData.serverApproveBillingEventtransferData.serverApproveAutorenewEvent"
+                  + EPP_RESOURCE_PROPERTIES
+                  + "disclose.flagdisclose.namedisclose.orgdisclose.addrdisclose.voicedisclose.fax"
+                  + "disclose.emailfax.phoneNumberfax.extensionvoice.phoneNumbervoice.extension"
+                  + "authInfo.pw.repoIdauthInfo.pw.valueemailsearchNamecontactId"
+                  + "localizedPostalInfo.typelocalizedPostalInfo.namelocalizedPostalInfo.org"
+                  + "localizedPostalInfo.address.streetlocalizedPostalInfo.address.city"
+                  + "localizedPostalInfo.address.statelocalizedPostalInfo.address.zip"
+                  + "localizedPostalInfo.address.countryCodeinternationalizedPostalInfo.type"
+                  + "internationalizedPostalInfo.nameinternationalizedPostalInfo.org"
+                  + "internationalizedPostalInfo.address.street"
+                  + "internationalizedPostalInfo.address.city"
+                  + "internationalizedPostalInfo.address.state"
+                  + "internationalizedPostalInfo.address.zip"
+                  + "internationalizedPostalInfo.address.countryCodeContactResource"));
+
+  /** The dictionary to compress each kind with. Kinds not listed here are compressed without. */
+  private static final ImmutableMap<String, byte[]> DICTIONARIES_BY_KIND =
+      ImmutableMap.of(
+          "DomainBase", DICTIONARIES.get("DomainBase-1"),
+          "HostResource", DICTIONARIES.get("HostResource-1"),
+          "ContactResource", DICTIONARIES.get("ContactResource-1"));
+
+  private static final ImmutableMap<Integer, byte[]> DICTIONARIES_BY_CHECKSUM =
+      DICTIONARIES
+          .values()
+          .stream()
+          .collect(toImmutableMap(EntityProtoCompression::checksum, Function.identity()));
+
+  private EntityProtoCompression() {}
+
+  /** Compresses the serialized form of an entity of the given kind. */
+  static byte[] compress(String kind, byte[] protoBytes) {
+    Deflater deflater = new Deflater();
+    try {
+      byte[] dictionary = DICTIONARIES_BY_KIND.get(kind);
+      if (dictionary != null) {
+        deflater.setDictionary(dictionary);
+      }
+      deflater.setInput(protoBytes);
+      deflater.finish();
+      ByteArrayOutputStream output = new ByteArrayOutputStream(protoBytes.length / 2 + 16);
+      byte[] buffer = new byte[4096];
+      while (!deflater.finished()) {
+        output.write(buffer, 0, deflater.deflate(buffer));
+      }
+      return output.toByteArray();
+    } finally {
+      deflater.end();
+    }
+  }
+
+  /** Decompresses bytes returned by {@link #compress}. */
+  static byte[] decompress(byte[] compressed) {
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(compressed);
+      ByteArrayOutputStream output = new ByteArrayOutputStream(compressed.length * 4);
+      byte[] buffer = new byte[4096];
+      while (!inflater.finished()) {
+        int length = inflater.inflate(buffer);
+        if (length == 0 && !inflater.finished()) {
+          if (inflater.needsDictionary()) {
+            byte[] dictionary = DICTIONARIES_BY_CHECKSUM.get(inflater.getAdler());
+            checkArgument(dictionary != null, "Unknown dictionary %s", inflater.getAdler());
+            inflater.setDictionary(dictionary);
+          } else if (inflater.needsInput()) {
+            throw new IllegalArgumentException("Truncated compressed entity");
+          }
+        }
+        output.write(buffer, 0, length);
+      }
+      return output.toByteArray();
+    } catch (DataFormatException e) {
+      throw new IllegalArgumentException("Corrupt compressed entity", e);
+    } finally {
+      inflater.end();
+    }
+  }
+
+  private static byte[] toBytes(String dictionary) {
+    return dictionary.getBytes(UTF_8);
+  }
+
+  private static int checksum(byte[] dictionary) {
+    Adler32 adler32 = new Adler32();
+    adler32.update(dictionary);
+    return (int) adler32.getValue();
+  }
+}
@@ -102,9 +102,11 @@ public class ObjectifyService {
 
       @Override
       protected AsyncDatastoreService createRawAsyncDatastoreService(DatastoreServiceConfig cfg) {
-        // In the unit test environment, wrap the Datastore service in a proxy that can be used to
-        // examine the number of requests sent to Datastore.
-        AsyncDatastoreService service = super.createRawAsyncDatastoreService(cfg);
+        // Count the RPCs sent to Datastore so that they can be attributed to requests. In the
+        // unit test environment, also wrap the Datastore service in a proxy that can be used to
+        // examine the requests sent to Datastore.
+        AsyncDatastoreService service =
+            new RpcCountingAsyncDatastoreService(super.createRawAsyncDatastoreService(cfg));
         return RegistryEnvironment.get().equals(RegistryEnvironment.UNITTEST)
             ? new RequestCapturingAsyncDatastoreService(service)
             : service;
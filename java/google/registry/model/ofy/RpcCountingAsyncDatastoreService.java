@@ -0,0 +1,268 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.model.ofy;
+
+import com.google.appengine.api.datastore.AsyncDatastoreService;
+import com.google.appengine.api.datastore.DatastoreAttributes;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.Index;
+import com.google.appengine.api.datastore.Index.IndexState;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyRange;
+import com.google.appengine.api.datastore.PreparedQuery;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Transaction;
+import com.google.appengine.api.datastore.TransactionOptions;
+import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.ForwardingFuture.SimpleForwardingFuture;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A proxy for {@link AsyncDatastoreService} that counts and times the RPCs issued by each thread.
+ *
+ * <p>Counts are cumulative over the lifetime of a thread, and since request threads are reused,
+ * callers should take the difference between two readings to attribute RPCs to a unit of work.
+ * Reads served from the Objectify session cache or memcache never get here, so they aren't
+ * counted.
+ *
+ * <p>Since the service is asynchronous, the time recorded for an RPC is the time a thread spends
+ * blocked waiting for its result, and it is attributed to the thread that waits. That is the part
+ * of the RPC's latency that a request actually pays for.
+ */
+public class RpcCountingAsyncDatastoreService implements AsyncDatastoreService {
+
+  private static final ThreadLocal<RpcCounters> rpcCounters =
+      ThreadLocal.withInitial(RpcCounters::new);
+
+  private final AsyncDatastoreService delegate;
+
+  RpcCountingAsyncDatastoreService(AsyncDatastoreService delegate) {
+    this.delegate = delegate;
+  }
+
+  /** Returns the cumulative counts of the RPCs the current thread has sent to Datastore. */
+  public static DatastoreRpcCounts getCountsForCurrentThread() {
+    RpcCounters counters = rpcCounters.get();
+    return DatastoreRpcCounts.builder()
+        .setGets(counters.gets)
+        .setEntitiesRead(counters.entitiesRead)
+        .setQueries(counters.queries)
+        .setPuts(counters.puts)
+        .setEntitiesWritten(counters.entitiesWritten)
+        .setDeletes(counters.deletes)
+        .setEntitiesDeleted(counters.entitiesDeleted)
+        .setTransactions(counters.transactions)
+        .setIdAllocations(counters.idAllocations)
+        .setWaitNanos(counters.waitNanos)
+        .build();
+  }
+
+  /** Wraps a future so that the time spent waiting on it is recorded for the waiting thread. */
+  private static <V> Future<V> timed(Future<V> future) {
+    return new SimpleForwardingFuture<V>(future) {
+      @Override
+      public V get() throws InterruptedException, ExecutionException {
+        long startNanos = System.nanoTime();
+        try {
+          return super.get();
+        } finally {
+          rpcCounters.get().waitNanos += System.nanoTime() - startNanos;
+        }
+      }
+
+      @Override
+      public V get(long timeout, TimeUnit unit)
+          throws InterruptedException, ExecutionException, TimeoutException {
+        long startNanos = System.nanoTime();
+        try {
+          return super.get(timeout, unit);
+        } finally {
+          rpcCounters.get().waitNanos += System.nanoTime() - startNanos;
+        }
+      }
+    };
+  }
+
+  private static void recordGet(int numKeys) {
+    RpcCounters counters = rpcCounters.get();
+    counters.entitiesRead += numKeys;
+    counters.gets++;
+  }
+
+  private static void recordPut(int numEntities) {
+    RpcCounters counters = rpcCounters.get();
+    counters.entitiesWritten += numEntities;
+    counters.puts++;
+  }
+
+  private static void recordDelete(int numKeys) {
+    RpcCounters counters = rpcCounters.get();
+    counters.entitiesDeleted += numKeys;
+    counters.deletes++;
+  }
+
+  @Override
+  public Collection<Transaction> getActiveTransactions() {
+    return delegate.getActiveTransactions();
+  }
+
+  @Override
+  public Transaction getCurrentTransaction() {
+    return delegate.getCurrentTransaction();
+  }
+
+  @Override
+  public Transaction getCurrentTransaction(Transaction transaction) {
+    return delegate.getCurrentTransaction(transaction);
+  }
+
+  @Override
+  public PreparedQuery prepare(Query query) {
+    rpcCounters.get().queries++;
+    return delegate.prepare(query);
+  }
+
+  @Override
+  public PreparedQuery prepare(Transaction transaction, Query query) {
+    rpcCounters.get().queries++;
+    return delegate.prepare(transaction, query);
+  }
+
+  @Override
+  public Future<KeyRange> allocateIds(String kind, long num) {
+    rpcCounters.get().idAllocations++;
+    return timed(delegate.allocateIds(kind, num));
+  }
+
+  @Override
+  public Future<KeyRange> allocateIds(Key parent, String kind, long num) {
+    rpcCounters.get().idAllocations++;
+    return timed(delegate.allocateIds(parent, kind, num));
+  }
+
+  @Override
+  public Future<Transaction> beginTransaction() {
+    rpcCounters.get().transactions++;
+    return timed(delegate.beginTransaction());
+  }
+
+  @Override
+  public Future<Transaction> beginTransaction(TransactionOptions transaction) {
+    rpcCounters.get().transactions++;
+    return timed(delegate.beginTransaction(transaction));
+  }
+
+  @Override
+  public Future<Void> delete(Key... keys) {
+    recordDelete(keys.length);
+    return timed(delegate.delete(keys));
+  }
+
+  @Override
+  public Future<Void> delete(Iterable<Key> keys) {
+    recordDelete(Iterables.size(keys));
+    return timed(delegate.delete(keys));
+  }
+
+  @Override
+  public Future<Void> delete(Transaction transaction, Key... keys) {
+    recordDelete(keys.length);
+    return timed(delegate.delete(transaction, keys));
+  }
+
+  @Override
+  public Future<Void> delete(Transaction transaction, Iterable<Key> keys) {
+    recordDelete(Iterables.size(keys));
+    return timed(delegate.delete(transaction, keys));
+  }
+
+  @Override
+  public Future<Entity> get(Key key) {
+    recordGet(1);
+    return timed(delegate.get(key));
+  }
+
+  @Override
+  public Future<Map<Key, Entity>> get(Iterable<Key> keys) {
+    recordGet(Iterables.size(keys));
+    return timed(delegate.get(keys));
+  }
+
+  @Override
+  public Future<Entity> get(Transaction transaction, Key key) {
+    recordGet(1);
+    return timed(delegate.get(transaction, key));
+  }
+
+  @Override
+  public Future<Map<Key, Entity>> get(Transaction transaction, Iterable<Key> keys) {
+    recordGet(Iterables.size(keys));
+    return timed(delegate.get(transaction, keys));
+  }
+
+  @Override
+  public Future<DatastoreAttributes> getDatastoreAttributes() {
+    return delegate.getDatastoreAttributes();
+  }
+
+  @Override
+  public Future<Map<Index, IndexState>> getIndexes() {
+    return delegate.getIndexes();
+  }
+
+  @Override
+  public Future<Key> put(Entity entity) {
+    recordPut(1);
+    return timed(delegate.put(entity));
+  }
+
+  @Override
+  public Future<List<Key>> put(Iterable<Entity> entities) {
+    recordPut(Iterables.size(entities));
+    return timed(delegate.put(entities));
+  }
+
+  @Override
+  public Future<Key> put(Transaction transaction, Entity entity) {
+    recordPut(1);
+    return timed(delegate.put(transaction, entity));
+  }
+
+  @Override
+  public Future<List<Key>> put(Transaction transaction, Iterable<Entity> entities) {
+    recordPut(Iterables.size(entities));
+    return timed(delegate.put(transaction, entities));
+  }
+
+  /** Mutable per-thread RPC counters. */
+  private static class RpcCounters {
+    long gets;
+    long entitiesRead;
+    long queries;
+    long puts;
+    long entitiesWritten;
+    long deletes;
+    long entitiesDeleted;
+    long transactions;
+    long idAllocations;
+    long waitNanos;
+  }
+}
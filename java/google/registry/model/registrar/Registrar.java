@@ -14,6 +14,7 @@
 
 package google.registry.model.registrar;
 
+import static com.google.appengine.api.ThreadManager.backgroundThreadFactory;
 import static com.google.common.base.MoreObjects.firstNonNull;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Strings.emptyToNull;
@@ -25,7 +26,7 @@ import static com.google.common.collect.Ordering.natural;
 import static com.google.common.collect.Sets.immutableEnumSet;
 import static com.google.common.io.BaseEncoding.base64;
 import static google.registry.config.RegistryConfig.getDefaultRegistrarWhoisServer;
-import static google.registry.model.CacheUtils.memoizeWithShortExpiration;
+import static google.registry.config.RegistryConfig.getSingletonCacheRefreshDuration;
 import static google.registry.model.common.EntityGroupRoot.getCrossTldKey;
 import static google.registry.model.ofy.ObjectifyService.ofy;
 import static google.registry.model.registry.Registries.assertTldsExist;
@@ -44,7 +45,6 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedSet;
-import com.google.common.collect.Maps;
 import com.google.common.collect.Range;
 import com.google.common.collect.Sets;
 import com.google.common.collect.Streams;
@@ -70,6 +70,7 @@ import google.registry.model.common.EntityGroupRoot;
 import google.registry.model.registrar.Registrar.BillingAccountEntry.CurrencyMapper;
 import google.registry.util.CidrAddressBlock;
 import google.registry.util.NonFinalForTesting;
+import google.registry.util.SystemClock;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
@@ -187,15 +188,18 @@ public class Registrar extends ImmutableObject implements Buildable, Jsonifiable
   /**
    * A caching {@link Supplier} of a clientId to {@link Registrar} map.
    *
-   * <p>The supplier's get() method enters a transactionless context briefly to avoid enrolling the
-   * query inside an unrelated client-affecting transaction.
+   * <p>The map is refreshed incrementally, on a background thread so that the request that finds
+   * it stale neither waits for the refresh nor cuts it short by finishing first. Background
+   * threads are only available to instances with manual or basic scaling, which all of our modules
+   * use; anywhere else the refresh runs in the calling thread.
+   *
+   * @see RegistrarCache
    */
   private static final Supplier<ImmutableMap<String, Registrar>> CACHE_BY_CLIENT_ID =
-      memoizeWithShortExpiration(
-          () ->
-              ofy()
-                  .doTransactionless(
-                      () -> Maps.uniqueIndex(loadAll(), Registrar::getClientId)));
+      new RegistrarCache(
+          getSingletonCacheRefreshDuration(),
+          runnable -> backgroundThreadFactory().newThread(runnable).start(),
+          new SystemClock());
 
   @Parent
   Key<EntityGroupRoot> parent = getCrossTldKey();
@@ -369,7 +373,13 @@ public class Registrar extends ImmutableObject implements Buildable, Jsonifiable
   /** The time when this registrar was created. */
   CreateAutoTimestamp creationTime = CreateAutoTimestamp.create(null);
 
-  /** An automatically managed last-saved timestamp. */
+  /**
+   * An automatically managed last-saved timestamp.
+   *
+   * <p>This is indexed so that {@link RegistrarCache} can find the registrars saved since it last
+   * looked.
+   */
+  @Index
   UpdateAutoTimestamp lastUpdateTime = UpdateAutoTimestamp.create(null);
 
   /**
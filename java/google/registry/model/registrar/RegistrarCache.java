@@ -0,0 +1,215 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.model.registrar;
+
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
+import static google.registry.model.common.EntityGroupRoot.getCrossTldKey;
+import static google.registry.model.ofy.ObjectifyService.ofy;
+import static google.registry.util.DateTimeUtils.START_OF_TIME;
+import static google.registry.util.DateTimeUtils.latestOf;
+import static org.joda.time.Duration.ZERO;
+
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.flogger.FluentLogger;
+import com.googlecode.objectify.Key;
+import google.registry.util.Clock;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import org.joda.time.DateTime;
+import org.joda.time.Duration;
+
+/**
+ * An in-memory map of all registrars by client id, refreshed incrementally.
+ *
+ * <p>Registrars are few but large, since they hold certificates, IP allow lists and so on, and
+ * reloading all of them whenever the map expires stalls whichever request finds it expired.
+ * Instead, once the map is older than the refresh interval, the next caller starts a refresh on
+ * the given executor and carries on with the old map. A refresh lists the keys of the registrars,
+ * which is cheap, and loads only the registrars that are new or that have been saved since the
+ * latest save it has already seen. Registrars that no longer exist are dropped.
+ *
+ * <p>Saves are found by querying on {@code lastUpdateTime}, which is the start time of the saving
+ * transaction. A transaction can commit up to {@link #TRANSACTION_MARGIN} after it starts, so the
+ * query goes back that far before the latest save seen, in case a slower transaction committed
+ * afterwards with an earlier time. Since this watermark comes from the saved timestamps rather
+ * than from the local clock, it isn't thrown off by clock skew between instances.
+ *
+ * <p>If the map gets to twice the refresh interval old, e.g. because the instance was idle, it is
+ * refreshed before it is returned, so that it is never served badly out of date. With a refresh
+ * interval of zero, as in tests, every call reloads all registrars.
+ */
+class RegistrarCache implements Supplier<ImmutableMap<String, Registrar>> {
+
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  /** How long after it starts a transaction can still commit. */
+  static final Duration TRANSACTION_MARGIN = Duration.standardMinutes(1);
+
+  private final Duration refreshInterval;
+  private final Executor refreshExecutor;
+  private final Clock clock;
+  private final AtomicBoolean refreshing = new AtomicBoolean();
+
+  /** The current map, or null if it hasn't been loaded yet. */
+  private volatile Snapshot snapshot;
+
+  RegistrarCache(Duration refreshInterval, Executor refreshExecutor, Clock clock) {
+    this.refreshInterval = refreshInterval;
+    this.refreshExecutor = refreshExecutor;
+    this.clock = clock;
+  }
+
+  /**
+   * Returns the map of all registrars by client id.
+   *
+   * <p>Loads enter a transactionless context briefly to avoid enrolling the queries inside an
+   * unrelated client-affecting transaction.
+   */
+  @Override
+  public ImmutableMap<String, Registrar> get() {
+    if (refreshInterval.equals(ZERO)) {
+      return ofy().doTransactionless(this::loadAll).registrars;
+    }
+    Snapshot current = snapshot;
+    DateTime now = clock.nowUtc();
+    if (current == null || !now.isBefore(current.loadTime.plus(refreshInterval.multipliedBy(2)))) {
+      return refreshIfLoadedBefore(now.minus(refreshInterval)).registrars;
+    }
+    if (!now.isBefore(current.loadTime.plus(refreshInterval))
+        && refreshing.compareAndSet(false, true)) {
+      startRefresh(now.minus(refreshInterval));
+    }
+    return current.registrars;
+  }
+
+  private void startRefresh(DateTime staleTime) {
+    Runnable refresh =
+        () -> {
+          try {
+            refreshIfLoadedBefore(staleTime);
+          } catch (RuntimeException e) {
+            logger.atWarning().withCause(e).log("Failed to refresh the registrar cache");
+          } finally {
+            refreshing.set(false);
+          }
+        };
+    try {
+      refreshExecutor.execute(refresh);
+    } catch (RuntimeException e) {
+      // Threads can't be started outside of App Engine requests, e.g. in tools.
+      logger.atInfo().withCause(e).log("Refreshing the registrar cache in the calling thread");
+      refresh.run();
+    }
+  }
+
+  /**
+   * Refreshes the map unless it was already loaded after a given time, and returns it.
+   *
+   * <p>Refreshes are serialized, so a caller that had to wait for another thread's refresh gets
+   * the map from that refresh rather than starting another one.
+   */
+  private synchronized Snapshot refreshIfLoadedBefore(DateTime staleTime) {
+    Snapshot previous = snapshot;
+    if (previous != null && previous.loadTime.isAfter(staleTime)) {
+      return previous;
+    }
+    snapshot =
+        ofy().doTransactionless(() -> (previous == null) ? loadAll() : loadChanges(previous));
+    return snapshot;
+  }
+
+  private Snapshot loadAll() {
+    DateTime loadTime = clock.nowUtc();
+    return Snapshot.create(loadTime, Maps.uniqueIndex(Registrar.loadAll(), Registrar::getClientId));
+  }
+
+  /** Loads the registrars added or saved since a snapshot, and drops the deleted ones. */
+  private Snapshot loadChanges(Snapshot previous) {
+    DateTime loadTime = clock.nowUtc();
+    ImmutableSet<Key<Registrar>> keys =
+        ImmutableSet.copyOf(
+            ofy().load().type(Registrar.class).ancestor(getCrossTldKey()).keys());
+    Map<String, Registrar> changed =
+        Maps.uniqueIndex(
+            ofy()
+                .load()
+                .type(Registrar.class)
+                .ancestor(getCrossTldKey())
+                .filter("lastUpdateTime >", previous.latestUpdateTime.minus(TRANSACTION_MARGIN)),
+            Registrar::getClientId);
+    ImmutableSet<Key<Registrar>> added =
+        keys.stream()
+            .filter(key -> !previous.registrars.containsKey(key.getName()))
+            .filter(key -> !changed.containsKey(key.getName()))
+            .collect(toImmutableSet());
+    Map<String, Registrar> loaded =
+        Maps.uniqueIndex(ofy().load().keys(added).values(), Registrar::getClientId);
+    // Keep the registrars in key order, as they are when loaded by a query.
+    ImmutableMap<String, Registrar> registrars =
+        keys.stream()
+            .map(Key::getName)
+            .filter(
+                clientId ->
+                    changed.containsKey(clientId)
+                        || loaded.containsKey(clientId)
+                        || previous.registrars.containsKey(clientId))
+            .collect(
+                toImmutableMap(
+                    Function.identity(),
+                    clientId ->
+                        changed.containsKey(clientId)
+                            ? changed.get(clientId)
+                            : loaded.containsKey(clientId)
+                                ? loaded.get(clientId)
+                                : previous.registrars.get(clientId)));
+    logger.atInfo().log(
+        "Refreshed the registrar cache, reloading %d saved and %d added of %d registrars",
+        changed.size(), loaded.size(), registrars.size());
+    return Snapshot.create(loadTime, registrars);
+  }
+
+  /** The map of registrars as of a load. */
+  private static class Snapshot {
+
+    /** The time the load started, which is when the map's contents were last known current. */
+    final DateTime loadTime;
+
+    /** The latest save time of any registrar in the map. */
+    final DateTime latestUpdateTime;
+
+    final ImmutableMap<String, Registrar> registrars;
+
+    private Snapshot(
+        DateTime loadTime, DateTime latestUpdateTime, ImmutableMap<String, Registrar> registrars) {
+      this.loadTime = loadTime;
+      this.latestUpdateTime = latestUpdateTime;
+      this.registrars = registrars;
+    }
+
+    static Snapshot create(DateTime loadTime, ImmutableMap<String, Registrar> registrars) {
+      DateTime latestUpdateTime = START_OF_TIME;
+      for (Registrar registrar : registrars.values()) {
+        latestUpdateTime = latestOf(latestUpdateTime, registrar.getLastUpdateTime());
+      }
+      return new Snapshot(loadTime, latestUpdateTime, registrars);
+    }
+  }
+}
@@ -24,7 +24,10 @@ import static google.registry.util.DateTimeUtils.START_OF_TIME;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.flogger.FluentLogger;
 import com.googlecode.objectify.Key;
 import com.googlecode.objectify.annotation.EmbedMap;
 import com.googlecode.objectify.annotation.Entity;
@@ -37,16 +40,17 @@ import google.registry.model.annotations.NotBackedUp;
 import google.registry.model.annotations.NotBackedUp.Reason;
 import google.registry.model.annotations.VirtualEntity;
 import google.registry.model.common.CrossTldSingleton;
-import google.registry.util.CollectionUtils;
-import google.registry.util.Concurrent;
 import google.registry.util.NonFinalForTesting;
+import google.registry.util.ParallelTransformer;
 import google.registry.util.Retrier;
+import google.registry.util.ShardedMapDiff;
 import google.registry.util.SystemSleeper;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicReference;
 import javax.annotation.Nullable;
 import org.joda.time.DateTime;
 
@@ -60,7 +64,8 @@ import org.joda.time.DateTime;
  * <p>ClaimsList shards are tied to a specific revision and are persisted individually, then the
  * entire claims list is atomically shifted over to using the new shards by persisting the new
  * revision object and updating the {@link ClaimsListSingleton} pointing to it. This bypasses the
- * 10MB per transaction limit.
+ * 10MB per transaction limit. Shards whose contents didn't change are not rewritten, so the
+ * singleton also lists the shards of the live list, which may belong to earlier revisions.
  *
  * <p>Therefore, it is never OK to save an instance of this class directly to Datastore. Instead you
  * must use the {@link #save} method to do it for you.
@@ -69,6 +74,8 @@ import org.joda.time.DateTime;
 @NotBackedUp(reason = Reason.EXTERNALLY_SOURCED)
 public class ClaimsListShard extends ImmutableObject {
 
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
   /** The number of claims list entries to store per shard.  Do not modify except for in tests. */
   @VisibleForTesting
   @NonFinalForTesting
@@ -91,47 +98,57 @@ public class ClaimsListShard extends ImmutableObject {
   @Ignore
   boolean isShard = false;
 
+  /**
+   * The full list that was loaded most recently, along with the revision it was loaded from.
+   *
+   * <p>The shards of a revision never change, so the list is reused rather than reloaded and
+   * recombined when the cache expires, until a new revision goes live.
+   */
+  private static final AtomicReference<ClaimsListShard> lastLoaded = new AtomicReference<>();
+
   private static final Retrier LOADER_RETRIER = new Retrier(new SystemSleeper(), 2);
 
+  /** Loads and saves shards in parallel, each in its own transaction. */
+  private static final ParallelTransformer SHARD_TRANSFORMER =
+      ParallelTransformer.builder("Claims list shards").build();
+
   private static final Callable<ClaimsListShard> LOADER_CALLABLE =
       () -> {
         // Find the most recent revision.
-        Key<ClaimsListRevision> revisionKey = getCurrentRevision();
+        ClaimsListSingleton singleton = loadSingleton();
+        Key<ClaimsListRevision> revisionKey = (singleton == null) ? null : singleton.activeRevision;
 
-        Map<String, String> combinedLabelsToKeys = new HashMap<>();
+        // Reuse the last loaded list if it is of the same revision.
+        ClaimsListShard previous = lastLoaded.get();
+        if (previous != null && revisionKey != null && revisionKey.equals(previous.parent)) {
+          return previous;
+        }
+
+        List<ClaimsListShard> shards = loadShards(getShardKeys(singleton));
         DateTime creationTime = START_OF_TIME;
-        if (revisionKey != null) {
-          // Grab all of the keys for the shards that belong to the current revision.
-          final List<Key<ClaimsListShard>> shardKeys =
-              ofy().load().type(ClaimsListShard.class).ancestor(revisionKey).keys().list();
-
-          // Load all of the shards concurrently, each in a separate transaction.
-          List<ClaimsListShard> shards =
-              Concurrent.transform(
-                  shardKeys,
-                  (final Key<ClaimsListShard> key) ->
-                      ofy()
-                          .transactNewReadOnly(
-                              () -> {
-                                ClaimsListShard claimsListShard = ofy().load().key(key).now();
-                                checkState(
-                                    claimsListShard != null,
-                                    "Key not found when loading claims list shards.");
-                                return claimsListShard;
-                              }));
-
-          // Combine the shards together and return the concatenated ClaimsList.
-          if (!shards.isEmpty()) {
-            creationTime = shards.get(0).creationTime;
-            for (ClaimsListShard shard : shards) {
-              combinedLabelsToKeys.putAll(shard.labelsToKeys);
-              checkState(
-                  creationTime.equals(shard.creationTime),
-                  "Inconsistent claims list shard creation times.");
-            }
+        if (singleton != null && singleton.creationTime != null) {
+          // Shards that were kept from earlier revisions have older creation times.
+          creationTime = singleton.creationTime;
+        } else if (!shards.isEmpty()) {
+          // Check that the shards are consistent.
+          creationTime = shards.get(0).creationTime;
+          for (ClaimsListShard shard : shards) {
+            checkState(
+                creationTime.equals(shard.creationTime),
+                "Inconsistent claims list shard creation times.");
           }
         }
-        return create(creationTime, ImmutableMap.copyOf(combinedLabelsToKeys));
+        // Combine the shards together and return the concatenated ClaimsList.
+        Map<String, String> combinedLabelsToKeys = new HashMap<>();
+        for (ClaimsListShard shard : shards) {
+          combinedLabelsToKeys.putAll(shard.labelsToKeys);
+        }
+        ClaimsListShard instance = create(creationTime, ImmutableMap.copyOf(combinedLabelsToKeys));
+        instance.parent = revisionKey;
+        logger.atInfo().log(
+            "Loaded claims list revision %s with %d labels", revisionKey, instance.size());
+        lastLoaded.set(instance);
+        return instance;
       };
 
   /**
@@ -163,25 +180,46 @@ public class ClaimsListShard extends ImmutableObject {
   /**
    * Save the Claims list to Datastore by writing the new shards in a series of transactions,
    * switching over to using them atomically, then deleting the old ones.
+   *
+   * <p>Only the shards whose contents changed are written. The shards of the live list that are
+   * still correct are kept as they are, and the new revision refers to them along with the shards
+   * written for it. See {@link ShardedMapDiff} for how the shards are laid out.
    */
   public void save() {
-    // Figure out what the next versionId should be based on which ones already exist.
-    final Key<ClaimsListRevision> oldRevision = getCurrentRevision();
+    // Find the revision that is live now, and create the next one.
+    final ClaimsListSingleton oldSingleton = loadSingleton();
+    final Key<ClaimsListRevision> oldRevision =
+        (oldSingleton == null) ? null : oldSingleton.activeRevision;
     final Key<ClaimsListRevision> parentKey = ClaimsListRevision.createKey();
 
-    // Save the ClaimsList shards in separate transactions.
-    Concurrent.transform(
-        CollectionUtils.partitionMap(labelsToKeys, shardSize),
-        (final ImmutableMap<String, String> labelsToKeysShard) ->
-            ofy()
-                .transactNew(
-                    () -> {
-                      ClaimsListShard shard = create(creationTime, labelsToKeysShard);
-                      shard.isShard = true;
-                      shard.parent = parentKey;
-                      ofy().saveWithoutBackup().entity(shard);
-                      return shard;
-                    }));
+    // Work out which of the current shards can be kept.
+    ImmutableMap.Builder<Key<ClaimsListShard>, Map<String, String>> currentShards =
+        new ImmutableMap.Builder<>();
+    for (ClaimsListShard shard : loadShards(getShardKeys(oldSingleton))) {
+      currentShards.put(Key.create(shard), shard.labelsToKeys);
+    }
+    final ShardedMapDiff<String, String, Key<ClaimsListShard>> diff =
+        ShardedMapDiff.create(labelsToKeys, currentShards.build(), shardSize);
+
+    // Save the changed ClaimsList shards in separate transactions.
+    List<Key<ClaimsListShard>> newShardKeys =
+        SHARD_TRANSFORMER.transform(
+            diff.getNewShards(),
+            (final ImmutableSortedMap<String, String> labelsToKeysShard) ->
+                ofy()
+                    .transactNew(
+                        () -> {
+                          ClaimsListShard shard = create(creationTime, labelsToKeysShard);
+                          shard.isShard = true;
+                          shard.parent = parentKey;
+                          ofy().saveWithoutBackup().entity(shard);
+                          return Key.create(shard);
+                        }));
+    final ImmutableList<Key<ClaimsListShard>> liveShardKeys =
+        new ImmutableList.Builder<Key<ClaimsListShard>>()
+            .addAll(diff.getKeptShards())
+            .addAll(newShardKeys)
+            .build();
 
     // Persist the new revision, thus causing the newly created shards to go live.
     ofy()
@@ -191,14 +229,14 @@ public class ClaimsListShard extends ImmutableObject {
                   (getCurrentRevision() == null && oldRevision == null)
                       || getCurrentRevision().equals(oldRevision),
                   "Registries' ClaimsList was updated by someone else while attempting to update.");
-              ofy().saveWithoutBackup().entity(ClaimsListSingleton.create(parentKey));
-              // Delete the old ClaimsListShard entities.
-              if (oldRevision != null) {
-                ofy()
-                    .deleteWithoutBackup()
-                    .keys(ofy().load().type(ClaimsListShard.class).ancestor(oldRevision).keys());
-              }
+              ofy()
+                  .saveWithoutBackup()
+                  .entity(ClaimsListSingleton.create(parentKey, creationTime, liveShardKeys));
+              // Delete the ClaimsListShard entities that are no longer used.
+              ofy().deleteWithoutBackup().keys(diff.getRemovedShards());
             });
+    logger.atInfo().log(
+        "Saved claims list revision %s with %,d claims: %s", parentKey, labelsToKeys.size(), diff);
   }
 
   public static ClaimsListShard create(
@@ -216,6 +254,16 @@ public class ClaimsListShard extends ImmutableObject {
     return CACHE.get();
   }
 
+  /**
+   * Forgets the list that was loaded most recently, so that the next load reads the shards again.
+   *
+   * <p>Tests need this because revision ids are reused from one test to the next.
+   */
+  @VisibleForTesting
+  public static void clearLastLoadedForTesting() {
+    lastLoaded.set(null);
+  }
+
   /** As a safety mechanism, fail if someone tries to save this class directly. */
   @OnSave
   void disallowUnshardedSaves() {
@@ -257,9 +305,23 @@ public class ClaimsListShard extends ImmutableObject {
   public static class ClaimsListSingleton extends CrossTldSingleton {
     Key<ClaimsListRevision> activeRevision;
 
-    static ClaimsListSingleton create(Key<ClaimsListRevision> revision) {
+    /** When the live claims list was created, or null if that is only recorded on its shards. */
+    @Nullable DateTime creationTime;
+
+    /**
+     * The shards of the live claims list, which may belong to earlier revisions, or null if the
+     * shards are exactly the children of {@link #activeRevision}.
+     */
+    @Nullable List<Key<ClaimsListShard>> shards;
+
+    static ClaimsListSingleton create(
+        Key<ClaimsListRevision> revision,
+        DateTime creationTime,
+        ImmutableList<Key<ClaimsListShard>> shards) {
       ClaimsListSingleton instance = new ClaimsListSingleton();
       instance.activeRevision = revision;
+      instance.creationTime = creationTime;
+      instance.shards = shards;
       return instance;
     }
 
@@ -275,10 +337,48 @@ public class ClaimsListShard extends ImmutableObject {
    */
   @Nullable
   public static Key<ClaimsListRevision> getCurrentRevision() {
-    ClaimsListSingleton singleton = ofy().load().entity(new ClaimsListSingleton()).now();
+    ClaimsListSingleton singleton = loadSingleton();
     return singleton == null ? null : singleton.activeRevision;
   }
 
+  @Nullable
+  private static ClaimsListSingleton loadSingleton() {
+    return ofy().load().entity(new ClaimsListSingleton()).now();
+  }
+
+  /** Returns the keys of the shards of the claims list that the singleton points to. */
+  private static List<Key<ClaimsListShard>> getShardKeys(@Nullable ClaimsListSingleton singleton) {
+    if (singleton == null || singleton.activeRevision == null) {
+      return ImmutableList.of();
+    }
+    if (singleton.shards != null) {
+      return singleton.shards;
+    }
+    // Grab all of the keys for the shards that belong to the revision.
+    return ofy()
+        .load()
+        .type(ClaimsListShard.class)
+        .ancestor(singleton.activeRevision)
+        .keys()
+        .list();
+  }
+
+  /** Loads the given shards concurrently, each in a separate transaction. */
+  private static List<ClaimsListShard> loadShards(List<Key<ClaimsListShard>> shardKeys) {
+    return SHARD_TRANSFORMER.transform(
+        shardKeys,
+        (final Key<ClaimsListShard> key) ->
+            ofy()
+                .transactNewReadOnly(
+                    () -> {
+                      ClaimsListShard claimsListShard = ofy().load().key(key).now();
+                      checkState(
+                          claimsListShard != null,
+                          "Key not found when loading claims list shards.");
+                      return claimsListShard;
+                    }));
+  }
+
   /** Exception when trying to directly save a {@link ClaimsListShard} without sharding. */
   public static class UnshardedSaveException extends RuntimeException {}
 }
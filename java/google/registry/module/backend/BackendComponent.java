@@ -28,6 +28,7 @@ import google.registry.groups.GroupssettingsModule;
 import google.registry.keyring.api.KeyModule;
 import google.registry.keyring.kms.KmsModule;
 import google.registry.module.backend.BackendRequestComponent.BackendRequestComponentModule;
+import google.registry.monitoring.whitebox.DatastoreRpcMonitor;
 import google.registry.monitoring.whitebox.StackdriverModule;
 import google.registry.rde.JSchModule;
 import google.registry.request.Modules.AppIdentityCredentialModule;
@@ -82,5 +83,7 @@ import javax.inject.Singleton;
 interface BackendComponent {
   BackendRequestHandler requestHandler();
 
+  DatastoreRpcMonitor datastoreRpcMonitor();
+
   Lazy<MetricReporter> metricReporter();
 }
@@ -39,6 +39,7 @@ import google.registry.dns.ReadDnsQueueAction;
 import google.registry.dns.RefreshDnsAction;
 import google.registry.dns.writer.VoidDnsWriterModule;
 import google.registry.dns.writer.clouddns.CloudDnsWriterModule;
+import google.registry.dns.writer.clouddns.ReconcileCloudDnsMirrorAction;
 import google.registry.dns.writer.dnsupdate.DnsUpdateConfigModule;
 import google.registry.dns.writer.dnsupdate.DnsUpdateWriterModule;
 import google.registry.export.BigqueryPollJobAction;
@@ -145,6 +146,7 @@ interface BackendRequestComponent {
   RdeStagingAction rdeStagingAction();
   RdeUploadAction rdeUploadAction();
   RdeReporter rdeReporter();
+  ReconcileCloudDnsMirrorAction reconcileCloudDnsMirrorAction();
   RefreshDnsAction refreshDnsAction();
   RefreshDnsOnHostRenameAction refreshDnsOnHostRenameAction();
   ResaveAllEppResourcesAction resaveAllEppResourcesAction();
@@ -18,6 +18,8 @@ import com.google.appengine.api.LifecycleManager;
 import com.google.common.flogger.FluentLogger;
 import com.google.monitoring.metrics.MetricReporter;
 import dagger.Lazy;
+import google.registry.model.ofy.DatastoreRpcCounts;
+import google.registry.monitoring.whitebox.DatastoreRpcMonitor;
 import java.io.IOException;
 import java.security.Security;
 import java.util.concurrent.TimeUnit;
@@ -32,6 +34,7 @@ public final class BackendServlet extends HttpServlet {
 
   private static final BackendComponent component = DaggerBackendComponent.create();
   private static final BackendRequestHandler requestHandler = component.requestHandler();
+  private static final DatastoreRpcMonitor datastoreRpcMonitor = component.datastoreRpcMonitor();
   private static final Lazy<MetricReporter> metricReporter = component.metricReporter();
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
 
@@ -64,6 +67,11 @@ public final class BackendServlet extends HttpServlet {
   @Override
   public void service(HttpServletRequest req, HttpServletResponse rsp) throws IOException {
     logger.atInfo().log("Received backend request");
-    requestHandler.handleRequest(req, rsp);
+    DatastoreRpcCounts rpcCountsAtStart = datastoreRpcMonitor.startRequest();
+    try {
+      requestHandler.handleRequest(req, rsp);
+    } finally {
+      datastoreRpcMonitor.recordRequest("backend", req.getRequestURI(), rpcCountsAtStart);
+    }
   }
 }
@@ -18,6 +18,9 @@ import com.google.appengine.api.LifecycleManager;
 import com.google.common.flogger.FluentLogger;
 import com.google.monitoring.metrics.MetricReporter;
 import dagger.Lazy;
+import google.registry.model.ofy.DatastoreRpcCounts;
+import google.registry.monitoring.whitebox.BigQueryMetricsEnqueuer;
+import google.registry.monitoring.whitebox.DatastoreRpcMonitor;
 import java.io.IOException;
 import java.security.Security;
 import java.util.concurrent.TimeUnit;
@@ -32,37 +35,53 @@ public final class FrontendServlet extends HttpServlet {
 
   private static final FrontendComponent component = DaggerFrontendComponent.create();
   private static final FrontendRequestHandler requestHandler = component.requestHandler();
+  private static final DatastoreRpcMonitor datastoreRpcMonitor = component.datastoreRpcMonitor();
   private static final Lazy<MetricReporter> metricReporter = component.metricReporter();
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
 
   @Override
   public void init() {
     Security.addProvider(new BouncyCastleProvider());
+    BigQueryMetricsEnqueuer.startInstanceFlusher();
 
     // If metric reporter failed to instantiate for any reason (bad keyring, bad json credential,
-    // etc), we log the error but keep the main thread running. Also the shutdown hook will only be
-    // registered if metric reporter starts up correctly.
+    // etc), we log the error but keep the main thread running. Also the shutdown hook will only
+    // stop the metric reporter if it started up correctly.
+    boolean metricReporterStarted = false;
     try {
       metricReporter.get().startAsync().awaitRunning(10, TimeUnit.SECONDS);
       logger.atInfo().log("Started up MetricReporter");
-      LifecycleManager.getInstance()
-          .setShutdownHook(
-              () -> {
-                try {
-                  metricReporter.get().stopAsync().awaitTerminated(10, TimeUnit.SECONDS);
-                  logger.atInfo().log("Shut down MetricReporter");
-                } catch (TimeoutException e) {
-                  logger.atSevere().withCause(e).log("Failed to stop MetricReporter.");
-                }
-              });
+      metricReporterStarted = true;
     } catch (Exception e) {
       logger.atSevere().withCause(e).log("Failed to initialize MetricReporter.");
     }
+    boolean stopMetricReporter = metricReporterStarted;
+    LifecycleManager.getInstance()
+        .setShutdownHook(
+            () -> {
+              // Flush the BigQuery metrics first, so that any rows dropped while doing so are
+              // counted in the metric reporter's final push.
+              BigQueryMetricsEnqueuer.flushInstanceBuffer();
+              if (!stopMetricReporter) {
+                return;
+              }
+              try {
+                metricReporter.get().stopAsync().awaitTerminated(10, TimeUnit.SECONDS);
+                logger.atInfo().log("Shut down MetricReporter");
+              } catch (TimeoutException e) {
+                logger.atSevere().withCause(e).log("Failed to stop MetricReporter.");
+              }
+            });
   }
 
   @Override
   public void service(HttpServletRequest req, HttpServletResponse rsp) throws IOException {
     logger.atInfo().log("Received frontend request");
-    requestHandler.handleRequest(req, rsp);
+    DatastoreRpcCounts rpcCountsAtStart = datastoreRpcMonitor.startRequest();
+    try {
+      requestHandler.handleRequest(req, rsp);
+    } finally {
+      datastoreRpcMonitor.recordRequest("default", req.getRequestURI(), rpcCountsAtStart);
+    }
   }
 }
@@ -23,6 +23,7 @@ import google.registry.flows.custom.CustomLogicFactoryModule;
 import google.registry.keyring.api.KeyModule;
 import google.registry.keyring.kms.KmsModule;
 import google.registry.module.pubapi.PubApiRequestComponent.PubApiRequestComponentModule;
+import google.registry.monitoring.whitebox.DatastoreRpcMonitor;
 import google.registry.monitoring.whitebox.StackdriverModule;
 import google.registry.request.Modules.AppIdentityCredentialModule;
 import google.registry.request.Modules.GoogleCredentialModule;
@@ -65,5 +66,7 @@ import javax.inject.Singleton;
 interface PubApiComponent {
   PubApiRequestHandler requestHandler();
 
+  DatastoreRpcMonitor datastoreRpcMonitor();
+
   Lazy<MetricReporter> metricReporter();
 }
@@ -18,6 +18,8 @@ import com.google.appengine.api.LifecycleManager;
 import com.google.common.flogger.FluentLogger;
 import com.google.monitoring.metrics.MetricReporter;
 import dagger.Lazy;
+import google.registry.model.ofy.DatastoreRpcCounts;
+import google.registry.monitoring.whitebox.DatastoreRpcMonitor;
 import java.io.IOException;
 import java.security.Security;
 import java.util.concurrent.TimeUnit;
@@ -32,6 +34,7 @@ public final class PubApiServlet extends HttpServlet {
 
   private static final PubApiComponent component = DaggerPubApiComponent.create();
   private static final PubApiRequestHandler requestHandler = component.requestHandler();
+  private static final DatastoreRpcMonitor datastoreRpcMonitor = component.datastoreRpcMonitor();
   private static final Lazy<MetricReporter> metricReporter = component.metricReporter();
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
 
@@ -63,6 +66,11 @@ public final class PubApiServlet extends HttpServlet {
   @Override
   public void service(HttpServletRequest req, HttpServletResponse rsp) throws IOException {
     logger.atInfo().log("Received frontend request");
-    requestHandler.handleRequest(req, rsp);
+    DatastoreRpcCounts rpcCountsAtStart = datastoreRpcMonitor.startRequest();
+    try {
+      requestHandler.handleRequest(req, rsp);
+    } finally {
+      datastoreRpcMonitor.recordRequest("pubapi", req.getRequestURI(), rpcCountsAtStart);
+    }
   }
 }
@@ -26,6 +26,7 @@ import google.registry.groups.GroupssettingsModule;
 import google.registry.keyring.api.KeyModule;
 import google.registry.keyring.kms.KmsModule;
 import google.registry.module.tools.ToolsRequestComponent.ToolsRequestComponentModule;
+import google.registry.monitoring.whitebox.DatastoreRpcMonitor;
 import google.registry.request.Modules.AppIdentityCredentialModule;
 import google.registry.request.Modules.DatastoreServiceModule;
 import google.registry.request.Modules.GoogleCredentialModule;
@@ -72,4 +73,6 @@ import javax.inject.Singleton;
 )
 interface ToolsComponent {
   ToolsRequestHandler requestHandler();
+
+  DatastoreRpcMonitor datastoreRpcMonitor();
 }
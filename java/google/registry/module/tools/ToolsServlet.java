@@ -14,7 +14,11 @@
 
 package google.registry.module.tools;
 
+import com.google.appengine.api.LifecycleManager;
 import com.google.common.flogger.FluentLogger;
+import google.registry.model.ofy.DatastoreRpcCounts;
+import google.registry.monitoring.whitebox.BigQueryMetricsEnqueuer;
+import google.registry.monitoring.whitebox.DatastoreRpcMonitor;
 import java.io.IOException;
 import java.security.Security;
 import javax.servlet.http.HttpServlet;
@@ -27,16 +31,25 @@ public final class ToolsServlet extends HttpServlet {
 
   private static final ToolsComponent component = DaggerToolsComponent.create();
   private static final ToolsRequestHandler requestHandler = component.requestHandler();
+  private static final DatastoreRpcMonitor datastoreRpcMonitor = component.datastoreRpcMonitor();
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
 
   @Override
   public void init() {
     Security.addProvider(new BouncyCastleProvider());
+    // EPP commands sent through the tools module buffer BigQuery metrics like the frontend does.
+    BigQueryMetricsEnqueuer.startInstanceFlusher();
+    LifecycleManager.getInstance().setShutdownHook(BigQueryMetricsEnqueuer::flushInstanceBuffer);
   }
 
   @Override
   public void service(HttpServletRequest req, HttpServletResponse rsp) throws IOException {
     logger.atInfo().log("Received tools request");
-    requestHandler.handleRequest(req, rsp);
+    DatastoreRpcCounts rpcCountsAtStart = datastoreRpcMonitor.startRequest();
+    try {
+      requestHandler.handleRequest(req, rsp);
+    } finally {
+      datastoreRpcMonitor.recordRequest("tools", req.getRequestURI(), rpcCountsAtStart);
+    }
   }
 }
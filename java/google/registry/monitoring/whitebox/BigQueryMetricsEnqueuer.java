@@ -14,21 +14,44 @@
 
 package google.registry.monitoring.whitebox;
 
+import static com.google.appengine.api.ThreadManager.backgroundThreadFactory;
+import static com.google.appengine.api.taskqueue.QueueFactory.getQueue;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static com.google.appengine.api.taskqueue.TaskOptions.Builder.withUrl;
 
 import com.google.appengine.api.modules.ModulesService;
+import com.google.appengine.api.modules.ModulesServiceFactory;
 import com.google.appengine.api.taskqueue.Queue;
 import com.google.appengine.api.taskqueue.TaskOptions;
 import com.google.appengine.api.taskqueue.TransientFailureException;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.flogger.FluentLogger;
-import java.util.Map.Entry;
+import google.registry.monitoring.whitebox.MetricRowBuffer.MetricBatch;
+import google.registry.monitoring.whitebox.MetricRowBuffer.MetricRow;
+import google.registry.util.Clock;
+import google.registry.util.SystemClock;
+import java.util.concurrent.Executors;
 import javax.inject.Inject;
 import javax.inject.Named;
+import org.joda.time.Duration;
+import org.json.simple.JSONValue;
 
 /**
- * A collector of metric information. Enqueues collected metrics to a task queue to be written to
- * BigQuery asynchronously.
+ * A collector of metric information. Buffers collected metrics in memory and enqueues them in
+ * batches to a task queue, to be written to BigQuery asynchronously.
+ *
+ * <p>Metrics are exported at the end of each request, so rather than adding a task per request,
+ * rows are gathered per table in an instance-wide {@link MetricRowBuffer}, and each batch becomes
+ * a single task that {@link MetricsExportAction} writes with a single insert. Insert IDs are
+ * assigned when a row is buffered, so that retried tasks don't duplicate rows.
+ *
+ * <p>Batches are released when a row is exported, and also by a background thread that the
+ * servlet {@link #startInstanceFlusher starts}, so that rows on an instance that has gone quiet
+ * still go out after roughly {@link #MAX_DELAY}. Rows still in the buffer when the instance shuts
+ * down are {@link #flushInstanceBuffer flushed} by the servlet's shutdown hook.
  *
  * @see MetricsExportAction
  */
@@ -38,28 +61,141 @@ public class BigQueryMetricsEnqueuer {
 
   public static final String QUEUE_BIGQUERY_STREAMING_METRICS = "bigquery-streaming-metrics";
 
+  /** Maximum number of rows in a task, which keeps tasks well below the size limit. */
+  private static final int MAX_BATCH_SIZE = 100;
+
+  /** Maximum number of rows an instance holds on to before it starts dropping them. */
+  private static final int MAX_BUFFERED_ROWS = 2000;
+
+  /**
+   * Time a row waits for its batch to fill up before it's exported anyway.
+   *
+   * <p>This is also the period of the background flush, so a row may wait up to twice as long.
+   */
+  private static final Duration MAX_DELAY = Duration.standardSeconds(5);
+
+  private static final MetricRowBuffer INSTANCE_BUFFER =
+      new MetricRowBuffer(MAX_BATCH_SIZE, MAX_BUFFERED_ROWS, MAX_DELAY);
+
   @Inject ModulesService modulesService;
   @Inject @Named("insertIdGenerator") Supplier<String> idGenerator;
   @Inject @Named(QUEUE_BIGQUERY_STREAMING_METRICS) Queue queue;
+  @Inject Clock clock;
+  @VisibleForTesting MetricRowBuffer buffer = INSTANCE_BUFFER;
 
   @Inject BigQueryMetricsEnqueuer() {}
 
   public void export(BigQueryMetric metric) {
-    try {
-      String hostname = modulesService.getVersionHostname("backend", null);
-      TaskOptions opts =
-          withUrl(MetricsExportAction.PATH)
-              .header("Host", hostname)
-              .param("insertId", idGenerator.get());
-      for (Entry<String, String> entry : metric.getBigQueryRowEncoding().entrySet()) {
-        opts.param(entry.getKey(), entry.getValue());
+    MetricRow row = MetricRow.create(idGenerator.get(), metric.getBigQueryRowEncoding());
+    for (MetricBatch batch : buffer.add(metric.getTableId(), row, clock.nowUtc())) {
+      enqueue(batch);
+    }
+  }
+
+  /** Enqueues the batches that are full or have been waiting for long enough. */
+  @VisibleForTesting
+  void flushReady() {
+    for (MetricBatch batch : buffer.drainReady(clock.nowUtc())) {
+      enqueue(batch);
+    }
+  }
+
+  /**
+   * Enqueues every row left in the buffer, whether or not its batch is ready.
+   *
+   * <p>This is meant for when the instance is shutting down, so rows that can't be enqueued are
+   * counted as dropped rather than put back.
+   */
+  public void flush() {
+    ImmutableList<MetricBatch> batches = buffer.drainAll();
+    for (MetricBatch batch : batches) {
+      try {
+        queue.add(createTask(batch));
+      } catch (RuntimeException e) {
+        logger.atWarning().withCause(e).log(
+            "Dropping %d metrics for %s that couldn't be enqueued",
+            batch.rows().size(), batch.tableId());
+        buffer.drop(batch);
       }
-      opts.param("tableId", metric.getTableId());
-      queue.add(opts);
+    }
+    logger.atInfo().log("Flushed %d batches of buffered metrics", batches.size());
+  }
+
+  /**
+   * {@link #flush Flushes} the instance-wide buffer.
+   *
+   * <p>This is called from shutdown hooks, which run outside of any request, so the services are
+   * obtained directly rather than injected.
+   */
+  public static void flushInstanceBuffer() {
+    createForInstanceBuffer().flush();
+  }
+
+  /**
+   * Starts a background thread that {@link #flushReady flushes} the instance-wide buffer every
+   * {@link #MAX_DELAY}.
+   *
+   * <p>This is called once when the servlet is initialized. Background threads are only available
+   * to instances with manual or basic scaling, which all of our modules use.
+   */
+  public static void startInstanceFlusher() {
+    BigQueryMetricsEnqueuer enqueuer = createForInstanceBuffer();
+    Executors.newSingleThreadScheduledExecutor(backgroundThreadFactory())
+        .scheduleWithFixedDelay(
+            () -> {
+              // An exception escaping here would cancel every later run.
+              try {
+                enqueuer.flushReady();
+              } catch (RuntimeException e) {
+                logger.atSevere().withCause(e).log("Error flushing buffered metrics");
+              }
+            },
+            MAX_DELAY.getMillis(),
+            MAX_DELAY.getMillis(),
+            MILLISECONDS);
+  }
+
+  /**
+   * Returns an enqueuer for the instance-wide buffer that can be used outside of any request.
+   *
+   * <p>The services are obtained directly rather than injected, and no insert IDs are generated.
+   */
+  private static BigQueryMetricsEnqueuer createForInstanceBuffer() {
+    BigQueryMetricsEnqueuer enqueuer = new BigQueryMetricsEnqueuer();
+    enqueuer.modulesService = ModulesServiceFactory.getModulesService();
+    enqueuer.queue = getQueue(QUEUE_BIGQUERY_STREAMING_METRICS);
+    enqueuer.clock = new SystemClock();
+    return enqueuer;
+  }
+
+  private void enqueue(MetricBatch batch) {
+    try {
+      queue.add(createTask(batch));
     } catch (TransientFailureException e) {
-      // Log and swallow. We may drop some metrics here but this should be rare.
+      // Keep the rows for the next batch. We may drop some metrics if this keeps happening.
       logger.atInfo().withCause(e).log(
-          "Transient error occurred while recording metric; metric dropped.");
+          "Transient error occurred while enqueueing %d metrics; will retry.", batch.rows().size());
+      buffer.putBack(batch, clock.nowUtc());
+    } catch (RuntimeException e) {
+      logger.atWarning().withCause(e).log(
+          "Dropping %d metrics for %s that couldn't be enqueued",
+          batch.rows().size(), batch.tableId());
+      buffer.drop(batch);
+    }
+  }
+
+  private TaskOptions createTask(MetricBatch batch) {
+    String hostname = modulesService.getVersionHostname("backend", null);
+    TaskOptions opts =
+        withUrl(MetricsExportAction.PATH)
+            .header("Host", hostname)
+            .param("tableId", batch.tableId());
+    for (MetricRow row : batch.rows()) {
+      opts.param(
+          "row",
+          JSONValue.toJSONString(
+              ImmutableMap.of("insertId", row.insertId(), "json", row.values())));
     }
+    return opts;
   }
 }
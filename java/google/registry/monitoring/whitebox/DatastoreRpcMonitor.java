@@ -0,0 +1,98 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.monitoring.whitebox;
+
+import static com.google.monitoring.metrics.EventMetric.DEFAULT_FITTER;
+import static google.registry.model.ofy.RpcCountingAsyncDatastoreService.getCountsForCurrentThread;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.flogger.FluentLogger;
+import com.google.monitoring.metrics.DistributionFitter;
+import com.google.monitoring.metrics.EventMetric;
+import com.google.monitoring.metrics.FibonacciFitter;
+import com.google.monitoring.metrics.LabelDescriptor;
+import com.google.monitoring.metrics.MetricRegistryImpl;
+import google.registry.config.RegistryConfig.Config;
+import google.registry.model.ofy.DatastoreRpcCounts;
+import javax.inject.Inject;
+
+/**
+ * Records the Datastore RPCs made by each request to an App Engine module.
+ *
+ * <p>Requests that make more RPCs than the configured budget are logged along with a breakdown of
+ * their RPCs, so that the actions responsible for them can be found. The metrics are labelled by
+ * module only, since request paths can contain arbitrary names.
+ */
+public class DatastoreRpcMonitor {
+
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  private static final ImmutableSet<LabelDescriptor> LABEL_DESCRIPTORS =
+      ImmutableSet.of(LabelDescriptor.create("module", "The App Engine module."));
+
+  // Allows values between 0 and 4181, which is the 19th Fibonacci number.
+  private static final DistributionFitter FIBONACCI_FITTER = FibonacciFitter.create(4181);
+
+  @VisibleForTesting
+  static final EventMetric rpcsPerRequest =
+      MetricRegistryImpl.getDefault()
+          .newEventMetric(
+              "/datastore/rpcs_per_request",
+              "Datastore RPCs Per Request",
+              "count",
+              LABEL_DESCRIPTORS,
+              FIBONACCI_FITTER);
+
+  @VisibleForTesting
+  static final EventMetric waitTimePerRequest =
+      MetricRegistryImpl.getDefault()
+          .newEventMetric(
+              "/datastore/wait_time_per_request",
+              "Time Spent Waiting On Datastore Per Request",
+              "milliseconds",
+              LABEL_DESCRIPTORS,
+              DEFAULT_FITTER);
+
+  private final int rpcBudgetPerRequest;
+
+  @Inject
+  public DatastoreRpcMonitor(@Config("datastoreRpcBudgetPerRequest") int rpcBudgetPerRequest) {
+    this.rpcBudgetPerRequest = rpcBudgetPerRequest;
+  }
+
+  /** Returns the counts to pass to {@link #recordRequest} once the request has been handled. */
+  public DatastoreRpcCounts startRequest() {
+    return getCountsForCurrentThread();
+  }
+
+  /**
+   * Records the RPCs made by the current thread since {@code countsAtStart} were taken.
+   *
+   * @param module the name of the App Engine module handling the request
+   * @param requestPath the path of the request, which is logged if it is over budget
+   * @param countsAtStart the counts returned by {@link #startRequest} for this request
+   */
+  public void recordRequest(String module, String requestPath, DatastoreRpcCounts countsAtStart) {
+    DatastoreRpcCounts counts = getCountsForCurrentThread().minus(countsAtStart);
+    rpcsPerRequest.record(counts.rpcs(), module);
+    waitTimePerRequest.record(counts.waitMillis(), module);
+    if (rpcBudgetPerRequest > 0 && counts.rpcs() > rpcBudgetPerRequest) {
+      logger.atWarning().log(
+          "Request to %s made %d Datastore RPCs, over the budget of %d: %s",
+          requestPath, counts.rpcs(), rpcBudgetPerRequest, counts);
+    }
+  }
+}
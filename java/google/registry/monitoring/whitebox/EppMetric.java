@@ -25,6 +25,7 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import google.registry.bigquery.BigqueryUtils.FieldType;
 import google.registry.model.eppoutput.Result.Code;
+import google.registry.model.ofy.DatastoreRpcCounts;
 import google.registry.model.registry.Registries;
 import google.registry.util.Clock;
 import java.util.Optional;
@@ -50,7 +51,29 @@ public abstract class EppMetric implements BigQueryMetric {
           new TableFieldSchema().setName("privilegeLevel").setType(FieldType.STRING.name()),
           new TableFieldSchema().setName("eppTarget").setType(FieldType.STRING.name()),
           new TableFieldSchema().setName("eppStatus").setType(FieldType.INTEGER.name()),
-          new TableFieldSchema().setName("attempts").setType(FieldType.INTEGER.name()));
+          new TableFieldSchema().setName("attempts").setType(FieldType.INTEGER.name()),
+          new TableFieldSchema().setName("datastoreGets").setType(FieldType.INTEGER.name()),
+          new TableFieldSchema()
+              .setName("datastoreEntitiesRead")
+              .setType(FieldType.INTEGER.name()),
+          new TableFieldSchema().setName("datastoreQueries").setType(FieldType.INTEGER.name()),
+          new TableFieldSchema().setName("datastorePuts").setType(FieldType.INTEGER.name()),
+          new TableFieldSchema()
+              .setName("datastoreEntitiesWritten")
+              .setType(FieldType.INTEGER.name()),
+          new TableFieldSchema().setName("datastoreDeletes").setType(FieldType.INTEGER.name()),
+          new TableFieldSchema()
+              .setName("datastoreEntitiesDeleted")
+              .setType(FieldType.INTEGER.name()),
+          new TableFieldSchema()
+              .setName("datastoreTransactions")
+              .setType(FieldType.INTEGER.name()),
+          new TableFieldSchema()
+              .setName("datastoreIdAllocations")
+              .setType(FieldType.INTEGER.name()),
+          new TableFieldSchema()
+              .setName("datastoreWaitMillis")
+              .setType(FieldType.INTEGER.name()));
 
   public abstract String getRequestId();
 
@@ -72,6 +95,14 @@ public abstract class EppMetric implements BigQueryMetric {
 
   public abstract Integer getAttempts();
 
+  /**
+   * Returns the Datastore RPCs the command sent, summed over all attempts.
+   *
+   * <p>Each count is exported as a column of its own. Derived figures, such as the number of read
+   * round trips, are left to queries.
+   */
+  public abstract DatastoreRpcCounts getDatastoreRpcCounts();
+
   @Override
   public String getTableId() {
     return TABLE_ID;
@@ -91,6 +122,17 @@ public abstract class EppMetric implements BigQueryMetric {
             .put("startTime", toBigqueryTimestamp(getStartTimestamp()))
             .put("endTime", toBigqueryTimestamp(getEndTimestamp()))
             .put("attempts", getAttempts().toString());
+    DatastoreRpcCounts counts = getDatastoreRpcCounts();
+    map.put("datastoreGets", Long.toString(counts.gets()))
+        .put("datastoreEntitiesRead", Long.toString(counts.entitiesRead()))
+        .put("datastoreQueries", Long.toString(counts.queries()))
+        .put("datastorePuts", Long.toString(counts.puts()))
+        .put("datastoreEntitiesWritten", Long.toString(counts.entitiesWritten()))
+        .put("datastoreDeletes", Long.toString(counts.deletes()))
+        .put("datastoreEntitiesDeleted", Long.toString(counts.entitiesDeleted()))
+        .put("datastoreTransactions", Long.toString(counts.transactions()))
+        .put("datastoreIdAllocations", Long.toString(counts.idAllocations()))
+        .put("datastoreWaitMillis", Long.toString(counts.waitMillis()));
     // Populate optional values, if present
     addOptional("commandName", getCommandName(), map);
     addOptional("clientId", getClientId(), map);
@@ -138,6 +180,9 @@ public abstract class EppMetric implements BigQueryMetric {
     /** Builder-only counter of the number of attempts, to support {@link #incrementAttempts()}. */
     private int attempts = 0;
 
+    /** Builder-only sum of Datastore RPC counts, to support {@link #addDatastoreRpcs}. */
+    private DatastoreRpcCounts datastoreRpcCounts = DatastoreRpcCounts.ZERO;
+
     /** Builder-only clock to support automatic recording of endTimestamp on {@link #build()}. */
     private Clock clock = null;
 
@@ -204,6 +249,14 @@ public abstract class EppMetric implements BigQueryMetric {
       return this;
     }
 
+    abstract Builder setDatastoreRpcCounts(DatastoreRpcCounts datastoreRpcCounts);
+
+    /** Adds the Datastore RPCs sent by an attempt of the command. */
+    public Builder addDatastoreRpcs(DatastoreRpcCounts counts) {
+      datastoreRpcCounts = datastoreRpcCounts.plus(counts);
+      return this;
+    }
+
     Builder setClock(Clock clock) {
       this.clock = clock;
       return this;
@@ -217,6 +270,7 @@ public abstract class EppMetric implements BigQueryMetric {
      */
     public EppMetric build() {
       setAttempts(attempts);
+      setDatastoreRpcCounts(datastoreRpcCounts);
       if (clock != null) {
         setEndTimestamp(clock.nowUtc());
       }
@@ -0,0 +1,192 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.monitoring.whitebox;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.monitoring.metrics.IncrementableMetric;
+import com.google.monitoring.metrics.LabelDescriptor;
+import com.google.monitoring.metrics.MetricRegistryImpl;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import org.joda.time.DateTime;
+import org.joda.time.Duration;
+
+/**
+ * An in-memory buffer of BigQuery metric rows, batched by table.
+ *
+ * <p>Rows for a table are released as a batch once there are {@code maxBatchSize} of them, or once
+ * the oldest of them has been waiting for {@code maxDelay}. The delay is checked whenever a row is
+ * added, and by callers that periodically {@link #drainReady drain} the buffer, so that rows don't
+ * wait for more traffic on a quiet instance. Whatever is left when the instance shuts down is
+ * {@link #drainAll drained} regardless.
+ *
+ * <p>The buffer never holds more than {@code maxBufferedRows} rows. Rows that don't fit, whether
+ * new or put back after a failed export, are dropped and counted.
+ */
+class MetricRowBuffer {
+
+  private static final ImmutableSet<LabelDescriptor> LABEL_DESCRIPTORS =
+      ImmutableSet.of(LabelDescriptor.create("table", "The BigQuery table ID."));
+
+  @VisibleForTesting
+  static final IncrementableMetric droppedRows =
+      MetricRegistryImpl.getDefault()
+          .newIncrementableMetric(
+              "/bigquery/metrics/dropped_rows",
+              "Count of BigQuery metric rows dropped before being exported",
+              "count",
+              LABEL_DESCRIPTORS);
+
+  private final int maxBatchSize;
+  private final int maxBufferedRows;
+  private final Duration maxDelay;
+
+  /** The rows waiting for each table, in the order they were added. */
+  @GuardedBy("this")
+  private final Map<String, TableRows> tables = new LinkedHashMap<>();
+
+  @GuardedBy("this")
+  private int bufferedRows;
+
+  MetricRowBuffer(int maxBatchSize, int maxBufferedRows, Duration maxDelay) {
+    checkArgument(maxBatchSize > 0, "maxBatchSize must be positive");
+    checkArgument(maxBufferedRows >= maxBatchSize, "maxBufferedRows must be at least maxBatchSize");
+    this.maxBatchSize = maxBatchSize;
+    this.maxBufferedRows = maxBufferedRows;
+    this.maxDelay = maxDelay;
+  }
+
+  /** Adds a row for a table, and returns any batches that are now ready to be exported. */
+  synchronized ImmutableList<MetricBatch> add(String tableId, MetricRow row, DateTime now) {
+    if (bufferedRows >= maxBufferedRows) {
+      droppedRows.increment(tableId);
+    } else {
+      tables.computeIfAbsent(tableId, id -> new TableRows(now)).rows.add(row);
+      bufferedRows++;
+    }
+    return drainReady(now);
+  }
+
+  /** Removes and returns every batch that is ready to be exported. */
+  synchronized ImmutableList<MetricBatch> drainReady(DateTime now) {
+    return drain(now.minus(maxDelay));
+  }
+
+  /** Removes and returns every batch, whether or not it's ready. */
+  synchronized ImmutableList<MetricBatch> drainAll() {
+    return drain(null);
+  }
+
+  /** Counts the rows of a batch that couldn't be exported, and won't be retried, as dropped. */
+  void drop(MetricBatch batch) {
+    droppedRows.incrementBy(batch.rows().size(), batch.tableId());
+  }
+
+  /**
+   * Puts back the rows of a batch that couldn't be exported, so that they go out with a later one.
+   *
+   * <p>The rows count as having been waiting since {@code now}, so that a failing export isn't
+   * retried on every call. As many rows as fit are kept; the rest are dropped.
+   */
+  synchronized void putBack(MetricBatch batch, DateTime now) {
+    TableRows tableRows = tables.computeIfAbsent(batch.tableId(), id -> new TableRows(now));
+    for (MetricRow row : batch.rows()) {
+      if (bufferedRows >= maxBufferedRows) {
+        droppedRows.increment(batch.tableId());
+      } else {
+        tableRows.rows.add(row);
+        bufferedRows++;
+      }
+    }
+    if (tableRows.rows.isEmpty()) {
+      tables.remove(batch.tableId());
+    }
+  }
+
+  /**
+   * Removes and returns every batch that is full or has been waiting since before a given time.
+   *
+   * @param oldestAllowed the time before which rows are overdue, or null to drain every batch
+   */
+  @GuardedBy("this")
+  private ImmutableList<MetricBatch> drain(@Nullable DateTime oldestAllowed) {
+    ImmutableList.Builder<MetricBatch> batches = new ImmutableList.Builder<>();
+    Iterator<Map.Entry<String, TableRows>> iterator = tables.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<String, TableRows> entry = iterator.next();
+      List<MetricRow> rows = entry.getValue().rows;
+      if (oldestAllowed != null
+          && rows.size() < maxBatchSize
+          && entry.getValue().firstAdded.isAfter(oldestAllowed)) {
+        continue;
+      }
+      for (int start = 0; start < rows.size(); start += maxBatchSize) {
+        batches.add(
+            MetricBatch.create(
+                entry.getKey(), rows.subList(start, Math.min(start + maxBatchSize, rows.size()))));
+      }
+      bufferedRows -= rows.size();
+      iterator.remove();
+    }
+    return batches.build();
+  }
+
+  /** The rows waiting for a single table. */
+  private static class TableRows {
+    final DateTime firstAdded;
+    final List<MetricRow> rows = new ArrayList<>();
+
+    TableRows(DateTime firstAdded) {
+      this.firstAdded = firstAdded;
+    }
+  }
+
+  /** A single row to insert into BigQuery, with the ID that deduplicates retried inserts. */
+  @AutoValue
+  abstract static class MetricRow {
+
+    abstract String insertId();
+
+    abstract ImmutableMap<String, String> values();
+
+    static MetricRow create(String insertId, ImmutableMap<String, String> values) {
+      return new AutoValue_MetricRowBuffer_MetricRow(insertId, values);
+    }
+  }
+
+  /** Rows to insert into a single BigQuery table with one request. */
+  @AutoValue
+  abstract static class MetricBatch {
+
+    abstract String tableId();
+
+    abstract ImmutableList<MetricRow> rows();
+
+    static MetricBatch create(String tableId, List<MetricRow> rows) {
+      return new AutoValue_MetricRowBuffer_MetricBatch(tableId, ImmutableList.copyOf(rows));
+    }
+  }
+}
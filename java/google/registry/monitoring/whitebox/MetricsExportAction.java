@@ -16,6 +16,8 @@ package google.registry.monitoring.whitebox;
 
 import static com.google.common.base.Predicates.in;
 import static com.google.common.base.Predicates.not;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.Iterables.getOnlyElement;
 import static com.google.common.collect.Multimaps.filterKeys;
 import static google.registry.request.Action.Method.POST;
 import static java.util.stream.Collectors.joining;
@@ -37,8 +39,17 @@ import google.registry.request.auth.Auth;
 import java.io.IOException;
 import java.util.Map;
 import javax.inject.Inject;
+import org.json.simple.JSONValue;
 
-/** Action for exporting metrics to BigQuery. */
+/**
+ * Action for exporting metrics to BigQuery.
+ *
+ * <p>Each task carries a batch of rows for a single table, as {@code row} parameters holding the
+ * JSON encoding of each row and its insert ID, and they're all inserted with a single request.
+ * Tasks holding a single row as plain parameters, as they used to be enqueued, are also accepted.
+ *
+ * @see BigQueryMetricsEnqueuer
+ */
 @Action(
   path = MetricsExportAction.PATH,
   method = POST,
@@ -52,7 +63,6 @@ public class MetricsExportAction implements Runnable {
   private static final ImmutableSet<String> SPECIAL_PARAMS = ImmutableSet.of("tableId", "insertId");
 
   @Inject @Parameter("tableId") String tableId;
-  @Inject @Parameter("insertId") String insertId;
   @Inject @Config("projectId") String projectId;
   @Inject BigqueryFactory bigqueryFactory;
   @Inject @ParameterMap ImmutableListMultimap<String, String> parameters;
@@ -63,21 +73,12 @@ public class MetricsExportAction implements Runnable {
   public void run() {
     try {
       Bigquery bigquery = bigqueryFactory.create(projectId, DATASET_ID, tableId);
-      // Filter out the special parameters that the Action is called with.  Everything that's left
-      // is returned in a Map that is suitable to pass to Bigquery as row data.
-      Map<String, Object> jsonRows =
-          ImmutableMap.copyOf(
-              filterKeys(parameters, not(in(SPECIAL_PARAMS))).entries());
       TableDataInsertAllResponse response = bigquery.tabledata()
           .insertAll(
               projectId,
               DATASET_ID,
               tableId,
-              new TableDataInsertAllRequest()
-                  .setRows(
-                      ImmutableList.of(new TableDataInsertAllRequest.Rows()
-                          .setInsertId(insertId)
-                          .setJson(jsonRows))))
+              new TableDataInsertAllRequest().setRows(getRows()))
           .execute();
 
       if (response.getInsertErrors() != null && !response.getInsertErrors().isEmpty()) {
@@ -99,4 +100,32 @@ public class MetricsExportAction implements Runnable {
       logger.atWarning().withCause(e).log("Unknown error while exporting metrics to BigQuery.");
     }
   }
+
+  /** Returns the rows to insert, from either a batched or a single-row task. */
+  private ImmutableList<TableDataInsertAllRequest.Rows> getRows() {
+    if (parameters.containsKey("row")) {
+      return parameters
+          .get("row")
+          .stream()
+          .map(
+              encodedRow -> {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> row = (Map<String, Object>) JSONValue.parse(encodedRow);
+                @SuppressWarnings("unchecked")
+                Map<String, Object> json = (Map<String, Object>) row.get("json");
+                return new TableDataInsertAllRequest.Rows()
+                    .setInsertId((String) row.get("insertId"))
+                    .setJson(json);
+              })
+          .collect(toImmutableList());
+    }
+    // Filter out the special parameters that the Action is called with.  Everything that's left
+    // is returned in a Map that is suitable to pass to Bigquery as row data.
+    Map<String, Object> jsonRows =
+        ImmutableMap.copyOf(filterKeys(parameters, not(in(SPECIAL_PARAMS))).entries());
+    return ImmutableList.of(
+        new TableDataInsertAllRequest.Rows()
+            .setInsertId(getOnlyElement(parameters.get("insertId")))
+            .setJson(jsonRows));
+  }
 }
@@ -52,12 +52,6 @@ public class WhiteboxModule {
     return extractRequiredParameter(req, "tableId");
   }
 
-  @Provides
-  @Parameter("insertId")
-  static String provideInsertId(HttpServletRequest req) {
-    return extractRequiredParameter(req, "insertId");
-  }
-
   @Provides
   @Named("insertIdGenerator")
   static Supplier<String> provideInsertIdGenerator() {
@@ -37,24 +37,57 @@ public final class PricingEngineProxy {
 
   /** Returns the billing cost for registering the specified domain name for this many years. */
   public static Money getDomainCreateCost(String domainName, DateTime priceTime, int years) {
+    return getDomainCreateCost(getRegistry(domainName), domainName, priceTime, years);
+  }
+
+  /**
+   * Returns the billing cost for registering the specified domain name for this many years, using
+   * the given registry of its TLD.
+   */
+  public static Money getDomainCreateCost(
+      Registry registry, String domainName, DateTime priceTime, int years) {
     checkArgument(years > 0, "Number of years must be positive");
-    return getPricesForDomainName(domainName, priceTime).getCreateCost().multipliedBy(years);
+    return getPricesForDomainName(registry, domainName, priceTime)
+        .getCreateCost()
+        .multipliedBy(years);
   }
 
   /** Returns the billing cost for renewing the specified domain name for this many years. */
   public static Money getDomainRenewCost(String domainName, DateTime priceTime, int years) {
+    return getDomainRenewCost(getRegistry(domainName), domainName, priceTime, years);
+  }
+
+  /**
+   * Returns the billing cost for renewing the specified domain name for this many years, using the
+   * given registry of its TLD.
+   */
+  public static Money getDomainRenewCost(
+      Registry registry, String domainName, DateTime priceTime, int years) {
     checkArgument(years > 0, "Number of years must be positive");
-    return getPricesForDomainName(domainName, priceTime).getRenewCost().multipliedBy(years);
+    return getPricesForDomainName(registry, domainName, priceTime)
+        .getRenewCost()
+        .multipliedBy(years);
   }
 
   /** Returns true if the specified domain name is premium. */
   public static boolean isDomainPremium(String domainName, DateTime priceTime) {
-    return getPricesForDomainName(domainName, priceTime).isPremium();
+    return isDomainPremium(getRegistry(domainName), domainName, priceTime);
+  }
+
+  /** Returns true if the specified domain name is premium, using the given registry of its TLD. */
+  public static boolean isDomainPremium(Registry registry, String domainName, DateTime priceTime) {
+    return getPricesForDomainName(registry, domainName, priceTime).isPremium();
   }
 
   /** Returns the fee class of the specified domain name. */
   public static Optional<String> getDomainFeeClass(String domainName, DateTime priceTime) {
-    return getPricesForDomainName(domainName, priceTime).getFeeClass();
+    return getDomainFeeClass(getRegistry(domainName), domainName, priceTime);
+  }
+
+  /** Returns the fee class of the specified domain name, using the given registry of its TLD. */
+  public static Optional<String> getDomainFeeClass(
+      Registry registry, String domainName, DateTime priceTime) {
+    return getPricesForDomainName(registry, domainName, priceTime).getFeeClass();
   }
 
   /**
@@ -63,12 +96,31 @@ public final class PricingEngineProxy {
    * domain is under.
    */
   public static DomainPrices getPricesForDomainName(String domainName, DateTime priceTime) {
-    String tld = getTldFromDomainName(domainName);
-    String clazz = Registry.get(tld).getPremiumPricingEngineClassName();
+    return getPricesForDomainName(getRegistry(domainName), domainName, priceTime);
+  }
+
+  /**
+   * Returns the full {@link DomainPrices} details for the given domain name by dispatching to the
+   * {@link PremiumPricingEngine} that is configured in the given registry of its TLD.
+   *
+   * <p>Callers that already have the registry, e.g. from a flow's {@code RegistrySnapshot}, should
+   * use this rather than have the TLD looked up again for every price.
+   */
+  public static DomainPrices getPricesForDomainName(
+      Registry registry, String domainName, DateTime priceTime) {
+    String clazz = registry.getPremiumPricingEngineClassName();
     PremiumPricingEngine engine = premiumPricingEngines.get(clazz);
-    checkState(engine != null, "Could not load pricing engine %s for TLD %s", clazz, tld);
+    checkState(
+        engine != null,
+        "Could not load pricing engine %s for TLD %s",
+        clazz,
+        registry.getTldStr());
     return engine.getDomainPrices(domainName, priceTime);
   }
 
+  private static Registry getRegistry(String domainName) {
+    return Registry.get(getTldFromDomainName(domainName));
+  }
+
   private PricingEngineProxy() {}
 }
@@ -0,0 +1,321 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.proxy;
+
+import static com.google.common.base.Preconditions.checkState;
+import static google.registry.proxy.Protocol.PROTOCOL_KEY;
+import static google.registry.proxy.handler.RelayHandler.RELAY_CHANNEL_KEY;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.flogger.FluentLogger;
+import google.registry.proxy.Protocol.BackendProtocol;
+import google.registry.proxy.metric.BackendMetrics;
+import google.registry.util.Clock;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.EventLoop;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.concurrent.ScheduledFuture;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+/**
+ * A pool of connections from the proxy to the backend, shared by all client connections.
+ *
+ * <p>Without a pool, every client connection opens its own backend connection, paying for a TCP
+ * and TLS handshake with the backend, and closes it along with itself. This is particularly
+ * wasteful for WHOIS, where clients connect once per query. The pool instead keeps a backend
+ * connection open after its client connection closes, and hands it to a subsequent client
+ * connection. This relies on HTTP/1.1 keep-alive: the backend cannot tell that successive
+ * requests on a connection are relayed for different clients, since all session state (i. e.
+ * cookies) is kept on the client connection.
+ *
+ * <p>There is one pool per event loop and backend protocol, and a backend connection is only ever
+ * leased to client connections on the event loop that it is registered with. Both channels of a
+ * relay are therefore still handled by the same thread, and a pool needs no synchronization.
+ *
+ * <p>A backend connection is only returned to its pool if it has no outstanding requests, so that
+ * a response can never be relayed to a client other than the one that sent the request. The
+ * number of idle connections kept by each pool is bounded by {@code
+ * httpsRelay.maxIdleConnectionsPerEventLoop}. A connection released to a full pool is closed.
+ *
+ * <p>An idle connection is closed after {@code httpsRelay.idleConnectionTimeoutSeconds}, which
+ * should be well below the time after which the backend closes idle connections itself. A pooled
+ * connection can still be closed by the backend before the client connection that it is handed to
+ * sends its request. The request is then relayed to a newly acquired connection instead (see
+ * {@link google.registry.proxy.handler.RelayHandler#RELAY_CHANNEL_REPLACER_KEY}). A request is
+ * never sent again once it has been written to a connection, since the backend may have processed
+ * it: if a connection closes with a request in flight, its client connection is closed.
+ */
+@Singleton
+public class BackendChannelPool {
+
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  /** Key used to retrieve the task that closes an idle channel once it times out. */
+  private static final AttributeKey<ScheduledFuture<?>> IDLE_TIMEOUT_KEY =
+      AttributeKey.valueOf("IDLE_TIMEOUT");
+
+  private final ProxyTransport transport;
+  private final int maxIdleConnections;
+  private final long idleTimeoutMillis;
+  private final BackendMetrics metrics;
+  private final Clock clock;
+
+  /** Idle channels, most recently released last, for each event loop and backend protocol. */
+  private final ConcurrentMap<EventLoop, Map<BackendProtocol, Deque<Channel>>> idleChannels =
+      new ConcurrentHashMap<>();
+
+  @Inject
+  BackendChannelPool(
+      ProxyTransport transport, ProxyConfig config, BackendMetrics metrics, Clock clock) {
+    this(
+        transport,
+        config.httpsRelay.maxIdleConnectionsPerEventLoop,
+        SECONDS.toMillis(config.httpsRelay.idleConnectionTimeoutSeconds),
+        metrics,
+        clock);
+  }
+
+  @VisibleForTesting
+  BackendChannelPool(
+      ProxyTransport transport,
+      int maxIdleConnections,
+      long idleTimeoutMillis,
+      BackendMetrics metrics,
+      Clock clock) {
+    this.transport = transport;
+    this.maxIdleConnections = maxIdleConnections;
+    this.idleTimeoutMillis = idleTimeoutMillis;
+    this.metrics = metrics;
+    this.clock = clock;
+  }
+
+  /**
+   * Acquires a backend channel for the given protocol on the given event loop.
+   *
+   * <p>The most recently released idle channel is reused if there is one. Otherwise a new channel
+   * is connected, and the returned future completes once its TLS handshake (if any) is done.
+   *
+   * <p>This method must be called from the event loop.
+   */
+  Future<Channel> acquire(EventLoop eventLoop, BackendProtocol protocol) {
+    checkState(eventLoop.inEventLoop(), "Backend channels must be acquired on their event loop.");
+    long startTime = clock.nowUtc().getMillis();
+    Deque<Channel> idle = getIdleChannels(eventLoop, protocol);
+    Channel idleChannel;
+    while ((idleChannel = idle.pollLast()) != null) {
+      metrics.updateIdleConnections(protocol.name(), -1);
+      ScheduledFuture<?> idleTimeout = idleChannel.attr(IDLE_TIMEOUT_KEY).getAndSet(null);
+      if (idleTimeout != null) {
+        idleTimeout.cancel(false);
+      }
+      if (idleChannel.isActive()) {
+        metrics.connectionAcquired(protocol.name(), true, clock.nowUtc().getMillis() - startTime);
+        return eventLoop.newSucceededFuture(idleChannel);
+      }
+    }
+    Promise<Channel> promise = eventLoop.newPromise();
+    ChannelFuture connectFuture = bootstrap(eventLoop, protocol).connect();
+    connectFuture.addListener(
+        (ChannelFuture future) -> {
+          if (!future.isSuccess()) {
+            promise.setFailure(future.cause());
+            return;
+          }
+          Channel channel = future.channel();
+          metrics.registerOpenConnection(protocol.name(), channel);
+          channel
+              .closeFuture()
+              .addListener(
+                  unusedFuture -> {
+                    if (idle.remove(channel)) {
+                      metrics.updateIdleConnections(protocol.name(), -1);
+                    }
+                    // The client channel that this channel relays for, if any, is not closed along
+                    // with it (see RelayHandler#RELAY_CHANNEL_REPLACER_KEY), unless it is waiting
+                    // for a response that will now never come.
+                    Channel relayChannel = channel.attr(RELAY_CHANNEL_KEY).get();
+                    InFlightRequestCounter counter =
+                        channel.pipeline().get(InFlightRequestCounter.class);
+                    if (relayChannel != null
+                        && (counter == null || !counter.hasNoRequestsInFlight())) {
+                      ChannelFuture unusedCloseFuture = relayChannel.close();
+                    }
+                  });
+          SslHandler sslHandler = channel.pipeline().get(SslHandler.class);
+          Future<Channel> readyFuture =
+              sslHandler == null
+                  ? eventLoop.newSucceededFuture(channel)
+                  : sslHandler.handshakeFuture();
+          readyFuture.addListener(
+              (Future<Channel> ready) -> {
+                if (ready.isSuccess()) {
+                  metrics.connectionAcquired(
+                      protocol.name(), false, clock.nowUtc().getMillis() - startTime);
+                  promise.setSuccess(channel);
+                } else {
+                  promise.setFailure(ready.cause());
+                }
+              });
+        });
+    return promise;
+  }
+
+  /**
+   * Acquires a backend channel in place of one that the given client channel relayed to, and that
+   * was found closed when a request was about to be relayed to it.
+   *
+   * <p>This method must be called from the event loop of the client channel.
+   */
+  Future<Channel> replace(Channel clientChannel, Channel closedChannel) {
+    logger.atInfo().log(
+        "Backend channel %s of client channel %s was closed, replacing it.",
+        closedChannel, clientChannel);
+    return acquire(
+        clientChannel.eventLoop(), (BackendProtocol) closedChannel.attr(PROTOCOL_KEY).get());
+  }
+
+  /**
+   * Releases a backend channel after the client channel that it relayed for has closed.
+   *
+   * <p>The channel is kept for reuse if it is still open, has no outstanding requests and the pool
+   * is not full. Otherwise it is closed. An idle channel is closed once it has been idle for the
+   * idle timeout.
+   */
+  void release(Channel channel) {
+    channel.attr(RELAY_CHANNEL_KEY).set(null);
+    BackendProtocol protocol = (BackendProtocol) channel.attr(PROTOCOL_KEY).get();
+    Deque<Channel> idle = getIdleChannels(channel.eventLoop(), protocol);
+    InFlightRequestCounter counter = channel.pipeline().get(InFlightRequestCounter.class);
+    if (channel.isActive()
+        && counter != null
+        && counter.hasNoRequestsInFlight()
+        && idle.size() < maxIdleConnections) {
+      idle.addLast(channel);
+      metrics.updateIdleConnections(protocol.name(), 1);
+      if (idleTimeoutMillis > 0) {
+        channel
+            .attr(IDLE_TIMEOUT_KEY)
+            .set(
+                channel
+                    .eventLoop()
+                    .schedule(
+                        () -> {
+                          // The channel is removed from the pool once it is closed.
+                          ChannelFuture unusedFuture = channel.close();
+                        },
+                        idleTimeoutMillis,
+                        MILLISECONDS));
+      }
+    } else {
+      ChannelFuture unusedFuture = channel.close();
+    }
+  }
+
+  private Deque<Channel> getIdleChannels(EventLoop eventLoop, BackendProtocol protocol) {
+    return idleChannels
+        .computeIfAbsent(eventLoop, unused -> new HashMap<>())
+        .computeIfAbsent(protocol, unused -> new ArrayDeque<>());
+  }
+
+  private Bootstrap bootstrap(EventLoop eventLoop, BackendProtocol protocol) {
+    return new Bootstrap()
+        // Use the same thread as the client channels, therefore avoiding synchronization handling
+        // due to interactions between the two channels of a relay.
+        .group(eventLoop)
+        .channel(transport.channelClass())
+        .handler(
+            new ChannelInitializer<SocketChannel>() {
+              @Override
+              protected void initChannel(SocketChannel outboundChannel) throws Exception {
+                addHandlers(outboundChannel.pipeline(), protocol.handlerProviders());
+              }
+            })
+        .option(ChannelOption.SO_KEEPALIVE, true)
+        .attr(PROTOCOL_KEY, protocol)
+        .remoteAddress(protocol.host(), protocol.port());
+  }
+
+  /**
+   * Adds the protocol handlers to a backend pipeline, with an {@link InFlightRequestCounter} just
+   * before the last one, which is the handler that relays responses to the client channel.
+   */
+  private static void addHandlers(
+      ChannelPipeline channelPipeline,
+      ImmutableList<Provider<? extends ChannelHandler>> handlerProviders) {
+    for (Provider<? extends ChannelHandler> handlerProvider : handlerProviders) {
+      channelPipeline.addLast(handlerProvider.get());
+    }
+    if (channelPipeline.last() == null) {
+      channelPipeline.addLast(new InFlightRequestCounter());
+    } else {
+      channelPipeline.addBefore(
+          channelPipeline.lastContext().name(), null, new InFlightRequestCounter());
+    }
+  }
+
+  /** Handler that keeps count of the HTTP requests that have not been answered yet. */
+  @VisibleForTesting
+  static class InFlightRequestCounter extends ChannelDuplexHandler {
+
+    private int requestsInFlight = 0;
+
+    boolean hasNoRequestsInFlight() {
+      return requestsInFlight == 0;
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise)
+        throws Exception {
+      if (msg instanceof FullHttpRequest) {
+        requestsInFlight++;
+      }
+      super.write(ctx, msg, promise);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+      if (msg instanceof FullHttpResponse && requestsInFlight > 0) {
+        requestsInFlight--;
+      }
+      super.channelRead(ctx, msg);
+    }
+  }
+}
@@ -34,7 +34,7 @@ import google.registry.proxy.quota.QuotaManager;
 import google.registry.proxy.quota.TokenStore;
 import google.registry.util.Clock;
 import io.netty.channel.ChannelHandler;
-import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
 import io.netty.handler.codec.LengthFieldPrepender;
 import io.netty.handler.timeout.ReadTimeoutHandler;
@@ -76,7 +76,7 @@ public class EppProtocolModule {
   @Provides
   @EppProtocol
   static ImmutableList<Provider<? extends ChannelHandler>> provideHandlerProviders(
-      Provider<SslServerInitializer<NioSocketChannel>> sslServerInitializerProvider,
+      Provider<SslServerInitializer<SocketChannel>> sslServerInitializerProvider,
       Provider<ProxyProtocolHandler> proxyProtocolHandlerProvider,
       @EppProtocol Provider<ReadTimeoutHandler> readTimeoutHandlerProvider,
       Provider<LengthFieldBasedFrameDecoder> lengthFieldBasedFrameDecoderProvider,
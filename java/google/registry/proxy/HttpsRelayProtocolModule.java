@@ -22,12 +22,10 @@ import google.registry.proxy.handler.BackendMetricsHandler;
 import google.registry.proxy.handler.RelayHandler.FullHttpResponseRelayHandler;
 import google.registry.proxy.handler.SslClientInitializer;
 import io.netty.channel.ChannelHandler;
-import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.codec.http.HttpClientCodec;
 import io.netty.handler.codec.http.HttpObjectAggregator;
 import io.netty.handler.logging.LoggingHandler;
-import java.security.cert.X509Certificate;
-import javax.annotation.Nullable;
 import javax.inject.Provider;
 import javax.inject.Qualifier;
 
@@ -61,7 +59,7 @@ public class HttpsRelayProtocolModule {
   @Provides
   @HttpsRelayProtocol
   static ImmutableList<Provider<? extends ChannelHandler>> provideHandlerProviders(
-      Provider<SslClientInitializer<NioSocketChannel>> sslClientInitializerProvider,
+      Provider<SslClientInitializer<SocketChannel>> sslClientInitializerProvider,
       Provider<HttpClientCodec> httpClientCodecProvider,
       Provider<HttpObjectAggregator> httpObjectAggregatorProvider,
       Provider<BackendMetricsHandler> backendMetricsHandlerProvider,
@@ -85,12 +83,4 @@ public class HttpsRelayProtocolModule {
   static HttpObjectAggregator provideHttpObjectAggregator(ProxyConfig config) {
     return new HttpObjectAggregator(config.httpsRelay.maxMessageLengthBytes);
   }
-
-  @Nullable
-  @Provides
-  @HttpsRelayProtocol
-  public static X509Certificate[] provideTrustedCertificates() {
-    // null uses the system default trust store.
-    return null;
-  }
 }
@@ -36,6 +36,7 @@ public class ProxyConfig {
   private static final String CUSTOM_CONFIG_FORMATTER = "config/proxy-config-%s.yaml";
 
   public String projectId;
+  public ProxyTransport.Type transport;
   public List<String> gcpScopes;
   public int accessTokenValidPeriodSeconds;
   public int accessTokenRefreshBeforeExpirySeconds;
@@ -45,6 +46,7 @@ public class ProxyConfig {
   public Whois whois;
   public HealthCheck healthCheck;
   public HttpsRelay httpsRelay;
+  public Tls tls;
   public Metrics metrics;
 
   /** Configuration options that apply to GCS. */
@@ -93,6 +95,15 @@ public class ProxyConfig {
   public static class HttpsRelay {
     public int port;
     public int maxMessageLengthBytes;
+    public int maxIdleConnectionsPerEventLoop;
+    public int idleConnectionTimeoutSeconds;
+  }
+
+  /** Configuration options that apply to TLS, both towards clients and towards the backend. */
+  public static class Tls {
+    public int sessionCacheSize;
+    public int sessionTimeoutSeconds;
+    public int sessionTicketKeyRotationSeconds;
   }
 
   /** Configuration options that apply to Stackdriver monitoring metrics. */
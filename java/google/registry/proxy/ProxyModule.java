@@ -36,6 +36,7 @@ import dagger.Module;
 import dagger.Provides;
 import google.registry.proxy.EppProtocolModule.EppProtocol;
 import google.registry.proxy.HealthCheckProtocolModule.HealthCheckProtocol;
+import google.registry.proxy.HttpsRelayProtocolModule.HttpsRelayProtocol;
 import google.registry.proxy.Protocol.FrontendProtocol;
 import google.registry.proxy.ProxyConfig.Environment;
 import google.registry.proxy.WhoisProtocolModule.WhoisProtocol;
@@ -48,6 +49,7 @@ import io.netty.handler.ssl.OpenSsl;
 import io.netty.handler.ssl.SslProvider;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.security.cert.X509Certificate;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.Optional;
@@ -59,6 +61,7 @@ import java.util.function.Supplier;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.Handler;
 import java.util.logging.Level;
+import javax.annotation.Nullable;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
@@ -285,6 +288,17 @@ public class ProxyModule {
     }
   }
 
+  /**
+   * Provides the certificates that the backend must present, {@code null} meaning those trusted by
+   * the system default trust store.
+   */
+  @Nullable
+  @Provides
+  @HttpsRelayProtocol
+  static X509Certificate[] provideTrustedCertificates() {
+    return null;
+  }
+
   @Provides
   static SslProvider provideSslProvider() {
     // Prefer OpenSSL.
@@ -307,6 +321,12 @@ public class ProxyModule {
     return Executors.newSingleThreadScheduledExecutor();
   }
 
+  @Singleton
+  @Provides
+  static ProxyTransport provideProxyTransport(ProxyConfig config) {
+    return ProxyTransport.create(config.transport);
+  }
+
   @Singleton
   @Provides
   ProxyConfig provideProxyConfig(Environment env) {
@@ -330,6 +350,10 @@ public class ProxyModule {
 
     ImmutableMap<Integer, FrontendProtocol> portToProtocolMap();
 
+    ProxyTransport proxyTransport();
+
+    BackendChannelPool backendChannelPool();
+
     MetricReporter metricReporter();
   }
 }
@@ -16,6 +16,8 @@ package google.registry.proxy;
 
 import static google.registry.proxy.Protocol.PROTOCOL_KEY;
 import static google.registry.proxy.handler.RelayHandler.RELAY_CHANNEL_KEY;
+import static google.registry.proxy.handler.RelayHandler.RELAY_CHANNEL_RELEASER_KEY;
+import static google.registry.proxy.handler.RelayHandler.RELAY_CHANNEL_REPLACER_KEY;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
@@ -24,7 +26,6 @@ import com.google.monitoring.metrics.MetricReporter;
 import google.registry.proxy.Protocol.BackendProtocol;
 import google.registry.proxy.Protocol.FrontendProtocol;
 import google.registry.proxy.ProxyModule.ProxyComponent;
-import io.netty.bootstrap.Bootstrap;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
@@ -33,9 +34,7 @@ import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.channel.socket.SocketChannel;
 import io.netty.util.concurrent.Future;
 import io.netty.util.internal.logging.InternalLoggerFactory;
 import io.netty.util.internal.logging.JdkLoggerFactory;
@@ -57,10 +56,25 @@ public class ProxyServer implements Runnable {
 
   private final ImmutableMap<Integer, FrontendProtocol> portToProtocolMap;
   private final HashMap<Integer, Channel> portToChannelMap = new HashMap<>();
-  private final EventLoopGroup eventGroup = new NioEventLoopGroup();
+  private final ProxyTransport transport;
+  private final EventLoopGroup eventGroup;
+  private final BackendChannelPool backendChannelPool;
 
   ProxyServer(ProxyComponent proxyComponent) {
-    this.portToProtocolMap = proxyComponent.portToProtocolMap();
+    this(
+        proxyComponent.portToProtocolMap(),
+        proxyComponent.proxyTransport(),
+        proxyComponent.backendChannelPool());
+  }
+
+  ProxyServer(
+      ImmutableMap<Integer, FrontendProtocol> portToProtocolMap,
+      ProxyTransport transport,
+      BackendChannelPool backendChannelPool) {
+    this.portToProtocolMap = portToProtocolMap;
+    this.transport = transport;
+    this.eventGroup = transport.newEventLoopGroup();
+    this.backendChannelPool = backendChannelPool;
   }
 
   /**
@@ -72,15 +86,25 @@ public class ProxyServer implements Runnable {
    *   <li>Determine the {@link FrontendProtocol} of the inbound {@link Channel} from its parent
    *       {@link Channel}, i. e. the {@link Channel} that binds to local port and listens.
    *   <li>Add handlers for the {@link FrontendProtocol} to the inbound {@link Channel}.
-   *   <li>Establish an outbound {@link Channel} that serves as the relay channel of the inbound
-   *       {@link Channel}, as specified by {@link FrontendProtocol#relayProtocol}.
-   *   <li>After the outbound {@link Channel} connects successfully, enable {@link
+   *   <li>Acquire an outbound {@link Channel} from the {@link BackendChannelPool} that serves as
+   *       the relay channel of the inbound {@link Channel}, as specified by {@link
+   *       FrontendProtocol#relayProtocol}. The outbound {@link Channel} is released back to the
+   *       pool when the inbound {@link Channel} closes, and replaced if the backend closes it
+   *       before a request is relayed to it.
+   *   <li>After the outbound {@link Channel} is acquired successfully, enable {@link
    *       ChannelOption#AUTO_READ} on the inbound {@link Channel} to start reading.
    * </ol>
    */
-  private static class ServerChannelInitializer extends ChannelInitializer<NioSocketChannel> {
+  private static class ServerChannelInitializer extends ChannelInitializer<SocketChannel> {
+
+    private final BackendChannelPool backendChannelPool;
+
+    ServerChannelInitializer(BackendChannelPool backendChannelPool) {
+      this.backendChannelPool = backendChannelPool;
+    }
+
     @Override
-    protected void initChannel(NioSocketChannel inboundChannel) throws Exception {
+    protected void initChannel(SocketChannel inboundChannel) throws Exception {
       // Add inbound channel handlers.
       FrontendProtocol inboundProtocol =
           (FrontendProtocol) inboundChannel.parent().attr(PROTOCOL_KEY).get();
@@ -92,35 +116,32 @@ public class ProxyServer implements Runnable {
         // request with a preset response.
         inboundChannel.config().setAutoRead(true);
       } else {
-        // Connect to the relay (outbound) channel specified by the BackendProtocol.
+        // Acquire the relay (outbound) channel specified by the BackendProtocol. It uses the same
+        // event loop as the inbound channel, therefore avoiding synchronization handling due to
+        // interactions between the two channels.
         BackendProtocol outboundProtocol = inboundProtocol.relayProtocol();
-        Bootstrap bootstrap =
-            new Bootstrap()
-                // Use the same thread to connect to the relay channel, therefore avoiding
-                // synchronization handling due to interactions between the two channels
-                .group(inboundChannel.eventLoop())
-                .channel(NioSocketChannel.class)
-                .handler(
-                    new ChannelInitializer<NioSocketChannel>() {
-                      @Override
-                      protected void initChannel(NioSocketChannel outboundChannel)
-                          throws Exception {
-                        addHandlers(
-                            outboundChannel.pipeline(), outboundProtocol.handlerProviders());
-                      }
-                    })
-                .option(ChannelOption.SO_KEEPALIVE, true)
-                // Outbound channel relays to inbound channel.
-                .attr(RELAY_CHANNEL_KEY, inboundChannel)
-                .attr(PROTOCOL_KEY, outboundProtocol);
-        ChannelFuture outboundChannelFuture =
-            bootstrap.connect(outboundProtocol.host(), outboundProtocol.port());
+        Future<Channel> outboundChannelFuture =
+            backendChannelPool.acquire(inboundChannel.eventLoop(), outboundProtocol);
         outboundChannelFuture.addListener(
-            (ChannelFuture future) -> {
+            (Future<Channel> future) -> {
               if (future.isSuccess()) {
-                Channel outboundChannel = future.channel();
-                // Inbound channel relays to outbound channel.
+                Channel outboundChannel = future.getNow();
+                if (!inboundChannel.isActive()) {
+                  // The client went away while the relay channel was being acquired.
+                  backendChannelPool.release(outboundChannel);
+                  return;
+                }
+                // Outbound channel relays to inbound channel.
+                outboundChannel.attr(RELAY_CHANNEL_KEY).set(inboundChannel);
+                // Inbound channel relays to outbound channel, and gives it back to the pool when
+                // it closes.
                 inboundChannel.attr(RELAY_CHANNEL_KEY).set(outboundChannel);
+                inboundChannel.attr(RELAY_CHANNEL_RELEASER_KEY).set(backendChannelPool::release);
+                // Inbound channel relays to a new outbound channel if the current one is closed
+                // by the backend before a request is relayed to it.
+                inboundChannel
+                    .attr(RELAY_CHANNEL_REPLACER_KEY)
+                    .set(closed -> backendChannelPool.replace(inboundChannel, closed));
                 // Outbound channel established successfully, inbound channel can start reading.
                 // This setter also calls channel.read() to request read operation.
                 inboundChannel.config().setAutoRead(true);
@@ -154,13 +175,15 @@ public class ProxyServer implements Runnable {
       ServerBootstrap serverBootstrap =
           new ServerBootstrap()
               .group(eventGroup)
-              .channel(NioServerSocketChannel.class)
-              .childHandler(new ServerChannelInitializer())
+              .channel(transport.serverChannelClass())
+              .childHandler(new ServerChannelInitializer(backendChannelPool))
               .option(ChannelOption.SO_BACKLOG, MAX_SOCKET_BACKLOG)
               .childOption(ChannelOption.SO_KEEPALIVE, true)
               // Do not read before relay channel is established.
               .childOption(ChannelOption.AUTO_READ, false);
 
+      logger.atInfo().log("Using %s transport.", transport.type());
+
       // Bind to each port specified in portToHandlersMap.
       portToProtocolMap.forEach(
           (port, protocol) -> {
@@ -0,0 +1,144 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.proxy;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.flogger.FluentLogger;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.ServerSocketChannel;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import java.util.function.Supplier;
+
+/**
+ * The Netty transport that the proxy runs on, i. e. the kind of event loops and socket channels.
+ *
+ * <p>Event loops and channels must come from the same transport, so the server channels, the
+ * client channels accepted by them and the backend channels connected by {@link
+ * BackendChannelPool} are all created through the single instance provided by {@link
+ * ProxyModule}.
+ *
+ * <p>The native epoll transport saves a copy and a system call or two per read and write compared
+ * to NIO. It lives in the {@code netty-transport-native-epoll} artifact (linux-x86_64 classifier),
+ * which is a runtime dependency of the proxy server and of the load-test harness only, so that the
+ * proxy library still builds and runs elsewhere. Its classes are therefore loaded reflectively,
+ * and NIO is used instead if they are not on the classpath, or if the native library cannot be
+ * loaded on this platform.
+ */
+public final class ProxyTransport {
+
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  private static final String EPOLL_PACKAGE = "io.netty.channel.epoll.";
+
+  /** The transports that can be requested in {@link ProxyConfig#transport}. */
+  public enum Type {
+    NIO,
+    EPOLL
+  }
+
+  private final Type type;
+  private final Supplier<EventLoopGroup> eventLoopGroupSupplier;
+  private final Class<? extends ServerSocketChannel> serverChannelClass;
+  private final Class<? extends SocketChannel> channelClass;
+
+  private ProxyTransport(
+      Type type,
+      Supplier<EventLoopGroup> eventLoopGroupSupplier,
+      Class<? extends ServerSocketChannel> serverChannelClass,
+      Class<? extends SocketChannel> channelClass) {
+    this.type = type;
+    this.eventLoopGroupSupplier = eventLoopGroupSupplier;
+    this.serverChannelClass = serverChannelClass;
+    this.channelClass = channelClass;
+  }
+
+  /** The NIO transport, which is always available. */
+  @VisibleForTesting
+  public static ProxyTransport nio() {
+    return new ProxyTransport(
+        Type.NIO, NioEventLoopGroup::new, NioServerSocketChannel.class, NioSocketChannel.class);
+  }
+
+  /**
+   * Returns the requested transport if it is available, or NIO otherwise.
+   *
+   * @param requested the requested transport, {@code null} meaning NIO
+   */
+  public static ProxyTransport create(Type requested) {
+    if (requested == Type.EPOLL) {
+      try {
+        return epoll();
+      } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+        logger.atWarning().withCause(e).log("Epoll transport unavailable, falling back to NIO.");
+      }
+    }
+    return nio();
+  }
+
+  private static ProxyTransport epoll() throws ReflectiveOperationException {
+    ClassLoader classLoader = ProxyTransport.class.getClassLoader();
+    Class<?> epollClass = Class.forName(EPOLL_PACKAGE + "Epoll", true, classLoader);
+    if (!(Boolean) epollClass.getMethod("isAvailable").invoke(null)) {
+      throw new IllegalStateException(
+          "Native epoll library cannot be loaded.",
+          (Throwable) epollClass.getMethod("unavailabilityCause").invoke(null));
+    }
+    Class<? extends EventLoopGroup> eventLoopGroupClass =
+        Class.forName(EPOLL_PACKAGE + "EpollEventLoopGroup", true, classLoader)
+            .asSubclass(EventLoopGroup.class);
+    Class<? extends ServerSocketChannel> serverChannelClass =
+        Class.forName(EPOLL_PACKAGE + "EpollServerSocketChannel", true, classLoader)
+            .asSubclass(ServerSocketChannel.class);
+    Class<? extends SocketChannel> channelClass =
+        Class.forName(EPOLL_PACKAGE + "EpollSocketChannel", true, classLoader)
+            .asSubclass(SocketChannel.class);
+    // Look the constructor up eagerly so that a missing one is reported at startup.
+    eventLoopGroupClass.getConstructor();
+    return new ProxyTransport(
+        Type.EPOLL,
+        () -> {
+          try {
+            return eventLoopGroupClass.getConstructor().newInstance();
+          } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create epoll event loop group.", e);
+          }
+        },
+        serverChannelClass,
+        channelClass);
+  }
+
+  /** The transport actually in use, which may differ from the one requested. */
+  public Type type() {
+    return type;
+  }
+
+  /** Creates an event loop group with the default number of threads (two per core). */
+  public EventLoopGroup newEventLoopGroup() {
+    return eventLoopGroupSupplier.get();
+  }
+
+  /** The server channel class that listens on the proxy ports. */
+  public Class<? extends ServerSocketChannel> serverChannelClass() {
+    return serverChannelClass;
+  }
+
+  /** The channel class that connects to the backend. */
+  public Class<? extends SocketChannel> channelClass() {
+    return channelClass;
+  }
+}
@@ -52,7 +52,6 @@ public class BackendMetricsHandler extends ChannelDuplexHandler {
 
   private String relayedProtocolName;
   private String clientCertHash;
-  private Channel relayedChannel;
 
   /**
    * A queue that saves the time at which a request is sent to the GAE app.
@@ -77,15 +76,6 @@ public class BackendMetricsHandler extends ChannelDuplexHandler {
     this.metrics = metrics;
   }
 
-  @Override
-  public void channelActive(ChannelHandlerContext ctx) throws Exception {
-    // Backend channel is always established after a frontend channel is connected, so this
-    relayedChannel = ctx.channel().attr(RELAY_CHANNEL_KEY).get();
-    checkNotNull(relayedChannel, "No frontend channel found.");
-    relayedProtocolName = relayedChannel.attr(PROTOCOL_KEY).get().name();
-    super.channelActive(ctx);
-  }
-
   @Override
   public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
     checkArgument(msg instanceof FullHttpResponse, "Incoming response must be FullHttpResponse.");
@@ -102,15 +92,19 @@ public class BackendMetricsHandler extends ChannelDuplexHandler {
   public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise)
       throws Exception {
     checkArgument(msg instanceof FullHttpRequest, "Outgoing request must be FullHttpRequest.");
+    // The frontend channel is looked up for every request, because a backend channel can be
+    // reused by different frontend channels one after another (see BackendChannelPool). It is
+    // never switched while a request is outstanding though, so the labels recorded here also
+    // apply to the response to the request.
+    Channel relayedChannel = ctx.channel().attr(RELAY_CHANNEL_KEY).get();
+    checkNotNull(relayedChannel, "No frontend channel found.");
+    relayedProtocolName = relayedChannel.attr(PROTOCOL_KEY).get().name();
     // For WHOIS, client certificate hash is always set to "none".
     // For EPP, the client hash attribute is set upon handshake completion, before the first HELLO
     // is sent to the server. Therefore the first call to write() with HELLO payload has access to
     // the hash in its channel attribute.
-    if (clientCertHash == null) {
-      clientCertHash =
-          Optional.ofNullable(relayedChannel.attr(CLIENT_CERTIFICATE_HASH_KEY).get())
-              .orElse("none");
-    }
+    clientCertHash =
+        Optional.ofNullable(relayedChannel.attr(CLIENT_CERTIFICATE_HASH_KEY).get()).orElse("none");
     FullHttpRequest request = (FullHttpRequest) msg;
 
     // Record request size now because the content would have read by the time the listener is
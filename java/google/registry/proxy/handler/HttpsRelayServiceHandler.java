@@ -83,18 +83,27 @@ abstract class HttpsRelayServiceHandler extends ByteToMessageCodec<FullHttpRespo
    * <p>This default method creates a bare-bone {@link FullHttpRequest} that may need to be
    * modified, e. g. adding headers specific for each protocol.
    *
+   * <p>The request content is a retained slice of the inbound message rather than a copy of it, so
+   * the payload bytes read from the client are written to the relay channel as they are. The slice
+   * is released when the request is written.
+   *
    * @param byteBuf inbound message.
    */
   protected FullHttpRequest decodeFullHttpRequest(ByteBuf byteBuf) {
+    String accessToken = accessTokenSupplier.get();
+    int contentLength = byteBuf.readableBytes();
     FullHttpRequest request =
-        new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, relayPath);
+        new DefaultFullHttpRequest(
+            HttpVersion.HTTP_1_1,
+            HttpMethod.POST,
+            relayPath,
+            byteBuf.readRetainedSlice(contentLength));
     request
         .headers()
         .set(HttpHeaderNames.USER_AGENT, "Proxy")
         .set(HttpHeaderNames.HOST, relayHost)
-        .set(HttpHeaderNames.AUTHORIZATION, "Bearer " + accessTokenSupplier.get())
-        .set(HttpHeaderNames.CONTENT_LENGTH, byteBuf.readableBytes());
-    request.content().writeBytes(byteBuf);
+        .set(HttpHeaderNames.AUTHORIZATION, "Bearer " + accessToken)
+        .set(HttpHeaderNames.CONTENT_LENGTH, contentLength);
     return request;
   }
 
@@ -25,6 +25,10 @@ import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.FullHttpResponse;
 import io.netty.util.Attribute;
 import io.netty.util.AttributeKey;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import javax.inject.Inject;
 
 /**
@@ -39,6 +43,31 @@ public class RelayHandler<I> extends SimpleChannelInboundHandler<I> {
   public static final AttributeKey<Channel> RELAY_CHANNEL_KEY =
       AttributeKey.valueOf("RELAY_CHANNEL");
 
+  /**
+   * Key used to retrieve the function that gives the relay channel back to its owner, e. g. a
+   * connection pool, when this channel closes. If it is not set, the relay channel is closed along
+   * with this channel.
+   */
+  public static final AttributeKey<Consumer<Channel>> RELAY_CHANNEL_RELEASER_KEY =
+      AttributeKey.valueOf("RELAY_CHANNEL_RELEASER");
+
+  /**
+   * Key used to retrieve the function that provides a new relay channel when the current one is
+   * found closed as a message is about to be relayed to it, e. g. because the backend closed an
+   * idle pooled connection. The message is then relayed to the new channel instead of this channel
+   * being closed.
+   *
+   * <p>If it is set, closing the relay channel does not close this channel either. The owner of the
+   * relay channel is then responsible for closing this channel if the relay channel closes while
+   * this channel is waiting for a reply from it.
+   */
+  public static final AttributeKey<Function<Channel, Future<Channel>>>
+      RELAY_CHANNEL_REPLACER_KEY = AttributeKey.valueOf("RELAY_CHANNEL_REPLACER");
+
+  /** Key used to retrieve the new relay channel that is being acquired, if any. */
+  private static final AttributeKey<Future<Channel>> PENDING_RELAY_CHANNEL_KEY =
+      AttributeKey.valueOf("PENDING_RELAY_CHANNEL");
+
   public RelayHandler(Class<? extends I> clazz) {
     super(clazz, false);
   }
@@ -51,12 +80,22 @@ public class RelayHandler<I> extends SimpleChannelInboundHandler<I> {
     ChannelFuture unusedFuture = ctx.close();
   }
 
-  /** Close relay channel if this channel is closed. */
+  /**
+   * Release or close relay channel if this channel is closed.
+   *
+   * <p>The relay channel is left open if it can replace this channel, see {@link
+   * #RELAY_CHANNEL_REPLACER_KEY}.
+   */
   @Override
   public void channelInactive(ChannelHandlerContext ctx) throws Exception {
     Channel relayChannel = ctx.channel().attr(RELAY_CHANNEL_KEY).get();
     if (relayChannel != null) {
-      ChannelFuture unusedFuture = relayChannel.close();
+      Consumer<Channel> releaser = ctx.channel().attr(RELAY_CHANNEL_RELEASER_KEY).get();
+      if (releaser != null) {
+        releaser.accept(relayChannel);
+      } else if (relayChannel.attr(RELAY_CHANNEL_REPLACER_KEY).get() == null) {
+        ChannelFuture unusedFuture = relayChannel.close();
+      }
     }
     ctx.fireChannelInactive();
   }
@@ -64,8 +103,23 @@ public class RelayHandler<I> extends SimpleChannelInboundHandler<I> {
   /** Read message of type {@code I}, write it as-is into the relay channel. */
   @Override
   protected void channelRead0(ChannelHandlerContext ctx, I msg) throws Exception {
+    Future<Channel> pendingRelayChannel = ctx.channel().attr(PENDING_RELAY_CHANNEL_KEY).get();
+    if (pendingRelayChannel != null && !pendingRelayChannel.isDone()) {
+      // Keep the messages in order, they are relayed once the new relay channel is set.
+      pendingRelayChannel.addListener(
+          unusedFuture -> {
+            if (ctx.channel().isActive()) {
+              channelRead0(ctx, msg);
+            } else {
+              ReferenceCountUtil.release(msg);
+            }
+          });
+      return;
+    }
     Channel relayChannel = ctx.channel().attr(RELAY_CHANNEL_KEY).get();
     checkNotNull(relayChannel, "Relay channel not specified for channel: %s", ctx.channel());
+    Function<Channel, Future<Channel>> replacer =
+        ctx.channel().attr(RELAY_CHANNEL_REPLACER_KEY).get();
     if (relayChannel.isActive()) {
       // Relay channel is open, write to it.
       ChannelFuture channelFuture = relayChannel.writeAndFlush(msg);
@@ -76,12 +130,56 @@ public class RelayHandler<I> extends SimpleChannelInboundHandler<I> {
               ChannelFuture unusedFuture = ctx.close();
             }
           });
+    } else if (replacer != null) {
+      relayToNewChannel(ctx, msg, relayChannel, replacer);
     } else {
       // close this channel if the relay channel is closed.
       ChannelFuture unusedFuture = ctx.close();
     }
   }
 
+  /** Acquires a new relay channel in place of a closed one, and relays the message to it. */
+  private void relayToNewChannel(
+      ChannelHandlerContext ctx,
+      I msg,
+      Channel closedRelayChannel,
+      Function<Channel, Future<Channel>> replacer) {
+    logger.atInfo().log(
+        "Relay channel %s of channel %s is closed, relaying to a new one.",
+        closedRelayChannel, ctx.channel());
+    Channel channel = ctx.channel();
+    channel.config().setAutoRead(false);
+    Future<Channel> relayChannelFuture = replacer.apply(closedRelayChannel);
+    channel.attr(PENDING_RELAY_CHANNEL_KEY).set(relayChannelFuture);
+    relayChannelFuture.addListener(
+        (Future<Channel> future) -> {
+          if (!future.isSuccess()) {
+            logger.atSevere().withCause(future.cause()).log(
+                "Cannot replace relay channel of channel %s", channel);
+            ReferenceCountUtil.release(msg);
+            ChannelFuture unusedFuture = ctx.close();
+            return;
+          }
+          Channel relayChannel = future.getNow();
+          if (!channel.isActive()) {
+            // This channel closed while the new relay channel was being acquired, and has only
+            // released or closed the old one.
+            Consumer<Channel> releaser = channel.attr(RELAY_CHANNEL_RELEASER_KEY).get();
+            if (releaser != null) {
+              releaser.accept(relayChannel);
+            } else {
+              ChannelFuture unusedFuture = relayChannel.close();
+            }
+            ReferenceCountUtil.release(msg);
+            return;
+          }
+          channel.attr(RELAY_CHANNEL_KEY).set(relayChannel);
+          relayChannel.attr(RELAY_CHANNEL_KEY).set(channel);
+          channel.config().setAutoRead(true);
+          channelRead0(ctx, msg);
+        });
+  }
+
   /** Specialized {@link RelayHandler} that takes a {@link FullHttpRequest} as inbound payload. */
   public static class FullHttpRequestRelayHandler extends RelayHandler<FullHttpRequest> {
     @Inject
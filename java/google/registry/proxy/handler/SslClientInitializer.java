@@ -20,18 +20,23 @@ import static google.registry.proxy.Protocol.PROTOCOL_KEY;
 import com.google.common.flogger.FluentLogger;
 import google.registry.proxy.HttpsRelayProtocolModule.HttpsRelayProtocol;
 import google.registry.proxy.Protocol.BackendProtocol;
+import google.registry.proxy.ProxyConfig;
+import google.registry.proxy.metric.BackendMetrics;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandler.Sharable;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
 import io.netty.handler.ssl.SslHandler;
 import io.netty.handler.ssl.SslProvider;
+import io.netty.util.concurrent.Future;
 import java.security.cert.X509Certificate;
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLException;
 import javax.net.ssl.SSLParameters;
 
 /**
@@ -40,33 +45,49 @@ import javax.net.ssl.SSLParameters;
  * <p>This <b>must</b> be the first handler provided for any handler provider list, if it is
  * provided. The type parameter {@code C} is needed so that unit tests can construct this handler
  * that works with {@link EmbeddedChannel};
+ *
+ * <p>All connections share one {@link SslContext}, built when this singleton is constructed, so
+ * that new connections to the same backend host and port can resume an earlier TLS session. Client
+ * side session resumption is only supported by the JDK provider.
  */
 @Singleton
 @Sharable
 public class SslClientInitializer<C extends Channel> extends ChannelInitializer<C> {
 
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
-  private final SslProvider sslProvider;
-  private final X509Certificate[] trustedCertificates;
+  private final SslContext sslContext;
+  private final SslSessionTracker sessionTracker;
+  private final BackendMetrics metrics;
 
   @Inject
   SslClientInitializer(
-      SslProvider sslProvider, @Nullable @HttpsRelayProtocol X509Certificate... trustCertificates) {
+      SslProvider sslProvider,
+      ProxyConfig config,
+      BackendMetrics metrics,
+      @Nullable @HttpsRelayProtocol X509Certificate... trustCertificates) {
     logger.atInfo().log("Client SSL Provider: %s", sslProvider);
-    this.sslProvider = sslProvider;
-    this.trustedCertificates = trustCertificates;
+    this.metrics = metrics;
+    try {
+      this.sslContext =
+          SslContextBuilder.forClient()
+              .sslProvider(sslProvider)
+              .trustManager(trustCertificates)
+              .sessionCacheSize(config.tls.sessionCacheSize)
+              .sessionTimeout(config.tls.sessionTimeoutSeconds)
+              .build();
+    } catch (SSLException e) {
+      throw new RuntimeException("Cannot build the client SSL context.", e);
+    }
+    this.sessionTracker = new SslSessionTracker(sslContext.sessionContext());
   }
 
   @Override
   protected void initChannel(C channel) throws Exception {
     BackendProtocol protocol = (BackendProtocol) channel.attr(PROTOCOL_KEY).get();
     checkNotNull(protocol, "Protocol is not set for channel: %s", channel);
+    long startMillis = System.currentTimeMillis();
     SslHandler sslHandler =
-        SslContextBuilder.forClient()
-            .sslProvider(sslProvider)
-            .trustManager(trustedCertificates)
-            .build()
-            .newHandler(channel.alloc(), protocol.host(), protocol.port());
+        sslContext.newHandler(channel.alloc(), protocol.host(), protocol.port());
 
     // Enable hostname verification.
     SSLEngine sslEngine = sslHandler.engine();
@@ -74,6 +95,18 @@ public class SslClientInitializer<C extends Channel> extends ChannelInitializer<
     sslParameters.setEndpointIdentificationAlgorithm("HTTPS");
     sslEngine.setSSLParameters(sslParameters);
 
+    Future<Channel> unusedFuture =
+        sslHandler
+            .handshakeFuture()
+            .addListener(
+                future -> {
+                  if (future.isSuccess()) {
+                    metrics.handshakeCompleted(
+                        protocol.name(),
+                        sessionTracker.isResumed(sslEngine.getSession(), startMillis),
+                        System.currentTimeMillis() - startMillis);
+                  }
+                });
     channel.pipeline().addLast(sslHandler);
   }
 }
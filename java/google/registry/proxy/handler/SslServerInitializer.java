@@ -14,13 +14,22 @@
 
 package google.registry.proxy.handler;
 
+import static google.registry.proxy.Protocol.PROTOCOL_KEY;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
 import com.google.common.flogger.FluentLogger;
 import google.registry.proxy.CertificateModule.EppCertificates;
+import google.registry.proxy.Protocol;
+import google.registry.proxy.ProxyConfig;
+import google.registry.proxy.metric.FrontendMetrics;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandler.Sharable;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.embedded.EmbeddedChannel;
 import io.netty.handler.ssl.ClientAuth;
+import io.netty.handler.ssl.OpenSslServerSessionContext;
+import io.netty.handler.ssl.OpenSslSessionTicketKey;
+import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
 import io.netty.handler.ssl.SslHandler;
 import io.netty.handler.ssl.SslProvider;
@@ -29,9 +38,14 @@ import io.netty.util.AttributeKey;
 import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.Promise;
 import java.security.PrivateKey;
+import java.security.SecureRandom;
 import java.security.cert.X509Certificate;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLSession;
 
 /**
  * Adds a server side SSL handler to the channel pipeline.
@@ -46,6 +60,12 @@ import javax.inject.Singleton;
  * as the client uses the corresponding private key to establish SSL handshake. The client
  * certificate hash will be passed along to GAE as an HTTP header for verification (not handled by
  * this handler).
+ *
+ * <p>All connections share one {@link SslContext}, built when this singleton is constructed, so
+ * that the key material is only parsed once and clients that reconnect can resume their TLS
+ * session instead of going through a full handshake. Sessions are resumed from the context's
+ * session cache, or, with OpenSSL, from session tickets, whose key is replaced periodically. The
+ * client certificate is part of the session, so it is available on resumed sessions too.
  */
 @Singleton
 @Sharable
@@ -59,30 +79,76 @@ public class SslServerInitializer<C extends Channel> extends ChannelInitializer<
       AttributeKey.valueOf("CLIENT_CERTIFICATE_PROMISE_KEY");
 
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
-  private final SslProvider sslProvider;
-  private final PrivateKey privateKey;
-  private final X509Certificate[] certificates;
+  private static final int SESSION_TICKET_KEY_PART_BYTES = 16;
+
+  private final SslContext sslContext;
+  private final SslSessionTracker sessionTracker;
+  private final FrontendMetrics metrics;
+  private final SecureRandom random = new SecureRandom();
+  private OpenSslSessionTicketKey currentSessionTicketKey;
 
   @Inject
   SslServerInitializer(
       SslProvider sslProvider,
+      ProxyConfig config,
+      FrontendMetrics metrics,
+      ScheduledExecutorService sessionTicketKeyRotationExecutor,
       @EppCertificates PrivateKey privateKey,
       @EppCertificates X509Certificate... certificates) {
     logger.atInfo().log("Server SSL Provider: %s", sslProvider);
-    this.sslProvider = sslProvider;
-    this.privateKey = privateKey;
-    this.certificates = certificates;
+    this.metrics = metrics;
+    try {
+      this.sslContext =
+          SslContextBuilder.forServer(privateKey, certificates)
+              .sslProvider(sslProvider)
+              .trustManager(InsecureTrustManagerFactory.INSTANCE)
+              .clientAuth(ClientAuth.REQUIRE)
+              .sessionCacheSize(config.tls.sessionCacheSize)
+              .sessionTimeout(config.tls.sessionTimeoutSeconds)
+              .build();
+    } catch (SSLException e) {
+      throw new RuntimeException("Cannot build the server SSL context.", e);
+    }
+    this.sessionTracker = new SslSessionTracker(sslContext.sessionContext());
+    int rotationSeconds = config.tls.sessionTicketKeyRotationSeconds;
+    if (rotationSeconds > 0 && sslContext.sessionContext() instanceof OpenSslServerSessionContext) {
+      rotateSessionTicketKeys();
+      ScheduledFuture<?> unusedFuture =
+          sessionTicketKeyRotationExecutor.scheduleWithFixedDelay(
+              this::rotateSessionTicketKeys, rotationSeconds, rotationSeconds, SECONDS);
+    }
+  }
+
+  /**
+   * Replaces the key that new session tickets are encrypted with.
+   *
+   * <p>The previous key is kept for decrypting tickets that were issued with it, so clients that
+   * reconnect soon after a rotation can still resume their sessions.
+   */
+  private synchronized void rotateSessionTicketKeys() {
+    OpenSslSessionTicketKey previousSessionTicketKey = currentSessionTicketKey;
+    currentSessionTicketKey =
+        new OpenSslSessionTicketKey(randomBytes(), randomBytes(), randomBytes());
+    OpenSslServerSessionContext sessionContext =
+        (OpenSslServerSessionContext) sslContext.sessionContext();
+    if (previousSessionTicketKey == null) {
+      sessionContext.setTicketKeys(currentSessionTicketKey);
+    } else {
+      sessionContext.setTicketKeys(currentSessionTicketKey, previousSessionTicketKey);
+    }
+    logger.atInfo().log("Rotated TLS session ticket keys.");
+  }
+
+  private byte[] randomBytes() {
+    byte[] bytes = new byte[SESSION_TICKET_KEY_PART_BYTES];
+    random.nextBytes(bytes);
+    return bytes;
   }
 
   @Override
   protected void initChannel(C channel) throws Exception {
-    SslHandler sslHandler =
-        SslContextBuilder.forServer(privateKey, certificates)
-            .sslProvider(sslProvider)
-            .trustManager(InsecureTrustManagerFactory.INSTANCE)
-            .clientAuth(ClientAuth.REQUIRE)
-            .build()
-            .newHandler(channel.alloc());
+    long startMillis = System.currentTimeMillis();
+    SslHandler sslHandler = sslContext.newHandler(channel.alloc());
     Promise<X509Certificate> clientCertificatePromise = channel.eventLoop().newPromise();
     Future<Channel> unusedFuture =
         sslHandler
@@ -90,10 +156,15 @@ public class SslServerInitializer<C extends Channel> extends ChannelInitializer<
             .addListener(
                 future -> {
                   if (future.isSuccess()) {
+                    SSLSession session = sslHandler.engine().getSession();
+                    Protocol protocol = channel.attr(PROTOCOL_KEY).get();
+                    metrics.registerHandshake(
+                        protocol == null ? "none" : protocol.name(),
+                        sessionTracker.isResumed(session, startMillis),
+                        System.currentTimeMillis() - startMillis);
                     Promise<X509Certificate> unusedPromise =
                         clientCertificatePromise.setSuccess(
-                            (X509Certificate)
-                                sslHandler.engine().getSession().getPeerCertificates()[0]);
+                            (X509Certificate) session.getPeerCertificates()[0]);
                   } else {
                     Promise<X509Certificate> unusedPromise =
                         clientCertificatePromise.setFailure(future.cause());
@@ -0,0 +1,67 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.proxy.handler;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.common.cache.CacheBuilder;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Set;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
+
+/**
+ * Tells whether the handshakes made with an SSL context resumed an earlier session.
+ *
+ * <p>Neither the JDK nor the OpenSSL engine says whether a handshake resumed a session, so this
+ * remembers the IDs of the sessions it has been shown, for as long as the context could resume
+ * them, and a session whose ID it has seen before was resumed. A session resumed from a session
+ * ticket carries whatever ID the client chose, which may not have been seen before, so a session
+ * is also taken to be resumed if it was created in an earlier second than the one the handshake
+ * started in. Whole seconds are compared because OpenSSL records creation times no more precisely
+ * than that, so a new session is never taken to be resumed, but a ticket resumed within a second
+ * of being issued is missed.
+ */
+final class SslSessionTracker {
+
+  /** Number of session IDs to remember if the context doesn't limit its session cache. */
+  private static final int DEFAULT_MAX_SESSIONS = 20480;
+
+  private final Set<ByteBuffer> sessionIds;
+
+  SslSessionTracker(SSLSessionContext sessionContext) {
+    int maxSessions = sessionContext.getSessionCacheSize();
+    CacheBuilder<Object, Object> cacheBuilder =
+        CacheBuilder.newBuilder()
+            .maximumSize(maxSessions > 0 ? maxSessions : DEFAULT_MAX_SESSIONS);
+    if (sessionContext.getSessionTimeout() > 0) {
+      cacheBuilder.expireAfterWrite(sessionContext.getSessionTimeout(), SECONDS);
+    }
+    this.sessionIds =
+        Collections.newSetFromMap(cacheBuilder.<ByteBuffer, Boolean>build().asMap());
+  }
+
+  /** Returns whether a session that a handshake started at the given time ended with is resumed. */
+  boolean isResumed(SSLSession session, long handshakeStartMillis) {
+    byte[] id = session.getId();
+    // An empty ID means that a session ticket was issued instead of caching the session by ID.
+    boolean seenBefore = id.length > 0 && !sessionIds.add(ByteBuffer.wrap(id));
+    return seenBefore
+        || MILLISECONDS.toSeconds(session.getCreationTime())
+            < MILLISECONDS.toSeconds(handshakeStartMillis);
+  }
+}
@@ -14,6 +14,8 @@
 
 package google.registry.proxy.metric;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.monitoring.metrics.CustomFitter;
 import com.google.monitoring.metrics.EventMetric;
@@ -21,9 +23,18 @@ import com.google.monitoring.metrics.ExponentialFitter;
 import com.google.monitoring.metrics.FibonacciFitter;
 import com.google.monitoring.metrics.IncrementableMetric;
 import com.google.monitoring.metrics.LabelDescriptor;
+import com.google.monitoring.metrics.Metric;
 import com.google.monitoring.metrics.MetricRegistryImpl;
 import google.registry.util.NonFinalForTesting;
+import io.netty.channel.Channel;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
 import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
@@ -93,6 +104,92 @@ public class BackendMetrics {
               LABELS,
               DEFAULT_LATENCY_FITTER);
 
+  private static final ImmutableSet<LabelDescriptor> CONNECTION_LABELS =
+      ImmutableSet.of(LabelDescriptor.create("protocol", "Name of the backend protocol."));
+
+  private static final ImmutableSet<LabelDescriptor> ACQUIRE_LABELS =
+      ImmutableSet.of(
+          LabelDescriptor.create("protocol", "Name of the backend protocol."),
+          LabelDescriptor.create(
+              "source", "Whether the connection was reused from the pool or newly opened."));
+
+  private static final ImmutableSet<LabelDescriptor> HANDSHAKE_LABELS =
+      ImmutableSet.of(
+          LabelDescriptor.create("protocol", "Name of the backend protocol."),
+          LabelDescriptor.create("session", "Whether the TLS session was resumed or new."));
+
+  private static final ConcurrentMap<ImmutableList<String>, ChannelGroup> openConnections =
+      new ConcurrentHashMap<>();
+
+  private static final ConcurrentMap<ImmutableList<String>, AtomicLong> idleConnections =
+      new ConcurrentHashMap<>();
+
+  static final Metric<Long> openConnectionsGauge =
+      MetricRegistryImpl.getDefault()
+          .newGauge(
+              "/proxy/backend/open_connections",
+              "Number of open connections from the proxy to the backend, leased or idle.",
+              "Open Connections",
+              CONNECTION_LABELS,
+              () ->
+                  openConnections
+                      .entrySet()
+                      .stream()
+                      .collect(
+                          ImmutableMap.toImmutableMap(
+                              Map.Entry::getKey, entry -> (long) entry.getValue().size())),
+              Long.class);
+
+  static final Metric<Long> idleConnectionsGauge =
+      MetricRegistryImpl.getDefault()
+          .newGauge(
+              "/proxy/backend/idle_connections",
+              "Number of open connections to the backend that are idle in the connection pool.",
+              "Idle Connections",
+              CONNECTION_LABELS,
+              () ->
+                  idleConnections
+                      .entrySet()
+                      .stream()
+                      .collect(
+                          ImmutableMap.toImmutableMap(
+                              Map.Entry::getKey, entry -> entry.getValue().get())),
+              Long.class);
+
+  static final IncrementableMetric connectionsAcquiredCounter =
+      MetricRegistryImpl.getDefault()
+          .newIncrementableMetric(
+              "/proxy/backend/connections_acquired",
+              "Total number of backend connections acquired for client connections.",
+              "Connections",
+              ACQUIRE_LABELS);
+
+  static final EventMetric acquireLatencyMs =
+      MetricRegistryImpl.getDefault()
+          .newEventMetric(
+              "/proxy/backend/acquire_latency_ms",
+              "Time between requesting a backend connection and it being ready for use.",
+              "Latency Milliseconds",
+              ACQUIRE_LABELS,
+              DEFAULT_LATENCY_FITTER);
+
+  static final IncrementableMetric handshakesCounter =
+      MetricRegistryImpl.getDefault()
+          .newIncrementableMetric(
+              "/proxy/backend/handshakes",
+              "Total number of successful TLS handshakes with the backend.",
+              "Handshakes",
+              HANDSHAKE_LABELS);
+
+  static final EventMetric handshakeLatencyMs =
+      MetricRegistryImpl.getDefault()
+          .newEventMetric(
+              "/proxy/backend/handshake_latency_ms",
+              "Time between a backend connection being opened and its TLS handshake completing.",
+              "Latency Milliseconds",
+              HANDSHAKE_LABELS,
+              DEFAULT_LATENCY_FITTER);
+
   @Inject
   BackendMetrics() {}
 
@@ -108,6 +205,12 @@ public class BackendMetrics {
     responseBytes.reset();
     responsesCounter.reset();
     latencyMs.reset();
+    connectionsAcquiredCounter.reset();
+    acquireLatencyMs.reset();
+    handshakesCounter.reset();
+    handshakeLatencyMs.reset();
+    openConnections.clear();
+    idleConnections.clear();
   }
 
   @NonFinalForTesting
@@ -123,4 +226,48 @@ public class BackendMetrics {
     responseBytes.record(response.content().readableBytes(), protocol, certHash);
     responsesCounter.increment(protocol, certHash, response.status().toString());
   }
+
+  /**
+   * Records that a backend connection was handed to a client connection.
+   *
+   * @param reused whether the connection was taken from the pool rather than newly opened
+   * @param latency milliseconds between the request for a connection and it being ready
+   */
+  @NonFinalForTesting
+  public void connectionAcquired(String protocol, boolean reused, long latency) {
+    String source = reused ? "pool" : "new";
+    connectionsAcquiredCounter.increment(protocol, source);
+    acquireLatencyMs.record(latency, protocol, source);
+  }
+
+  /**
+   * Records a successful TLS handshake with the backend.
+   *
+   * @param resumed whether a previous TLS session was resumed rather than a new one negotiated
+   * @param latency milliseconds between the connection being opened and the handshake completing
+   */
+  @NonFinalForTesting
+  public void handshakeCompleted(String protocol, boolean resumed, long latency) {
+    String session = resumed ? "resumed" : "new";
+    handshakesCounter.increment(protocol, session);
+    handshakeLatencyMs.record(latency, protocol, session);
+  }
+
+  /** Registers a newly opened backend connection, which is tracked until it is closed. */
+  @NonFinalForTesting
+  public void registerOpenConnection(String protocol, Channel channel) {
+    openConnections
+        .computeIfAbsent(
+            ImmutableList.of(protocol),
+            labels -> new DefaultChannelGroup(GlobalEventExecutor.INSTANCE))
+        .add(channel);
+  }
+
+  /** Adjusts the number of idle connections in the pool by {@code delta}. */
+  @NonFinalForTesting
+  public void updateIdleConnections(String protocol, int delta) {
+    idleConnections
+        .computeIfAbsent(ImmutableList.of(protocol), labels -> new AtomicLong())
+        .addAndGet(delta);
+  }
 }
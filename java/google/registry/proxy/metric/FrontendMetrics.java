@@ -18,6 +18,8 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.monitoring.metrics.EventMetric;
+import com.google.monitoring.metrics.ExponentialFitter;
 import com.google.monitoring.metrics.IncrementableMetric;
 import com.google.monitoring.metrics.LabelDescriptor;
 import com.google.monitoring.metrics.Metric;
@@ -54,6 +56,16 @@ public class FrontendMetrics {
           LabelDescriptor.create(
               "client_cert_hash", "SHA256 hash of the client certificate, if available."));
 
+  private static final ImmutableSet<LabelDescriptor> HANDSHAKE_LABELS =
+      ImmutableSet.of(
+          LabelDescriptor.create("protocol", "Name of the protocol."),
+          LabelDescriptor.create("session", "Whether the TLS session was resumed or new."));
+
+  // Maximum 1 hour latency, to match the backend latency metrics. A handshake that takes anywhere
+  // near that long has failed in all but name.
+  private static final ExponentialFitter DEFAULT_LATENCY_FITTER =
+      ExponentialFitter.create(22, 2, 1.0);
+
   private static final ConcurrentMap<ImmutableList<String>, ChannelGroup> activeConnections =
       new ConcurrentHashMap<>();
 
@@ -89,6 +101,23 @@ public class FrontendMetrics {
               "Quota Rejections",
               LABELS);
 
+  static final IncrementableMetric handshakesCounter =
+      MetricRegistryImpl.getDefault()
+          .newIncrementableMetric(
+              "/proxy/frontend/handshakes",
+              "Total number of successful TLS handshakes with clients.",
+              "Handshakes",
+              HANDSHAKE_LABELS);
+
+  static final EventMetric handshakeLatencyMs =
+      MetricRegistryImpl.getDefault()
+          .newEventMetric(
+              "/proxy/frontend/handshake_latency_ms",
+              "Time between a client connection being accepted and its TLS handshake completing.",
+              "Latency Milliseconds",
+              HANDSHAKE_LABELS,
+              DEFAULT_LATENCY_FITTER);
+
   @Inject
   public FrontendMetrics() {}
 
@@ -101,6 +130,8 @@ public class FrontendMetrics {
   @VisibleForTesting
   void resetMetrics() {
     totalConnectionsCounter.reset();
+    handshakesCounter.reset();
+    handshakeLatencyMs.reset();
     activeConnections.clear();
   }
 
@@ -122,4 +153,17 @@ public class FrontendMetrics {
   public void registerQuotaRejection(String protocol, String certHash) {
     quotaRejectionsCounter.increment(protocol, certHash);
   }
+
+  /**
+   * Records a successful TLS handshake with a client.
+   *
+   * @param resumed whether a previous TLS session was resumed rather than a new one negotiated
+   * @param latency milliseconds between the connection being accepted and the handshake completing
+   */
+  @NonFinalForTesting
+  public void registerHandshake(String protocol, boolean resumed, long latency) {
+    String session = resumed ? "resumed" : "new";
+    handshakesCounter.increment(protocol, session);
+    handshakeLatencyMs.record(latency, protocol, session);
+  }
 }
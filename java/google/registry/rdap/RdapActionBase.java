@@ -19,6 +19,7 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.net.HttpHeaders.ACCESS_CONTROL_ALLOW_ORIGIN;
 import static google.registry.model.ofy.ObjectifyService.ofy;
+import static google.registry.model.ofy.RpcCountingAsyncDatastoreService.getCountsForCurrentThread;
 import static google.registry.util.DateTimeUtils.END_OF_TIME;
 import static google.registry.util.DomainNameUtils.canonicalizeDomainName;
 import static javax.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
@@ -34,6 +35,7 @@ import com.googlecode.objectify.Key;
 import com.googlecode.objectify.cmd.Query;
 import google.registry.config.RegistryConfig.Config;
 import google.registry.model.EppResource;
+import google.registry.model.ofy.DatastoreRpcCounts;
 import google.registry.model.registrar.Registrar;
 import google.registry.rdap.RdapMetrics.EndpointType;
 import google.registry.rdap.RdapMetrics.WildcardType;
@@ -131,6 +133,7 @@ public abstract class RdapActionBase implements Runnable {
 
   @Override
   public void run() {
+    DatastoreRpcCounts rpcCountsBefore = getCountsForCurrentThread();
     metricInformationBuilder.setIncludeDeleted(includeDeletedParam.orElse(false));
     metricInformationBuilder.setRegistrarSpecified(registrarParam.isPresent());
     metricInformationBuilder.setRole(getAuthorization().role());
@@ -162,7 +165,10 @@ public abstract class RdapActionBase implements Runnable {
       setError(SC_INTERNAL_SERVER_ERROR, "Internal Server Error", "An error was encountered");
       logger.atSevere().withCause(e).log("Exception encountered while processing RDAP command");
     }
-    rdapMetrics.updateMetrics(metricInformationBuilder.build());
+    RdapMetrics.RdapMetricInformation metricInformation = metricInformationBuilder.build();
+    rdapMetrics.updateMetrics(metricInformation);
+    rdapMetrics.recordDatastoreRpcs(
+        metricInformation, getCountsForCurrentThread().minus(rpcCountsBefore));
   }
 
   void setError(int status, String title, String description) {
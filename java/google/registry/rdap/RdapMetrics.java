@@ -14,6 +14,8 @@
 
 package google.registry.rdap;
 
+import static com.google.monitoring.metrics.EventMetric.DEFAULT_FITTER;
+
 import com.google.auto.value.AutoValue;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableSet;
@@ -23,6 +25,7 @@ import com.google.monitoring.metrics.FibonacciFitter;
 import com.google.monitoring.metrics.IncrementableMetric;
 import com.google.monitoring.metrics.LabelDescriptor;
 import com.google.monitoring.metrics.MetricRegistryImpl;
+import google.registry.model.ofy.DatastoreRpcCounts;
 import google.registry.rdap.RdapSearchResults.IncompletenessWarningType;
 import google.registry.request.Action;
 import java.util.Optional;
@@ -94,6 +97,11 @@ public class RdapMetrics {
                   MAX_RECORDED_PREFIX_LENGTH)),
           LabelDescriptor.create("include_deleted", "Whether deleted records are included."));
 
+  private static final ImmutableSet<LabelDescriptor> LABEL_DESCRIPTORS_FOR_DATASTORE_RPCS =
+      ImmutableSet.of(
+          LabelDescriptor.create("endpoint_type", "The RDAP endpoint."),
+          LabelDescriptor.create("search_type", "The identifier type used to search."));
+
   // Fibonacci fitter more suitable for integer-type values. Allows values between 0 and 4181,
   // which is the 19th Fibonacci number.
   private static final DistributionFitter FIBONACCI_FITTER = FibonacciFitter.create(4181);
@@ -146,6 +154,26 @@ public class RdapMetrics {
               LABEL_DESCRIPTORS_FOR_RETRIEVAL_COUNTS,
               FIBONACCI_FITTER);
 
+  @VisibleForTesting
+  static final EventMetric datastoreRpcs =
+      MetricRegistryImpl.getDefault()
+          .newEventMetric(
+              "/rdap/datastore_rpcs",
+              "Number of Datastore RPCs made per RDAP request",
+              "count",
+              LABEL_DESCRIPTORS_FOR_DATASTORE_RPCS,
+              FIBONACCI_FITTER);
+
+  @VisibleForTesting
+  static final EventMetric datastoreWaitTime =
+      MetricRegistryImpl.getDefault()
+          .newEventMetric(
+              "/rdap/datastore_wait_time",
+              "Time spent waiting on Datastore per RDAP request",
+              "milliseconds",
+              LABEL_DESCRIPTORS_FOR_DATASTORE_RPCS,
+              DEFAULT_FITTER);
+
   @Inject
   public RdapMetrics() {}
 
@@ -206,6 +234,24 @@ public class RdapMetrics {
     }
   }
 
+  /**
+   * Records the Datastore RPCs made while handling an RDAP request.
+   *
+   * <p>This is kept apart from {@link #updateMetrics} since the counts depend on what happened to
+   * be cached, and so aren't something that callers can predict.
+   */
+  public void recordDatastoreRpcs(
+      RdapMetricInformation rdapMetricInformation, DatastoreRpcCounts rpcCounts) {
+    datastoreRpcs.record(
+        rpcCounts.rpcs(),
+        rdapMetricInformation.endpointType().toString(),
+        rdapMetricInformation.searchType().toString());
+    datastoreWaitTime.record(
+        rpcCounts.waitMillis(),
+        rdapMetricInformation.endpointType().toString(),
+        rdapMetricInformation.searchType().toString());
+  }
+
   @AutoValue
   abstract static class RdapMetricInformation {
 
@@ -17,15 +17,15 @@ package google.registry.rde;
 import static com.google.common.base.Strings.nullToEmpty;
 import static com.google.common.collect.ImmutableSet.toImmutableSet;
 import static google.registry.model.EppResourceUtils.loadAtPointInTime;
+import static google.registry.model.EppResourceUtils.loadAtPointsInTime;
 import static google.registry.model.ofy.ObjectifyService.ofy;
 
 import com.google.appengine.tools.mapreduce.Mapper;
 import com.google.auto.value.AutoValue;
-import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSetMultimap;
-import com.google.common.collect.Maps;
-import com.googlecode.objectify.Result;
+import com.google.common.collect.ImmutableTable;
+import com.googlecode.objectify.Key;
 import google.registry.model.EppResource;
 import google.registry.model.contact.ContactResource;
 import google.registry.model.domain.DomainResource;
@@ -33,7 +33,9 @@ import google.registry.model.host.HostResource;
 import google.registry.model.rde.RdeMode;
 import google.registry.model.registrar.Registrar;
 import google.registry.xml.ValidationMode;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import org.joda.time.DateTime;
@@ -43,9 +45,15 @@ public final class RdeStagingMapper extends Mapper<EppResource, PendingDeposit,
 
   private static final long serialVersionUID = -1518185703789372524L;
 
+  /** Number of resources to load at their watermarks in each batch. */
+  private static final int BATCH_SIZE = 100;
+
   private final RdeMarshaller marshaller;
   private final ImmutableSetMultimap<String, PendingDeposit> pendings;
 
+  /** Resources that {@link #map} has accepted but not yet emitted, in the current slice. */
+  private transient List<EppResource> pendingResources;
+
   RdeStagingMapper(
       ValidationMode validationMode, ImmutableSetMultimap<String, PendingDeposit> pendings) {
     this.marshaller = new RdeMarshaller(validationMode);
@@ -89,40 +97,74 @@ public final class RdeStagingMapper extends Mapper<EppResource, PendingDeposit,
       return;
     }
 
-    // The set of all TLDs to which this resource should be emitted.
-    ImmutableSet<String> tlds;
     if (resource instanceof DomainResource) {
-      String tld = ((DomainResource) resource).getTld();
-      if (!pendings.containsKey(tld)) {
+      if (!pendings.containsKey(((DomainResource) resource).getTld())) {
         getContext().incrementCounter("DomainResource of an unneeded TLD skipped");
         return;
       }
       getContext().incrementCounter("DomainResource instances");
-      tlds = ImmutableSet.of(tld);
     } else {
       getContext().incrementCounter("non-DomainResource instances");
-      // Contacts and hosts get emitted on all TLDs, even if domains don't reference them.
-      tlds = pendings.keySet();
     }
 
-    // Get the set of all point-in-time watermarks we need, to minimize rewinding.
-    ImmutableSet<DateTime> dates =
-        tlds.stream()
-            .map(pendings::get)
-            .flatMap(ImmutableSet::stream)
-            .map(PendingDeposit::watermark)
-            .collect(toImmutableSet());
+    // Rewind resources to their watermarks in batches, rather than one round trip at a time.
+    pendingResources.add(resource);
+    if (pendingResources.size() >= BATCH_SIZE) {
+      emitPendingResources();
+    }
+  }
+
+  @Override
+  public void beginSlice() {
+    pendingResources = new ArrayList<>();
+  }
+
+  @Override
+  public void endSlice() {
+    emitPendingResources();
+  }
+
+  /** Returns the set of all TLDs to which a resource should be emitted. */
+  private ImmutableSet<String> getTlds(EppResource resource) {
+    // Contacts and hosts get emitted on all TLDs, even if domains don't reference them.
+    return (resource instanceof DomainResource)
+        ? ImmutableSet.of(((DomainResource) resource).getTld())
+        : pendings.keySet();
+  }
+
+  /** Returns the set of all point-in-time watermarks needed for the TLDs, to minimize rewinding. */
+  private ImmutableSet<DateTime> getWatermarks(ImmutableSet<String> tlds) {
+    return tlds.stream()
+        .map(pendings::get)
+        .flatMap(ImmutableSet::stream)
+        .map(PendingDeposit::watermark)
+        .collect(toImmutableSet());
+  }
+
+  /** Loads all pending resources at their watermarks at once, and emits them. */
+  private void emitPendingResources() {
+    if (pendingResources.isEmpty()) {
+      return;
+    }
+    ImmutableTable<Key<EppResource>, DateTime, EppResource> resourcesAtTimes =
+        loadAtPointsInTime(pendingResources, resource -> getWatermarks(getTlds(resource)));
+    for (EppResource resource : pendingResources) {
+      emitResource(resource, resourcesAtTimes.row(Key.create(resource)));
+    }
+    getContext().incrementCounter("resource batches loaded");
+    pendingResources.clear();
 
-    // Launch asynchronous fetches of point-in-time representations of resource.
-    ImmutableMap<DateTime, Result<EppResource>> resourceAtTimes =
-        ImmutableMap.copyOf(Maps.asMap(dates, input -> loadAtPointInTime(resource, input)));
+    // Avoid running out of memory.
+    ofy().clearSessionCache();
+  }
 
+  private void emitResource(EppResource resource, Map<DateTime, EppResource> resourceAtTimes) {
     // Convert resource to an XML fragment for each watermark/mode pair lazily and cache the result.
     Fragmenter fragmenter = new Fragmenter(resourceAtTimes);
 
     // Emit resource as an XML fragment for all TLDs and modes pending deposit.
     long resourcesEmitted = 0;
-    for (String tld : tlds) {
+    for (String tld : getTlds(resource)) {
       for (PendingDeposit pending : pendings.get(tld)) {
         // Hosts and contacts don't get included in BRDA deposits.
         if (pending.mode() == RdeMode.THIN
@@ -142,21 +184,18 @@ public final class RdeStagingMapper extends Mapper<EppResource, PendingDeposit,
     getContext().incrementCounter("fragmenter cache hits", fragmenter.cacheHits);
     getContext().incrementCounter("fragmenter resources not found", fragmenter.resourcesNotFound);
     getContext().incrementCounter("fragmenter resources found", fragmenter.resourcesFound);
-
-    // Avoid running out of memory.
-    ofy().clearSessionCache();
   }
 
   /** Loading cache that turns a resource into XML for the various points in time and modes. */
   private class Fragmenter {
     private final Map<WatermarkModePair, Optional<DepositFragment>> cache = new HashMap<>();
-    private final ImmutableMap<DateTime, Result<EppResource>> resourceAtTimes;
+    private final Map<DateTime, EppResource> resourceAtTimes;
 
     long cacheHits = 0;
     long resourcesNotFound = 0;
     long resourcesFound = 0;
 
-    Fragmenter(ImmutableMap<DateTime, Result<EppResource>> resourceAtTimes) {
+    Fragmenter(Map<DateTime, EppResource> resourceAtTimes) {
       this.resourceAtTimes = resourceAtTimes;
     }
 
@@ -166,7 +205,7 @@ public final class RdeStagingMapper extends Mapper<EppResource, PendingDeposit,
         cacheHits++;
         return result;
       }
-      EppResource resource = resourceAtTimes.get(watermark).now();
+      EppResource resource = resourceAtTimes.get(watermark);
       if (resource == null) {
         result = Optional.empty();
         cache.put(WatermarkModePair.create(watermark, RdeMode.FULL), result);
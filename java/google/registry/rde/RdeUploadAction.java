@@ -18,13 +18,13 @@ import static com.google.appengine.api.taskqueue.TaskOptions.Builder.withUrl;
 import static com.google.common.base.Verify.verify;
 import static com.google.common.net.MediaType.PLAIN_TEXT_UTF_8;
 import static com.jcraft.jsch.ChannelSftp.OVERWRITE;
+import static com.jcraft.jsch.ChannelSftp.RESUME;
 import static google.registry.model.common.Cursor.CursorType.RDE_UPLOAD_SFTP;
 import static google.registry.model.common.Cursor.getCursorTimeOrStartOfTime;
 import static google.registry.model.ofy.ObjectifyService.ofy;
 import static google.registry.model.rde.RdeMode.FULL;
 import static google.registry.request.Action.Method.POST;
 import static google.registry.util.DateTimeUtils.isBeforeOrAt;
-import static java.util.Arrays.asList;
 
 import com.google.appengine.api.taskqueue.Queue;
 import com.google.appengine.tools.cloudstorage.GcsFilename;
@@ -45,6 +45,7 @@ import google.registry.model.rde.RdeRevision;
 import google.registry.model.registry.Registry;
 import google.registry.rde.EscrowTaskRunner.EscrowTask;
 import google.registry.rde.JSchSshSession.JSchSshSessionFactory;
+import google.registry.rde.RdeUploadMetrics.Phase;
 import google.registry.request.Action;
 import google.registry.request.HttpException.NoContentException;
 import google.registry.request.Parameter;
@@ -54,15 +55,16 @@ import google.registry.request.auth.Auth;
 import google.registry.util.Clock;
 import google.registry.util.Retrier;
 import google.registry.util.TaskQueueUtils;
-import google.registry.util.TeeOutputStream;
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.inject.Inject;
 import javax.inject.Named;
+import org.bouncycastle.openpgp.PGPException;
 import org.bouncycastle.openpgp.PGPKeyPair;
 import org.bouncycastle.openpgp.PGPPrivateKey;
 import org.bouncycastle.openpgp.PGPPublicKey;
@@ -90,6 +92,8 @@ public final class RdeUploadAction implements Runnable, EscrowTask {
 
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
 
+  private static final RdeUploadMetrics metrics = new RdeUploadMetrics();
+
   @Inject Clock clock;
   @Inject GcsUtils gcsUtils;
   @Inject EscrowTaskRunner runner;
@@ -163,10 +167,29 @@ public final class RdeUploadAction implements Runnable, EscrowTask {
     verifyFileExists(xmlFilename);
     verifyFileExists(xmlLengthFilename);
     verifyFileExists(reportFilename);
+    final GcsFilename rydeFilename = new GcsFilename(bucket, name + ".ryde");
+    final GcsFilename sigFilename = new GcsFilename(bucket, name + ".sig");
+    // A previous attempt may have already produced the RyDE file, in which case we just need to
+    // finish copying it. The signature is written last, so its presence means the RyDE file on
+    // GCS is complete and is exactly what any earlier attempt started sending over SFTP.
+    boolean alreadyEncoded = gcsUtils.existsAndNotEmpty(sigFilename);
+    if (alreadyEncoded) {
+      logger.atInfo().log("Reusing previously encoded RyDE file '%s'.", rydeFilename);
+    } else {
+      DateTime encodeStart = clock.nowUtc();
+      encode(xmlFilename, readXmlLength(xmlLengthFilename), watermark, name);
+      metrics.recordPhase(tld, Phase.ENCODE, new Duration(encodeStart, clock.nowUtc()));
+    }
     logger.atInfo().log("Commencing RDE upload for TLD '%s' to '%s'.", tld, uploadUrl);
-    final long xmlLength = readXmlLength(xmlLengthFilename);
-    retrier.callWithRetry(
-        () -> upload(xmlFilename, xmlLength, watermark, name), JSchException.class);
+    DateTime transferStart = clock.nowUtc();
+    // Only resume partial uploads that were made from the exact RyDE file we're sending now, i.e.
+    // ones left behind by a previous attempt or by an earlier try of this one.
+    final AtomicBoolean resume = new AtomicBoolean(alreadyEncoded);
+    long bytesUploaded =
+        retrier.callWithRetry(
+            () -> upload(rydeFilename, sigFilename, resume.getAndSet(true)), JSchException.class);
+    metrics.recordPhase(tld, Phase.TRANSFER, new Duration(transferStart, clock.nowUtc()));
+    metrics.recordUpload(tld, bytesUploaded, new Duration(watermark, clock.nowUtc()));
     logger.atInfo().log(
         "Updating RDE cursor '%s' for TLD '%s' following successful upload.", RDE_UPLOAD_SFTP, tld);
     ofy()
@@ -181,14 +204,18 @@ public final class RdeUploadAction implements Runnable, EscrowTask {
   }
 
   /**
-   * Performs a blocking upload of a cloud storage XML file to escrow provider, converting
-   * it to the RyDE format along the way by applying tar+compress+encrypt+sign, and saving the
-   * created RyDE file on GCS for future reference.
+   * Converts a cloud storage XML file to the RyDE format by applying tar+compress+encrypt+sign,
+   * and saves the created RyDE file and its detached signature on GCS.
    *
    * <p>This is done by layering a bunch of {@link java.io.FilterOutputStream FilterOutputStreams}
-   * on top of each other in reverse order that turn XML bytes into a RyDE file while
-   * simultaneously uploading it to the SFTP endpoint, and then using {@link ByteStreams#copy} to
-   * blocking-copy bytes from the cloud storage {@code InputStream} to the RyDE/SFTP pipeline.
+   * on top of each other in reverse order that turn XML bytes into a RyDE file, and then using
+   * {@link ByteStreams#copy} to blocking-copy bytes from the cloud storage {@code InputStream} to
+   * the RyDE pipeline.
+   *
+   * <p>This is deliberately done before the SFTP connection is opened, so that retrying a flaky
+   * upload never pays for the decryption and re-encryption a second time. It can't be folded into
+   * {@link RdeStagingReducer} because the tar header must contain the length of the XML, which
+   * isn't known until the reducer has written the last fragment.
    *
    * <p>In psuedoshell, the whole process looks like the following:
    *
@@ -196,42 +223,64 @@ public final class RdeUploadAction implements Runnable, EscrowTask {
    *   gcs read $xmlFile \                                   # Get GhostRyDE from cloud storage.
    *     | decrypt | decompress \                            # Convert it to XML.
    *     | tar | file | compress | encrypt | sign /tmp/sig \ # Convert it to a RyDE file.
-   *     | tee gs://bucket/$rydeFilename.ryde \              # Save a copy of the RyDE file to GCS.
-   *     | sftp put $dstUrl/$rydeFilename.ryde \             # Upload to SFTP server.
-   *    && sftp put $dstUrl/$rydeFilename.sig </tmp/sig \    # Upload detached signature.
-   *    && cat /tmp/sig > gs://bucket/$rydeFilename.sig      # Save a copy of signature to GCS.
+   *     > gs://bucket/$rydeFilename.ryde \                  # Save the RyDE file to GCS.
+   *    && cat /tmp/sig > gs://bucket/$rydeFilename.sig      # Save the signature to GCS.
    *   }</pre>
    */
+  private void encode(GcsFilename xmlFile, long xmlLength, DateTime watermark, String name)
+      throws IOException, PGPException {
+    logger.atInfo().log("Encoding XML file '%s' as RyDE.", xmlFile);
+    ByteArrayOutputStream sigOut = new ByteArrayOutputStream();
+    GcsFilename rydeGcsFilename = new GcsFilename(bucket, name + ".ryde");
+    try (InputStream gcsInput = gcsUtils.openInputStream(xmlFile);
+        InputStream ghostrydeDecoder = Ghostryde.decoder(gcsInput, stagingDecryptionKey);
+        OutputStream gcsOutput = gcsUtils.openOutputStream(rydeGcsFilename);
+        RydeEncoder rydeEncoder =
+            new RydeEncoder.Builder()
+                .setRydeOutput(gcsOutput, receiverKey)
+                .setSignatureOutput(sigOut, signingKey)
+                .setFileMetadata(name, xmlLength, watermark)
+                .build()) {
+      long bytesCopied = ByteStreams.copy(ghostrydeDecoder, rydeEncoder);
+      logger.atInfo().log("encoded %,d bytes: %s", bytesCopied, rydeGcsFilename);
+    }
+    GcsFilename sigGcsFilename = new GcsFilename(bucket, name + ".sig");
+    gcsUtils.createFromBytes(sigGcsFilename, sigOut.toByteArray());
+    logger.atInfo().log("encoded %,d bytes: %s", sigOut.size(), sigGcsFilename);
+  }
+
+  /**
+   * Performs a blocking upload of an already encoded RyDE file and its signature from cloud
+   * storage to the escrow provider, returning the number of bytes of the RyDE file that were sent.
+   *
+   * <p>If {@code resume} is set, a partial file left on the SFTP server is appended to instead of
+   * being sent again from the beginning. The bytes that were already there are skipped rather than
+   * sent, so they aren't counted.
+   */
   @VisibleForTesting
-  protected void upload(GcsFilename xmlFile, long xmlLength, DateTime watermark, String name)
+  protected long upload(GcsFilename rydeFile, GcsFilename sigFile, boolean resume)
       throws Exception {
-    logger.atInfo().log("Uploading XML file '%s' to remote path '%s'.", xmlFile, uploadUrl);
-    try (InputStream gcsInput = gcsUtils.openInputStream(xmlFile);
-        InputStream ghostrydeDecoder = Ghostryde.decoder(gcsInput, stagingDecryptionKey)) {
-      try (JSchSshSession session = jschSshSessionFactory.create(lazyJsch.get(), uploadUrl);
-          JSchSftpChannel ftpChan = session.openSftpChannel()) {
-        ByteArrayOutputStream sigOut = new ByteArrayOutputStream();
-        String rydeFilename = name + ".ryde";
-        GcsFilename rydeGcsFilename = new GcsFilename(bucket, rydeFilename);
-        try (OutputStream ftpOutput =
-                ftpChan.get().put(rydeFilename, sftpProgressMonitor, OVERWRITE);
-            OutputStream gcsOutput = gcsUtils.openOutputStream(rydeGcsFilename);
-            TeeOutputStream teeOutput = new TeeOutputStream(asList(ftpOutput, gcsOutput));
-            RydeEncoder rydeEncoder =
-                new RydeEncoder.Builder()
-                    .setRydeOutput(teeOutput, receiverKey)
-                    .setSignatureOutput(sigOut, signingKey)
-                    .setFileMetadata(name, xmlLength, watermark)
-                    .build()) {
-            long bytesCopied = ByteStreams.copy(ghostrydeDecoder, rydeEncoder);
-            logger.atInfo().log("uploaded %,d bytes: %s", bytesCopied, rydeFilename);
-          }
-        String sigFilename = name + ".sig";
-        byte[] signature = sigOut.toByteArray();
-        gcsUtils.createFromBytes(new GcsFilename(bucket, sigFilename), signature);
-        ftpChan.get().put(new ByteArrayInputStream(signature), sigFilename);
-        logger.atInfo().log("uploaded %,d bytes: %s", signature.length, sigFilename);
+    logger.atInfo().log("Uploading RyDE file '%s' to remote path '%s'.", rydeFile, uploadUrl);
+    try (JSchSshSession session = jschSshSessionFactory.create(lazyJsch.get(), uploadUrl);
+        JSchSftpChannel ftpChan = session.openSftpChannel()) {
+      long rydeLength;
+      try (ReadCountingInputStream rydeInput =
+          new ReadCountingInputStream(gcsUtils.openInputStream(rydeFile))) {
+        ftpChan
+            .get()
+            .put(
+                rydeInput,
+                rydeFile.getObjectName(),
+                sftpProgressMonitor,
+                resume ? RESUME : OVERWRITE);
+        rydeLength = rydeInput.getCount();
+      }
+      logger.atInfo().log("uploaded %,d bytes: %s", rydeLength, rydeFile.getObjectName());
+      try (InputStream sigInput = gcsUtils.openInputStream(sigFile)) {
+        ftpChan.get().put(sigInput, sigFile.getObjectName());
       }
+      logger.atInfo().log("uploaded signature: %s", sigFile.getObjectName());
+      return rydeLength;
     }
   }
 
@@ -245,4 +294,46 @@ public final class RdeUploadAction implements Runnable, EscrowTask {
   private void verifyFileExists(GcsFilename filename) {
     verify(gcsUtils.existsAndNotEmpty(filename), "Missing file: %s", filename);
   }
+
+  /**
+   * An input stream that counts the bytes read from it.
+   *
+   * <p>Unlike Guava's {@link com.google.common.io.CountingInputStream}, this doesn't count bytes
+   * that are skipped, which is how JSch resumes an upload.
+   */
+  private static final class ReadCountingInputStream extends FilterInputStream {
+
+    private long count;
+
+    ReadCountingInputStream(InputStream in) {
+      super(in);
+    }
+
+    long getCount() {
+      return count;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int result = in.read();
+      if (result != -1) {
+        count++;
+      }
+      return result;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int result = in.read(b, off, len);
+      if (result != -1) {
+        count += result;
+      }
+      return result;
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+  }
 }
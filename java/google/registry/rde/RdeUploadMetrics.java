@@ -0,0 +1,86 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.rde;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.monitoring.metrics.DistributionFitter;
+import com.google.monitoring.metrics.EventMetric;
+import com.google.monitoring.metrics.ExponentialFitter;
+import com.google.monitoring.metrics.IncrementableMetric;
+import com.google.monitoring.metrics.LabelDescriptor;
+import com.google.monitoring.metrics.MetricRegistryImpl;
+import org.joda.time.Duration;
+
+/** Metrics for the time it takes to get an RDE deposit to the escrow provider. */
+class RdeUploadMetrics {
+
+  /** The phases of {@link RdeUploadAction} that are timed separately. */
+  enum Phase {
+    /** Converting the staged GhostRyDE file to a RyDE file and signature on GCS. */
+    ENCODE,
+    /** Copying the RyDE file and signature from GCS to the SFTP server. */
+    TRANSFER
+  }
+
+  private static final ImmutableSet<LabelDescriptor> PHASE_LABEL_DESCRIPTORS =
+      ImmutableSet.of(
+          LabelDescriptor.create("tld", "TLD"),
+          LabelDescriptor.create("phase", "The phase of the upload that was timed."));
+
+  private static final ImmutableSet<LabelDescriptor> TLD_LABEL_DESCRIPTORS =
+      ImmutableSet.of(LabelDescriptor.create("tld", "TLD"));
+
+  // Allows values between 100 ms and just over 29 hours, which comfortably covers a deposit that
+  // is a full day late.
+  private static final DistributionFitter EXPONENTIAL_FITTER =
+      ExponentialFitter.create(20, 2.0, 100.0);
+
+  private static final EventMetric phaseDurationMetric =
+      MetricRegistryImpl.getDefault()
+          .newEventMetric(
+              "/rde/upload/phase_duration",
+              "Time spent in each phase of the RDE upload",
+              "milliseconds",
+              PHASE_LABEL_DESCRIPTORS,
+              EXPONENTIAL_FITTER);
+
+  private static final EventMetric escrowLatencyMetric =
+      MetricRegistryImpl.getDefault()
+          .newEventMetric(
+              "/rde/upload/escrow_latency",
+              "Time elapsed from the deposit watermark until the deposit was uploaded",
+              "milliseconds",
+              TLD_LABEL_DESCRIPTORS,
+              EXPONENTIAL_FITTER);
+
+  private static final IncrementableMetric bytesUploadedMetric =
+      MetricRegistryImpl.getDefault()
+          .newIncrementableMetric(
+              "/rde/upload/bytes_uploaded",
+              "Count of RyDE bytes sent to the escrow provider",
+              "bytes",
+              TLD_LABEL_DESCRIPTORS);
+
+  void recordPhase(String tld, Phase phase, Duration duration) {
+    phaseDurationMetric.record(duration.getMillis(), tld, phase.name());
+  }
+
+  void recordUpload(String tld, long bytesUploaded, Duration escrowLatency) {
+    if (bytesUploaded > 0) {
+      bytesUploadedMetric.incrementBy(bytesUploaded, tld);
+    }
+    escrowLatencyMetric.record(escrowLatency.getMillis(), tld);
+  }
+}
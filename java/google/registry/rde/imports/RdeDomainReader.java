@@ -22,12 +22,13 @@ import com.google.appengine.tools.mapreduce.InputReader;
 import com.google.common.flogger.FluentLogger;
 import google.registry.config.RegistryConfig.ConfigModule;
 import google.registry.gcs.GcsUtils;
+import google.registry.rde.imports.RdeIndex.Checkpoints;
 import google.registry.xjc.JaxbFragment;
 import google.registry.xjc.rdedomain.XjcRdeDomainElement;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.Serializable;
 import java.util.NoSuchElementException;
+import javax.annotation.Nullable;
 
 /** Mapreduce {@link InputReader} for reading domains from escrow files */
 public class RdeDomainReader extends InputReader<JaxbFragment<XjcRdeDomainElement>>
@@ -42,6 +43,7 @@ public class RdeDomainReader extends InputReader<JaxbFragment<XjcRdeDomainElemen
   final String importFileName;
   final int offset;
   final int maxResults;
+  @Nullable final Checkpoints checkpoints;
 
   private int count = 0;
 
@@ -53,12 +55,14 @@ public class RdeDomainReader extends InputReader<JaxbFragment<XjcRdeDomainElemen
   private RdeParser newParser() {
     GcsUtils utils = new GcsUtils(GCS_SERVICE, ConfigModule.provideGcsBufferSize());
     GcsFilename filename = new GcsFilename(importBucketName, importFileName);
-    InputStream xmlInput = utils.openInputStream(filename);
     try {
-      RdeParser parser = new RdeParser(xmlInput);
       // skip the file offset and count
       // if count is greater than 0, the reader has been rehydrated after doing some work.
       // skip any already processed records.
+      if (checkpoints != null) {
+        return checkpoints.openParser(utils, filename, offset + count);
+      }
+      RdeParser parser = new RdeParser(utils.openInputStream(filename));
       parser.skipDomains(offset + count);
       return parser;
     } catch (Exception e) {
@@ -72,10 +76,24 @@ public class RdeDomainReader extends InputReader<JaxbFragment<XjcRdeDomainElemen
       String importFileName,
       int offset,
       int maxResults) {
+    this(importBucketName, importFileName, offset, maxResults, null);
+  }
+
+  /**
+   * Creates a reader that uses {@code checkpoints} from an {@link RdeIndex} of the file to seek
+   * close to {@code offset}, rather than parsing every element before it.
+   */
+  public RdeDomainReader(
+      String importBucketName,
+      String importFileName,
+      int offset,
+      int maxResults,
+      @Nullable Checkpoints checkpoints) {
     this.importBucketName = importBucketName;
     this.importFileName = importFileName;
     this.offset = offset;
     this.maxResults = maxResults;
+    this.checkpoints = checkpoints;
   }
 
   @Override
@@ -26,12 +26,14 @@ import com.google.common.collect.ImmutableList;
 import google.registry.config.RegistryConfig.ConfigModule;
 import google.registry.gcs.GcsUtils;
 import google.registry.model.host.HostResource;
+import google.registry.rde.imports.RdeIndex.IndexedType;
 import google.registry.rde.imports.RdeParser.RdeHeader;
 import google.registry.xjc.JaxbFragment;
 import google.registry.xjc.rdehost.XjcRdeHostElement;
 import java.io.InputStream;
 import java.util.List;
 import java.util.Optional;
+import javax.annotation.Nullable;
 
 /**
  * A MapReduce {@link Input} that imports {@link HostResource} objects from an escrow file.
@@ -82,19 +84,44 @@ public class RdeHostInput extends Input<JaxbFragment<XjcRdeHostElement>> {
       // use at least one reader
       numReaders = Math.max(numReaders, 1);
     }
+    RdeIndex index = loadIndex(numReaders);
     ImmutableList.Builder<RdeHostReader> builder = new ImmutableList.Builder<>();
     int hostsPerReader =
         Math.max(MINIMUM_RECORDS_PER_READER, (int) Math.ceil((double) numberOfHosts / numReaders));
     int offset = 0;
     for (int i = 0; i < numReaders; i++) {
-      builder = builder.add(createReader(offset, hostsPerReader));
+      builder = builder.add(createReader(index, offset, hostsPerReader));
       offset += hostsPerReader;
     }
     return builder.build();
   }
 
-  private RdeHostReader createReader(int offset, int maxResults) {
-    return new RdeHostReader(importBucketName, importFileName, offset, maxResults);
+  private RdeHostReader createReader(@Nullable RdeIndex index, int offset, int maxResults) {
+    return new RdeHostReader(
+        importBucketName,
+        importFileName,
+        offset,
+        maxResults,
+        (index == null) ? null : index.getCheckpoints(IndexedType.HOST, offset, maxResults));
+  }
+
+  /**
+   * Loads the index of the escrow file, building it if necessary, so that readers past the first
+   * can seek to their offset. Returns null if there is only one reader, which starts at the top.
+   */
+  @Nullable
+  private RdeIndex loadIndex(int numReaders) {
+    if (numReaders == 1) {
+      return null;
+    }
+    GcsUtils utils = new GcsUtils(GCS_SERVICE, ConfigModule.provideGcsBufferSize());
+    GcsFilename filename = new GcsFilename(importBucketName, importFileName);
+    try {
+      return RdeIndex.loadOrBuild(utils, filename);
+    } catch (Exception e) {
+      throw new InitializationException(
+          String.format("Error indexing rde file %s/%s", importBucketName, importFileName), e);
+    }
   }
 
   private RdeParser createParser() {
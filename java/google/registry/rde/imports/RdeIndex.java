@@ -0,0 +1,491 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.rde.imports;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Strings.nullToEmpty;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.appengine.tools.cloudstorage.GcsFilename;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.flogger.FluentLogger;
+import com.google.common.primitives.Longs;
+import google.registry.gcs.GcsUtils;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+import javax.xml.bind.JAXBException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Byte-offset index of the contacts, domains and hosts in an escrow deposit file.
+ *
+ * <p>{@link RdeParser} can only read forward, so a reader that starts at the Nth domain of a file
+ * would otherwise have to parse and discard the N domains before it. This index records the byte
+ * offset of every {@link #getInterval interval}th element of each type, which lets a reader open
+ * the file at the nearest checkpoint and skip fewer than {@code interval} elements.
+ *
+ * <p>A stream opened at a checkpoint is prefixed with the prologue of the file, i.e.
+ * everything up to and including the {@code <rde:contents>} start tag, so that it is still a
+ * well-formed document with all of the namespace declarations in scope.
+ *
+ * <p>The index is built by scanning the raw bytes rather than by parsing the XML, since StAX
+ * doesn't report byte offsets. It therefore only resolves the namespace prefixes declared on the
+ * root element, which is how deposits are produced in practice. Building fails fast on any element
+ * whose prefix isn't declared there; a nested declaration that rebinds one of the root prefixes to
+ * a different namespace isn't detected and will produce a wrong index.
+ */
+public final class RdeIndex {
+
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  /** Number of elements between checkpoints if not otherwise specified. */
+  static final int DEFAULT_INTERVAL = 1000;
+
+  /** Suffix appended to the name of the deposit file to get the name of its index file. */
+  static final String INDEX_FILE_SUFFIX = ".index";
+
+  private static final String RDE_URI = "urn:ietf:params:xml:ns:rde-1.0";
+  private static final int FORMAT_VERSION = 1;
+
+  /** Types of elements that are indexed. */
+  public enum IndexedType {
+    CONTACT(RdeParser.RDE_CONTACT_URI, "contact"),
+    DOMAIN(RdeParser.RDE_DOMAIN_URI, "domain"),
+    HOST(RdeParser.RDE_HOST_URI, "host");
+
+    private final String uri;
+    private final String localName;
+
+    IndexedType(String uri, String localName) {
+      this.uri = uri;
+      this.localName = localName;
+    }
+
+    /** Advances the parser past {@code numberOfElements} elements of this type. */
+    private int skip(RdeParser parser, int numberOfElements) {
+      switch (this) {
+        case CONTACT:
+          return parser.skipContacts(numberOfElements);
+        case DOMAIN:
+          return parser.skipDomains(numberOfElements);
+        case HOST:
+          return parser.skipHosts(numberOfElements);
+      }
+      throw new AssertionError(this);
+    }
+  }
+
+  private final long depositLength;
+  private final int interval;
+  private final byte[] prologue;
+  private final ImmutableMap<IndexedType, long[]> offsets;
+
+  private RdeIndex(
+      long depositLength, int interval, byte[] prologue, Map<IndexedType, long[]> offsets) {
+    this.depositLength = depositLength;
+    this.interval = interval;
+    this.prologue = prologue;
+    this.offsets = ImmutableMap.copyOf(offsets);
+  }
+
+  /** Returns the number of elements between consecutive checkpoints. */
+  public int getInterval() {
+    return interval;
+  }
+
+  /** Returns the length in bytes of the deposit file this index was built from. */
+  public long getDepositLength() {
+    return depositLength;
+  }
+
+  /** Returns the byte offsets of elements {@code 0, interval, 2 * interval, ...} of a type. */
+  @VisibleForTesting
+  long[] getOffsets(IndexedType type) {
+    return offsets.get(type).clone();
+  }
+
+  /**
+   * Returns the checkpoints needed to read elements {@code [offset, offset + maxResults)} of a
+   * type, or null if the index doesn't cover that type.
+   *
+   * <p>This is what gets handed to an individual mapreduce reader, so it deliberately excludes the
+   * checkpoints of other shards.
+   */
+  @Nullable
+  public Checkpoints getCheckpoints(IndexedType type, int offset, int maxResults) {
+    long[] typeOffsets = offsets.get(type);
+    if (typeOffsets.length == 0) {
+      return null;
+    }
+    int first = Math.min(offset / interval, typeOffsets.length - 1);
+    int last = Math.min((offset + maxResults) / interval, typeOffsets.length - 1);
+    return new Checkpoints(
+        type, interval, prologue, first, Arrays.copyOfRange(typeOffsets, first, last + 1));
+  }
+
+  /**
+   * Builds an index by scanning an entire deposit file.
+   *
+   * @throws IllegalArgumentException if the file has no {@code <rde:contents>} element, or an
+   *     element uses a namespace prefix not declared on the root element
+   */
+  public static RdeIndex build(InputStream xmlInput, int interval)
+      throws IOException, XMLStreamException {
+    checkArgument(interval > 0, "Interval must be positive");
+    Scanner scanner = new Scanner(interval);
+    byte[] buffer = new byte[64 * 1024];
+    int read;
+    while ((read = xmlInput.read(buffer)) != -1) {
+      scanner.scan(buffer, read);
+    }
+    checkArgument(scanner.prologue != null, "No RDE contents found");
+    Map<IndexedType, long[]> offsets = new EnumMap<>(IndexedType.class);
+    for (IndexedType type : IndexedType.values()) {
+      offsets.put(type, Longs.toArray(scanner.offsets.get(type)));
+    }
+    return new RdeIndex(scanner.position, interval, scanner.prologue, offsets);
+  }
+
+  /**
+   * Loads the index stored alongside a deposit file on GCS, building and storing it first if it
+   * doesn't exist or was built from a different version of the file.
+   */
+  public static RdeIndex loadOrBuild(GcsUtils gcsUtils, GcsFilename depositFilename)
+      throws IOException, XMLStreamException {
+    GcsFilename indexFilename =
+        new GcsFilename(
+            depositFilename.getBucketName(), depositFilename.getObjectName() + INDEX_FILE_SUFFIX);
+    long depositLength = gcsUtils.getLength(depositFilename);
+    if (gcsUtils.existsAndNotEmpty(indexFilename)) {
+      try (InputStream indexInput = gcsUtils.openInputStream(indexFilename)) {
+        RdeIndex index = readFrom(indexInput);
+        if (index.depositLength == depositLength) {
+          return index;
+        }
+      }
+      logger.atInfo().log("Index %s is stale, rebuilding it", indexFilename);
+    }
+    RdeIndex index;
+    try (InputStream xmlInput = gcsUtils.openInputStream(depositFilename)) {
+      index = build(xmlInput, DEFAULT_INTERVAL);
+    }
+    try (OutputStream indexOutput = gcsUtils.openOutputStream(indexFilename)) {
+      index.writeTo(indexOutput);
+    }
+    logger.atInfo().log("Wrote index of %s to %s", depositFilename, indexFilename);
+    return index;
+  }
+
+  /** Serializes this index in a compact binary format. */
+  public void writeTo(OutputStream output) throws IOException {
+    DataOutputStream data = new DataOutputStream(output);
+    data.writeInt(FORMAT_VERSION);
+    data.writeLong(depositLength);
+    data.writeInt(interval);
+    data.writeInt(prologue.length);
+    data.write(prologue);
+    for (IndexedType type : IndexedType.values()) {
+      long[] typeOffsets = offsets.get(type);
+      data.writeInt(typeOffsets.length);
+      for (long offset : typeOffsets) {
+        data.writeLong(offset);
+      }
+    }
+    data.flush();
+  }
+
+  /** Deserializes an index written by {@link #writeTo}. */
+  public static RdeIndex readFrom(InputStream input) throws IOException {
+    DataInputStream data = new DataInputStream(input);
+    int version = data.readInt();
+    if (version != FORMAT_VERSION) {
+      throw new IOException(String.format("Unsupported RDE index version %d", version));
+    }
+    long depositLength = data.readLong();
+    int interval = data.readInt();
+    byte[] prologue = new byte[data.readInt()];
+    data.readFully(prologue);
+    Map<IndexedType, long[]> offsets = new EnumMap<>(IndexedType.class);
+    for (IndexedType type : IndexedType.values()) {
+      long[] typeOffsets = new long[data.readInt()];
+      for (int i = 0; i < typeOffsets.length; i++) {
+        typeOffsets[i] = data.readLong();
+      }
+      offsets.put(type, typeOffsets);
+    }
+    return new RdeIndex(depositLength, interval, prologue, offsets);
+  }
+
+  /** The subset of an {@link RdeIndex} used to position one reader within a deposit file. */
+  public static final class Checkpoints implements Serializable {
+
+    private static final long serialVersionUID = 4946240781436218571L;
+
+    private final IndexedType type;
+    private final int interval;
+    private final byte[] prologue;
+    private final int firstCheckpoint;
+    private final long[] offsets;
+
+    private Checkpoints(
+        IndexedType type, int interval, byte[] prologue, int firstCheckpoint, long[] offsets) {
+      this.type = type;
+      this.interval = interval;
+      this.prologue = prologue;
+      this.firstCheckpoint = firstCheckpoint;
+      this.offsets = offsets;
+    }
+
+    /**
+     * Opens a parser positioned just before element {@code elementNumber}, i.e. one which behaves
+     * like a parser over the whole file that has skipped that many elements of this type.
+     *
+     * <p>The returned parser has not read the RDE header, since it starts past it.
+     */
+    public RdeParser openParser(GcsUtils gcsUtils, GcsFilename filename, int elementNumber)
+        throws XMLStreamException, JAXBException {
+      int checkpoint =
+          Math.max(0, Math.min(elementNumber / interval - firstCheckpoint, offsets.length - 1));
+      int checkpointElement = (firstCheckpoint + checkpoint) * interval;
+      if (checkpointElement > elementNumber) {
+        // The reader has been asked for an element before the first checkpoint it was given.
+        RdeParser parser = new RdeParser(gcsUtils.openInputStream(filename));
+        type.skip(parser, elementNumber);
+        return parser;
+      }
+      InputStream xmlInput =
+          new SequenceInputStream(
+              new ByteArrayInputStream(prologue),
+              gcsUtils.openInputStream(filename, offsets[checkpoint]));
+      RdeParser parser = RdeParser.createWithoutHeader(xmlInput);
+      type.skip(parser, elementNumber - checkpointElement);
+      return parser;
+    }
+  }
+
+  /** Incremental byte-level scanner that finds the start tags of indexed elements. */
+  private static final class Scanner {
+
+    private enum State { TEXT, TAG_OPEN, TAG_NAME, IN_TAG, BANG, COMMENT, CDATA, PI, DECLARATION }
+
+    private final int interval;
+    private final ByteArrayOutputStream prologueBuffer = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream name = new ByteArrayOutputStream();
+    private final StringBuilder bang = new StringBuilder();
+    private final Map<IndexedType, List<Long>> offsets = new EnumMap<>(IndexedType.class);
+    private final Map<IndexedType, Integer> counts = new EnumMap<>(IndexedType.class);
+
+    private State state = State.TEXT;
+    private byte quote;
+    private int run;
+    private long position;
+    private long tagStart;
+    private boolean rootSeen;
+    private boolean inContentsTag;
+    @Nullable private String contentsName;
+    @Nullable private Map<String, IndexedType> indexedNames;
+    @Nullable private Set<String> rootPrefixes;
+    @Nullable private byte[] prologue;
+
+    Scanner(int interval) {
+      this.interval = interval;
+      for (IndexedType type : IndexedType.values()) {
+        offsets.put(type, new ArrayList<>());
+        counts.put(type, 0);
+      }
+    }
+
+    void scan(byte[] buffer, int length) throws XMLStreamException {
+      if (prologue == null) {
+        prologueBuffer.write(buffer, 0, length);
+      }
+      for (int i = 0; i < length; i++, position++) {
+        byte b = buffer[i];
+        switch (state) {
+          case TEXT:
+            if (b == '<') {
+              tagStart = position;
+              state = State.TAG_OPEN;
+            }
+            break;
+          case TAG_OPEN:
+            if (b == '/') {
+              state = State.IN_TAG;
+            } else if (b == '?') {
+              run = 0;
+              state = State.PI;
+            } else if (b == '!') {
+              bang.setLength(0);
+              state = State.BANG;
+            } else {
+              name.reset();
+              name.write(b);
+              state = State.TAG_NAME;
+            }
+            break;
+          case TAG_NAME:
+            if (b == '>' || b == '/' || Character.isWhitespace(b)) {
+              onStartTag(new String(name.toByteArray(), UTF_8));
+              if (b == '>') {
+                onTagEnd();
+                state = State.TEXT;
+              } else {
+                quote = 0;
+                state = State.IN_TAG;
+              }
+            } else {
+              name.write(b);
+            }
+            break;
+          case IN_TAG:
+            if (quote != 0) {
+              if (b == quote) {
+                quote = 0;
+              }
+            } else if (b == '"' || b == '\'') {
+              quote = b;
+            } else if (b == '>') {
+              onTagEnd();
+              state = State.TEXT;
+            }
+            break;
+          case BANG:
+            bang.append((char) b);
+            if (bang.toString().equals("--")) {
+              run = 0;
+              state = State.COMMENT;
+            } else if (bang.toString().equals("[CDATA[")) {
+              run = 0;
+              state = State.CDATA;
+            } else if (b == '>') {
+              state = State.TEXT;
+            } else if (!"--".startsWith(bang.toString())
+                && !"[CDATA[".startsWith(bang.toString())) {
+              state = State.DECLARATION;
+            }
+            break;
+          case COMMENT:
+            state = endsSection(b, (byte) '-', 2) ? State.TEXT : State.COMMENT;
+            break;
+          case CDATA:
+            state = endsSection(b, (byte) ']', 2) ? State.TEXT : State.CDATA;
+            break;
+          case PI:
+            state = endsSection(b, (byte) '?', 1) ? State.TEXT : State.PI;
+            break;
+          case DECLARATION:
+            if (b == '>') {
+              state = State.TEXT;
+            }
+            break;
+        }
+      }
+    }
+
+    /** Tracks runs of {@code terminator} bytes to detect sections ending in e.g. {@code -->}. */
+    private boolean endsSection(byte b, byte terminator, int minimumRun) {
+      if (b == '>' && run >= minimumRun) {
+        return true;
+      }
+      run = (b == terminator) ? run + 1 : 0;
+      return false;
+    }
+
+    private void onStartTag(String qualifiedName) {
+      if (!rootSeen) {
+        rootSeen = true;
+        return;
+      }
+      int colon = qualifiedName.indexOf(':');
+      String prefix = (colon == -1) ? "" : qualifiedName.substring(0, colon);
+      checkArgument(
+          rootPrefixes.contains(prefix),
+          "Namespace prefix '%s' of <%s> isn't declared on the root element",
+          prefix,
+          qualifiedName);
+      if (prologue == null) {
+        inContentsTag = qualifiedName.equals(contentsName);
+        return;
+      }
+      IndexedType type = indexedNames.get(qualifiedName);
+      if (type != null) {
+        int count = counts.get(type);
+        if (count % interval == 0) {
+          offsets.get(type).add(tagStart);
+        }
+        counts.put(type, count + 1);
+      }
+    }
+
+    private void onTagEnd() throws XMLStreamException {
+      if (prologue != null) {
+        return;
+      }
+      long end = position + 1;
+      if (contentsName == null) {
+        // This is the end of the root start tag, so all of the namespace prefixes are now known.
+        readNamespacePrefixes(Arrays.copyOf(prologueBuffer.toByteArray(), (int) end));
+      } else if (inContentsTag) {
+        prologue = Arrays.copyOf(prologueBuffer.toByteArray(), (int) end);
+      }
+    }
+
+    private void readNamespacePrefixes(byte[] rootStartTag) throws XMLStreamException {
+      XMLStreamReader reader =
+          XMLInputFactory.newInstance()
+              .createXMLStreamReader(new ByteArrayInputStream(rootStartTag));
+      while (reader.next() != XMLStreamReader.START_ELEMENT) {}
+      ImmutableSet.Builder<String> prefixes = new ImmutableSet.Builder<>();
+      if (reader.getPrefix() != null) {
+        prefixes.add(reader.getPrefix());
+      }
+      for (int i = 0; i < reader.getNamespaceCount(); i++) {
+        prefixes.add(nullToEmpty(reader.getNamespacePrefix(i)));
+      }
+      rootPrefixes = prefixes.build();
+      contentsName = qualify(reader.getNamespaceContext().getPrefix(RDE_URI), "contents");
+      ImmutableMap.Builder<String, IndexedType> builder = new ImmutableMap.Builder<>();
+      for (IndexedType type : IndexedType.values()) {
+        String prefix = reader.getNamespaceContext().getPrefix(type.uri);
+        if (prefix != null) {
+          builder.put(qualify(prefix, type.localName), type);
+        }
+      }
+      indexedNames = builder.build();
+    }
+
+    private static String qualify(@Nullable String prefix, String localName) {
+      return (prefix == null || prefix.isEmpty()) ? localName : prefix + ":" + localName;
+    }
+  }
+}
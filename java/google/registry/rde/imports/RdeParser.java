@@ -15,6 +15,7 @@
 package google.registry.rde.imports;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
 import static google.registry.util.PreconditionsUtils.checkArgumentNotNull;
 
 import com.google.common.base.Joiner;
@@ -77,9 +78,9 @@ import javax.xml.stream.XMLStreamReader;
 @NotThreadSafe
 public class RdeParser implements Closeable {
 
-  private static final String RDE_DOMAIN_URI = "urn:ietf:params:xml:ns:rdeDomain-1.0";
-  private static final String RDE_HOST_URI = "urn:ietf:params:xml:ns:rdeHost-1.0";
-  private static final String RDE_CONTACT_URI = "urn:ietf:params:xml:ns:rdeContact-1.0";
+  static final String RDE_DOMAIN_URI = "urn:ietf:params:xml:ns:rdeDomain-1.0";
+  static final String RDE_HOST_URI = "urn:ietf:params:xml:ns:rdeHost-1.0";
+  static final String RDE_CONTACT_URI = "urn:ietf:params:xml:ns:rdeContact-1.0";
   private static final String RDE_REGISTRAR_URI = "urn:ietf:params:xml:ns:rdeRegistrar-1.0";
   private static final String RDE_IDN_URI = "urn:ietf:params:xml:ns:rdeIDN-1.0";
   private static final String RDE_NNDN_URI = "urn:ietf:params:xml:ns:rdeNNDN-1.0";
@@ -157,7 +158,7 @@ public class RdeParser implements Closeable {
   private final XMLStreamReader reader;
   private final Unmarshaller unmarshaller;
 
-  private RdeHeader header;
+  private final RdeHeader header;
 
   /**
    * Creates a new instance of {@link RdeParser}
@@ -166,10 +167,26 @@ public class RdeParser implements Closeable {
    * @throws JAXBException
    */
   public RdeParser(InputStream xmlInput) throws XMLStreamException, JAXBException {
+    this(xmlInput, true);
+  }
+
+  private RdeParser(InputStream xmlInput, boolean readHeader)
+      throws XMLStreamException, JAXBException {
     this.xmlInput = xmlInput;
     this.unmarshaller = JAXBContext.newInstance(JAXB_CONTEXT_PACKAGES).createUnmarshaller();
     this.reader = XMLInputFactory.newInstance().createXMLStreamReader(xmlInput);
-    this.header = new RdeHeader(readHeader());
+    this.header = readHeader ? new RdeHeader(readHeader()) : null;
+  }
+
+  /**
+   * Creates a new instance of {@link RdeParser} that doesn't look for the RDE header.
+   *
+   * <p>This is used for streams that start partway through a deposit file (see {@link RdeIndex}),
+   * which won't contain the header. {@link #getHeader} will throw on the returned parser.
+   */
+  static RdeParser createWithoutHeader(InputStream xmlInput)
+      throws XMLStreamException, JAXBException {
+    return new RdeParser(xmlInput, false);
   }
 
   /**
@@ -246,6 +263,7 @@ public class RdeParser implements Closeable {
   }
 
   public RdeHeader getHeader() {
+    checkState(header != null, "RDE header was not read by this parser");
     return header;
   }
 
@@ -110,6 +110,8 @@ def domain_registry_repositories(
         omit_io_netty_resolver = False,
         omit_io_netty_tcnative = False,
         omit_io_netty_transport = False,
+        omit_io_netty_transport_native_epoll = False,
+        omit_io_netty_transport_native_unix_common = False,
         omit_it_unimi_dsi_fastutil = False,
         omit_com_sun_activation_javax_activation = False,
         omit_javax_annotation_jsr250_api = False,
@@ -336,6 +338,10 @@ def domain_registry_repositories(
         io_netty_tcnative()
     if not omit_io_netty_transport:
         io_netty_transport()
+    if not omit_io_netty_transport_native_epoll:
+        io_netty_transport_native_epoll()
+    if not omit_io_netty_transport_native_unix_common:
+        io_netty_transport_native_unix_common()
     if not omit_it_unimi_dsi_fastutil:
         it_unimi_dsi_fastutil()
     if not omit_com_sun_activation_javax_activation:
@@ -1824,6 +1830,39 @@ def io_netty_transport():
         ],
     )
 
+def io_netty_transport_native_epoll():
+    java_import_external(
+        name = "io_netty_transport_native_epoll",
+        licenses = ["notice"],  # Apache License, Version 2.0
+        jar_sha256 = "5af5ae8d6ccd5cbc87cba4b6ded1565f86bd43ae6675054d81422c2310a3cc6e",
+        jar_urls = [
+            "http://repo1.maven.org/maven2/io/netty/netty-transport-native-epoll/4.1.17.Final/netty-transport-native-epoll-4.1.17.Final-linux-x86_64.jar",
+            "http://maven.ibiblio.org/maven2/io/netty/netty-transport-native-epoll/4.1.17.Final/netty-transport-native-epoll-4.1.17.Final-linux-x86_64.jar",
+        ],
+        deps = [
+            "@io_netty_buffer",
+            "@io_netty_common",
+            "@io_netty_transport",
+            "@io_netty_transport_native_unix_common",
+        ],
+    )
+
+def io_netty_transport_native_unix_common():
+    java_import_external(
+        name = "io_netty_transport_native_unix_common",
+        licenses = ["notice"],  # Apache License, Version 2.0
+        jar_sha256 = "ce8d2f1bef53bc8a3528951dd1e70b9a8980370e20f2873950ac04a1241ebdd6",
+        jar_urls = [
+            "http://repo1.maven.org/maven2/io/netty/netty-transport-native-unix-common/4.1.17.Final/netty-transport-native-unix-common-4.1.17.Final.jar",
+            "http://maven.ibiblio.org/maven2/io/netty/netty-transport-native-unix-common/4.1.17.Final/netty-transport-native-unix-common-4.1.17.Final.jar",
+        ],
+        deps = [
+            "@io_netty_buffer",
+            "@io_netty_common",
+            "@io_netty_transport",
+        ],
+    )
+
 def it_unimi_dsi_fastutil():
     java_import_external(
         name = "it_unimi_dsi_fastutil",
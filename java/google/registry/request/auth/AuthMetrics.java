@@ -0,0 +1,78 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.request.auth;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSet;
+import com.google.monitoring.metrics.EventMetric;
+import com.google.monitoring.metrics.IncrementableMetric;
+import com.google.monitoring.metrics.LabelDescriptor;
+import com.google.monitoring.metrics.MetricRegistryImpl;
+
+/** Instrumentation for request authentication. */
+class AuthMetrics {
+
+  /** Possible outcomes of looking up an OAuth access token in the {@link OAuthTokenCache}. */
+  enum TokenCacheOutcome {
+    /** The token had already been validated. */
+    VALID_HIT,
+
+    /** The token had already been rejected by the OAuth service. */
+    INVALID_HIT,
+
+    /** The token wasn't in the cache, so the OAuth service was called. */
+    MISS
+  }
+
+  private static final ImmutableSet<LabelDescriptor> AUTHENTICATION_LABEL_DESCRIPTORS =
+      ImmutableSet.of(
+          LabelDescriptor.create("mechanism", "Authentication mechanism."),
+          LabelDescriptor.create("auth_level", "Level of authentication the mechanism found."));
+
+  /** Metric recording the amount of time each authentication mechanism takes. */
+  @VisibleForTesting
+  static final EventMetric authenticationTime =
+      MetricRegistryImpl.getDefault()
+          .newEventMetric(
+              "/auth/authentication_time",
+              "Authentication processing time",
+              "milliseconds",
+              AUTHENTICATION_LABEL_DESCRIPTORS,
+              EventMetric.DEFAULT_FITTER);
+
+  /** Metric counting OAuth token cache lookups, from which the cache hit rate can be derived. */
+  @VisibleForTesting
+  static final IncrementableMetric oauthTokenCacheLookups =
+      MetricRegistryImpl.getDefault()
+          .newIncrementableMetric(
+              "/auth/oauth/token_cache_lookups",
+              "Count of OAuth access token cache lookups",
+              "count",
+              ImmutableSet.of(LabelDescriptor.create("outcome", "Outcome of the lookup.")));
+
+  /** Records the time taken by an authentication mechanism, and the level it authenticated at. */
+  static void recordAuthentication(
+      AuthenticationMechanism mechanism, AuthLevel authLevel, double elapsedMillis) {
+    authenticationTime.record(
+        elapsedMillis, mechanism.getClass().getSimpleName(), authLevel.name());
+  }
+
+  /** Records the outcome of an OAuth token cache lookup. */
+  static void recordTokenCacheLookup(TokenCacheOutcome outcome) {
+    oauthTokenCacheLookups.increment(outcome.name());
+  }
+
+  private AuthMetrics() {}
+}
@@ -17,6 +17,10 @@ package google.registry.request.auth;
 import static com.google.common.net.HttpHeaders.AUTHORIZATION;
 import static google.registry.request.auth.AuthLevel.NONE;
 import static google.registry.request.auth.AuthLevel.USER;
+import static google.registry.request.auth.AuthMetrics.TokenCacheOutcome.INVALID_HIT;
+import static google.registry.request.auth.AuthMetrics.TokenCacheOutcome.MISS;
+import static google.registry.request.auth.AuthMetrics.TokenCacheOutcome.VALID_HIT;
+import static google.registry.request.auth.AuthMetrics.recordTokenCacheLookup;
 
 import com.google.appengine.api.oauth.OAuthRequestException;
 import com.google.appengine.api.oauth.OAuthService;
@@ -26,6 +30,9 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.flogger.FluentLogger;
 import google.registry.config.RegistryConfig.Config;
+import google.registry.request.auth.OAuthTokenCache.ValidatedToken;
+import java.util.Optional;
+import java.util.regex.Pattern;
 import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
 
@@ -33,11 +40,19 @@ import javax.servlet.http.HttpServletRequest;
  * OAuth authentication mechanism, using the OAuthService interface.
  *
  * Only OAuth version 2 is supported.
+ *
+ * <p>The results of validating tokens with the OAuthService are cached across requests in an
+ * {@link OAuthTokenCache}, so that clients sending many requests with the same token, such as the
+ * proxy, only cost an OAuthService RPC every few minutes. Client IDs and scopes are still checked
+ * on every request.
  */
 public class OAuthAuthenticationMechanism implements AuthenticationMechanism {
 
   private static final String BEARER_PREFIX = "Bearer ";
 
+  /** The syntax of a bearer token, per RFC 6750. */
+  private static final Pattern BEARER_TOKEN_PATTERN = Pattern.compile("[A-Za-z0-9\\-._~+/]+=*");
+
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
 
   private final OAuthService oauthService;
@@ -50,6 +65,8 @@ public class OAuthAuthenticationMechanism implements AuthenticationMechanism {
 
   private final ImmutableSet<String> allowedOauthClientIds;
 
+  private final OAuthTokenCache tokenCache;
+
   @VisibleForTesting
   @Inject
   public OAuthAuthenticationMechanism(
@@ -57,10 +74,26 @@ public class OAuthAuthenticationMechanism implements AuthenticationMechanism {
       @Config("availableOauthScopes") ImmutableSet<String> availableOauthScopes,
       @Config("requiredOauthScopes") ImmutableSet<String> requiredOauthScopes,
       @Config("allowedOauthClientIds") ImmutableSet<String> allowedOauthClientIds) {
+    this(
+        oauthService,
+        availableOauthScopes,
+        requiredOauthScopes,
+        allowedOauthClientIds,
+        OAuthTokenCache.INSTANCE);
+  }
+
+  @VisibleForTesting
+  OAuthAuthenticationMechanism(
+      OAuthService oauthService,
+      ImmutableSet<String> availableOauthScopes,
+      ImmutableSet<String> requiredOauthScopes,
+      ImmutableSet<String> allowedOauthClientIds,
+      OAuthTokenCache tokenCache) {
     this.oauthService = oauthService;
     this.availableOauthScopes = availableOauthScopes;
     this.requiredOauthScopes = requiredOauthScopes;
     this.allowedOauthClientIds = allowedOauthClientIds;
+    this.tokenCache = tokenCache;
   }
 
   @Override
@@ -85,30 +118,28 @@ public class OAuthAuthenticationMechanism implements AuthenticationMechanism {
     // OAuthTokenInfo for more information.
     String rawAccessToken = header.substring(BEARER_PREFIX.length());
 
-    // Get the OAuth information. The various oauthService method calls use a single cached
-    // authentication result, so we can call them one by one.
-    User currentUser;
-    boolean isUserAdmin;
-    String clientId;
-    ImmutableSet<String> authorizedScopes;
-    try {
-      String[] availableOauthScopeArray = availableOauthScopes.toArray(new String[0]);
-      currentUser = oauthService.getCurrentUser(availableOauthScopeArray);
-      isUserAdmin = oauthService.isUserAdmin(availableOauthScopeArray);
-      logger.atInfo().log(
-          "current user: %s (%s)", currentUser, isUserAdmin ? "admin" : "not admin");
-      clientId = oauthService.getClientId(availableOauthScopeArray);
-      logger.atInfo().log("client ID: %s", clientId);
-      authorizedScopes =
-          ImmutableSet.copyOf(oauthService.getAuthorizedScopes(availableOauthScopeArray));
-      logger.atInfo().log("authorized scope(s): %s", authorizedScopes);
-    } catch (OAuthRequestException | OAuthServiceFailureException e) {
-      logger.atInfo().withCause(e).log("unable to get OAuth information");
+    if (!BEARER_TOKEN_PATTERN.matcher(rawAccessToken).matches()) {
+      logger.atInfo().log("malformed access token");
       return AuthResult.create(NONE);
     }
-    if ((currentUser == null) || (clientId == null) || (authorizedScopes == null)) {
+
+    Optional<ValidatedToken> validatedToken = tokenCache.getValid(rawAccessToken);
+    if (validatedToken.isPresent()) {
+      recordTokenCacheLookup(VALID_HIT);
+      logger.atInfo().log("access token was validated recently: %s", validatedToken.get());
+    } else if (tokenCache.isKnownInvalid(rawAccessToken)) {
+      recordTokenCacheLookup(INVALID_HIT);
+      logger.atInfo().log("access token was rejected recently");
       return AuthResult.create(NONE);
+    } else {
+      recordTokenCacheLookup(MISS);
+      validatedToken = validateToken(rawAccessToken);
+      if (!validatedToken.isPresent()) {
+        return AuthResult.create(NONE);
+      }
     }
+    String clientId = validatedToken.get().clientId();
+    ImmutableSet<String> authorizedScopes = validatedToken.get().authorizedScopes();
 
     // Make sure that the client ID matches, to avoid a confused deputy attack; see:
     // http://stackoverflow.com/a/17439317/1179226
@@ -127,11 +158,49 @@ public class OAuthAuthenticationMechanism implements AuthenticationMechanism {
     return AuthResult.create(
         USER,
         UserAuthInfo.create(
-            currentUser,
-            isUserAdmin,
-            OAuthTokenInfo.create(
-                ImmutableSet.copyOf(authorizedScopes),
-                clientId,
-                rawAccessToken)));
+            validatedToken.get().user(),
+            validatedToken.get().isUserAdmin(),
+            OAuthTokenInfo.create(authorizedScopes, clientId, rawAccessToken)));
+  }
+
+  /**
+   * Gets the OAuth information for an access token from the OAuthService, and caches the result.
+   *
+   * <p>Tokens that the OAuthService rejects are cached as invalid, but failures of the service
+   * itself aren't cached, since the token may well be valid.
+   */
+  private Optional<ValidatedToken> validateToken(String rawAccessToken) {
+    // The various oauthService method calls use a single cached authentication result, so we can
+    // call them one by one.
+    User currentUser;
+    boolean isUserAdmin;
+    String clientId;
+    ImmutableSet<String> authorizedScopes;
+    try {
+      String[] availableOauthScopeArray = availableOauthScopes.toArray(new String[0]);
+      currentUser = oauthService.getCurrentUser(availableOauthScopeArray);
+      isUserAdmin = oauthService.isUserAdmin(availableOauthScopeArray);
+      logger.atInfo().log(
+          "current user: %s (%s)", currentUser, isUserAdmin ? "admin" : "not admin");
+      clientId = oauthService.getClientId(availableOauthScopeArray);
+      logger.atInfo().log("client ID: %s", clientId);
+      authorizedScopes =
+          ImmutableSet.copyOf(oauthService.getAuthorizedScopes(availableOauthScopeArray));
+      logger.atInfo().log("authorized scope(s): %s", authorizedScopes);
+    } catch (OAuthRequestException e) {
+      logger.atInfo().withCause(e).log("unable to get OAuth information");
+      tokenCache.putInvalid(rawAccessToken);
+      return Optional.empty();
+    } catch (OAuthServiceFailureException e) {
+      logger.atInfo().withCause(e).log("unable to get OAuth information");
+      return Optional.empty();
+    }
+    if ((currentUser == null) || (clientId == null) || (authorizedScopes == null)) {
+      return Optional.empty();
+    }
+    ValidatedToken validatedToken =
+        ValidatedToken.create(currentUser, isUserAdmin, clientId, authorizedScopes);
+    tokenCache.putValid(rawAccessToken, validatedToken);
+    return Optional.of(validatedToken);
   }
 }
@@ -0,0 +1,118 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.request.auth;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+import com.google.appengine.api.users.User;
+import com.google.auto.value.AutoValue;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hashing;
+import google.registry.util.Clock;
+import google.registry.util.SystemClock;
+import java.util.Optional;
+
+/**
+ * A cache of the results of validating OAuth access tokens with the OAuth service, shared by all
+ * requests on an instance.
+ *
+ * <p>Tokens are keyed by their SHA-256 hash, so that the tokens themselves aren't kept around.
+ * The OAuth service doesn't say when a token expires, so validated tokens are only cached for a
+ * few minutes, which bounds how long a token can keep working after it expires or is revoked.
+ * Tokens that the OAuth service rejected are cached for a shorter time, so that a client retrying
+ * with a bad token doesn't cost an RPC per request.
+ */
+final class OAuthTokenCache {
+
+  /** The instance used by {@link OAuthAuthenticationMechanism} in production. */
+  static final OAuthTokenCache INSTANCE = new OAuthTokenCache(new SystemClock());
+
+  private static final int MAX_CACHED_TOKENS = 10000;
+  private static final long VALID_TOKEN_EXPIRY_MINUTES = 5;
+  private static final long INVALID_TOKEN_EXPIRY_MINUTES = 1;
+
+  /** The information the OAuth service returned for a valid token. */
+  @AutoValue
+  abstract static class ValidatedToken {
+    abstract User user();
+
+    abstract boolean isUserAdmin();
+
+    abstract String clientId();
+
+    abstract ImmutableSet<String> authorizedScopes();
+
+    static ValidatedToken create(
+        User user, boolean isUserAdmin, String clientId, ImmutableSet<String> authorizedScopes) {
+      return new AutoValue_OAuthTokenCache_ValidatedToken(
+          user, isUserAdmin, clientId, authorizedScopes);
+    }
+  }
+
+  private final Cache<String, ValidatedToken> validTokens;
+  private final Cache<String, Boolean> invalidTokens;
+
+  @VisibleForTesting
+  OAuthTokenCache(Clock clock) {
+    Ticker ticker =
+        new Ticker() {
+          @Override
+          public long read() {
+            return MILLISECONDS.toNanos(clock.nowUtc().getMillis());
+          }
+        };
+    validTokens =
+        CacheBuilder.newBuilder()
+            .maximumSize(MAX_CACHED_TOKENS)
+            .expireAfterWrite(VALID_TOKEN_EXPIRY_MINUTES, MINUTES)
+            .ticker(ticker)
+            .build();
+    invalidTokens =
+        CacheBuilder.newBuilder()
+            .maximumSize(MAX_CACHED_TOKENS)
+            .expireAfterWrite(INVALID_TOKEN_EXPIRY_MINUTES, MINUTES)
+            .ticker(ticker)
+            .build();
+  }
+
+  /** Returns the information the OAuth service returned for a token, if it was valid. */
+  Optional<ValidatedToken> getValid(String rawAccessToken) {
+    return Optional.ofNullable(validTokens.getIfPresent(hash(rawAccessToken)));
+  }
+
+  /** Returns whether the OAuth service recently rejected a token. */
+  boolean isKnownInvalid(String rawAccessToken) {
+    return invalidTokens.getIfPresent(hash(rawAccessToken)) != null;
+  }
+
+  /** Caches the information the OAuth service returned for a valid token. */
+  void putValid(String rawAccessToken, ValidatedToken validatedToken) {
+    validTokens.put(hash(rawAccessToken), validatedToken);
+  }
+
+  /** Caches the fact that the OAuth service rejected a token. */
+  void putInvalid(String rawAccessToken) {
+    invalidTokens.put(hash(rawAccessToken), true);
+  }
+
+  private static String hash(String rawAccessToken) {
+    return Hashing.sha256().hashUnencodedChars(rawAccessToken).toString();
+  }
+}
@@ -15,6 +15,7 @@
 package google.registry.request.auth;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static google.registry.request.auth.AuthMetrics.recordAuthentication;
 
 import com.google.auto.value.AutoValue;
 import com.google.common.annotations.VisibleForTesting;
@@ -165,7 +166,8 @@ public class RequestAuthenticator {
         case INTERNAL:
           // checkAuthConfig will have insured that the user policy is not USER.
           {
-            AuthResult authResult = appEngineInternalAuthenticationMechanism.authenticate(req);
+            AuthResult authResult =
+                authenticateAndRecord(appEngineInternalAuthenticationMechanism, req);
             if (authResult.isAuthenticated()) {
               logger.atInfo().log("Authenticated via internal auth: %s", authResult);
               return authResult;
@@ -176,7 +178,7 @@ public class RequestAuthenticator {
         case API:
           // checkAuthConfig will have insured that the user policy is not IGNORED.
           for (AuthenticationMechanism authMechanism : apiAuthenticationMechanisms) {
-            AuthResult authResult = authMechanism.authenticate(req);
+            AuthResult authResult = authenticateAndRecord(authMechanism, req);
             if (authResult.isAuthenticated()) {
               logger.atInfo().log(
                   "Authenticated via %s: %s", authMechanism.getClass().getSimpleName(), authResult);
@@ -187,7 +189,7 @@ public class RequestAuthenticator {
         // Legacy authentication via UserService
         case LEGACY:
           // checkAuthConfig will have insured that the user policy is not IGNORED.
-          AuthResult authResult = legacyAuthenticationMechanism.authenticate(req);
+          AuthResult authResult = authenticateAndRecord(legacyAuthenticationMechanism, req);
           if (authResult.isAuthenticated()) {
             logger.atInfo().log("Authenticated via legacy auth: %s", authResult);
             return authResult;
@@ -199,6 +201,16 @@ public class RequestAuthenticator {
     return AuthResult.NOT_AUTHENTICATED;
   }
 
+  /** Runs an authentication mechanism, recording how long it took and what it found. */
+  private static AuthResult authenticateAndRecord(
+      AuthenticationMechanism authMechanism, HttpServletRequest req) {
+    long startNanos = System.nanoTime();
+    AuthResult authResult = authMechanism.authenticate(req);
+    recordAuthentication(
+        authMechanism, authResult.authLevel(), (System.nanoTime() - startNanos) / 1e6);
+    return authResult;
+  }
+
   /** Validates an AuthSettings object, checking for invalid setting combinations. */
   static void checkAuthConfig(AuthSettings auth) {
     ImmutableList<AuthMethod> authMethods = ImmutableList.copyOf(auth.methods());
@@ -0,0 +1,102 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.tldconfig.idn;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.collect.ContiguousSet;
+import com.google.common.collect.DiscreteDomain;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Range;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The codepoints of a list of {@link IdnTable}s, compiled so that a label can be checked against
+ * all of them in one pass over its codepoints.
+ *
+ * <p>For each codepoint there is a mask with bit {@code i} set if the {@code i}th table contains
+ * it. The masks are held in a two-level lookup: the high bits of a codepoint pick a block of 256
+ * masks, and the low bits pick the mask within the block. Most of Unicode isn't in any table, so
+ * most blocks are empty and share a single array. Checking a label is then just a matter of ANDing
+ * together the masks of its codepoints, with no boxing and no searching of ranges.
+ */
+final class CompiledIdnTables {
+
+  private static final int BLOCK_BITS = 8;
+  private static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+  private static final int NUM_BLOCKS = (Character.MAX_CODE_POINT + 1) >>> BLOCK_BITS;
+
+  /** The block shared by all ranges of codepoints that aren't in any table. */
+  private static final long[] EMPTY_BLOCK = new long[BLOCK_SIZE];
+
+  private final ImmutableList<IdnTable> tables;
+  private final long[][] blocks;
+
+  private CompiledIdnTables(ImmutableList<IdnTable> tables, long[][] blocks) {
+    this.tables = tables;
+    this.blocks = blocks;
+  }
+
+  /** Compiles a list of up to 64 tables, which are then identified by their index in the list. */
+  static CompiledIdnTables compile(List<IdnTable> tables) {
+    checkArgument(tables.size() <= Long.SIZE, "Can't compile more than 64 IDN tables");
+    long[][] blocks = new long[NUM_BLOCKS][];
+    Arrays.fill(blocks, EMPTY_BLOCK);
+    for (int i = 0; i < tables.size(); i++) {
+      long tableBit = 1L << i;
+      for (Range<Integer> range : tables.get(i).getValidCodepoints().asRanges()) {
+        for (int codepoint : ContiguousSet.create(range, DiscreteDomain.integers())) {
+          int blockIndex = codepoint >>> BLOCK_BITS;
+          if (blocks[blockIndex] == EMPTY_BLOCK) {
+            blocks[blockIndex] = new long[BLOCK_SIZE];
+          }
+          blocks[blockIndex][codepoint & (BLOCK_SIZE - 1)] |= tableBit;
+        }
+      }
+    }
+    return new CompiledIdnTables(ImmutableList.copyOf(tables), blocks);
+  }
+
+  /** Returns the tables that were compiled, in order. */
+  ImmutableList<IdnTable> getTables() {
+    return tables;
+  }
+
+  /**
+   * Returns a mask of the tables that contain every codepoint of a label, with bit {@code i} set
+   * for the {@code i}th table.
+   *
+   * <p>This only checks codepoints. The language rules of the tables, if any, still need to be
+   * checked with {@link IdnTable#isValidForLanguage}.
+   */
+  long findTablesContainingCodepoints(String label) {
+    long tableMask = (tables.size() == Long.SIZE) ? -1L : (1L << tables.size()) - 1;
+    final int length = label.length();
+    for (int i = 0; i < length && tableMask != 0; ) {
+      int codepoint = label.codePointAt(i);
+      tableMask &= blocks[codepoint >>> BLOCK_BITS][codepoint & (BLOCK_SIZE - 1)];
+      // Some codepoints take up more than one character in Java strings (e.g. high and low
+      // surrogates).
+      i += Character.charCount(codepoint);
+    }
+    return tableMask;
+  }
+
+  /** Returns the number of blocks of 256 codepoints that hold any codepoints of the tables. */
+  int countNonEmptyBlocks() {
+    return (int) Arrays.stream(blocks).filter(block -> block != EMPTY_BLOCK).count();
+  }
+}
@@ -14,13 +14,18 @@
 
 package google.registry.tldconfig.idn;
 
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static google.registry.tldconfig.idn.IdnTableEnum.EXTENDED_LATIN;
 import static google.registry.tldconfig.idn.IdnTableEnum.JA;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import google.registry.util.Idn;
 import google.registry.util.NonFinalForTesting;
+import java.util.Arrays;
 import java.util.Optional;
 
 /** Validates whether a given IDN label can be provisioned for a particular TLD. */
@@ -30,6 +35,27 @@ public final class IdnLabelValidator {
   private static final ImmutableList<IdnTableEnum> DEFAULT_IDN_TABLES =
       ImmutableList.of(EXTENDED_LATIN, JA);
 
+  /** Every IDN table, compiled so that a label can be checked against all of them at once. */
+  private static final CompiledIdnTables COMPILED_TABLES =
+      CompiledIdnTables.compile(
+          Arrays.stream(IdnTableEnum.values())
+              .map(IdnTableEnum::getTable)
+              .collect(toImmutableList()));
+
+  /** Maximum number of labels whose Unicode forms are cached. */
+  private static final int MAX_CACHED_LABELS = 10000;
+
+  /**
+   * Unicode forms of recently validated labels.
+   *
+   * <p>The same labels tend to be validated over and over, e.g. by repeated checks and by the
+   * check, create and claims flows for the same name, and converting from Punycode isn't cheap.
+   */
+  private static final LoadingCache<String, String> unicodeLabels =
+      CacheBuilder.newBuilder()
+          .maximumSize(MAX_CACHED_LABELS)
+          .build(CacheLoader.from(Idn::toUnicode));
+
   /** Some TLDs have their own IDN tables, configured here. */
   @NonFinalForTesting
   private static ImmutableMap<String, ImmutableList<IdnTableEnum>> idnTableListsPerTld =
@@ -42,10 +68,17 @@ public final class IdnLabelValidator {
    * TLD. If no match is found, an absent value is returned.
    */
   public static Optional<String> findValidIdnTableForTld(String label, String tld) {
-    String unicodeString = Idn.toUnicode(label);
+    String unicodeString = unicodeLabels.getUnchecked(label);
+    // Find the tables that allow all of the label's codepoints in a single pass, and only then
+    // check the language rules of the tables that do, in the order configured for the TLD.
+    long tableMask = COMPILED_TABLES.findTablesContainingCodepoints(unicodeString);
+    if (tableMask == 0) {
+      return Optional.empty();
+    }
     for (IdnTableEnum idnTable
         : Optional.ofNullable(idnTableListsPerTld.get(tld)).orElse(DEFAULT_IDN_TABLES)) {
-      if (idnTable.getTable().isValidLabel(unicodeString)) {
+      if ((tableMask & (1L << idnTable.ordinal())) != 0
+          && idnTable.getTable().isValidForLanguage(unicodeString)) {
         return Optional.of(idnTable.getTable().getName());
       }
     }
@@ -79,6 +79,11 @@ public final class IdnTable {
     return policy;
   }
 
+  /** Returns the codepoints that this table allows. */
+  RangeSet<Integer> getValidCodepoints() {
+    return validCodepoints;
+  }
+
   /**
    * Returns true if the given label is valid for this IDN table. A label is considered valid if all
    * of its codepoints are in the IDN table.
@@ -95,6 +100,15 @@ public final class IdnTable {
       // surrogates).
       i += Character.charCount(codepoint);
     }
+    return isValidForLanguage(label);
+  }
+
+  /**
+   * Returns true if the given label follows the language rules of this IDN table, if it has any.
+   *
+   * <p>This assumes that all of the label's codepoints are already known to be in the table.
+   */
+  boolean isValidForLanguage(String label) {
     return !(languageValidator.isPresent()
         && !languageValidator.get().isValidLabelForLanguage(label));
   }
@@ -18,7 +18,10 @@ import static com.google.common.base.Preconditions.checkArgument;
 
 import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.io.CharSource;
+import com.google.common.io.LineProcessor;
 import google.registry.model.tmch.ClaimsListShard;
+import java.io.IOException;
 import java.util.List;
 import org.joda.time.DateTime;
 
@@ -39,41 +42,72 @@ public class ClaimsListParser {
    * <p>Please note that this does <b>not</b> insert the object into Datastore.
    */
   public static ClaimsListShard parse(List<String> lines) {
-    ImmutableMap.Builder<String, String> builder = new ImmutableMap.Builder<>();
+    DnlLineProcessor processor = new DnlLineProcessor();
+    for (String line : lines) {
+      processor.processLine(line);
+    }
+    return processor.getResult();
+  }
+
+  /**
+   * Converts the DNL CSV file into a {@link ClaimsListShard} object, one line at a time.
+   *
+   * <p>Unlike {@link #parse(List)}, this never holds all the lines of the file in memory at once.
+   *
+   * <p>Please note that this does <b>not</b> insert the object into Datastore.
+   */
+  public static ClaimsListShard parse(CharSource csv) throws IOException {
+    return csv.readLines(new DnlLineProcessor());
+  }
 
-    // First line: <version>,<DNL List creation datetime>
-    List<String> firstLine = Splitter.on(',').splitToList(lines.get(0));
-    checkArgument(firstLine.size() == 2, String.format(
-        "Line 1: Expected 2 elements, found %d", firstLine.size()));
+  /** Parses the DNL CSV file line by line into a map of labels to lookup keys. */
+  private static class DnlLineProcessor implements LineProcessor<ClaimsListShard> {
 
-    Integer version = Integer.valueOf(firstLine.get(0));
-    DateTime creationTime = DateTime.parse(firstLine.get(1));
-    checkArgument(version == 1, String.format(
-        "Line 1: Expected version 1, found %d", version));
+    private final ImmutableMap.Builder<String, String> builder = new ImmutableMap.Builder<>();
+    private DateTime creationTime;
+    private int lineNumber = 0;
 
-    // Second line contains headers: DNL,lookup-key,insertion-datetime
-    List<String> secondLine = Splitter.on(',').splitToList(lines.get(1));
-    checkArgument(secondLine.size() == 3, String.format(
-        "Line 2: Expected 3 elements, found %d", secondLine.size()));
-    checkArgument("DNL".equals(secondLine.get(0)), String.format(
-        "Line 2: Expected header \"DNL\", found \"%s\"", secondLine.get(0)));
-    checkArgument("lookup-key".equals(secondLine.get(1)), String.format(
-        "Line 2: Expected header \"lookup-key\", found \"%s\"", secondLine.get(1)));
-    checkArgument("insertion-datetime".equals(secondLine.get(2)), String.format(
-        "Line 2: Expected header \"insertion-datetime\", found \"%s\"", secondLine.get(2)));
+    @Override
+    public boolean processLine(String line) {
+      lineNumber++;
+      List<String> currentLine = Splitter.on(',').splitToList(line);
+      if (lineNumber == 1) {
+        // First line: <version>,<DNL List creation datetime>
+        checkArgument(currentLine.size() == 2, String.format(
+            "Line 1: Expected 2 elements, found %d", currentLine.size()));
 
-    // Subsequent lines: <DNL>,<lookup key>,<DNL insertion datetime>
-    for (int i = 2; i < lines.size(); i++) {
-      List<String> currentLine = Splitter.on(',').splitToList(lines.get(i));
-      checkArgument(currentLine.size() == 3, String.format(
-          "Line %d: Expected 3 elements, found %d", i + 1, currentLine.size()));
+        Integer version = Integer.valueOf(currentLine.get(0));
+        creationTime = DateTime.parse(currentLine.get(1));
+        checkArgument(version == 1, String.format(
+            "Line 1: Expected version 1, found %d", version));
+      } else if (lineNumber == 2) {
+        // Second line contains headers: DNL,lookup-key,insertion-datetime
+        checkArgument(currentLine.size() == 3, String.format(
+            "Line 2: Expected 3 elements, found %d", currentLine.size()));
+        checkArgument("DNL".equals(currentLine.get(0)), String.format(
+            "Line 2: Expected header \"DNL\", found \"%s\"", currentLine.get(0)));
+        checkArgument("lookup-key".equals(currentLine.get(1)), String.format(
+            "Line 2: Expected header \"lookup-key\", found \"%s\"", currentLine.get(1)));
+        checkArgument("insertion-datetime".equals(currentLine.get(2)), String.format(
+            "Line 2: Expected header \"insertion-datetime\", found \"%s\"",
+            currentLine.get(2)));
+      } else {
+        // Subsequent lines: <DNL>,<lookup key>,<DNL insertion datetime>
+        checkArgument(currentLine.size() == 3, String.format(
+            "Line %d: Expected 3 elements, found %d", lineNumber, currentLine.size()));
 
-      String label = currentLine.get(0);
-      String lookupKey = currentLine.get(1);
-      DateTime.parse(currentLine.get(2));  // This is the insertion time, currently unused.
-      builder.put(label, lookupKey);
+        String label = currentLine.get(0);
+        String lookupKey = currentLine.get(1);
+        DateTime.parse(currentLine.get(2));  // This is the insertion time, currently unused.
+        builder.put(label, lookupKey);
+      }
+      return true;
     }
 
-    return ClaimsListShard.create(creationTime, builder.build());
+    @Override
+    public ClaimsListShard getResult() {
+      checkArgument(lineNumber >= 2, "Expected at least 2 lines, found %s", lineNumber);
+      return ClaimsListShard.create(creationTime, builder.build());
+    }
   }
 }
@@ -18,7 +18,6 @@ import static com.google.appengine.api.urlfetch.FetchOptions.Builder.validateCer
 import static com.google.appengine.api.urlfetch.HTTPMethod.GET;
 import static google.registry.util.HexDumper.dumpHex;
 import static google.registry.util.UrlFetchUtils.setAuthorizationHeader;
-import static java.nio.charset.StandardCharsets.US_ASCII;
 import static javax.servlet.http.HttpServletResponse.SC_OK;
 
 import com.google.appengine.api.urlfetch.HTTPRequest;
@@ -33,7 +32,6 @@ import java.io.IOException;
 import java.net.URL;
 import java.security.Security;
 import java.security.SignatureException;
-import java.util.List;
 import java.util.Optional;
 import javax.annotation.Tainted;
 import javax.inject.Inject;
@@ -115,12 +113,19 @@ public final class Marksdb {
     return rsp.getContent();
   }
 
-  List<String> fetchSignedCsv(
+  /**
+   * Fetches a CSV file and its signature, and returns the contents of the file once the signature
+   * has been verified.
+   *
+   * <p>The contents are returned as is, for the caller to parse as a stream, rather than split into
+   * a list of lines that would briefly double the memory held by a large file.
+   */
+  ByteSource fetchSignedCsv(
       Optional<String> login, String csvPath, String sigPath)
       throws IOException, SignatureException, PGPException {
     byte[] csv = fetch(new URL(tmchMarksdbUrl + csvPath), login);
     byte[] sig = fetch(new URL(tmchMarksdbUrl + sigPath), login);
     pgpVerifySignature(csv, sig, marksdbPublicKey);
-    return ByteSource.wrap(csv).asCharSource(US_ASCII).readLines();
+    return ByteSource.wrap(csv);
   }
 }
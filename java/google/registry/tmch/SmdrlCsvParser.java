@@ -19,7 +19,10 @@ import static org.joda.time.DateTimeZone.UTC;
 
 import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.io.CharSource;
+import com.google.common.io.LineProcessor;
 import google.registry.model.smd.SignedMarkRevocationList;
+import java.io.IOException;
 import java.util.List;
 import org.joda.time.DateTime;
 
@@ -36,36 +39,65 @@ public final class SmdrlCsvParser {
 
   /** Converts the lines from the DNL CSV file into a data structure. */
   public static SignedMarkRevocationList parse(List<String> lines) {
-    ImmutableMap.Builder<String, DateTime> revokes = new ImmutableMap.Builder<>();
+    SmdrlLineProcessor processor = new SmdrlLineProcessor();
+    for (String line : lines) {
+      processor.processLine(line);
+    }
+    return processor.getResult();
+  }
 
-    // First line: <version>,<SMD Revocation List creation datetime>
-    List<String> firstLine = Splitter.on(',').splitToList(lines.get(0));
-    checkArgument(firstLine.size() == 2, String.format(
-        "Line 1: Expected 2 elements, found %d", firstLine.size()));
-    Integer version = Integer.valueOf(firstLine.get(0));
-    checkArgument(version == 1, String.format(
-        "Line 1: Expected version 1, found %d", version));
-    DateTime creationTime = DateTime.parse(firstLine.get(1)).withZone(UTC);
+  /**
+   * Converts the SMDRL CSV file into a data structure, one line at a time.
+   *
+   * <p>Unlike {@link #parse(List)}, this never holds all the lines of the file in memory at once.
+   */
+  public static SignedMarkRevocationList parse(CharSource csv) throws IOException {
+    return csv.readLines(new SmdrlLineProcessor());
+  }
 
-    // Second line contains headers: smd-id,insertion-datetime
-    List<String> secondLine = Splitter.on(',').splitToList(lines.get(1));
-    checkArgument(secondLine.size() == 2, String.format(
-        "Line 2: Expected 2 elements, found %d", secondLine.size()));
-    checkArgument("smd-id".equals(secondLine.get(0)), String.format(
-        "Line 2: Expected header \"smd-id\", found \"%s\"", secondLine.get(0)));
-    checkArgument("insertion-datetime".equals(secondLine.get(1)), String.format(
-        "Line 2: Expected header \"insertion-datetime\", found \"%s\"", secondLine.get(1)));
+  /** Parses the SMDRL CSV file line by line into a map of SMD ids to revocation times. */
+  private static class SmdrlLineProcessor implements LineProcessor<SignedMarkRevocationList> {
 
-    // Subsequent lines: <smd-id>,<revoked SMD datetime>
-    for (int i = 2; i < lines.size(); i++) {
-      List<String> currentLine = Splitter.on(',').splitToList(lines.get(i));
-      checkArgument(currentLine.size() == 2, String.format(
-          "Line %d: Expected 2 elements, found %d", i + 1, currentLine.size()));
-      String smdId = currentLine.get(0);
-      DateTime revokedTime = DateTime.parse(currentLine.get(1));
-      revokes.put(smdId, revokedTime);
+    private final ImmutableMap.Builder<String, DateTime> revokes = new ImmutableMap.Builder<>();
+    private DateTime creationTime;
+    private int lineNumber = 0;
+
+    @Override
+    public boolean processLine(String line) {
+      lineNumber++;
+      List<String> currentLine = Splitter.on(',').splitToList(line);
+      if (lineNumber == 1) {
+        // First line: <version>,<SMD Revocation List creation datetime>
+        checkArgument(currentLine.size() == 2, String.format(
+            "Line 1: Expected 2 elements, found %d", currentLine.size()));
+        Integer version = Integer.valueOf(currentLine.get(0));
+        checkArgument(version == 1, String.format(
+            "Line 1: Expected version 1, found %d", version));
+        creationTime = DateTime.parse(currentLine.get(1)).withZone(UTC);
+      } else if (lineNumber == 2) {
+        // Second line contains headers: smd-id,insertion-datetime
+        checkArgument(currentLine.size() == 2, String.format(
+            "Line 2: Expected 2 elements, found %d", currentLine.size()));
+        checkArgument("smd-id".equals(currentLine.get(0)), String.format(
+            "Line 2: Expected header \"smd-id\", found \"%s\"", currentLine.get(0)));
+        checkArgument("insertion-datetime".equals(currentLine.get(1)), String.format(
+            "Line 2: Expected header \"insertion-datetime\", found \"%s\"",
+            currentLine.get(1)));
+      } else {
+        // Subsequent lines: <smd-id>,<revoked SMD datetime>
+        checkArgument(currentLine.size() == 2, String.format(
+            "Line %d: Expected 2 elements, found %d", lineNumber, currentLine.size()));
+        String smdId = currentLine.get(0);
+        DateTime revokedTime = DateTime.parse(currentLine.get(1));
+        revokes.put(smdId, revokedTime);
+      }
+      return true;
     }
 
-    return SignedMarkRevocationList.create(creationTime, revokes.build());
+    @Override
+    public SignedMarkRevocationList getResult() {
+      checkArgument(lineNumber >= 2, "Expected at least 2 lines, found %s", lineNumber);
+      return SignedMarkRevocationList.create(creationTime, revokes.build());
+    }
   }
 }
@@ -14,15 +14,18 @@
 
 package google.registry.tmch;
 
+import static com.google.common.base.Throwables.throwIfInstanceOf;
 import static google.registry.config.RegistryConfig.ConfigModule.TmchCaMode.PILOT;
 import static google.registry.config.RegistryConfig.getSingletonCachePersistDuration;
 import static google.registry.config.RegistryConfig.getSingletonCacheRefreshDuration;
 import static google.registry.util.ResourceUtils.readResourceUtf8;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.hash.Hashing;
 import google.registry.config.RegistryConfig.Config;
 import google.registry.config.RegistryConfig.ConfigModule.TmchCaMode;
 import google.registry.model.tmch.TmchCrl;
@@ -31,6 +34,7 @@ import google.registry.util.NonFinalForTesting;
 import google.registry.util.SystemClock;
 import google.registry.util.X509Utils;
 import java.security.GeneralSecurityException;
+import java.security.cert.CRLException;
 import java.security.cert.X509CRL;
 import java.security.cert.X509Certificate;
 import java.util.concurrent.ExecutionException;
@@ -118,6 +122,37 @@ public final class TmchCertificateAuthority {
                   return root;
                 }});
 
+  /**
+   * A cached function that computes the revision of a CRL, i.e. the SHA-256 hash of its encoding.
+   *
+   * <p>The keys are weak and compared by identity, so the revision of each CRL loaded into {@link
+   * #CRL_CACHE} is only computed once.
+   */
+  private static final LoadingCache<X509CRL, String> CRL_REVISION_CACHE =
+      CacheBuilder.newBuilder()
+          .weakKeys()
+          .build(
+              new CacheLoader<X509CRL, String>() {
+                @Override
+                public String load(final X509CRL crl) throws CRLException {
+                  return Hashing.sha256().hashBytes(crl.getEncoded()).toString();
+                }});
+
+  /** Maximum number of verified certificates to remember. */
+  private static final int MAX_VERIFIED_CERTIFICATES = 1000;
+
+  /**
+   * Certificates that have been verified, mapped to the revision of the CRL they were checked
+   * against.
+   *
+   * <p>SMDs are signed by the few certificates of the TMCH validation agents, so once one of them
+   * has been verified against the root and found not to be revoked, that holds until the CRL
+   * changes. A certificate found here doesn't have to be verified again, or even to wait on the
+   * lock that verifications are done under, but its validity period is still checked every time.
+   */
+  private static final Cache<X509Certificate, String> VERIFIED_CERTIFICATE_CACHE =
+      CacheBuilder.newBuilder().maximumSize(MAX_VERIFIED_CERTIFICATES).build();
+
   @NonFinalForTesting
   private static Clock clock = new SystemClock();
 
@@ -131,8 +166,37 @@ public final class TmchCertificateAuthority {
    * @see X509Utils#verifyCertificate
    */
   public void verify(X509Certificate cert) throws GeneralSecurityException {
+    X509Certificate root = getRoot();
+    X509CRL crl = getCrl();
+    String crlRevision = getRevision(crl);
+    if (crlRevision.equals(VERIFIED_CERTIFICATE_CACHE.getIfPresent(cert))) {
+      cert.checkValidity(clock.nowUtc().toDate());
+      return;
+    }
     synchronized (TmchCertificateAuthority.class) {
-      X509Utils.verifyCertificate(getRoot(), getCrl(), cert, clock.nowUtc().toDate());
+      X509Utils.verifyCertificate(root, crl, cert, clock.nowUtc().toDate());
+    }
+    VERIFIED_CERTIFICATE_CACHE.put(cert, crlRevision);
+  }
+
+  /**
+   * Returns the revision of the current CRL, which changes whenever a different CRL is loaded.
+   *
+   * <p>Since each CRL only verifies against the root of its own TMCH CA mode, the revision also
+   * identifies the root that certificates are checked against.
+   *
+   * @throws GeneralSecurityException if the CRL or the root can't be loaded
+   */
+  public String getCrlRevision() throws GeneralSecurityException {
+    return getRevision(getCrl());
+  }
+
+  private static String getRevision(X509CRL crl) throws CRLException {
+    try {
+      return CRL_REVISION_CACHE.get(crl);
+    } catch (ExecutionException e) {
+      throwIfInstanceOf(e.getCause(), CRLException.class);
+      throw new RuntimeException("Unexpected exception while hashing CRL", e);
     }
   }
 
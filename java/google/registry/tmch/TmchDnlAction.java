@@ -15,18 +15,22 @@
 package google.registry.tmch;
 
 import static google.registry.request.Action.Method.POST;
+import static java.nio.charset.StandardCharsets.US_ASCII;
 
 import com.google.common.flogger.FluentLogger;
+import com.google.common.io.ByteSource;
 import google.registry.keyring.api.KeyModule.Key;
 import google.registry.model.tmch.ClaimsListShard;
 import google.registry.request.Action;
 import google.registry.request.auth.Auth;
+import google.registry.util.Clock;
 import java.io.IOException;
 import java.security.SignatureException;
-import java.util.List;
 import java.util.Optional;
 import javax.inject.Inject;
 import org.bouncycastle.openpgp.PGPException;
+import org.joda.time.DateTime;
+import org.joda.time.Duration;
 
 /** Action to download the latest domain name list (aka claims list) from MarksDB. */
 @Action(
@@ -41,6 +45,7 @@ public final class TmchDnlAction implements Runnable {
   private static final String DNL_CSV_PATH = "/dnl/dnl-latest.csv";
   private static final String DNL_SIG_PATH = "/dnl/dnl-latest.sig";
 
+  @Inject Clock clock;
   @Inject Marksdb marksdb;
   @Inject @Key("marksdbDnlLogin") Optional<String> marksdbDnlLogin;
   @Inject TmchDnlAction() {}
@@ -48,13 +53,17 @@ public final class TmchDnlAction implements Runnable {
   /** Synchronously fetches latest domain name list and saves it to Datastore. */
   @Override
   public void run() {
-    List<String> lines;
+    ClaimsListShard claims;
     try {
-      lines = marksdb.fetchSignedCsv(marksdbDnlLogin, DNL_CSV_PATH, DNL_SIG_PATH);
+      ByteSource csv = marksdb.fetchSignedCsv(marksdbDnlLogin, DNL_CSV_PATH, DNL_SIG_PATH);
+      DateTime parseStart = clock.nowUtc();
+      claims = ClaimsListParser.parse(csv.asCharSource(US_ASCII));
+      logger.atInfo().log(
+          "Parsed %,d claims from %,d bytes in %s",
+          claims.size(), csv.size(), new Duration(parseStart, clock.nowUtc()));
     } catch (SignatureException | IOException | PGPException e) {
       throw new RuntimeException(e);
     }
-    ClaimsListShard claims = ClaimsListParser.parse(lines);
     claims.save();
     logger.atInfo().log(
         "Inserted %,d claims into Datastore, created at %s",
@@ -0,0 +1,73 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.tmch;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSet;
+import com.google.monitoring.metrics.EventMetric;
+import com.google.monitoring.metrics.IncrementableMetric;
+import com.google.monitoring.metrics.LabelDescriptor;
+import com.google.monitoring.metrics.MetricRegistryImpl;
+
+/** Instrumentation for the verification of signed mark data. */
+class TmchMetrics {
+
+  /** Possible outcomes of verifying an SMD. */
+  enum SmdVerificationOutcome {
+    /** The SMD had already been verified against the current CRL. */
+    CACHED_VALID,
+
+    /** The SMD wasn't in the cache, and was verified. */
+    UNCACHED_VALID,
+
+    /** The SMD wasn't in the cache, and failed verification. */
+    UNCACHED_INVALID,
+
+    /** The SMD had already been verified, but its signing certificate is no longer valid. */
+    CACHED_INVALID
+  }
+
+  private static final ImmutableSet<LabelDescriptor> SMD_VERIFICATION_LABEL_DESCRIPTORS =
+      ImmutableSet.of(LabelDescriptor.create("outcome", "Outcome of the SMD verification."));
+
+  /** Metric counting SMD verifications, from which the cache hit rate can be derived. */
+  @VisibleForTesting
+  static final IncrementableMetric smdVerifications =
+      MetricRegistryImpl.getDefault()
+          .newIncrementableMetric(
+              "/tmch/smd/verifications",
+              "Count of SMD verifications",
+              "count",
+              SMD_VERIFICATION_LABEL_DESCRIPTORS);
+
+  /** Metric recording the amount of time required to verify an SMD. */
+  @VisibleForTesting
+  static final EventMetric smdVerificationTime =
+      MetricRegistryImpl.getDefault()
+          .newEventMetric(
+              "/tmch/smd/verification_time",
+              "SMD verification processing time",
+              "milliseconds",
+              SMD_VERIFICATION_LABEL_DESCRIPTORS,
+              EventMetric.DEFAULT_FITTER);
+
+  /** Records the outcome and processing time of an SMD verification. */
+  static void recordSmdVerification(SmdVerificationOutcome outcome, double elapsedMillis) {
+    smdVerifications.increment(outcome.name());
+    smdVerificationTime.record(elapsedMillis, outcome.name());
+  }
+
+  private TmchMetrics() {}
+}
@@ -15,18 +15,22 @@
 package google.registry.tmch;
 
 import static google.registry.request.Action.Method.POST;
+import static java.nio.charset.StandardCharsets.US_ASCII;
 
 import com.google.common.flogger.FluentLogger;
+import com.google.common.io.ByteSource;
 import google.registry.keyring.api.KeyModule.Key;
 import google.registry.model.smd.SignedMarkRevocationList;
 import google.registry.request.Action;
 import google.registry.request.auth.Auth;
+import google.registry.util.Clock;
 import java.io.IOException;
 import java.security.SignatureException;
-import java.util.List;
 import java.util.Optional;
 import javax.inject.Inject;
 import org.bouncycastle.openpgp.PGPException;
+import org.joda.time.DateTime;
+import org.joda.time.Duration;
 
 /** Action to download the latest signed mark revocation list from MarksDB. */
 @Action(
@@ -41,6 +45,7 @@ public final class TmchSmdrlAction implements Runnable {
   private static final String SMDRL_CSV_PATH = "/smdrl/smdrl-latest.csv";
   private static final String SMDRL_SIG_PATH = "/smdrl/smdrl-latest.sig";
 
+  @Inject Clock clock;
   @Inject Marksdb marksdb;
   @Inject @Key("marksdbSmdrlLogin") Optional<String> marksdbSmdrlLogin;
   @Inject TmchSmdrlAction() {}
@@ -48,13 +53,17 @@ public final class TmchSmdrlAction implements Runnable {
   /** Synchronously fetches latest signed mark revocation list and saves it to Datastore. */
   @Override
   public void run() {
-    List<String> lines;
+    SignedMarkRevocationList smdrl;
     try {
-      lines = marksdb.fetchSignedCsv(marksdbSmdrlLogin, SMDRL_CSV_PATH, SMDRL_SIG_PATH);
+      ByteSource csv = marksdb.fetchSignedCsv(marksdbSmdrlLogin, SMDRL_CSV_PATH, SMDRL_SIG_PATH);
+      DateTime parseStart = clock.nowUtc();
+      smdrl = SmdrlCsvParser.parse(csv.asCharSource(US_ASCII));
+      logger.atInfo().log(
+          "Parsed %,d smd revocations from %,d bytes in %s",
+          smdrl.size(), csv.size(), new Duration(parseStart, clock.nowUtc()));
     } catch (SignatureException | IOException | PGPException e) {
       throw new RuntimeException(e);
     }
-    SignedMarkRevocationList smdrl = SmdrlCsvParser.parse(lines);
     smdrl.save();
     logger.atInfo().log(
         "Inserted %,d smd revocations into Datastore, created at %s",
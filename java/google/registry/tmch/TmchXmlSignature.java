@@ -18,10 +18,19 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Throwables.getRootCause;
 import static com.google.common.base.Throwables.throwIfInstanceOf;
+import static google.registry.tmch.TmchMetrics.SmdVerificationOutcome.CACHED_INVALID;
+import static google.registry.tmch.TmchMetrics.SmdVerificationOutcome.CACHED_VALID;
+import static google.registry.tmch.TmchMetrics.SmdVerificationOutcome.UNCACHED_INVALID;
+import static google.registry.tmch.TmchMetrics.SmdVerificationOutcome.UNCACHED_VALID;
+import static google.registry.tmch.TmchMetrics.recordSmdVerification;
 import static google.registry.xml.XmlTransformer.loadXmlSchemas;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hashing;
+import google.registry.tmch.TmchMetrics.SmdVerificationOutcome;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -69,6 +78,23 @@ public class TmchXmlSignature {
   private static final Schema SCHEMA =
       loadXmlSchemas(ImmutableList.of("mark.xsd", "dsig.xsd", "smd.xsd"));
 
+  /** Maximum number of verified SMDs to remember. */
+  private static final int MAX_VERIFIED_SMDS = 10000;
+
+  /**
+   * The signing certificates of SMDs that have passed verification, keyed by the SHA-256 hash of
+   * the SMD and the revision of the CRL it was verified against.
+   *
+   * <p>During sunrise the same SMDs are submitted over and over by many registrars, and parsing,
+   * schema validation and signature verification cost far more than a lookup here. Loading a new
+   * CRL changes the keys, so that every SMD is verified against it afresh. The signing certificate
+   * is kept so that its validity period can still be checked at the time of each verification.
+   * Failures aren't cached, since they're rare and some of them, like a certificate that isn't
+   * valid yet, don't last.
+   */
+  private static final Cache<String, X509Certificate> VERIFIED_SMD_CACHE =
+      CacheBuilder.newBuilder().maximumSize(MAX_VERIFIED_SMDS).build();
+
   /**
    * Verifies that signed mark data contains a valid signature.
    *
@@ -86,6 +112,43 @@ public class TmchXmlSignature {
       throws GeneralSecurityException, IOException, MarshalException, ParserConfigurationException,
           SAXException, XMLSignatureException {
     checkArgument(smdXml.length > 0);
+    long startNanos = System.nanoTime();
+    String cacheKey;
+    try {
+      cacheKey =
+          Hashing.sha256().hashBytes(smdXml) + "/" + tmchCertificateAuthority.getCrlRevision();
+    } catch (SignatureException e) {
+      throw new CertificateSignatureException(e.getMessage());
+    }
+    X509Certificate cachedCertificate = VERIFIED_SMD_CACHE.getIfPresent(cacheKey);
+    boolean valid = false;
+    try {
+      if (cachedCertificate == null) {
+        VERIFIED_SMD_CACHE.put(cacheKey, verifyUncached(smdXml));
+      } else {
+        // The certificate was verified along with the SMD, but it may have expired since.
+        try {
+          tmchCertificateAuthority.verify(cachedCertificate);
+        } catch (SignatureException e) {
+          throw new CertificateSignatureException(e.getMessage());
+        }
+      }
+      valid = true;
+    } finally {
+      SmdVerificationOutcome outcome;
+      if (cachedCertificate == null) {
+        outcome = valid ? UNCACHED_VALID : UNCACHED_INVALID;
+      } else {
+        outcome = valid ? CACHED_VALID : CACHED_INVALID;
+      }
+      recordSmdVerification(outcome, (System.nanoTime() - startNanos) / 1e6);
+    }
+  }
+
+  /** Verifies signed mark data without consulting the cache, and returns its certificate. */
+  private X509Certificate verifyUncached(byte[] smdXml)
+      throws GeneralSecurityException, IOException, MarshalException, ParserConfigurationException,
+          SAXException, XMLSignatureException {
     Document doc = parseSmdDocument(new ByteArrayInputStream(smdXml));
 
     NodeList signatureNodes = doc.getElementsByTagNameNS(XMLSignature.XMLNS, "Signature");
@@ -107,6 +170,7 @@ public class TmchXmlSignature {
     if (!isValid) {
       throw new XMLSignatureException(explainValidationProblem(context, signature));
     }
+    return checkNotNull(selector.selectedCertificate, "selectedCertificate");
   }
 
   private static Document parseSmdDocument(InputStream input)
@@ -142,6 +206,9 @@ public class TmchXmlSignature {
 
     private final TmchCertificateAuthority tmchCertificateAuthority;
 
+    /** The certificate whose key was selected, once one has been. */
+    @Nullable X509Certificate selectedCertificate;
+
     KeyValueKeySelector(TmchCertificateAuthority tmchCertificateAuthority) {
       this.tmchCertificateAuthority = tmchCertificateAuthority;
     }
@@ -170,6 +237,7 @@ public class TmchXmlSignature {
               } catch (GeneralSecurityException e) {
                 throw new KeySelectorException(e);
               }
+              selectedCertificate = cert;
               return new SimpleKeySelectorResult(cert.getPublicKey());
             }
           }
@@ -45,6 +45,12 @@ final class GenerateZoneFilesCommand implements ServerSideCommand {
       validateWith = DateParameter.class)
   private DateTime exportDate = DateTime.now(UTC).minus(standardMinutes(2)).withTimeAtStartOfDay();
 
+  @Parameter(
+      names = "--incremental",
+      description = "Generate the files from the latest earlier snapshots of the zones, falling "
+          + "back to a full export if a TLD has none.")
+  private boolean incremental;
+
   private Connection connection;
 
   @Override
@@ -55,14 +61,24 @@ final class GenerateZoneFilesCommand implements ServerSideCommand {
   @Override
   public void run() throws IOException {
     assertTldsExist(mainParameters);
-    ImmutableMap<String, Object> params = ImmutableMap.of(
-        "tlds", mainParameters,
-        "exportTime", exportDate.toString());
-    Map<String, Object> response = connection.sendJson(GenerateZoneFilesAction.PATH, params);
-    System.out.printf(
-        "Job started at %s%s\n",
-        connection.getServerUrl(),
-        response.get("jobPath"));
+    ImmutableMap.Builder<String, Object> params =
+        new ImmutableMap.Builder<String, Object>()
+            .put("tlds", mainParameters)
+            .put("exportTime", exportDate.toString());
+    if (incremental) {
+      params.put("incremental", true);
+    }
+    Map<String, Object> response =
+        connection.sendJson(GenerateZoneFilesAction.PATH, params.build());
+    if (response.containsKey("jobPath")) {
+      System.out.printf(
+          "Job started at %s%s\n",
+          connection.getServerUrl(),
+          response.get("jobPath"));
+    } else {
+      System.out.printf("Generated incrementally from snapshots at %s\n",
+          response.get("snapshotTimes"));
+    }
     System.out.println("Output files:");
     @SuppressWarnings("unchecked")
     List<String> filenames = (List<String>) response.get("filenames");
@@ -46,8 +46,8 @@ final class UploadClaimsListCommand extends ConfirmingCommand implements RemoteA
         "Expected a single argument with the claims list filename. Actual: %s",
         Joiner.on(' ').join(mainParameters));
     claimsListFilename = mainParameters.get(0);
-    claimsList = ClaimsListParser.parse(
-        Files.asCharSource(new File(claimsListFilename), US_ASCII).readLines());
+    claimsList =
+        ClaimsListParser.parse(Files.asCharSource(new File(claimsListFilename), US_ASCII));
   }
 
   @Override
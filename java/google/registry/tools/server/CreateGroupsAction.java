@@ -31,7 +31,7 @@ import google.registry.request.HttpException.InternalServerErrorException;
 import google.registry.request.Parameter;
 import google.registry.request.Response;
 import google.registry.request.auth.Auth;
-import google.registry.util.Concurrent;
+import google.registry.util.ParallelTransformer;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.List;
@@ -53,6 +53,11 @@ public class CreateGroupsAction implements Runnable {
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
   private static final int NUM_SIMULTANEOUS_CONNECTIONS = 5;
 
+  private static final ParallelTransformer GROUP_CREATOR =
+      ParallelTransformer.builder("Registrar group creation")
+          .setMaxThreads(NUM_SIMULTANEOUS_CONNECTIONS)
+          .build();
+
   @Inject GroupsConnection groupsConnection;
   @Inject Response response;
   @Inject @Config("gSuiteDomainName") String gSuiteDomainName;
@@ -69,9 +74,8 @@ public class CreateGroupsAction implements Runnable {
     // Concurrently create the groups for each RegistrarContact.Type, collecting the results from
     // each call (which are either an Exception if it failed, or absent() if it succeeded).
     List<Optional<Exception>> results =
-        Concurrent.transform(
+        GROUP_CREATOR.transform(
             types,
-            NUM_SIMULTANEOUS_CONNECTIONS,
             type -> {
               try {
                 String groupKey =
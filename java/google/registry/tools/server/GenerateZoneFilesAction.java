@@ -20,44 +20,54 @@ import static com.google.common.collect.Iterators.filter;
 import static com.google.common.io.BaseEncoding.base16;
 import static google.registry.mapreduce.inputs.EppResourceInputs.createEntityInput;
 import static google.registry.model.EppResourceUtils.loadAtPointInTime;
+import static google.registry.model.EppResourceUtils.queryForLinkedDomains;
 import static google.registry.model.ofy.ObjectifyService.ofy;
 import static google.registry.request.Action.Method.POST;
 import static google.registry.util.PipelineUtils.createJobPath;
-import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.joda.time.DateTimeZone.UTC;
 
-import com.google.appengine.tools.cloudstorage.GcsFilename;
 import com.google.appengine.tools.cloudstorage.RetryParams;
 import com.google.appengine.tools.mapreduce.Mapper;
 import com.google.appengine.tools.mapreduce.Reducer;
 import com.google.appengine.tools.mapreduce.ReducerInput;
+import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Ordering;
+import com.google.common.collect.Table;
+import com.google.common.flogger.FluentLogger;
+import com.googlecode.objectify.Key;
 import google.registry.config.RegistryConfig.Config;
 import google.registry.gcs.GcsUtils;
 import google.registry.mapreduce.MapreduceRunner;
 import google.registry.mapreduce.inputs.NullInput;
 import google.registry.model.EppResource;
+import google.registry.model.domain.DomainBase;
 import google.registry.model.domain.DomainResource;
 import google.registry.model.domain.secdns.DelegationSignerData;
 import google.registry.model.host.HostResource;
+import google.registry.model.ofy.CommitLogBucket;
+import google.registry.model.ofy.CommitLogManifest;
+import google.registry.model.ofy.CommitLogMutation;
 import google.registry.request.Action;
 import google.registry.request.HttpException.BadRequestException;
 import google.registry.request.JsonActionRunner;
 import google.registry.request.auth.Auth;
 import google.registry.util.Clock;
+import google.registry.util.NonFinalForTesting;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
-import java.io.Writer;
 import java.net.Inet4Address;
 import java.net.InetAddress;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
 import javax.inject.Inject;
 import org.joda.time.DateTime;
 import org.joda.time.Duration;
@@ -68,6 +78,19 @@ import org.joda.time.Duration;
  * <p>Zone files for each requested TLD are written to GCS. TLDs without entries produce zone files
  * with only a header. The export time must be at least two minutes in the past and no more than
  * 29 days in the past, and must be at midnight UTC.
+ *
+ * <p>Alongside each zone file, a {@link ZoneFileSnapshots snapshot} of the zone is kept. If an
+ * incremental export is requested and every TLD has a snapshot from an earlier export time that
+ * is still within the commit log retention period, no mapreduce is run. Instead the domains and
+ * hosts changed since then are found from the commit logs, only their records are regenerated,
+ * and the zone files are written by merging them into the earlier snapshots. This takes time in
+ * proportion to the churn rather than to the size of the zones.
+ *
+ * <p>An incremental export runs within the request, so it is only attempted while the commit logs
+ * since the snapshots are short enough to read in one go; otherwise the mapreduce is run instead.
+ * The mapreduce is also run if a domain or host has been deleted outright since the snapshots,
+ * since its name can no longer be loaded to take it out of the zone. This way an incremental
+ * export always produces the same zone files as a full one.
  */
 @Action(
   path = GenerateZoneFilesAction.PATH,
@@ -76,16 +99,25 @@ import org.joda.time.Duration;
 )
 public class GenerateZoneFilesAction implements Runnable, JsonActionRunner.JsonAction {
 
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
   public static final String PATH = "/_dr/task/generateZoneFiles";
 
-  /** Format for the zone file name. */
-  private static final String FILENAME_FORMAT = "%s-%s.zone";
+  /** Number of changed domains to load from Datastore at a time in an incremental export. */
+  private static final int BATCH_SIZE = 500;
+
+  /**
+   * Maximum number of commit log manifests and mutations to read in an incremental export before
+   * falling back to a full export.
+   */
+  @NonFinalForTesting
+  private static int maxIncrementalCommitLogEntries = 20000;
 
   /** Format for the GCS path to a file. */
   private static final String GCS_PATH_FORMAT = "gs://%s/%s";
 
-  /** Format for the zone file header. */
-  private static final String HEADER_FORMAT = "$ORIGIN\t%s.\n\n";
+  /** Format for the mapreduce key of a chunk of a TLD's zone. */
+  private static final String CHUNK_KEY_FORMAT = "%s/%d";
 
   /** Format for NS records. */
   private static final String NS_FORMAT = "%s\t%d\tIN\tNS\t%s.\n";
@@ -117,6 +149,7 @@ public class GenerateZoneFilesAction implements Runnable, JsonActionRunner.JsonA
     @SuppressWarnings("unchecked")
     ImmutableSet<String> tlds = ImmutableSet.copyOf((List<String>) json.get("tlds"));
     final DateTime exportTime = DateTime.parse(json.get("exportTime").toString());
+    boolean incremental = Boolean.TRUE.equals(json.get("incremental"));
     // We disallow exporting within the past 2 minutes because there might be outstanding writes.
     // We can only reliably call loadAtPointInTime at times that are UTC midnight and >
     // datastoreRetention ago in the past.
@@ -132,6 +165,37 @@ public class GenerateZoneFilesAction implements Runnable, JsonActionRunner.JsonA
     if (!exportTime.equals(exportTime.toDateTime(UTC).withTimeAtStartOfDay())) {
       throw new BadRequestException("Invalid export time: must be midnight UTC");
     }
+    ImmutableList<String> filenames =
+        tlds.stream()
+            .map(
+                tld ->
+                    String.format(
+                        GCS_PATH_FORMAT,
+                        bucket,
+                        String.format(ZoneFileSnapshots.FILENAME_FORMAT, tld, exportTime)))
+            .collect(toImmutableList());
+    String runId = UUID.randomUUID().toString();
+    if (incremental) {
+      ZoneFileSnapshots snapshots =
+          new ZoneFileSnapshots(
+              new GcsUtils(createGcsService(RetryParams.getDefaultInstance()), gcsBufferSize),
+              bucket);
+      Optional<ImmutableMap<String, DateTime>> snapshotTimes =
+          findSnapshotTimes(snapshots, tlds, exportTime, now.minus(datastoreRetention));
+      if (snapshotTimes.isPresent()) {
+        Optional<ImmutableSet<Key<DomainBase>>> changedDomains =
+            loadDomainsChangedSince(
+                Ordering.natural().min(snapshotTimes.get().values()), exportTime);
+        if (changedDomains.isPresent()) {
+          generateIncrementally(
+              snapshots, snapshotTimes.get(), exportTime, runId, changedDomains.get());
+          return ImmutableMap.of(
+              "filenames", filenames,
+              "snapshotTimes", Maps.transformValues(snapshotTimes.get(), DateTime::toString));
+        }
+      }
+      logger.atInfo().log("Falling back to a full export");
+    }
     String jobId = mrRunner
         .setJobName("Generate bind file stanzas")
         .setModuleName("tools")
@@ -139,22 +203,193 @@ public class GenerateZoneFilesAction implements Runnable, JsonActionRunner.JsonA
         .runMapreduce(
             new GenerateBindFileMapper(
                 tlds, exportTime, dnsDefaultATtl, dnsDefaultNsTtl, dnsDefaultDsTtl),
-            new GenerateBindFileReducer(bucket, exportTime, gcsBufferSize),
+            new GenerateBindFileReducer(bucket, exportTime, runId, gcsBufferSize),
             ImmutableList.of(
                 new NullInput<>(),
                 createEntityInput(DomainResource.class)));
-    ImmutableList<String> filenames =
-        tlds.stream()
-            .map(
-                tld ->
-                    String.format(
-                        GCS_PATH_FORMAT, bucket, String.format(FILENAME_FORMAT, tld, exportTime)))
-            .collect(toImmutableList());
     return ImmutableMap.of(
         "jobPath", createJobPath(jobId),
         "filenames", filenames);
   }
 
+  /**
+   * Returns the export time of the latest usable snapshot of each TLD, or empty if a TLD has none.
+   *
+   * <p>A snapshot is only usable if it isn't after the export time, and if the commit logs since
+   * it was taken haven't yet been deleted.
+   */
+  private static Optional<ImmutableMap<String, DateTime>> findSnapshotTimes(
+      ZoneFileSnapshots snapshots,
+      ImmutableSet<String> tlds,
+      DateTime exportTime,
+      DateTime oldestCommitLogTime) {
+    ImmutableMap.Builder<String, DateTime> snapshotTimes = new ImmutableMap.Builder<>();
+    for (String tld : tlds) {
+      Optional<DateTime> snapshotTime;
+      try {
+        snapshotTime = snapshots.findLatestSnapshot(tld, oldestCommitLogTime, exportTime);
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+      if (!snapshotTime.isPresent()) {
+        logger.atInfo().log("No snapshot of %s to export incrementally from", tld);
+        return Optional.empty();
+      }
+      snapshotTimes.put(tld, snapshotTime.get());
+    }
+    return Optional.of(snapshotTimes.build());
+  }
+
+  /**
+   * Writes the zone files by applying the changes since each TLD's snapshot to the snapshot.
+   *
+   * <p>Only the chunks of a snapshot that hold a changed domain are read and rewritten. The rest
+   * are copied to the new snapshot as they are.
+   */
+  private void generateIncrementally(
+      ZoneFileSnapshots snapshots,
+      ImmutableMap<String, DateTime> snapshotTimes,
+      DateTime exportTime,
+      String runId,
+      ImmutableSet<Key<DomainBase>> changedDomains) {
+    // Each changed domain's new block, or an empty string if it's no longer in the zone, keyed by
+    // TLD and chunk, and then by label.
+    Table<String, Integer, Map<String, String>> changes = HashBasedTable.create();
+    for (List<Key<DomainBase>> batch : Iterables.partition(changedDomains, BATCH_SIZE)) {
+      for (DomainBase domainBase : ofy().load().keys(batch).values()) {
+        if (!(domainBase instanceof DomainResource)
+            || !snapshotTimes.containsKey(domainBase.getTld())) {
+          continue;
+        }
+        DomainResource domain = loadAtPointInTime((DomainResource) domainBase, exportTime).now();
+        String block =
+            (domain != null && domain.shouldPublishToDns())
+                ? domainBlock(domain, exportTime, dnsDefaultATtl, dnsDefaultNsTtl, dnsDefaultDsTtl)
+                : "";
+        String fullyQualifiedDomainName = domainBase.getFullyQualifiedDomainName();
+        int chunk = ZoneFileSnapshots.getChunk(fullyQualifiedDomainName);
+        if (!changes.contains(domainBase.getTld(), chunk)) {
+          changes.put(domainBase.getTld(), chunk, new HashMap<>());
+        }
+        changes
+            .get(domainBase.getTld(), chunk)
+            .put(stripTld(fullyQualifiedDomainName, domainBase.getTld()), block);
+      }
+      ofy().clearSessionCache();
+    }
+    try {
+      for (Map.Entry<String, DateTime> entry : snapshotTimes.entrySet()) {
+        String tld = entry.getKey();
+        DateTime snapshotTime = entry.getValue();
+        for (int chunk = 0; chunk < ZoneFileSnapshots.NUM_CHUNKS; chunk++) {
+          Map<String, String> chunkChanges = changes.get(tld, chunk);
+          if (chunkChanges == null) {
+            snapshots.copyChunk(tld, snapshotTime, exportTime, runId, chunk);
+            continue;
+          }
+          TreeMap<String, String> blocks =
+              new TreeMap<>(snapshots.readChunk(tld, snapshotTime, chunk));
+          chunkChanges.forEach(
+              (label, block) -> {
+                if (block.isEmpty()) {
+                  blocks.remove(label);
+                } else {
+                  blocks.put(label, block);
+                }
+              });
+          snapshots.writeChunk(tld, exportTime, runId, chunk, blocks.values());
+        }
+        snapshots.writeZoneFile(tld, exportTime, runId);
+        snapshots.markComplete(tld, exportTime, runId);
+        logger.atInfo().log(
+            "Wrote zone file for %s from the snapshot at %s, rewriting %d of %d chunks",
+            tld, snapshotTime, changes.row(tld).size(), ZoneFileSnapshots.NUM_CHUNKS);
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Returns the domains whose records in the zone may have changed since a given time, or empty if
+   * they can't be found incrementally.
+   *
+   * <p>These are the domains saved since then, the superordinate domains of the hosts saved since
+   * then, and, for hosts that were renamed between then and the export time, the domains that use
+   * them as nameservers. Changes are found from the commit logs, so this only costs reads in
+   * proportion to the number of changes. Changes made after the export time are included, since
+   * they can be found the same way and regenerating an unchanged domain does no harm.
+   *
+   * <p>Empty is returned if there are more than {@link #maxIncrementalCommitLogEntries} commit log
+   * entries since then, or if a domain or host has been deleted outright rather than soft-deleted,
+   * since a deleted domain's name can't be loaded to remove it from the zone.
+   */
+  private static Optional<ImmutableSet<Key<DomainBase>>> loadDomainsChangedSince(
+      DateTime changedSince, DateTime exportTime) {
+    String domainKind = Key.getKind(DomainBase.class);
+    String hostKind = Key.getKind(HostResource.class);
+    ImmutableSet.Builder<Key<DomainBase>> domainKeys = new ImmutableSet.Builder<>();
+    ImmutableSet.Builder<Key<HostResource>> hostKeys = new ImmutableSet.Builder<>();
+    int commitLogEntries = 0;
+    for (Key<CommitLogBucket> bucketKey : CommitLogBucket.getAllBucketKeys()) {
+      // Mutations are children of their manifests, so the manifest keys after the given time also
+      // bound the keys of their mutations. Since START_OF_TIME=0 is not a valid id in a key, the
+      // exclusive lower bound is expressed as an inclusive bound one millisecond later.
+      Key<CommitLogManifest> startKey =
+          CommitLogManifest.createKey(bucketKey, changedSince.plusMillis(1));
+      Iterable<CommitLogManifest> manifests =
+          ofy().load().type(CommitLogManifest.class).ancestor(bucketKey).filterKey(">=", startKey);
+      for (CommitLogManifest manifest : manifests) {
+        if (++commitLogEntries > maxIncrementalCommitLogEntries) {
+          logger.atInfo().log("Too many changes since %s to export incrementally", changedSince);
+          return Optional.empty();
+        }
+        for (Key<?> deletedKey : manifest.getDeletions()) {
+          if (deletedKey.getKind().equals(domainKind) || deletedKey.getKind().equals(hostKind)) {
+            logger.atInfo().log(
+                "Can't export incrementally, since %s was deleted at %s",
+                deletedKey, manifest.getCommitTime());
+            return Optional.empty();
+          }
+        }
+      }
+      Iterable<Key<CommitLogMutation>> mutationKeys =
+          ofy()
+              .load()
+              .type(CommitLogMutation.class)
+              .ancestor(bucketKey)
+              .filterKey(">=", startKey)
+              .keys();
+      for (Key<CommitLogMutation> mutationKey : mutationKeys) {
+        if (++commitLogEntries > maxIncrementalCommitLogEntries) {
+          logger.atInfo().log("Too many changes since %s to export incrementally", changedSince);
+          return Optional.empty();
+        }
+        Key<?> entityKey = Key.create(mutationKey.getName());
+        if (entityKey.getKind().equals(domainKind)) {
+          domainKeys.add(Key.create(entityKey.getRaw()));
+        } else if (entityKey.getKind().equals(hostKind)) {
+          hostKeys.add(Key.create(entityKey.getRaw()));
+        }
+      }
+    }
+    for (HostResource host : ofy().load().keys(hostKeys.build()).values()) {
+      if (host.getSuperordinateDomain() != null) {
+        domainKeys.add(Key.create(host.getSuperordinateDomain().getRaw()));
+      }
+      HostResource hostBefore = loadAtPointInTime(host, changedSince).now();
+      HostResource hostAtExportTime = loadAtPointInTime(host, exportTime).now();
+      if (hostBefore != null
+          && hostAtExportTime != null
+          && !hostBefore
+              .getFullyQualifiedHostName()
+              .equals(hostAtExportTime.getFullyQualifiedHostName())) {
+        domainKeys.addAll(queryForLinkedDomains(Key.create(host), exportTime).keys());
+      }
+    }
+    return Optional.of(domainKeys.build());
+  }
+
   /** Mapper to find domains that were active at a given time. */
   static class GenerateBindFileMapper extends Mapper<EppResource, String, String> {
 
@@ -181,9 +416,12 @@ public class GenerateZoneFilesAction implements Runnable, JsonActionRunner.JsonA
 
     @Override
     public void map(EppResource resource) {
-      if (resource == null) {  // Force the reducer to always generate a bind header for each tld.
+      // Force the reducer to always write every chunk of each tld, even if it's empty.
+      if (resource == null) {
         for (String tld : tlds) {
-          emit(tld, null);
+          for (int chunk = 0; chunk < ZoneFileSnapshots.NUM_CHUNKS; chunk++) {
+            emit(String.format(CHUNK_KEY_FORMAT, tld, chunk), null);
+          }
         }
       } else {
         mapDomain((DomainResource) resource);
@@ -201,72 +439,98 @@ public class GenerateZoneFilesAction implements Runnable, JsonActionRunner.JsonA
         domain = loadAtPointInTime(domain, exportTime).now();
         // A null means the domain was deleted (or not created) at this time.
         if (domain != null && domain.shouldPublishToDns()) {
-          String stanza = domainStanza(domain, exportTime, dnsDefaultNsTtl, dnsDefaultDsTtl);
-          if (!stanza.isEmpty()) {
-            emit(domain.getTld(), stanza);
+          String block =
+              domainBlock(domain, exportTime, dnsDefaultATtl, dnsDefaultNsTtl, dnsDefaultDsTtl);
+          if (!block.isEmpty()) {
+            emit(
+                String.format(
+                    CHUNK_KEY_FORMAT,
+                    domain.getTld(),
+                    ZoneFileSnapshots.getChunk(domain.getFullyQualifiedDomainName())),
+                block);
             getContext().incrementCounter(domain.getTld() + " domains");
           }
-          emitForSubordinateHosts(domain);
-        }
-      }
-    }
-
-    private void emitForSubordinateHosts(DomainResource domain) {
-      ImmutableSet<String> subordinateHosts = domain.getSubordinateHosts();
-      if (!subordinateHosts.isEmpty()) {
-        for (HostResource unprojectedHost : ofy().load().keys(domain.getNameservers()).values()) {
-          HostResource host = loadAtPointInTime(unprojectedHost, exportTime).now();
-          // A null means the host was deleted (or not created) at this time.
-          if ((host != null) && subordinateHosts.contains(host.getFullyQualifiedHostName())) {
-            String stanza = hostStanza(host, dnsDefaultATtl, domain.getTld());
-            if (!stanza.isEmpty()) {
-              emit(domain.getTld(), stanza);
-              getContext().incrementCounter(domain.getTld() + " hosts");
-            }
-          }
         }
       }
     }
   }
 
-  /** Reducer to write zone files to GCS. */
+  /**
+   * Reducer to write the chunks of the zone snapshots, and then the zone files, to GCS.
+   *
+   * <p>Each chunk is written by its own call to the reducer. Whichever call finds that it has
+   * written the last chunk of a TLD's snapshot then writes the zone file. If two calls finish the
+   * last chunks at the same time, they both write the same zone file, which does no harm. Only the
+   * chunks written by this run are counted, so chunks left by an earlier run for the same export
+   * time can't cause a zone file to be written early or from stale chunks.
+   */
   static class GenerateBindFileReducer extends Reducer<String, String, Void> {
 
     private static final long serialVersionUID = -8489050680083119352L;
 
     private final String bucket;
     private final DateTime exportTime;
+    private final String runId;
     private final int gcsBufferSize;
 
-    GenerateBindFileReducer(String bucket, DateTime exportTime, int gcsBufferSize) {
+    GenerateBindFileReducer(String bucket, DateTime exportTime, String runId, int gcsBufferSize) {
       this.bucket = bucket;
       this.exportTime = exportTime;
+      this.runId = runId;
       this.gcsBufferSize = gcsBufferSize;
     }
 
     @Override
-    public void reduce(String tld, ReducerInput<String> stanzas) {
-      String stanzaCounter = tld + " stanzas";
-      GcsFilename filename =
-          new GcsFilename(bucket, String.format(FILENAME_FORMAT, tld, exportTime));
-      GcsUtils cloudStorage =
-          new GcsUtils(createGcsService(RetryParams.getDefaultInstance()), gcsBufferSize);
-      try (OutputStream gcsOutput = cloudStorage.openOutputStream(filename);
-          Writer osWriter = new OutputStreamWriter(gcsOutput, UTF_8);
-          PrintWriter writer = new PrintWriter(osWriter)) {
-        writer.printf(HEADER_FORMAT, tld);
-        for (Iterator<String> stanzaIter = filter(stanzas, Objects::nonNull);
-            stanzaIter.hasNext(); ) {
-          writer.println(stanzaIter.next());
-          getContext().incrementCounter(stanzaCounter);
+    public void reduce(String chunkKey, ReducerInput<String> blocks) {
+      String tld = chunkKey.substring(0, chunkKey.lastIndexOf('/'));
+      int chunk = Integer.parseInt(chunkKey.substring(chunkKey.lastIndexOf('/') + 1));
+      ZoneFileSnapshots snapshots =
+          new ZoneFileSnapshots(
+              new GcsUtils(createGcsService(RetryParams.getDefaultInstance()), gcsBufferSize),
+              bucket);
+      // A chunk only holds a small fraction of the zone, so it can be sorted in memory.
+      ImmutableList<String> sortedBlocks =
+          ZoneFileSnapshots.sortBlocks(ImmutableList.copyOf(filter(blocks, Objects::nonNull)));
+      getContext().incrementCounter(tld + " stanzas", sortedBlocks.size());
+      try {
+        snapshots.writeChunk(tld, exportTime, runId, chunk, sortedBlocks);
+        if (snapshots.isComplete(tld, exportTime, runId)) {
+          snapshots.writeZoneFile(tld, exportTime, runId);
+          snapshots.markComplete(tld, exportTime, runId);
         }
-        writer.flush();
       } catch (IOException e) {
         throw new RuntimeException(e);
       }
     }
   }
 
+  /**
+   * Generates the block of DNS records for a domain, i.e. its own records followed by the glue
+   * records of its in-bailiwick nameservers.
+   *
+   * @param domain the domain, as it was at the export time
+   */
+  private static String domainBlock(
+      DomainResource domain,
+      DateTime exportTime,
+      Duration dnsDefaultATtl,
+      Duration dnsDefaultNsTtl,
+      Duration dnsDefaultDsTtl) {
+    StringBuilder result =
+        new StringBuilder(domainStanza(domain, exportTime, dnsDefaultNsTtl, dnsDefaultDsTtl));
+    ImmutableSet<String> subordinateHosts = domain.getSubordinateHosts();
+    if (!subordinateHosts.isEmpty()) {
+      for (HostResource unprojectedHost : ofy().load().keys(domain.getNameservers()).values()) {
+        HostResource host = loadAtPointInTime(unprojectedHost, exportTime).now();
+        // A null means the host was deleted (or not created) at this time.
+        if ((host != null) && subordinateHosts.contains(host.getFullyQualifiedHostName())) {
+          result.append(hostStanza(host, dnsDefaultATtl, domain.getTld()));
+        }
+      }
+    }
+    return result.toString();
+  }
+
   /**
    * Generates DNS records for a domain (NS and DS).
    *
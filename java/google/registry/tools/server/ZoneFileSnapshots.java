@@ -0,0 +1,233 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.tools.server;
+
+import static com.google.common.collect.ImmutableSortedMap.toImmutableSortedMap;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.appengine.tools.cloudstorage.GcsFilename;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Ordering;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CharStreams;
+import google.registry.gcs.GcsUtils;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import org.joda.time.DateTime;
+
+/**
+ * Sorted, chunked snapshots in GCS of the zone files generated by {@link GenerateZoneFilesAction}.
+ *
+ * <p>The snapshot of a TLD's zone at an export time is split into {@link #NUM_CHUNKS} chunks by a
+ * hash of the domain name, so that an incremental export only has to rewrite the chunks that hold
+ * the domains that changed. Each chunk is a zone file fragment holding one block of records per
+ * domain, separated by blank lines and sorted by domain label. A block holds the domain's NS and
+ * DS records followed by the glue records of its in-bailiwick nameservers, so its first field is
+ * always the domain label. The zone file itself is the header followed by the chunks in order.
+ *
+ * <p>Each run of an export writes its chunks under a folder of its own, named by a run id that is
+ * unique to it, and once all of them are written it writes a marker naming that run as the
+ * complete snapshot for the export time. This way chunks left behind by an earlier run for the
+ * same export time, whether it finished or failed partway, are never mistaken for those of a
+ * later run.
+ */
+class ZoneFileSnapshots {
+
+  /** The number of chunks that each snapshot is split into. */
+  static final int NUM_CHUNKS = 64;
+
+  /** Format for the zone file name. */
+  static final String FILENAME_FORMAT = "%s-%s.zone";
+
+  /** Format for the zone file header. */
+  static final String HEADER_FORMAT = "$ORIGIN\t%s.\n\n";
+
+  /** Format for the prefix of the names of the chunks of the snapshot of a TLD. */
+  private static final String SNAPSHOT_PREFIX_FORMAT = "snapshots/%s/";
+
+  /** Format for the name of a chunk, relative to the snapshot prefix of its TLD. */
+  private static final String CHUNK_FORMAT = "%s/%s/chunk-%02d";
+
+  /**
+   * Format for the name of the marker holding the run id of the complete snapshot at an export
+   * time, relative to the snapshot prefix of its TLD.
+   */
+  private static final String COMPLETE_MARKER_FORMAT = "%s/complete";
+
+  private static final String COMPLETE_MARKER_SUFFIX = "/complete";
+
+  private static final Splitter BLOCK_SPLITTER = Splitter.on("\n\n").omitEmptyStrings();
+
+  private final GcsUtils gcsUtils;
+  private final String bucket;
+
+  /** The run ids of the complete snapshots read so far, keyed by TLD and export time. */
+  private final Map<String, String> completeRunIds = new HashMap<>();
+
+  ZoneFileSnapshots(GcsUtils gcsUtils, String bucket) {
+    this.gcsUtils = gcsUtils;
+    this.bucket = bucket;
+  }
+
+  /** Returns the chunk that a domain's block belongs in. */
+  static int getChunk(String fullyQualifiedDomainName) {
+    return Math.floorMod(
+        Hashing.murmur3_32().hashString(fullyQualifiedDomainName, UTF_8).asInt(), NUM_CHUNKS);
+  }
+
+  /** Returns the label that a block is sorted by, i.e. the domain name without its TLD. */
+  static String getLabel(String block) {
+    return block.substring(0, block.indexOf('\t'));
+  }
+
+  /** Returns the zone file for a TLD at an export time. */
+  GcsFilename getZoneFilename(String tld, DateTime exportTime) {
+    return new GcsFilename(bucket, String.format(FILENAME_FORMAT, tld, exportTime));
+  }
+
+  private GcsFilename getChunkFilename(String tld, DateTime exportTime, String runId, int chunk) {
+    return new GcsFilename(
+        bucket,
+        String.format(SNAPSHOT_PREFIX_FORMAT, tld)
+            + String.format(CHUNK_FORMAT, exportTime, runId, chunk));
+  }
+
+  private GcsFilename getCompleteMarkerFilename(String tld, DateTime exportTime) {
+    return new GcsFilename(
+        bucket,
+        String.format(SNAPSHOT_PREFIX_FORMAT, tld)
+            + String.format(COMPLETE_MARKER_FORMAT, exportTime));
+  }
+
+  /** Returns whether a run has written every chunk of its snapshot of a TLD at an export time. */
+  boolean isComplete(String tld, DateTime exportTime, String runId) throws IOException {
+    String prefix =
+        String.format(SNAPSHOT_PREFIX_FORMAT, tld) + String.format("%s/%s/", exportTime, runId);
+    return gcsUtils.listFolderObjects(bucket, prefix).size() == NUM_CHUNKS;
+  }
+
+  /**
+   * Marks a run's snapshot of a TLD at an export time as the complete one, replacing any earlier
+   * run's. This must only be called once {@link #isComplete} holds for the run.
+   */
+  void markComplete(String tld, DateTime exportTime, String runId) throws IOException {
+    gcsUtils.createFromBytes(getCompleteMarkerFilename(tld, exportTime), runId.getBytes(UTF_8));
+  }
+
+  /** Returns the run id of the complete snapshot of a TLD at an export time. */
+  private String getCompleteRunId(String tld, DateTime exportTime) throws IOException {
+    String key = tld + "/" + exportTime;
+    String runId = completeRunIds.get(key);
+    if (runId == null) {
+      try (InputStream gcsInput =
+          gcsUtils.openInputStream(getCompleteMarkerFilename(tld, exportTime))) {
+        runId = new String(ByteStreams.toByteArray(gcsInput), UTF_8);
+      }
+      completeRunIds.put(key, runId);
+    }
+    return runId;
+  }
+
+  /**
+   * Returns the latest export time in a range for which there is a complete snapshot of a TLD.
+   *
+   * @param notBefore the earliest export time to consider
+   * @param notAfter the latest export time to consider
+   */
+  Optional<DateTime> findLatestSnapshot(String tld, DateTime notBefore, DateTime notAfter)
+      throws IOException {
+    return gcsUtils
+        .listFolderObjects(bucket, String.format(SNAPSHOT_PREFIX_FORMAT, tld))
+        .stream()
+        .filter(name -> name.endsWith(COMPLETE_MARKER_SUFFIX))
+        .map(name -> DateTime.parse(name.substring(0, name.indexOf('/'))))
+        .filter(exportTime -> !exportTime.isBefore(notBefore) && !exportTime.isAfter(notAfter))
+        .max(Ordering.natural());
+  }
+
+  /** Writes a chunk of a run's snapshot, given its blocks in sorted order. */
+  void writeChunk(
+      String tld, DateTime exportTime, String runId, int chunk, Collection<String> blocks)
+      throws IOException {
+    GcsFilename filename = getChunkFilename(tld, exportTime, runId, chunk);
+    try (OutputStream gcsOutput = gcsUtils.openOutputStream(filename);
+        Writer writer = new OutputStreamWriter(gcsOutput, UTF_8)) {
+      for (String block : blocks) {
+        writer.write(block);
+        writer.write('\n');
+      }
+    }
+  }
+
+  /** Returns the blocks of a chunk of the complete snapshot, keyed and sorted by label. */
+  ImmutableSortedMap<String, String> readChunk(String tld, DateTime exportTime, int chunk)
+      throws IOException {
+    String contents;
+    GcsFilename filename =
+        getChunkFilename(tld, exportTime, getCompleteRunId(tld, exportTime), chunk);
+    try (InputStream gcsInput = gcsUtils.openInputStream(filename);
+        Reader reader = new InputStreamReader(gcsInput, UTF_8)) {
+      contents = CharStreams.toString(reader);
+    }
+    return BLOCK_SPLITTER
+        .splitToList(contents)
+        .stream()
+        .map(block -> block + "\n")
+        .collect(toImmutableSortedMap(Ordering.natural(), ZoneFileSnapshots::getLabel, b -> b));
+  }
+
+  /** Copies an unchanged chunk from the complete snapshot at an earlier time into a run's. */
+  void copyChunk(
+      String tld, DateTime fromExportTime, DateTime toExportTime, String toRunId, int chunk)
+      throws IOException {
+    gcsUtils.copy(
+        getChunkFilename(tld, fromExportTime, getCompleteRunId(tld, fromExportTime), chunk),
+        getChunkFilename(tld, toExportTime, toRunId, chunk));
+  }
+
+  /** Writes the zone file for a TLD by concatenating the chunks of a run's snapshot. */
+  void writeZoneFile(String tld, DateTime exportTime, String runId) throws IOException {
+    try (OutputStream gcsOutput = gcsUtils.openOutputStream(getZoneFilename(tld, exportTime))) {
+      gcsOutput.write(String.format(HEADER_FORMAT, tld).getBytes(UTF_8));
+      for (int chunk = 0; chunk < NUM_CHUNKS; chunk++) {
+        try (InputStream gcsInput =
+            gcsUtils.openInputStream(getChunkFilename(tld, exportTime, runId, chunk))) {
+          ByteStreams.copy(gcsInput, gcsOutput);
+        }
+      }
+    }
+  }
+
+  /** Returns the blocks of a chunk in the order they are written. */
+  static ImmutableList<String> sortBlocks(Collection<String> blocks) {
+    return blocks
+        .stream()
+        .collect(toImmutableSortedMap(Ordering.natural(), ZoneFileSnapshots::getLabel, b -> b))
+        .values()
+        .asList();
+  }
+}
@@ -14,26 +14,22 @@
 
 package google.registry.util;
 
-import static com.google.appengine.api.ThreadManager.currentRequestThreadFactory;
 import static com.google.common.base.Preconditions.checkNotNull;
-import static com.google.common.collect.ImmutableList.toImmutableList;
 import static java.lang.Math.max;
-import static java.lang.Math.min;
-import static java.util.concurrent.Executors.newFixedThreadPool;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.UncheckedExecutionException;
-import com.google.common.util.concurrent.Uninterruptibles;
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.List;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
-import java.util.concurrent.ThreadFactory;
 import java.util.function.Function;
 
-/** Utilities for multithreaded operations in App Engine requests. */
+/**
+ * Utilities for multithreaded operations in App Engine requests.
+ *
+ * <p>These are thin wrappers around {@link ParallelTransformer} that pin it to a fixed number of
+ * threads, as these methods always used. It should be used directly where a run should adapt its
+ * number of threads, or needs its own name in the logs, an item deadline, or results in completion
+ * order.
+ */
 public final class Concurrent {
 
   /** Maximum number of threads per pool. The actual GAE per-request limit is 50. */
@@ -49,7 +45,8 @@ public final class Concurrent {
   }
 
   /**
-   * Processes {@code items} in parallel using {@code funk}, with the specified number of threads.
+   * Processes {@code items} in parallel using {@code funk}, with up to the specified number of
+   * threads. The number of threads isn't cut back when items slow down.
    *
    * <p>If the maxThreadCount or the number of items is less than 2, will use a non-concurrent
    * transform.
@@ -59,6 +56,7 @@ public final class Concurrent {
    * @throws UncheckedExecutionException to wrap the exception thrown by {@code funk}. This will
    *     only contain the exception information for the first exception thrown.
    * @return transformed {@code items} in the same order.
+   * @see ParallelTransformer
    */
   public static <A, B> ImmutableList<B> transform(
       Collection<A> items,
@@ -66,34 +64,13 @@ public final class Concurrent {
       final Function<A, B> funk) {
     checkNotNull(funk);
     checkNotNull(items);
-    int threadCount = max(1, min(items.size(), maxThreadCount));
-    ThreadFactory threadFactory = threadCount > 1 ? currentRequestThreadFactory() : null;
-    if (threadFactory == null) {
-      // Fall back to non-concurrent transform if we only want 1 thread, or if we can't get an App
-      // Engine thread factory (most likely caused by hitting this code from a command-line tool).
-      // Default Java system threads are not compatible with code that needs to interact with App
-      // Engine (such as Objectify), which we often have in funk when calling
-      // Concurrent.transform(). For more info see: http://stackoverflow.com/questions/15976406
-      return items.stream().map(funk).collect(toImmutableList());
-    }
-    ExecutorService executor = newFixedThreadPool(threadCount, threadFactory);
-    try {
-      List<Future<B>> futures = new ArrayList<>();
-      for (final A item : items) {
-        futures.add(executor.submit(() -> funk.apply(item)));
-      }
-      ImmutableList.Builder<B> results = new ImmutableList.Builder<>();
-      for (Future<B> future : futures) {
-        try {
-          results.add(Uninterruptibles.getUninterruptibly(future));
-        } catch (ExecutionException e) {
-          throw new UncheckedExecutionException(e.getCause());
-        }
-      }
-      return results.build();
-    } finally {
-      executor.shutdownNow();
-    }
+    int threadCount = max(1, maxThreadCount);
+    return ParallelTransformer.builder("Concurrent.transform")
+        .setMinThreads(threadCount)
+        .setInitialThreads(threadCount)
+        .setMaxThreads(threadCount)
+        .build()
+        .transform(items, funk);
   }
 
   private Concurrent() {}
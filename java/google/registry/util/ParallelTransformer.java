@@ -0,0 +1,478 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.util;
+
+import static com.google.appengine.api.ThreadManager.currentRequestThreadFactory;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.flogger.FluentLogger;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+import org.joda.time.Duration;
+
+/**
+ * Applies a function to a collection of items on App Engine request threads, using a number of
+ * threads that adapts to how long the items take.
+ *
+ * <p>A run starts out on a few threads. It adds threads while items keep finishing about as fast as
+ * the fastest item seen so far, and drops threads (down to a configurable minimum) when items
+ * start taking longer, which is a sign that whatever they call out to is saturated. Each thread
+ * takes the next item as soon as it finishes one, so a slow item only holds up its own thread, and
+ * results can be consumed in the order they complete.
+ *
+ * <p>If any item fails or runs past the item deadline, the items still running are interrupted,
+ * no more are started, and the run fails with an {@link UncheckedExecutionException} wrapping the
+ * cause. Each parallel run logs the parallelism it achieved.
+ *
+ * <p>If there is only one item, or no App Engine request thread factory is available (most likely
+ * because this is running in a command-line tool), items are processed sequentially on the calling
+ * thread, exceptions are propagated unwrapped, and the item deadline doesn't apply. Default Java
+ * threads can't be used instead, since they can't interact with App Engine services such as
+ * Datastore.
+ *
+ * <p><b>Note:</b> Spawned threads inherit the namespace of the calling thread.
+ */
+public final class ParallelTransformer {
+
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  /** Default maximum number of threads. The actual GAE per-request limit is 50. */
+  private static final int DEFAULT_MAX_THREADS = 30;
+
+  /** Default number of threads to start a run on. */
+  private static final int DEFAULT_INITIAL_THREADS = 4;
+
+  /** The most that the number of threads is cut by after a single slow item. */
+  private static final double MIN_GRADIENT = 0.5;
+
+  private final String name;
+  private final int minThreads;
+  private final int initialThreads;
+  private final int maxThreads;
+  @Nullable private final Duration itemDeadline;
+
+  private ParallelTransformer(Builder builder) {
+    this.name = builder.name;
+    this.minThreads = builder.minThreads;
+    this.initialThreads = max(minThreads, min(builder.initialThreads, builder.maxThreads));
+    this.maxThreads = builder.maxThreads;
+    this.itemDeadline = builder.itemDeadline;
+  }
+
+  /** Returns a builder for a transformer whose runs are logged under the given name. */
+  public static Builder builder(String name) {
+    return new Builder(name);
+  }
+
+  /**
+   * Applies {@code funk} to each of {@code items} in parallel.
+   *
+   * @throws UncheckedExecutionException to wrap the first exception thrown by {@code funk} on
+   *     another thread, or a {@link TimeoutException} if an item took longer than the item deadline
+   * @return the results, in the same order as {@code items}
+   */
+  public <A, B> ImmutableList<B> transform(Collection<A> items, Function<A, B> funk) {
+    checkNotNull(items);
+    checkNotNull(funk);
+    List<B> results = new ArrayList<>(Collections.nCopies(items.size(), null));
+    run(new ArrayList<>(items), funk, (index, item, result) -> results.set(index, result));
+    return ImmutableList.copyOf(results);
+  }
+
+  /**
+   * Applies {@code funk} to each of {@code items} in parallel, passing each item and its result to
+   * {@code consumer} as soon as it is ready.
+   *
+   * <p>The consumer is always called on the calling thread, one item at a time. If it throws, the
+   * items still running are interrupted and the exception is propagated.
+   *
+   * @throws UncheckedExecutionException to wrap the first exception thrown by {@code funk} on
+   *     another thread, or a {@link TimeoutException} if an item took longer than the item deadline
+   * @return statistics on how the items were run
+   */
+  public <A, B> Stats forEachInCompletionOrder(
+      Collection<A> items, Function<A, B> funk, BiConsumer<A, B> consumer) {
+    checkNotNull(items);
+    checkNotNull(funk);
+    checkNotNull(consumer);
+    return run(
+        new ArrayList<>(items), funk, (index, item, result) -> consumer.accept(item, result));
+  }
+
+  private <A, B> Stats run(List<A> items, Function<A, B> funk, ResultHandler<A, B> handler) {
+    ThreadFactory threadFactory =
+        (items.size() > 1 && maxThreads > 1) ? currentRequestThreadFactory() : null;
+    if (threadFactory == null) {
+      long startNanos = System.nanoTime();
+      for (int i = 0; i < items.size(); i++) {
+        handler.accept(i, items.get(i), funk.apply(items.get(i)));
+      }
+      long elapsedNanos = System.nanoTime() - startNanos;
+      return new Stats(items.size(), 0, min(items.size(), 1), elapsedNanos, elapsedNanos);
+    }
+    Stats stats = new Run<>(items, funk, threadFactory).run(handler);
+    logger.atInfo().log("%s: %s", name, stats);
+    return stats;
+  }
+
+  /** Receives the result for the item at a given index. */
+  private interface ResultHandler<A, B> {
+    void accept(int index, A item, B result);
+  }
+
+  /** The state of a single parallel run, shared between the calling thread and its workers. */
+  private final class Run<A, B> {
+
+    private final List<A> items;
+    private final Function<A, B> funk;
+    private final ThreadFactory threadFactory;
+    private final BlockingQueue<Completion<B>> completions = new LinkedBlockingQueue<>();
+
+    // The fields below are guarded by this.
+
+    /** The items being processed, by index. */
+    private final Map<Integer, InFlight> inFlight = new HashMap<>();
+
+    private int nextIndex;
+    private int workers;
+    private int threadLimit;
+    private int peakParallelism;
+    private boolean cancelled;
+
+    Run(List<A> items, Function<A, B> funk, ThreadFactory threadFactory) {
+      this.items = items;
+      this.funk = funk;
+      this.threadFactory = threadFactory;
+    }
+
+    Stats run(ResultHandler<A, B> handler) {
+      long startNanos = System.nanoTime();
+      ThreadLimit limit =
+          new ThreadLimit(minThreads, min(initialThreads, items.size()), maxThreads);
+      long busyNanos = 0;
+      int threadsStarted = 0;
+      try {
+        for (int completed = 0; completed < items.size(); completed++) {
+          threadsStarted += startWorkers(limit.get());
+          Completion<B> completion = awaitCompletion();
+          if (completion.failure != null) {
+            throw new UncheckedExecutionException(completion.failure);
+          }
+          busyNanos += completion.latencyNanos;
+          limit.update(completion.latencyNanos);
+          handler.accept(completion.index, items.get(completion.index), completion.result);
+        }
+      } finally {
+        cancel();
+      }
+      long elapsedNanos = System.nanoTime() - startNanos;
+      synchronized (this) {
+        return new Stats(items.size(), threadsStarted, peakParallelism, busyNanos, elapsedNanos);
+      }
+    }
+
+    /**
+     * Lets up to {@code limit} items be processed at once, starting more workers if needed.
+     *
+     * <p>Workers aren't stopped when the limit drops. They wait until they are allowed to take
+     * another item instead, so that the number of threads started is never more than the maximum.
+     */
+    private synchronized int startWorkers(int limit) {
+      threadLimit = limit;
+      notifyAll();
+      int wanted = min(limit, items.size() - nextIndex + inFlight.size());
+      int started = 0;
+      while (workers < wanted) {
+        threadFactory.newThread(this::work).start();
+        workers++;
+        started++;
+      }
+      return started;
+    }
+
+    /** Waits for the next item to complete, failing if an item runs past its deadline. */
+    private Completion<B> awaitCompletion() {
+      try {
+        while (true) {
+          Completion<B> completion =
+              (itemDeadline == null)
+                  ? completions.take()
+                  : completions.poll(nanosUntilNextDeadline(), NANOSECONDS);
+          if (completion != null) {
+            return completion;
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new UncheckedExecutionException(e);
+      }
+    }
+
+    /** Returns the time until the earliest deadline of the items being processed. */
+    private synchronized long nanosUntilNextDeadline() {
+      long deadlineNanos = NANOSECONDS.convert(itemDeadline.getMillis(), MILLISECONDS);
+      long now = System.nanoTime();
+      long wait = deadlineNanos;
+      for (Map.Entry<Integer, InFlight> entry : inFlight.entrySet()) {
+        long remaining = entry.getValue().startNanos + deadlineNanos - now;
+        if (remaining <= 0) {
+          throw new UncheckedExecutionException(
+              new TimeoutException(
+                  String.format(
+                      "Item %s took longer than %s", items.get(entry.getKey()), itemDeadline)));
+        }
+        wait = min(wait, remaining);
+      }
+      return wait;
+    }
+
+    /** Stops workers from taking more items, and interrupts the ones still running. */
+    private synchronized void cancel() {
+      cancelled = true;
+      notifyAll();
+      for (InFlight item : inFlight.values()) {
+        item.thread.interrupt();
+      }
+    }
+
+    /** Processes items until there are none left or the run is cancelled. */
+    private void work() {
+      while (true) {
+        int index;
+        long startNanos;
+        synchronized (this) {
+          try {
+            while (!cancelled && nextIndex < items.size() && inFlight.size() >= threadLimit) {
+              wait();
+            }
+          } catch (InterruptedException e) {
+            cancelled = true;
+          }
+          if (cancelled || nextIndex == items.size()) {
+            workers--;
+            return;
+          }
+          index = nextIndex++;
+          startNanos = System.nanoTime();
+          inFlight.put(index, new InFlight(Thread.currentThread(), startNanos));
+          peakParallelism = max(peakParallelism, inFlight.size());
+        }
+        B result = null;
+        Throwable failure = null;
+        try {
+          result = funk.apply(items.get(index));
+        } catch (Throwable t) {
+          failure = t;
+        }
+        long latencyNanos = System.nanoTime() - startNanos;
+        synchronized (this) {
+          inFlight.remove(index);
+          notifyAll();
+        }
+        completions.add(new Completion<>(index, result, failure, latencyNanos));
+      }
+    }
+  }
+
+  /** The number of items a run lets be processed at once, adapted to how long items take. */
+  @VisibleForTesting
+  static final class ThreadLimit {
+
+    private final int minThreads;
+    private final int maxThreads;
+    private double limit;
+    private long minLatencyNanos = Long.MAX_VALUE;
+
+    ThreadLimit(int minThreads, int initialThreads, int maxThreads) {
+      this.minThreads = minThreads;
+      this.maxThreads = maxThreads;
+      this.limit = initialThreads;
+    }
+
+    /** Returns the current limit. */
+    int get() {
+      return (int) limit;
+    }
+
+    /** Adjusts the limit after an item completed in {@code latencyNanos}. */
+    void update(long latencyNanos) {
+      // Scale the number of threads by how close this item came to the fastest one, and leave
+      // room for it to grow by the square root of the current number of threads.
+      minLatencyNanos = min(minLatencyNanos, latencyNanos);
+      double gradient = (double) minLatencyNanos / max(1, latencyNanos);
+      limit = limit * max(MIN_GRADIENT, gradient) + Math.sqrt(limit);
+      limit = max(minThreads, min(maxThreads, limit));
+    }
+  }
+
+  /** An item being processed by a worker thread. */
+  private static final class InFlight {
+    final Thread thread;
+    final long startNanos;
+
+    InFlight(Thread thread, long startNanos) {
+      this.thread = thread;
+      this.startNanos = startNanos;
+    }
+  }
+
+  /** The outcome of processing a single item. */
+  private static final class Completion<B> {
+    final int index;
+    @Nullable final B result;
+    @Nullable final Throwable failure;
+    final long latencyNanos;
+
+    Completion(int index, @Nullable B result, @Nullable Throwable failure, long latencyNanos) {
+      this.index = index;
+      this.result = result;
+      this.failure = failure;
+      this.latencyNanos = latencyNanos;
+    }
+  }
+
+  /** Statistics on how the items of a run were processed. */
+  public static final class Stats {
+
+    private final int items;
+    private final int threadsStarted;
+    private final int peakParallelism;
+    private final long busyNanos;
+    private final long elapsedNanos;
+
+    private Stats(
+        int items, int threadsStarted, int peakParallelism, long busyNanos, long elapsedNanos) {
+      this.items = items;
+      this.threadsStarted = threadsStarted;
+      this.peakParallelism = peakParallelism;
+      this.busyNanos = busyNanos;
+      this.elapsedNanos = elapsedNanos;
+    }
+
+    /** Returns the number of items processed. */
+    public int getItems() {
+      return items;
+    }
+
+    /** Returns the number of threads started, which is zero if the items were run sequentially. */
+    public int getThreadsStarted() {
+      return threadsStarted;
+    }
+
+    /** Returns the largest number of items that were ever being processed at once. */
+    public int getPeakParallelism() {
+      return peakParallelism;
+    }
+
+    /**
+     * Returns the average number of items being processed at once, i.e. the total time spent on
+     * items divided by the time the run took.
+     */
+    public double getEffectiveParallelism() {
+      return (elapsedNanos == 0) ? 0 : (double) busyNanos / elapsedNanos;
+    }
+
+    /** Returns how long the run took. */
+    public Duration getElapsed() {
+      return Duration.millis(NANOSECONDS.toMillis(elapsedNanos));
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "%d items on %d threads in %d ms, with %.1f at once on average and %d at peak",
+          items, threadsStarted, getElapsed().getMillis(), getEffectiveParallelism(),
+          peakParallelism);
+    }
+  }
+
+  /** A builder for {@link ParallelTransformer}. */
+  public static final class Builder {
+
+    private final String name;
+    private int minThreads = 1;
+    private int initialThreads = DEFAULT_INITIAL_THREADS;
+    private int maxThreads = DEFAULT_MAX_THREADS;
+    @Nullable private Duration itemDeadline;
+
+    private Builder(String name) {
+      this.name = checkNotNull(name);
+    }
+
+    /**
+     * Sets the fewest threads a run is cut back to when items slow down, which defaults to one.
+     *
+     * <p>Setting this to the maximum turns off the adaptation, so that runs use a fixed number of
+     * threads.
+     */
+    public Builder setMinThreads(int minThreads) {
+      checkArgument(minThreads > 0, "Min threads must be positive");
+      this.minThreads = minThreads;
+      return this;
+    }
+
+    /**
+     * Sets the number of threads to start each run on, which is kept between the minimum and the
+     * maximum.
+     */
+    public Builder setInitialThreads(int initialThreads) {
+      checkArgument(initialThreads > 0, "Initial threads must be positive");
+      this.initialThreads = initialThreads;
+      return this;
+    }
+
+    /** Sets the most threads a run may use. */
+    public Builder setMaxThreads(int maxThreads) {
+      checkArgument(maxThreads > 0, "Max threads must be positive");
+      this.maxThreads = maxThreads;
+      return this;
+    }
+
+    /** Sets how long a single item may take before the run fails. */
+    public Builder setItemDeadline(Duration itemDeadline) {
+      checkArgument(itemDeadline.getMillis() > 0, "Item deadline must be positive");
+      this.itemDeadline = itemDeadline;
+      return this;
+    }
+
+    public ParallelTransformer build() {
+      checkArgument(
+          minThreads <= maxThreads,
+          "Min threads (%s) must not be more than max threads (%s)",
+          minThreads,
+          maxThreads);
+      return new ParallelTransformer(this);
+    }
+  }
+}
@@ -0,0 +1,165 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Comparator.comparing;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Maps;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+
+/**
+ * The changes needed to store a new version of a large map as shards, given the shards that hold
+ * the current version.
+ *
+ * <p>Each stored shard covers the range of keys from its own smallest key up to the smallest key of
+ * the next shard, and the first shard also covers all keys before it. A shard whose range holds
+ * exactly the same entries in the new map is kept as it is, and the entries of every other range
+ * are split into new shards of at most the shard size.
+ * Day-to-day changes to a big list thus only rewrite the few shards that they touch.
+ *
+ * <p>If fewer than half of the current shards can be kept, or keeping them would leave more than
+ * twice as many shards as needed, the whole map is sharded anew instead, so that the shards don't
+ * fragment over time. The same happens with shards that weren't written as sorted ranges, since
+ * their contents won't match any range.
+ *
+ * @param <K> the type of the map keys
+ * @param <V> the type of the map values
+ * @param <S> the type that identifies a stored shard, e.g. its Datastore key
+ */
+public final class ShardedMapDiff<K extends Comparable<? super K>, V, S> {
+
+  private final ImmutableSet<S> keptShards;
+  private final ImmutableSet<S> removedShards;
+  private final ImmutableList<ImmutableSortedMap<K, V>> newShards;
+
+  private ShardedMapDiff(
+      ImmutableSet<S> keptShards,
+      ImmutableSet<S> removedShards,
+      ImmutableList<ImmutableSortedMap<K, V>> newShards) {
+    this.keptShards = keptShards;
+    this.removedShards = removedShards;
+    this.newShards = newShards;
+  }
+
+  /**
+   * Computes the changes from the current shards to the new map.
+   *
+   * @param newMap the new version of the map
+   * @param currentShards the contents of each of the current shards, by shard identity
+   * @param shardSize the maximum number of entries in a shard
+   */
+  public static <K extends Comparable<? super K>, V, S> ShardedMapDiff<K, V, S> create(
+      Map<K, V> newMap, Map<S, ? extends Map<K, V>> currentShards, int shardSize) {
+    checkArgument(shardSize > 0, "Shard size must be positive: %s", shardSize);
+    ImmutableSortedMap<K, V> sortedMap = ImmutableSortedMap.copyOf(newMap);
+    int minShards = (sortedMap.size() + shardSize - 1) / shardSize;
+    List<Entry<S, ImmutableSortedMap<K, V>>> sortedShards = new ArrayList<>();
+    ImmutableSet.Builder<S> emptyShards = new ImmutableSet.Builder<>();
+    for (Entry<S, ? extends Map<K, V>> shard : currentShards.entrySet()) {
+      if (shard.getValue().isEmpty()) {
+        emptyShards.add(shard.getKey());
+      } else {
+        sortedShards.add(
+            Maps.immutableEntry(shard.getKey(), ImmutableSortedMap.copyOf(shard.getValue())));
+      }
+    }
+    sortedShards.sort(comparing(shard -> shard.getValue().firstKey()));
+
+    ImmutableSet.Builder<S> kept = new ImmutableSet.Builder<>();
+    ImmutableSet.Builder<S> removed = new ImmutableSet.Builder<S>().addAll(emptyShards.build());
+    ImmutableList.Builder<ImmutableSortedMap<K, V>> added = new ImmutableList.Builder<>();
+    int numKept = 0;
+    int numAdded = 0;
+    for (int i = 0; i < sortedShards.size(); i++) {
+      Entry<S, ImmutableSortedMap<K, V>> shard = sortedShards.get(i);
+      SortedMap<K, V> range = sortedMap;
+      if (i > 0) {
+        range = range.tailMap(shard.getValue().firstKey());
+      }
+      if (i + 1 < sortedShards.size()) {
+        range = range.headMap(sortedShards.get(i + 1).getValue().firstKey());
+      }
+      if (range.equals(shard.getValue())) {
+        kept.add(shard.getKey());
+        numKept++;
+      } else {
+        removed.add(shard.getKey());
+        ImmutableList<ImmutableSortedMap<K, V>> split = split(range, shardSize);
+        added.addAll(split);
+        numAdded += split.size();
+      }
+    }
+    if (sortedShards.isEmpty()
+        || numKept * 2 < sortedShards.size()
+        || numKept + numAdded > minShards * 2) {
+      return new ShardedMapDiff<>(
+          ImmutableSet.of(),
+          ImmutableSet.copyOf(currentShards.keySet()),
+          split(sortedMap, shardSize));
+    }
+    return new ShardedMapDiff<>(kept.build(), removed.build(), added.build());
+  }
+
+  /** Splits a sorted map into the fewest shards of at most the given size, of even sizes. */
+  private static <K extends Comparable<? super K>, V>
+      ImmutableList<ImmutableSortedMap<K, V>> split(SortedMap<K, V> map, int shardSize) {
+    int numShards = (map.size() + shardSize - 1) / shardSize;
+    ImmutableList.Builder<ImmutableSortedMap<K, V>> shards = new ImmutableList.Builder<>();
+    ImmutableSortedMap.Builder<K, V> shard = ImmutableSortedMap.naturalOrder();
+    int shardIndex = 0;
+    int entryIndex = 0;
+    for (Entry<K, V> entry : map.entrySet()) {
+      shard.put(entry);
+      entryIndex++;
+      // End the shard once it has its even share of the entries seen so far.
+      if (entryIndex == (long) map.size() * (shardIndex + 1) / numShards) {
+        shards.add(shard.build());
+        shard = ImmutableSortedMap.naturalOrder();
+        shardIndex++;
+      }
+    }
+    return shards.build();
+  }
+
+  /** Returns the current shards that hold exactly the entries that they need to. */
+  public ImmutableSet<S> getKeptShards() {
+    return keptShards;
+  }
+
+  /** Returns the current shards that have to be deleted once the new shards are live. */
+  public ImmutableSet<S> getRemovedShards() {
+    return removedShards;
+  }
+
+  /** Returns the contents of the shards that have to be written. */
+  public ImmutableList<ImmutableSortedMap<K, V>> getNewShards() {
+    return newShards;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "%d shards kept, %d removed, %d written",
+        keptShards.size(), removedShards.size(), newShards.size());
+  }
+}
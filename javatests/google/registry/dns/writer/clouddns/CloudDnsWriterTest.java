@@ -17,16 +17,19 @@ package google.registry.dns.writer.clouddns;
 import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.io.BaseEncoding.base16;
 import static com.google.common.truth.Truth.assertThat;
+import static google.registry.model.ofy.ObjectifyService.ofy;
 import static google.registry.testing.DatastoreHelper.createTld;
 import static google.registry.testing.DatastoreHelper.newDomainResource;
 import static google.registry.testing.DatastoreHelper.newHostResource;
 import static google.registry.testing.DatastoreHelper.persistResource;
+import static google.registry.testing.JUnitBackports.assertThrows;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 import com.google.api.services.dns.Dns;
@@ -39,7 +42,9 @@ import com.google.common.collect.Sets;
 import com.google.common.net.InetAddresses;
 import com.google.common.util.concurrent.RateLimiter;
 import com.googlecode.objectify.Key;
+import google.registry.dns.DnsMetrics;
 import google.registry.dns.writer.clouddns.CloudDnsWriter.ZoneStateException;
+import google.registry.model.dns.ZoneMirrorEntry;
 import google.registry.model.domain.DomainResource;
 import google.registry.model.domain.secdns.DelegationSignerData;
 import google.registry.model.eppcommon.StatusValue;
@@ -81,6 +86,7 @@ public class CloudDnsWriterTest {
   @Mock private Dns.ResourceRecordSets resourceRecordSets;
   @Mock private Dns.Changes changes;
   @Mock private Dns.Changes.Create createChangeRequest;
+  @Mock private DnsMetrics dnsMetrics;
   @Captor ArgumentCaptor<String> zoneNameCaptor;
   @Captor ArgumentCaptor<Change> changeCaptor;
 
@@ -116,18 +122,7 @@ public class CloudDnsWriterTest {
   @Before
   public void setUp() throws Exception {
     createTld("tld");
-    writer =
-        new CloudDnsWriter(
-            dnsConnection,
-            "projectId",
-            "triple.secret.tld", // used by testInvalidZoneNames()
-            DEFAULT_A_TTL,
-            DEFAULT_NS_TTL,
-            DEFAULT_DS_TTL,
-            RateLimiter.create(20),
-            10, // max num threads
-            new SystemClock(),
-            new Retrier(new SystemSleeper(), 5));
+    writer = createWriter(false);
 
     // Create an empty zone.
     stubZone = ImmutableSet.of();
@@ -159,6 +154,22 @@ public class CloudDnsWriterTest {
             });
   }
 
+  private CloudDnsWriter createWriter(boolean zoneMirrorEnabled) {
+    return new CloudDnsWriter(
+        dnsConnection,
+        "projectId",
+        "triple.secret.tld", // used by testInvalidZoneNames()
+        DEFAULT_A_TTL,
+        DEFAULT_NS_TTL,
+        DEFAULT_DS_TTL,
+        RateLimiter.create(20),
+        10, // max num threads
+        new SystemClock(),
+        new Retrier(new SystemSleeper(), 5),
+        new CloudDnsZoneMirror(zoneMirrorEnabled, new SystemClock()),
+        dnsMetrics);
+  }
+
   private void verifyZone(ImmutableSet<ResourceRecordSet> expectedRecords) {
     // Trigger zone changes
     writer.commit();
@@ -518,4 +529,80 @@ public class CloudDnsWriterTest {
     writer.commit();
     verify(dnsConnection, times(0)).changes();
   }
+
+  @Test
+  public void testZoneMirror_disabled_isNotUsed() {
+    persistResource(
+        fakeDomain("example.tld", ImmutableSet.of(persistResource(fakeHost("0.external"))), 0));
+    writer.publishDomain("example.tld");
+
+    verifyZone(fakeDomainRecords("example.tld", 0, 0, 1, 0));
+    assertThat(ofy().load().type(ZoneMirrorEntry.class)).isEmpty();
+    verifyZeroInteractions(dnsMetrics);
+  }
+
+  @Test
+  public void testZoneMirror_readsOnlyNamesMissingFromMirror() throws Exception {
+    stubZone = fakeDomainRecords("example.tld", 2, 0, 0, 0);
+    HostResource host = persistResource(fakeHost("0.ip4.example.tld", IPv4));
+    persistResource(
+        fakeDomain("example.tld", ImmutableSet.of(host), 0)
+            .asBuilder()
+            .addSubordinateHost("0.ip4.example.tld")
+            .build());
+    writer = createWriter(true);
+    writer.publishDomain("example.tld");
+    verifyZone(fakeDomainRecords("example.tld", 1, 0, 0, 0));
+    // The domain and its glue, then the glue named by the NS records in Cloud DNS.
+    verify(resourceRecordSets, times(4)).list(anyString(), anyString());
+    verify(dnsMetrics, times(2)).recordZoneMirrorLookups(0, 2);
+
+    persistResource(
+        fakeDomain("example.tld", ImmutableSet.of(host), 1)
+            .asBuilder()
+            .addSubordinateHost("0.ip4.example.tld")
+            .build());
+    writer = createWriter(true);
+    writer.publishDomain("example.tld");
+    verifyZone(fakeDomainRecords("example.tld", 1, 0, 0, 1));
+    // Everything came from the mirror this time.
+    verify(resourceRecordSets, times(4)).list(anyString(), anyString());
+    verify(dnsMetrics).recordZoneMirrorLookups(2, 0);
+    verify(dnsMetrics).recordZoneMirrorLookups(1, 0);
+  }
+
+  @Test
+  public void testZoneMirror_staleMirror_isInvalidatedWhenChangeFails() {
+    HostResource host = persistResource(fakeHost("0.ip4.example.tld", IPv4));
+    persistResource(
+        fakeDomain("example.tld", ImmutableSet.of(host), 0)
+            .asBuilder()
+            .addSubordinateHost("0.ip4.example.tld")
+            .build());
+    writer = createWriter(true);
+    writer.publishDomain("example.tld");
+    verifyZone(fakeDomainRecords("example.tld", 1, 0, 0, 0));
+
+    // Someone changes the zone behind the writer's back, so the deletions it works out from the
+    // mirror don't match the zone.
+    stubZone = fakeDomainRecords("example.tld", 2, 0, 0, 0);
+    persistResource(fakeDomain("example.tld", ImmutableSet.of(), 0));
+    writer = createWriter(true);
+    writer.publishDomain("example.tld");
+    assertThrows(RuntimeException.class, () -> writer.commit());
+    assertThat(
+            ofy()
+                .load()
+                .type(ZoneMirrorEntry.class)
+                .list()
+                .stream()
+                .map(ZoneMirrorEntry::isKnown)
+                .collect(toImmutableList()))
+        .containsExactly(false, false);
+
+    // The next attempt reads the names from Cloud DNS, so it also deletes the glue that was added.
+    writer = createWriter(true);
+    writer.publishDomain("example.tld");
+    verifyZone(ImmutableSet.of());
+  }
 }
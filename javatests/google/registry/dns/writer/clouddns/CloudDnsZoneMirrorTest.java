@@ -0,0 +1,139 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.dns.writer.clouddns;
+
+import static com.google.common.truth.Truth.assertThat;
+import static google.registry.model.ofy.ObjectifyService.ofy;
+
+import com.google.api.services.dns.model.ResourceRecordSet;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import google.registry.model.dns.ZoneMirrorEntry;
+import google.registry.testing.AppEngineRule;
+import google.registry.testing.FakeClock;
+import org.joda.time.DateTime;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link CloudDnsZoneMirror}. */
+@RunWith(JUnit4.class)
+public class CloudDnsZoneMirrorTest {
+
+  @Rule public final AppEngineRule appEngine = AppEngineRule.builder().withDatastore().build();
+
+  private final FakeClock clock = new FakeClock(DateTime.parse("2018-06-01T00:00:00Z"));
+  private final CloudDnsZoneMirror zoneMirror = new CloudDnsZoneMirror(true, clock);
+
+  private static final ResourceRecordSet NS_RECORDS =
+      new ResourceRecordSet()
+          .setName("example.tld.")
+          .setType("NS")
+          .setTtl(180)
+          .setKind("dns#resourceRecordSet")
+          .setRrdatas(ImmutableList.of("ns1.example.tld.", "ns2.example.tld."));
+
+  private static final ResourceRecordSet DS_RECORDS =
+      new ResourceRecordSet()
+          .setName("example.tld.")
+          .setType("DS")
+          .setTtl(3600)
+          .setKind("dns#resourceRecordSet")
+          .setRrdatas(ImmutableList.of("1 3 1 1234567890ABCDEF"));
+
+  private static ZoneMirrorEntry loadEntry(String ownerName) {
+    return ofy().load().key(ZoneMirrorEntry.createKey("tld", ownerName)).now();
+  }
+
+  @Test
+  public void testRows_roundTrip() {
+    ImmutableList<String> rows =
+        CloudDnsZoneMirror.toRows(ImmutableList.of(NS_RECORDS, DS_RECORDS));
+    assertThat(rows)
+        .containsExactly(
+            "NS 180 ns1.example.tld.", "NS 180 ns2.example.tld.", "DS 3600 1 3 1 1234567890ABCDEF")
+        .inOrder();
+    assertThat(CloudDnsZoneMirror.fromRows("example.tld.", rows))
+        .containsExactly(NS_RECORDS, DS_RECORDS)
+        .inOrder();
+  }
+
+  @Test
+  public void testLoad_returnsOnlyKnownNames() {
+    zoneMirror.save(
+        "tld",
+        ImmutableMap.of(
+            "example.tld.", ImmutableSet.of(NS_RECORDS), "deleted.tld.", ImmutableSet.of()));
+    zoneMirror.save("tld", ImmutableMap.of("invalid.tld.", ImmutableSet.of(NS_RECORDS)));
+    zoneMirror.invalidate("tld", ImmutableSet.of("invalid.tld."));
+
+    assertThat(
+            zoneMirror.load(
+                "tld",
+                ImmutableSet.of("example.tld.", "deleted.tld.", "invalid.tld.", "missing.tld.")))
+        .containsExactly(
+            "example.tld.", ImmutableList.of(NS_RECORDS), "deleted.tld.", ImmutableList.of());
+    assertThat(zoneMirror.load("other", ImmutableSet.of("example.tld."))).isEmpty();
+  }
+
+  @Test
+  public void testSave_onlyRewritesChangedEntries() {
+    zoneMirror.save("tld", ImmutableMap.of("example.tld.", ImmutableSet.of(NS_RECORDS)));
+    assertThat(loadEntry("example.tld.").getVersion()).isEqualTo(1);
+
+    zoneMirror.save("tld", ImmutableMap.of("example.tld.", ImmutableSet.of(NS_RECORDS)));
+    assertThat(loadEntry("example.tld.").getVersion()).isEqualTo(1);
+
+    zoneMirror.save(
+        "tld", ImmutableMap.of("example.tld.", ImmutableSet.of(NS_RECORDS, DS_RECORDS)));
+    assertThat(loadEntry("example.tld.").getVersion()).isEqualTo(2);
+  }
+
+  @Test
+  public void testInvalidate_bumpsVersion() {
+    zoneMirror.save("tld", ImmutableMap.of("example.tld.", ImmutableSet.of(NS_RECORDS)));
+    zoneMirror.invalidate("tld", ImmutableSet.of("example.tld.", "missing.tld."));
+
+    ZoneMirrorEntry entry = loadEntry("example.tld.");
+    assertThat(entry.isKnown()).isFalse();
+    assertThat(entry.getVersion()).isEqualTo(2);
+    assertThat(loadEntry("missing.tld.")).isNull();
+  }
+
+  @Test
+  public void testRepair_replacesUnchangedEntry() {
+    zoneMirror.save("tld", ImmutableMap.of("example.tld.", ImmutableSet.of(NS_RECORDS)));
+    ZoneMirrorEntry entry = loadEntry("example.tld.");
+    ImmutableList<String> rows = CloudDnsZoneMirror.toRows(ImmutableList.of(DS_RECORDS));
+
+    assertThat(zoneMirror.repair(entry, rows)).isTrue();
+    assertThat(loadEntry("example.tld.").getRecords()).isEqualTo(rows);
+    assertThat(loadEntry("example.tld.").getVersion()).isEqualTo(2);
+  }
+
+  @Test
+  public void testRepair_skipsEntryWrittenSinceLoad() {
+    zoneMirror.save("tld", ImmutableMap.of("example.tld.", ImmutableSet.of(NS_RECORDS)));
+    ZoneMirrorEntry entry = loadEntry("example.tld.");
+    zoneMirror.invalidate("tld", ImmutableSet.of("example.tld."));
+
+    assertThat(
+            zoneMirror.repair(entry, CloudDnsZoneMirror.toRows(ImmutableList.of(DS_RECORDS))))
+        .isFalse();
+    assertThat(loadEntry("example.tld.").isKnown()).isFalse();
+  }
+}
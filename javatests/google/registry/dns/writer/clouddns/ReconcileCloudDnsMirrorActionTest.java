@@ -0,0 +1,266 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.dns.writer.clouddns;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.truth.Truth.assertThat;
+import static google.registry.model.ofy.ObjectifyService.ofy;
+import static google.registry.testing.DatastoreHelper.createTld;
+import static google.registry.testing.DatastoreHelper.persistResource;
+import static google.registry.testing.TaskQueueHelper.assertNoTasksEnqueued;
+import static google.registry.testing.TaskQueueHelper.assertTasksEnqueued;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import com.google.api.services.dns.Dns;
+import com.google.api.services.dns.model.ResourceRecordSet;
+import com.google.api.services.dns.model.ResourceRecordSetsListResponse;
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.RateLimiter;
+import google.registry.model.dns.ZoneMirrorEntry;
+import google.registry.model.registry.Registry;
+import google.registry.testing.AppEngineRule;
+import google.registry.testing.FakeClock;
+import google.registry.testing.FakeResponse;
+import google.registry.testing.MockitoJUnitRule;
+import google.registry.testing.TaskQueueHelper.TaskMatcher;
+import google.registry.util.Retrier;
+import google.registry.util.TaskQueueUtils;
+import java.util.Optional;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+
+/** Unit tests for {@link ReconcileCloudDnsMirrorAction}. */
+@RunWith(JUnit4.class)
+public class ReconcileCloudDnsMirrorActionTest {
+
+  @Rule
+  public final AppEngineRule appEngine =
+      AppEngineRule.builder().withDatastore().withTaskQueue().build();
+  @Rule public final MockitoJUnitRule mocks = MockitoJUnitRule.create();
+
+  @Mock private Dns dnsConnection;
+  @Mock private Dns.ResourceRecordSets resourceRecordSets;
+
+  private final FakeClock clock = new FakeClock(DateTime.parse("2018-06-01T00:00:00Z"));
+  private final FakeResponse response = new FakeResponse();
+  private final CloudDnsZoneMirror zoneMirror = new CloudDnsZoneMirror(true, clock);
+
+  private static final ResourceRecordSet DS_RECORDS =
+      new ResourceRecordSet()
+          .setName("split.tld.")
+          .setType("DS")
+          .setTtl(3600)
+          .setKind("dns#resourceRecordSet")
+          .setRrdatas(ImmutableList.of("1 3 1 1234567890ABCDEF"));
+
+  /** The pages of the zone in Cloud DNS, keyed by the token that fetches them. */
+  private ImmutableMap<String, ResourceRecordSetsListResponse> zonePages;
+
+  private static ResourceRecordSet nsRecords(String name, String... nameservers) {
+    return new ResourceRecordSet()
+        .setName(name)
+        .setType("NS")
+        .setTtl(180)
+        .setKind("dns#resourceRecordSet")
+        .setRrdatas(ImmutableList.copyOf(nameservers));
+  }
+
+  private static ZoneMirrorEntry loadEntry(String ownerName) {
+    return ofy().load().key(ZoneMirrorEntry.createKey("tld", ownerName)).now();
+  }
+
+  private ReconcileCloudDnsMirrorAction createAction(
+      CloudDnsZoneMirror zoneMirror, Optional<String> pageToken, Optional<String> splitName) {
+    ReconcileCloudDnsMirrorAction action = new ReconcileCloudDnsMirrorAction();
+    action.clock = clock;
+    action.dnsConnection = dnsConnection;
+    action.zoneMirror = zoneMirror;
+    action.projectId = "projectId";
+    action.zoneName = "tld";
+    action.tld = "tld";
+    action.pageToken = pageToken;
+    action.splitName = splitName;
+    action.rateLimiter = RateLimiter.create(20);
+    action.queue = QueueFactory.getQueue(ReconcileCloudDnsMirrorAction.QUEUE);
+    action.taskQueueUtils = new TaskQueueUtils(new Retrier(null, 1));
+    action.response = response;
+    return action;
+  }
+
+  private ReconcileCloudDnsMirrorAction createAction(CloudDnsZoneMirror zoneMirror) {
+    return createAction(zoneMirror, Optional.empty(), Optional.empty());
+  }
+
+  @Before
+  public void before() throws Exception {
+    createTld("tld");
+    persistResource(
+        Registry.get("tld")
+            .asBuilder()
+            .setDnsWriters(ImmutableSet.of(CloudDnsWriter.NAME))
+            .build());
+    when(dnsConnection.resourceRecordSets()).thenReturn(resourceRecordSets);
+    when(resourceRecordSets.list("projectId", "tld"))
+        .thenAnswer(
+            invocation -> {
+              Dns.ResourceRecordSets.List request = mock(Dns.ResourceRecordSets.List.class);
+              ArgumentCaptor<String> pageToken = ArgumentCaptor.forClass(String.class);
+              ArgumentCaptor<String> name = ArgumentCaptor.forClass(String.class);
+              when(request.setPageToken(pageToken.capture())).thenReturn(request);
+              when(request.setName(name.capture())).thenReturn(request);
+              when(request.execute())
+                  .thenAnswer(
+                      execution ->
+                          name.getAllValues().isEmpty()
+                              ? zonePages.get(
+                                  pageToken.getAllValues().isEmpty()
+                                          || pageToken.getValue() == null
+                                      ? ""
+                                      : pageToken.getValue())
+                              : readName(name.getValue()));
+              return request;
+            });
+    zonePages =
+        ImmutableMap.of(
+            "",
+            new ResourceRecordSetsListResponse()
+                .setRrsets(
+                    ImmutableList.of(
+                        nsRecords("tld.", "ns.registry."),
+                        nsRecords("unchanged.tld.", "ns1.example."),
+                        nsRecords("changed.tld.", "ns2.example."),
+                        nsRecords("split.tld.", "ns1.example.")))
+                .setNextPageToken("page2"),
+            "page2",
+            new ResourceRecordSetsListResponse()
+                .setRrsets(
+                    ImmutableList.of(
+                        DS_RECORDS,
+                        nsRecords("added.tld.", "ns1.example."),
+                        nsRecords("invalidated.tld.", "ns1.example."),
+                        nsRecords("unmirrored.tld.", "ns1.example."))));
+    zoneMirror.save(
+        "tld",
+        ImmutableMap.<String, ImmutableSet<ResourceRecordSet>>builder()
+            .put("unchanged.tld.", ImmutableSet.of(nsRecords("unchanged.tld.", "ns1.example.")))
+            .put("changed.tld.", ImmutableSet.of(nsRecords("changed.tld.", "ns1.example.")))
+            .put("split.tld.", ImmutableSet.of(nsRecords("split.tld.", "ns1.example.")))
+            .put("added.tld.", ImmutableSet.of())
+            .put("removed.tld.", ImmutableSet.of(nsRecords("removed.tld.", "ns1.example.")))
+            .put("invalidated.tld.", ImmutableSet.of(nsRecords("invalidated.tld.", "ns1.example.")))
+            .build());
+    zoneMirror.invalidate("tld", ImmutableSet.of("invalidated.tld."));
+    clock.advanceOneMilli();
+  }
+
+  /** Returns the response to a request for all the record sets of a name. */
+  private ResourceRecordSetsListResponse readName(String name) {
+    return new ResourceRecordSetsListResponse()
+        .setRrsets(
+            zonePages
+                .values()
+                .stream()
+                .flatMap(page -> page.getRrsets().stream())
+                .filter(recordSet -> recordSet.getName().equals(name))
+                .collect(toImmutableList()));
+  }
+
+  @Test
+  public void testRun_firstPage_repairsDriftedEntriesAndEnqueuesNextPage() {
+    createAction(zoneMirror).run();
+
+    assertThat(response.getPayload())
+        .isEqualTo(
+            "Repaired 1 of 2 mirrored names on this page of zone tld; "
+                + "0 changed while being compared");
+    assertThat(loadEntry("unchanged.tld.").getVersion()).isEqualTo(1);
+    assertThat(loadEntry("changed.tld.").getRecords()).containsExactly("NS 180 ns2.example.");
+    // The rest of split.tld.'s records are on the next page, so it's left for the next run.
+    assertThat(loadEntry("split.tld.").getVersion()).isEqualTo(1);
+    assertThat(loadEntry("added.tld.").getRecords()).isEmpty();
+    assertTasksEnqueued(
+        ReconcileCloudDnsMirrorAction.QUEUE,
+        new TaskMatcher()
+            .url(ReconcileCloudDnsMirrorAction.PATH)
+            .param("tld", "tld")
+            .param("pageToken", "page2")
+            .param("splitName", "split.tld."));
+  }
+
+  @Test
+  public void testRun_lastPage_readsSplitNameInFull() {
+    createAction(zoneMirror, Optional.of("page2"), Optional.of("split.tld.")).run();
+
+    assertThat(response.getPayload())
+        .isEqualTo(
+            "Repaired 3 of 3 mirrored names on this page of zone tld; "
+                + "0 changed while being compared");
+    assertThat(loadEntry("split.tld.").getRecords())
+        .containsExactly("NS 180 ns1.example.", "DS 3600 1 3 1 1234567890ABCDEF")
+        .inOrder();
+    assertThat(loadEntry("added.tld.").getRecords()).containsExactly("NS 180 ns1.example.");
+    assertThat(loadEntry("invalidated.tld.").getRecords()).containsExactly("NS 180 ns1.example.");
+    assertThat(loadEntry("unmirrored.tld.")).isNull();
+    // Names that are no longer in the zone at all are left for the writer to invalidate.
+    assertThat(loadEntry("removed.tld.").getRecords()).containsExactly("NS 180 ns1.example.");
+    assertNoTasksEnqueued(ReconcileCloudDnsMirrorAction.QUEUE);
+  }
+
+  @Test
+  public void testRun_entryWrittenSincePageRead_isSkipped() {
+    // The clock doesn't move before the action reads the page, so this write can't be told apart
+    // from one made after the read.
+    zoneMirror.save(
+        "tld", ImmutableMap.of("changed.tld.", ImmutableSet.of(nsRecords("changed.tld.", "ns3."))));
+
+    createAction(zoneMirror).run();
+
+    assertThat(response.getPayload())
+        .isEqualTo(
+            "Repaired 0 of 2 mirrored names on this page of zone tld; "
+                + "1 changed while being compared");
+    assertThat(loadEntry("changed.tld.").getRecords()).containsExactly("NS 180 ns3.");
+  }
+
+  @Test
+  public void testRun_mirrorDisabled_doesNothing() {
+    createAction(new CloudDnsZoneMirror(false, clock)).run();
+
+    assertThat(response.getPayload()).isEqualTo("Zone mirror not in use");
+    verifyZeroInteractions(dnsConnection);
+  }
+
+  @Test
+  public void testRun_otherDnsWriter_doesNothing() {
+    persistResource(
+        Registry.get("tld").asBuilder().setDnsWriters(ImmutableSet.of("VoidDnsWriter")).build());
+
+    createAction(zoneMirror).run();
+
+    assertThat(response.getPayload()).isEqualTo("Zone mirror not in use");
+    verifyZeroInteractions(dnsConnection);
+  }
+}
@@ -199,6 +199,7 @@ public class EppControllerTest extends ShardableTestCase {
     EppMetric expectedMetric = metricBuilder.build();
     verify(eppMetrics).incrementEppRequests(eq(expectedMetric));
     verify(eppMetrics).recordProcessingTime(eq(expectedMetric));
+    verify(eppMetrics).recordDatastoreRpcs(eq(expectedMetric));
   }
 
   @Test
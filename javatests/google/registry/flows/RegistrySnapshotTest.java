@@ -0,0 +1,66 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.flows;
+
+import static com.google.common.truth.Truth.assertThat;
+import static google.registry.testing.DatastoreHelper.createTlds;
+import static google.registry.testing.DatastoreHelper.persistResource;
+import static google.registry.testing.JUnitBackports.assertThrows;
+
+import google.registry.model.registry.Registry;
+import google.registry.model.registry.Registry.RegistryNotFoundException;
+import google.registry.testing.AppEngineRule;
+import google.registry.testing.ShardableTestCase;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link RegistrySnapshot}. */
+@RunWith(JUnit4.class)
+public class RegistrySnapshotTest extends ShardableTestCase {
+
+  @Rule
+  public final AppEngineRule appEngine = AppEngineRule.builder().withDatastore().build();
+
+  private final RegistrySnapshot registrySnapshot = new RegistrySnapshot();
+
+  @Before
+  public void before() {
+    createTlds("tld", "example");
+  }
+
+  @Test
+  public void testGet_returnsRegistry() {
+    assertThat(registrySnapshot.get("tld")).isEqualTo(Registry.get("tld"));
+    assertThat(registrySnapshot.get("example")).isEqualTo(Registry.get("example"));
+  }
+
+  @Test
+  public void testGet_ignoresLaterChanges() {
+    Registry original = registrySnapshot.get("tld");
+    registrySnapshot.get("example");
+    persistResource(Registry.get("tld").asBuilder().setDomainCreateRestricted(true).build());
+    assertThat(Registry.get("tld").getDomainCreateRestricted()).isTrue();
+    assertThat(registrySnapshot.get("tld")).isSameAs(original);
+    assertThat(registrySnapshot.get("tld").getDomainCreateRestricted()).isFalse();
+  }
+
+  @Test
+  public void testGet_nonexistentTld_throws() {
+    assertThrows(RegistryNotFoundException.class, () -> registrySnapshot.get("nonexistent"));
+  }
+}
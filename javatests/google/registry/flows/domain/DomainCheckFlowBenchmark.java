@@ -0,0 +1,82 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.flows.domain;
+
+import static com.google.common.truth.Truth.assertThat;
+import static google.registry.testing.DatastoreHelper.createTld;
+import static google.registry.testing.DatastoreHelper.persistPremiumList;
+import static google.registry.testing.DatastoreHelper.persistResource;
+
+import com.google.common.collect.ImmutableMap;
+import google.registry.flows.ResourceCheckFlowTestCase;
+import google.registry.model.domain.DomainResource;
+import google.registry.model.eppoutput.CheckData;
+import google.registry.model.eppoutput.EppOutput;
+import google.registry.model.registry.Registry;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Benchmark of a domain check of 50 names with the fee extension, i.e. the largest check that a
+ * registrar can send, with two fee commands per name.
+ *
+ * <p>This isn't run as part of the test suite. Run it with {@code
+ * bazel run //javatests/google/registry/flows:domain_check_flow_benchmark}.
+ */
+public class DomainCheckFlowBenchmark
+    extends ResourceCheckFlowTestCase<DomainCheckFlow, DomainResource> {
+
+  private static final int NUM_NAMES = 50;
+  private static final int WARMUP_ROUNDS = 20;
+  private static final int ROUNDS = 200;
+
+  @Before
+  public void initBenchmark() {
+    createTld("tld");
+    persistResource(
+        Registry.get("tld")
+            .asBuilder()
+            .setPremiumList(persistPremiumList("tld", "premium5,USD 100", "premium10,USD 200"))
+            .build());
+    StringBuilder names = new StringBuilder();
+    for (int i = 0; i < NUM_NAMES; i++) {
+      names.append(String.format("        <domain:name>premium%d.tld</domain:name>%n", i));
+    }
+    setEppInput(
+        "domain_check_fee_many_names_v12.xml", ImmutableMap.of("NAMES", names.toString()));
+  }
+
+  @Test
+  public void benchmarkFeeCheck() throws Exception {
+    for (int i = 0; i < WARMUP_ROUNDS; i++) {
+      runCheck();
+    }
+    long startNanos = System.nanoTime();
+    for (int i = 0; i < ROUNDS; i++) {
+      runCheck();
+    }
+    long elapsedNanos = System.nanoTime() - startNanos;
+    System.out.printf(
+        "%d checks of %d names with fees: %.2f ms per check%n",
+        ROUNDS, NUM_NAMES, elapsedNanos / 1e6 / ROUNDS);
+  }
+
+  private void runCheck() throws Exception {
+    EppOutput output = runFlow();
+    assertThat(((CheckData) output.getResponse().getResponseData().get(0)).getChecks())
+        .hasSize(NUM_NAMES);
+    assertThat(output.getResponse().getExtensions()).hasSize(1);
+  }
+}
@@ -57,6 +57,7 @@ import static org.joda.money.CurrencyUnit.USD;
 import static org.joda.time.Duration.standardDays;
 import static org.joda.time.Duration.standardSeconds;
 
+import com.google.common.base.Predicates;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedMap;
@@ -83,6 +84,7 @@ import google.registry.model.eppcommon.ProtocolDefinition.ServiceExtension;
 import google.registry.model.eppcommon.StatusValue;
 import google.registry.model.eppcommon.Trid;
 import google.registry.model.host.HostResource;
+import google.registry.model.ofy.RequestCapturingAsyncDatastoreService;
 import google.registry.model.poll.PendingActionNotificationResponse;
 import google.registry.model.poll.PollMessage;
 import google.registry.model.registry.Registry;
@@ -564,6 +566,32 @@ public class DomainDeleteFlowTest extends ResourceFlowTestCase<DomainDeleteFlow,
     runFlowAssertResponse(loadFile("domain_delete_response_autorenew_fee.xml", FEE_12_MAP));
   }
 
+  @Test
+  public void testBatchLoadingOfAutorenewEvents() throws Exception {
+    setUpSuccessfulTest();
+    clock.advanceOneMilli();
+    // Clear out the session cache so that we count actual Datastore calls.
+    ofy().clearSessionCache();
+    int numPreviousReads = RequestCapturingAsyncDatastoreService.getReads().size();
+    runFlowAssertResponse(loadFile("domain_delete_response_pending.xml"));
+    // The autorenew billing event and poll message should be loaded together.
+    long numReadsWithAutorenewEvents =
+        RequestCapturingAsyncDatastoreService.getReads()
+            .stream()
+            .skip(numPreviousReads)
+            .filter(
+                keys ->
+                    keys.stream()
+                        .map(key -> key.getKind())
+                        .anyMatch(
+                            Predicates.in(
+                                ImmutableSet.of(
+                                    Key.getKind(BillingEvent.Recurring.class),
+                                    Key.getKind(PollMessage.class)))))
+            .count();
+    assertThat(numReadsWithAutorenewEvents).isEqualTo(1);
+  }
+
   @Test
   public void testSuccess_noPendingTransfer_deletedAndHasNoTransferData() throws Exception {
     setClientIdForFlow("TheRegistrar");
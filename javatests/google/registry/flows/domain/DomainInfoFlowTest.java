@@ -14,6 +14,7 @@
 
 package google.registry.flows.domain;
 
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.io.BaseEncoding.base16;
 import static com.google.common.truth.Truth.assertThat;
 import static google.registry.model.ofy.ObjectifyService.ofy;
@@ -54,6 +55,7 @@ import google.registry.model.eppcommon.StatusValue;
 import google.registry.model.host.HostResource;
 import google.registry.model.ofy.RequestCapturingAsyncDatastoreService;
 import google.registry.testing.AppEngineRule;
+import java.util.List;
 import org.joda.time.DateTime;
 import org.junit.Before;
 import org.junit.Test;
@@ -707,6 +709,29 @@ public class DomainInfoFlowTest extends ResourceFlowTestCase<DomainInfoFlow, Dom
     assertThat(numReadsWithContactsOrHosts).isEqualTo(1);
   }
 
+  /** Test that an unauthorized info doesn't load the contacts and hosts that it doesn't show. */
+  @Test
+  public void testBatchLoadingOfReferences_unauthorized_loadsOnlyRegistrant() throws Exception {
+    sessionMetadata.setClientId("ClientZ");
+    persistTestEntities(false);
+    // Clear out the session cache so that we count actual Datastore calls.
+    ofy().clearSessionCache();
+    int numPreviousReads = RequestCapturingAsyncDatastoreService.getReads().size();
+    doSuccessfulTest("domain_info_response_unauthorized.xml", false);
+    assertThat(
+            RequestCapturingAsyncDatastoreService.getReads()
+                .stream()
+                .skip(numPreviousReads)
+                .flatMap(List::stream)
+                .map(key -> key.getKind())
+                .filter(
+                    Predicates.in(
+                        ImmutableSet.of(
+                            Key.getKind(ContactResource.class), Key.getKind(HostResource.class))))
+                .collect(toImmutableList()))
+        .containsExactly(Key.getKind(ContactResource.class));
+  }
+
   @Test
   public void testIcannActivityReportField_getsLogged() throws Exception {
     persistTestEntities(false);
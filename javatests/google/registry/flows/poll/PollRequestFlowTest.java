@@ -14,6 +14,7 @@
 
 package google.registry.flows.poll;
 
+import static com.google.common.truth.Truth.assertThat;
 import static google.registry.testing.DatastoreHelper.createHistoryEntryForEppResource;
 import static google.registry.testing.DatastoreHelper.createTld;
 import static google.registry.testing.DatastoreHelper.newDomainResource;
@@ -87,6 +88,13 @@ public class PollRequestFlowTest extends FlowTestCase<PollRequestFlow> {
     runFlowAssertResponse(loadFile("poll_response_domain_transfer.xml"));
   }
 
+  @Test
+  public void testSuccess_messageEnqueuedAfterEmptyPoll_isVisibleImmediately() throws Exception {
+    assertThat(PollFlowUtils.loadPollMessageQueue(getClientIdForFlow(), clock.nowUtc())).isEmpty();
+    persistPendingTransferPollMessage();
+    runFlowAssertResponse(loadFile("poll_response_domain_transfer.xml"));
+  }
+
   @Test
   public void testSuccess_clTridNotSpecified() throws Exception {
     setEppInput("poll_no_cltrid.xml");
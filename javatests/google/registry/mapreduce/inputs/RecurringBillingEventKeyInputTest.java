@@ -0,0 +1,133 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.mapreduce.inputs;
+
+import static com.google.common.truth.Truth.assertThat;
+import static google.registry.mapreduce.inputs.RecurringBillingEventKeyInput.getTimeStringRanges;
+import static google.registry.testing.DatastoreHelper.createTld;
+import static google.registry.testing.DatastoreHelper.persistActiveDomain;
+import static google.registry.testing.DatastoreHelper.persistResource;
+import static google.registry.util.DateTimeUtils.END_OF_TIME;
+import static google.registry.util.DateTimeUtils.START_OF_TIME;
+
+import com.google.appengine.tools.mapreduce.InputReader;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Range;
+import com.googlecode.objectify.Key;
+import google.registry.model.billing.BillingEvent.Reason;
+import google.registry.model.billing.BillingEvent.Recurring;
+import google.registry.model.domain.DomainResource;
+import google.registry.model.reporting.HistoryEntry;
+import google.registry.testing.AppEngineRule;
+import java.util.NoSuchElementException;
+import org.joda.time.DateTime;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link RecurringBillingEventKeyInput}. */
+@RunWith(JUnit4.class)
+public final class RecurringBillingEventKeyInputTest {
+
+  @Rule
+  public final AppEngineRule appEngine = AppEngineRule.builder().withDatastore().build();
+
+  private static Range<DateTime> between(String start, String end) {
+    return Range.closed(DateTime.parse(start), DateTime.parse(end));
+  }
+
+  @Test
+  public void testGetTimeStringRanges_withinYear() {
+    assertThat(getTimeStringRanges(between("2016-03-05T00:00:00Z", "2016-03-15T00:00:00Z"), 1))
+        .containsExactly(Range.closedOpen("03 04 00000000", "03 16 00000000"));
+    assertThat(getTimeStringRanges(between("2016-03-05T00:00:00Z", "2016-03-15T00:00:00Z"), 2))
+        .containsExactly(
+            Range.closedOpen("03 04 00000000", "03 10 00000000"),
+            Range.closedOpen("03 10 00000000", "03 16 00000000"))
+        .inOrder();
+  }
+
+  @Test
+  public void testGetTimeStringRanges_acrossNewYear() {
+    assertThat(getTimeStringRanges(between("2016-12-25T00:00:00Z", "2017-01-04T00:00:00Z"), 1))
+        .containsExactly(Range.atLeast("12 24 00000000"), Range.lessThan("01 05 00000000"));
+  }
+
+  @Test
+  public void testGetTimeStringRanges_wholeYear() {
+    assertThat(getTimeStringRanges(Range.closed(START_OF_TIME, DateTime.parse("2016-06-01")), 1))
+        .containsExactly(Range.atLeast("01 01 00000000"));
+    assertThat(getTimeStringRanges(between("2016-06-01T00:00:00Z", "2017-06-01T00:00:00Z"), 4))
+        .containsExactly(
+            Range.closedOpen("01 01 00000000", "04 02 21600000"),
+            Range.closedOpen("04 02 21600000", "07 02 43200000"),
+            Range.closedOpen("07 02 43200000", "10 01 64800000"),
+            Range.atLeast("10 01 64800000"))
+        .inOrder();
+  }
+
+  @Test
+  public void testGetTimeStringRanges_februaryTwentyNinth() {
+    // The window widened by a day is [2016-02-29, 2016-03-11).
+    assertThat(getTimeStringRanges(between("2016-03-01T00:00:00Z", "2016-03-10T00:00:00Z"), 1))
+        .containsExactly(Range.closedOpen("03 01 00000000", "03 11 00000000"));
+    // The window widened by a day is [2016-02-20, 2016-02-29T12:00).
+    assertThat(getTimeStringRanges(between("2016-02-21T00:00:00Z", "2016-02-28T12:00:00Z"), 1))
+        .containsExactly(Range.closedOpen("02 20 00000000", "03 01 00000000"));
+  }
+
+  @Test
+  public void testReaders_onlyReturnEventsInRange() throws Exception {
+    createTld("tld");
+    DomainResource domain = persistActiveDomain("example.tld");
+    HistoryEntry historyEntry =
+        persistResource(new HistoryEntry.Builder().setParent(domain).build());
+    Recurring inRange =
+        persistRecurring(historyEntry, 1L, DateTime.parse("2010-12-27T12:00:00Z"));
+    Recurring inWrappedRange =
+        persistRecurring(historyEntry, 2L, DateTime.parse("2011-01-02T00:00:00Z"));
+    persistRecurring(historyEntry, 3L, DateTime.parse("2010-06-07T12:00:00Z"));
+    ImmutableSet.Builder<Key<Recurring>> seen = new ImmutableSet.Builder<>();
+    for (InputReader<Key<Recurring>> reader
+        : new RecurringBillingEventKeyInput(
+                between("2016-12-20T00:00:00Z", "2017-01-05T00:00:00Z"), 3)
+            .createReaders()) {
+      reader.beginShard();
+      reader.beginSlice();
+      try {
+        while (true) {
+          seen.add(reader.next());
+        }
+      } catch (NoSuchElementException expected) {
+      }
+    }
+    assertThat(seen.build()).containsExactly(Key.create(inRange), Key.create(inWrappedRange));
+  }
+
+  private static Recurring persistRecurring(
+      HistoryEntry historyEntry, long id, DateTime eventTime) {
+    return persistResource(
+        new Recurring.Builder()
+            .setId(id)
+            .setParent(historyEntry)
+            .setReason(Reason.RENEW)
+            .setEventTime(eventTime)
+            .setRecurrenceEndTime(END_OF_TIME)
+            .setClientId("TheRegistrar")
+            .setTargetId("example.tld")
+            .build());
+  }
+}
@@ -16,6 +16,9 @@ package google.registry.model;
 
 import static com.google.common.truth.Truth.assertThat;
 import static google.registry.model.EppResourceUtils.loadAtPointInTime;
+import static google.registry.model.EppResourceUtils.loadAtPointsInTime;
+import static google.registry.model.ofy.ObjectifyService.ofy;
+import static google.registry.model.ofy.RpcCountingAsyncDatastoreService.getCountsForCurrentThread;
 import static google.registry.testing.DatastoreHelper.createTld;
 import static google.registry.testing.DatastoreHelper.newHostResource;
 import static google.registry.testing.DatastoreHelper.persistResource;
@@ -23,7 +26,12 @@ import static google.registry.testing.DatastoreHelper.persistResourceWithCommitL
 import static google.registry.util.DateTimeUtils.START_OF_TIME;
 import static org.joda.time.DateTimeZone.UTC;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableTable;
+import com.googlecode.objectify.Key;
 import google.registry.model.host.HostResource;
+import google.registry.model.ofy.DatastoreRpcCounts;
 import google.registry.model.ofy.Ofy;
 import google.registry.testing.AppEngineRule;
 import google.registry.testing.FakeClock;
@@ -175,4 +183,61 @@ public class EppResourceUtilsTest {
           .now().getUpdateAutoTimestamp().getTimestamp())
               .isEqualTo(host.getRevisions().firstKey());
   }
+
+  @Test
+  public void testLoadAtPointsInTime_matchesLoadAtPointInTime() {
+    clock.advanceOneMilli();
+    HostResource oldHost = persistResourceWithCommitLog(
+        newHostResource("ns1.cat.tld").asBuilder()
+            .setCreationTimeForTest(START_OF_TIME)
+            .setPersistedCurrentSponsorClientId("OLD")
+            .build());
+    // Advance a day so that the next created revision entry doesn't overwrite the existing one.
+    clock.advanceBy(Duration.standardDays(1));
+    HostResource currentHost = persistResource(oldHost.asBuilder()
+        .setPersistedCurrentSponsorClientId("NEW")
+        .build());
+    HostResource newHost = persistResource(
+        newHostResource("ns2.cat.tld").asBuilder()
+            .setCreationTimeForTest(clock.nowUtc())
+            .build());
+    DateTime before = clock.nowUtc().minusMillis(1);
+    DateTime now = clock.nowUtc();
+    ImmutableTable<Key<HostResource>, DateTime, HostResource> hosts =
+        loadAtPointsInTime(
+            ImmutableList.of(currentHost, newHost), host -> ImmutableSet.of(before, now));
+    assertThat(hosts.get(Key.create(currentHost), before)).isEqualTo(oldHost);
+    assertThat(hosts.get(Key.create(currentHost), now))
+        .isEqualTo(loadAtPointInTime(currentHost, now).now());
+    assertThat(hosts.contains(Key.create(newHost), before)).isFalse();
+    assertThat(hosts.get(Key.create(newHost), now)).isEqualTo(newHost);
+  }
+
+  @Test
+  public void testLoadAtPointsInTime_fetchesAllRevisionsInOneRoundTrip() {
+    clock.advanceOneMilli();
+    ImmutableList.Builder<HostResource> oldHosts = new ImmutableList.Builder<>();
+    for (int i = 0; i < 3; i++) {
+      oldHosts.add(persistResourceWithCommitLog(
+          newHostResource(String.format("ns%d.cat.tld", i)).asBuilder()
+              .setCreationTimeForTest(START_OF_TIME)
+              .setPersistedCurrentSponsorClientId("OLD")
+              .build()));
+    }
+    // Advance a day so that the next created revision entries don't overwrite the existing ones.
+    clock.advanceBy(Duration.standardDays(1));
+    ImmutableList.Builder<HostResource> currentHosts = new ImmutableList.Builder<>();
+    for (HostResource oldHost : oldHosts.build()) {
+      currentHosts.add(
+          persistResource(oldHost.asBuilder().setPersistedCurrentSponsorClientId("NEW").build()));
+    }
+    DateTime before = clock.nowUtc().minusMillis(1);
+    // Clear out the session cache so that we count actual Datastore calls.
+    ofy().clearSessionCache();
+    DatastoreRpcCounts countsBefore = getCountsForCurrentThread();
+    ImmutableTable<Key<HostResource>, DateTime, HostResource> hosts =
+        loadAtPointsInTime(currentHosts.build(), host -> ImmutableSet.of(before));
+    assertThat(getCountsForCurrentThread().minus(countsBefore).readRoundTrips()).isEqualTo(1);
+    assertThat(hosts.column(before).values()).containsExactlyElementsIn(oldHosts.build());
+  }
 }
@@ -0,0 +1,176 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.model;
+
+import static com.google.common.truth.Truth.assertThat;
+import static google.registry.testing.DatastoreHelper.createTld;
+import static google.registry.testing.DatastoreHelper.newDomainResource;
+import static google.registry.testing.DatastoreHelper.persistActiveContact;
+import static google.registry.testing.DatastoreHelper.persistActiveHost;
+
+import com.google.common.collect.ImmutableSet;
+import com.googlecode.objectify.Key;
+import google.registry.model.contact.ContactResource;
+import google.registry.model.domain.DomainResource;
+import google.registry.model.domain.Period;
+import google.registry.model.domain.secdns.DelegationSignerData;
+import google.registry.model.eppcommon.Trid;
+import google.registry.model.host.HostResource;
+import google.registry.model.reporting.HistoryEntry;
+import google.registry.testing.AppEngineRule;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Benchmark of {@link ImmutableObject#equals} and {@link ImmutableObject#hashCode}, which read
+ * fields through {@link ModelUtils.FieldAccessor}s, against comparing maps of field values.
+ *
+ * <p>Each object is compared with an equal copy, which is the worst case for equals since every
+ * field has to be read. The map-based figures are given both for the reflective {@code
+ * Field.get()} reads that {@link ModelUtils#getFieldValues} used to do, and for {@link
+ * ModelUtils#getFieldValues} as it is now, which still allocates a map per call.
+ *
+ * <p>This isn't run as part of the test suite. Run it with {@code
+ * bazel run //javatests/google/registry/model:immutable_object_benchmark}.
+ */
+public class ImmutableObjectBenchmark {
+
+  private static final int NUM_NAMESERVERS = 13;
+  private static final int WARMUP_ROUNDS = 20000;
+  private static final int ROUNDS = 200000;
+
+  @Rule
+  public final AppEngineRule appEngine = AppEngineRule.builder().withDatastore().build();
+
+  @Before
+  public void before() {
+    createTld("tld");
+  }
+
+  @Test
+  public void benchmarkEqualsAndHashCode() {
+    ContactResource contact = persistActiveContact("jd1234");
+    ImmutableSet.Builder<Key<HostResource>> nameservers = new ImmutableSet.Builder<>();
+    for (int i = 1; i <= NUM_NAMESERVERS; i++) {
+      nameservers.add(
+          Key.create(persistActiveHost(String.format("ns%d.some-dns-provider.example", i))));
+    }
+    ImmutableSet.Builder<DelegationSignerData> dsData = new ImmutableSet.Builder<>();
+    for (int i = 0; i < 4; i++) {
+      byte[] digest = new byte[32];
+      Arrays.fill(digest, (byte) i);
+      dsData.add(DelegationSignerData.create(10000 + i, 8, 2, digest));
+    }
+    DomainResource domain =
+        newDomainResource("some-registrant-name.tld", contact)
+            .asBuilder()
+            .setNameservers(nameservers.build())
+            .setDsData(dsData.build())
+            .build();
+    HistoryEntry historyEntry =
+        new HistoryEntry.Builder()
+            .setParent(domain)
+            .setType(HistoryEntry.Type.DOMAIN_CREATE)
+            .setPeriod(Period.create(1, Period.Unit.YEARS))
+            .setXmlBytes(new byte[2048])
+            .setModificationTime(DateTime.parse("2018-01-01T00:00:00Z"))
+            .setClientId("TheRegistrar")
+            .setTrid(Trid.create("ABC-123", "server-trid"))
+            .setBySuperuser(false)
+            .setReason("reason")
+            .setRequestedByRegistrar(true)
+            .build();
+
+    benchmark(domain, domain.asBuilder().build());
+    benchmark(contact, contact.asBuilder().build());
+    benchmark(historyEntry, historyEntry.asBuilder().build());
+  }
+
+  private static void benchmark(ImmutableObject object, ImmutableObject copy) {
+    assertThat(copy).isNotSameAs(object);
+    assertThat(copy).isEqualTo(object);
+    assertThat(reflectiveFieldValues(copy)).isEqualTo(reflectiveFieldValues(object));
+    System.out.printf(
+        "%s (%d fields):%n",
+        object.getClass().getSimpleName(), ModelUtils.getAllFields(object.getClass()).size());
+    run("Field.get() maps", object, copy, ImmutableObjectBenchmark::reflectiveFieldValues);
+    run("getFieldValues() maps", object, copy, ModelUtils::getFieldValues);
+    run("FieldAccessors", object, copy, o -> o);
+  }
+
+  /**
+   * Times equals and hashCode on what a function maps the objects to.
+   *
+   * <p>With the identity function, this times {@link ImmutableObject}'s own methods. The hash code
+   * that {@link ImmutableObject} caches is cleared before each call, so that the field values are
+   * hashed every time rather than the cached value being read.
+   */
+  private static void run(
+      String name,
+      ImmutableObject object,
+      ImmutableObject copy,
+      Function<ImmutableObject, Object> toComparable) {
+    for (int i = 0; i < WARMUP_ROUNDS; i++) {
+      toComparable.apply(object).equals(toComparable.apply(copy));
+      object.hashCode = null;
+      toComparable.apply(object).hashCode();
+    }
+    int equal = 0;
+    long startNanos = System.nanoTime();
+    for (int i = 0; i < ROUNDS; i++) {
+      if (toComparable.apply(object).equals(toComparable.apply(copy))) {
+        equal++;
+      }
+    }
+    long equalsNanos = System.nanoTime() - startNanos;
+    int hashes = 0;
+    startNanos = System.nanoTime();
+    for (int i = 0; i < ROUNDS; i++) {
+      object.hashCode = null;
+      hashes += toComparable.apply(object).hashCode();
+    }
+    long hashCodeNanos = System.nanoTime() - startNanos;
+    System.out.printf(
+        "  %-22s %7.2f us/equals %7.2f us/hashCode (%d, %d)%n",
+        name, equalsNanos / 1e3 / ROUNDS, hashCodeNanos / 1e3 / ROUNDS, equal, hashes);
+  }
+
+  /** Returns the field values of an object as {@link ModelUtils#getFieldValues} used to. */
+  private static Map<Field, Object> reflectiveFieldValues(Object instance) {
+    Map<Field, Object> values = new LinkedHashMap<>();
+    for (Field field : ModelUtils.getAllFields(instance.getClass()).values()) {
+      Object value = ModelUtils.getFieldValue(instance, field);
+      if (value != null && value.getClass().isArray()) {
+        List<Object> list = new ArrayList<>();
+        for (int i = 0; i < Array.getLength(value); i++) {
+          list.add(Array.get(value, i));
+        }
+        value = list;
+      }
+      values.put(field, value);
+    }
+    return values;
+  }
+}
@@ -70,6 +70,43 @@ public class ImmutableObjectTest {
     }
   }
 
+  /** Subclass of {@link SimpleObject} with a primitive array field. */
+  public static class ArrayObject extends SimpleObject {
+    byte[] bytes;
+
+    public ArrayObject(String a, String b, byte[] bytes) {
+      super(a, b);
+      this.bytes = bytes;
+    }
+  }
+
+  @Test
+  public void testEqualsAndHashCode_simpleClass() {
+    SimpleObject object = new SimpleObject("foo", null);
+    assertThat(object).isEqualTo(new SimpleObject("foo", null));
+    assertThat(object.hashCode()).isEqualTo(new SimpleObject("foo", null).hashCode());
+    assertThat(object).isNotEqualTo(new SimpleObject("foo", "bar"));
+    assertThat(object).isNotEqualTo(new SimpleObject(null, null));
+  }
+
+  @Test
+  public void testEqualsAndHashCode_comparesInheritedFieldsAndArrayContents() {
+    ArrayObject object = new ArrayObject("foo", "bar", new byte[] {1, 2});
+    assertThat(object).isEqualTo(new ArrayObject("foo", "bar", new byte[] {1, 2}));
+    assertThat(object.hashCode())
+        .isEqualTo(new ArrayObject("foo", "bar", new byte[] {1, 2}).hashCode());
+    assertThat(object).isNotEqualTo(new ArrayObject("foo", "bar", new byte[] {1, 3}));
+    assertThat(object).isNotEqualTo(new ArrayObject("foo", "baz", new byte[] {1, 2}));
+    assertThat(object).isNotEqualTo(new SimpleObject("foo", "bar"));
+  }
+
+  @Test
+  public void testHashCode_matchesHashOfFieldValues() {
+    ArrayObject object = new ArrayObject("foo", null, new byte[] {1, 2});
+    assertThat(object.hashCode())
+        .isEqualTo(Arrays.hashCode(ModelUtils.getFieldValues(object).values().toArray()));
+  }
+
   @Test
   public void testToString_simpleClass() {
     SimpleObject object = new SimpleObject("foo", null);
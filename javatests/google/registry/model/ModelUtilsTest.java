@@ -14,10 +14,13 @@
 
 package google.registry.model;
 
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.truth.Truth.assertThat;
+import static java.util.stream.Collectors.toList;
 
 import com.google.common.collect.ImmutableMap;
 import com.googlecode.objectify.annotation.Id;
+import google.registry.model.ModelUtils.FieldAccessor;
 import google.registry.testing.AppEngineRule;
 import java.lang.reflect.Field;
 import java.util.Map;
@@ -124,6 +127,30 @@ public class ModelUtilsTest {
         .inOrder();
   }
 
+  @Test
+  public void testGetFieldAccessors() throws Exception {
+    TestClass testInstance = new TestClass();
+    testInstance.id = "foo";
+    testInstance.a = "a";
+    assertThat(
+            ModelUtils.getFieldAccessors(TestClass.class)
+                .stream()
+                .map(FieldAccessor::getField)
+                .collect(toImmutableList()))
+        .containsExactly(
+            TestClass.class.getDeclaredField("id"),
+            TestClass.class.getDeclaredField("a"),
+            TestClass.class.getDeclaredField("b"))
+        .inOrder();
+    assertThat(
+            ModelUtils.getFieldAccessors(TestClass.class)
+                .stream()
+                .map(accessor -> accessor.get(testInstance))
+                .collect(toList()))
+        .containsExactly("foo", "a", null)
+        .inOrder();
+  }
+
   @Test
   public void testBuildingResetsHashCode() {
     TestClass original = new TestClass();
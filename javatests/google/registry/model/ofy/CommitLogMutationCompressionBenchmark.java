@@ -0,0 +1,149 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.model.ofy;
+
+import static com.google.appengine.api.datastore.EntityTranslator.convertToPb;
+import static com.google.common.truth.Truth.assertThat;
+import static google.registry.model.ofy.ObjectifyService.ofy;
+import static google.registry.testing.DatastoreHelper.createTld;
+import static google.registry.testing.DatastoreHelper.newDomainResource;
+import static google.registry.testing.DatastoreHelper.persistActiveContact;
+import static google.registry.testing.DatastoreHelper.persistActiveHost;
+import static google.registry.testing.DatastoreHelper.persistResourceWithCommitLog;
+
+import com.google.appengine.api.datastore.Entity;
+import com.google.common.collect.ImmutableSet;
+import com.googlecode.objectify.Key;
+import google.registry.model.EppResource;
+import google.registry.model.contact.ContactResource;
+import google.registry.model.domain.DomainResource;
+import google.registry.model.domain.secdns.DelegationSignerData;
+import google.registry.model.host.HostResource;
+import google.registry.testing.AppEngineRule;
+import google.registry.testing.FakeClock;
+import google.registry.testing.InjectRule;
+import java.util.Arrays;
+import org.joda.time.DateTime;
+import org.joda.time.Duration;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Benchmark of the size and CPU cost of compressing the entities in commit log mutations.
+ *
+ * <p>The entities are a domain with thirteen nameservers, four DS records and a month's worth of
+ * daily revisions, one of its nameservers and its registrant, i.e. roughly the worst case of what
+ * an EPP update writes.
+ *
+ * <p>This isn't run as part of the test suite. Run it with {@code
+ * bazel run //javatests/google/registry/model:commit_log_mutation_compression_benchmark}.
+ */
+public class CommitLogMutationCompressionBenchmark {
+
+  private static final int NUM_NAMESERVERS = 13;
+  private static final int DAYS_OF_UPDATES = 30;
+  private static final int WARMUP_ROUNDS = 2000;
+  private static final int ROUNDS = 20000;
+
+  @Rule
+  public final AppEngineRule appEngine = AppEngineRule.builder().withDatastore().build();
+
+  @Rule public final InjectRule inject = new InjectRule();
+
+  private final FakeClock clock = new FakeClock(DateTime.parse("2018-01-01T00:00:00Z"));
+
+  @Before
+  public void before() {
+    inject.setStaticField(Ofy.class, "clock", clock);
+    createTld("tld");
+  }
+
+  @Test
+  public void benchmarkCompression() {
+    ContactResource contact = persistActiveContact("jd1234");
+    ImmutableSet.Builder<Key<HostResource>> nameservers = new ImmutableSet.Builder<>();
+    HostResource host = null;
+    for (int i = 1; i <= NUM_NAMESERVERS; i++) {
+      host = persistActiveHost(String.format("ns%d.some-dns-provider.example", i));
+      nameservers.add(Key.create(host));
+    }
+    ImmutableSet.Builder<DelegationSignerData> dsData = new ImmutableSet.Builder<>();
+    for (int i = 0; i < 4; i++) {
+      byte[] digest = new byte[32];
+      Arrays.fill(digest, (byte) i);
+      dsData.add(DelegationSignerData.create(10000 + i, 8, 2, digest));
+    }
+    DomainResource domain =
+        newDomainResource("some-registrant-name.tld", contact)
+            .asBuilder()
+            .setNameservers(nameservers.build())
+            .setDsData(dsData.build())
+            .build();
+    for (int i = 0; i < DAYS_OF_UPDATES; i++) {
+      clock.advanceBy(Duration.standardDays(1));
+      domain =
+          persistResourceWithCommitLog(
+              domain.asBuilder().setLastEppUpdateTime(clock.nowUtc()).build());
+      host =
+          persistResourceWithCommitLog(
+              host.asBuilder().setLastEppUpdateTime(clock.nowUtc()).build());
+      contact =
+          persistResourceWithCommitLog(
+              contact.asBuilder().setLastEppUpdateTime(clock.nowUtc()).build());
+      ofy().clearSessionCache();
+      domain = ofy().load().entity(domain).now();
+      host = ofy().load().entity(host).now();
+      contact = ofy().load().entity(contact).now();
+    }
+    assertThat(domain.getRevisions().size()).isAtLeast(DAYS_OF_UPDATES);
+    benchmark(domain);
+    benchmark(host);
+    benchmark(contact);
+  }
+
+  private static void benchmark(EppResource resource) {
+    Entity entity = ofy().transact(() -> ofy().save().toEntity(resource));
+    byte[] protoBytes = convertToPb(entity).toByteArray();
+    byte[] withDictionary = EntityProtoCompression.compress(entity.getKind(), protoBytes);
+    byte[] withoutDictionary = EntityProtoCompression.compress("NoDictionary", protoBytes);
+    assertThat(EntityProtoCompression.decompress(withDictionary)).isEqualTo(protoBytes);
+    for (int i = 0; i < WARMUP_ROUNDS; i++) {
+      EntityProtoCompression.decompress(
+          EntityProtoCompression.compress(entity.getKind(), protoBytes));
+    }
+    long startNanos = System.nanoTime();
+    for (int i = 0; i < ROUNDS; i++) {
+      EntityProtoCompression.compress(entity.getKind(), protoBytes);
+    }
+    long compressNanos = System.nanoTime() - startNanos;
+    startNanos = System.nanoTime();
+    for (int i = 0; i < ROUNDS; i++) {
+      EntityProtoCompression.decompress(withDictionary);
+    }
+    long decompressNanos = System.nanoTime() - startNanos;
+    System.out.printf(
+        "%s: %d bytes raw, %d deflated (%.0f%%), %d with dictionary (%.0f%%); "
+            + "%.1f us to compress, %.1f us to decompress%n",
+        entity.getKind(),
+        protoBytes.length,
+        withoutDictionary.length,
+        100.0 * withoutDictionary.length / protoBytes.length,
+        withDictionary.length,
+        100.0 * withDictionary.length / protoBytes.length,
+        compressNanos / 1e3 / ROUNDS,
+        decompressNanos / 1e3 / ROUNDS);
+  }
+}
@@ -23,8 +23,10 @@ import com.google.appengine.api.datastore.EntityTranslator;
 import com.google.appengine.api.datastore.KeyFactory;
 import com.googlecode.objectify.Key;
 import google.registry.model.ImmutableObject;
+import google.registry.model.ofy.CommitLogMutation.Encoding;
 import google.registry.model.registry.Registry;
 import google.registry.testing.AppEngineRule;
+import google.registry.testing.InjectRule;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.junit.Before;
@@ -42,6 +44,9 @@ public class CommitLogMutationTest {
       .withDatastore()
       .build();
 
+  @Rule
+  public final InjectRule inject = new InjectRule();
+
   private static final DateTime NOW = DateTime.now(DateTimeZone.UTC);
 
   private Key<CommitLogManifest> manifestKey;
@@ -88,6 +93,40 @@ public class CommitLogMutationTest {
         .isEqualTo(rawEntity);
   }
 
+  @Test
+  public void test_createRaw_compressed() {
+    inject.setStaticField(CommitLogMutation.class, "compressEntities", true);
+    Entity rawEntity = convertToEntityInTxn(someObject);
+    CommitLogMutation mutation = CommitLogMutation.createFromRaw(manifestKey, rawEntity);
+    assertThat(mutation.encoding).isEqualTo(Encoding.DEFLATE);
+    assertThat(mutation.entityProtoBytes.length)
+        .isLessThan(EntityTranslator.convertToPb(rawEntity).toByteArray().length);
+    assertThat(mutation.getEntity()).isEqualTo(rawEntity);
+    assertThat(EntityTranslator.createFromPbBytes(mutation.getEntityProtoBytes()))
+        .isEqualTo(rawEntity);
+  }
+
+  @Test
+  public void test_createRaw_compressed_savesAndLoads() {
+    inject.setStaticField(CommitLogMutation.class, "compressEntities", true);
+    Entity rawEntity = convertToEntityInTxn(someObject);
+    CommitLogMutation mutation = CommitLogMutation.createFromRaw(manifestKey, rawEntity);
+    ofy().saveWithoutBackup().entity(mutation).now();
+    ofy().clearSessionCache();
+    CommitLogMutation loaded = ofy().load().entity(mutation).now();
+    assertThat(loaded.encoding).isEqualTo(Encoding.DEFLATE);
+    assertThat(loaded.getEntity()).isEqualTo(rawEntity);
+  }
+
+  @Test
+  public void test_createRaw_uncompressed_hasNoEncoding() {
+    Entity rawEntity = convertToEntityInTxn(someObject);
+    CommitLogMutation mutation = CommitLogMutation.createFromRaw(manifestKey, rawEntity);
+    assertThat(mutation.encoding).isNull();
+    assertThat(mutation.entityProtoBytes)
+        .isEqualTo(EntityTranslator.convertToPb(rawEntity).toByteArray());
+  }
+
   private static Entity convertToEntityInTxn(final ImmutableObject object) {
     return ofy().transact(() -> ofy().save().toEntity(object));
   }
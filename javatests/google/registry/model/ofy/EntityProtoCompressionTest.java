@@ -0,0 +1,110 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.model.ofy;
+
+import static com.google.common.truth.Truth.assertThat;
+import static google.registry.testing.JUnitBackports.assertThrows;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.Arrays;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link EntityProtoCompression}. */
+@RunWith(JUnit4.class)
+public class EntityProtoCompressionTest {
+
+  private static final byte[] DOMAIN_BYTES =
+      ("DomainBase fullyQualifiedDomainName example.tld currentSponsorClientId TheRegistrar "
+              + "nsHosts revisions.key revisions.value status")
+          .getBytes(UTF_8);
+
+  @Test
+  public void testRoundTrip_withDictionary() {
+    byte[] compressed = EntityProtoCompression.compress("DomainBase", DOMAIN_BYTES);
+    assertThat(EntityProtoCompression.decompress(compressed)).isEqualTo(DOMAIN_BYTES);
+  }
+
+  @Test
+  public void testRoundTrip_withoutDictionary() {
+    byte[] compressed = EntityProtoCompression.compress("Registry", DOMAIN_BYTES);
+    assertThat(EntityProtoCompression.decompress(compressed)).isEqualTo(DOMAIN_BYTES);
+  }
+
+  @Test
+  public void testRoundTrip_empty() {
+    byte[] compressed = EntityProtoCompression.compress("DomainBase", new byte[0]);
+    assertThat(EntityProtoCompression.decompress(compressed)).isEmpty();
+  }
+
+  @Test
+  public void testRoundTrip_large() {
+    byte[] large = new byte[100000];
+    for (int i = 0; i < large.length; i++) {
+      large[i] = (byte) (i * 31 % 251);
+    }
+    byte[] compressed = EntityProtoCompression.compress("HostResource", large);
+    assertThat(EntityProtoCompression.decompress(compressed)).isEqualTo(large);
+  }
+
+  @Test
+  public void testCompress_dictionaryHelps() {
+    assertThat(EntityProtoCompression.compress("DomainBase", DOMAIN_BYTES).length)
+        .isLessThan(EntityProtoCompression.compress("Registry", DOMAIN_BYTES).length);
+  }
+
+  @Test
+  public void testDictionaries_haveDistinctChecksums() {
+    assertThat(
+            EntityProtoCompression.DICTIONARIES
+                .values()
+                .stream()
+                .map(
+                    dictionary -> {
+                      Adler32 adler32 = new Adler32();
+                      adler32.update(dictionary);
+                      return adler32.getValue();
+                    })
+                .distinct()
+                .count())
+        .isEqualTo((long) EntityProtoCompression.DICTIONARIES.size());
+  }
+
+  @Test
+  public void testDecompress_unknownDictionary() {
+    Deflater deflater = new Deflater();
+    deflater.setDictionary("not a known dictionary".getBytes(UTF_8));
+    deflater.setInput(DOMAIN_BYTES);
+    deflater.finish();
+    byte[] buffer = new byte[1000];
+    byte[] compressed = Arrays.copyOf(buffer, deflater.deflate(buffer));
+    deflater.end();
+    IllegalArgumentException thrown =
+        assertThrows(
+            IllegalArgumentException.class, () -> EntityProtoCompression.decompress(compressed));
+    assertThat(thrown).hasMessageThat().contains("Unknown dictionary");
+  }
+
+  @Test
+  public void testDecompress_truncated() {
+    byte[] compressed = EntityProtoCompression.compress("DomainBase", DOMAIN_BYTES);
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> EntityProtoCompression.decompress(Arrays.copyOf(compressed, compressed.length - 4)));
+  }
+}
@@ -0,0 +1,97 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.model.ofy;
+
+import static com.google.common.truth.Truth.assertThat;
+import static google.registry.model.ofy.ObjectifyService.ofy;
+import static google.registry.model.ofy.RpcCountingAsyncDatastoreService.getCountsForCurrentThread;
+
+import google.registry.testing.AppEngineRule;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link RpcCountingAsyncDatastoreService}. */
+@RunWith(JUnit4.class)
+public class RpcCountingAsyncDatastoreServiceTest {
+
+  @Rule
+  public final AppEngineRule appEngine = AppEngineRule.builder().withDatastore().build();
+
+  private static final DateTime NOW = DateTime.now(DateTimeZone.UTC);
+
+  @Test
+  public void testGet_countsEachKey() {
+    DatastoreRpcCounts before = getCountsForCurrentThread();
+    ofy()
+        .load()
+        .keys(
+            CommitLogManifest.createKey(CommitLogBucket.getBucketKey(1), NOW),
+            CommitLogManifest.createKey(CommitLogBucket.getBucketKey(2), NOW))
+        .size();
+    ofy().load().key(CommitLogManifest.createKey(CommitLogBucket.getBucketKey(3), NOW)).now();
+    DatastoreRpcCounts counts = getCountsForCurrentThread().minus(before);
+    assertThat(counts.entitiesRead()).isEqualTo(3);
+    assertThat(counts.queries()).isEqualTo(0);
+    assertThat(counts.readRoundTrips()).isEqualTo(2);
+  }
+
+  @Test
+  public void testQuery_countsEachQuery() {
+    DatastoreRpcCounts before = getCountsForCurrentThread();
+    ofy().load().type(CommitLogManifest.class).count();
+    ofy().load().type(CommitLogManifest.class).keys().list();
+    DatastoreRpcCounts counts = getCountsForCurrentThread().minus(before);
+    assertThat(counts.queries()).isEqualTo(2);
+    assertThat(counts.readRoundTrips()).isEqualTo(2);
+    assertThat(counts.entitiesRead()).isEqualTo(0);
+  }
+
+  @Test
+  public void testPutAndDelete_countEachEntity() {
+    DatastoreRpcCounts before = getCountsForCurrentThread();
+    CommitLogBucket bucket1 = CommitLogBucket.loadBucket(CommitLogBucket.getBucketKey(1));
+    CommitLogBucket bucket2 = CommitLogBucket.loadBucket(CommitLogBucket.getBucketKey(2));
+    ofy().saveWithoutBackup().entities(bucket1, bucket2).now();
+    ofy().deleteWithoutBackup().entity(bucket1).now();
+    DatastoreRpcCounts counts = getCountsForCurrentThread().minus(before);
+    assertThat(counts.puts()).isEqualTo(1);
+    assertThat(counts.entitiesWritten()).isEqualTo(2);
+    assertThat(counts.deletes()).isEqualTo(1);
+    assertThat(counts.entitiesDeleted()).isEqualTo(1);
+    assertThat(counts.entitiesMutated()).isEqualTo(3);
+    assertThat(counts.transactions()).isEqualTo(0);
+  }
+
+  @Test
+  public void testTransaction_countsEachAttempt() {
+    DatastoreRpcCounts before = getCountsForCurrentThread();
+    ofy()
+        .transactNew(
+            () ->
+                ofy()
+                    .saveWithoutBackup()
+                    .entity(CommitLogBucket.loadBucket(CommitLogBucket.getBucketKey(1)))
+                    .now());
+    DatastoreRpcCounts counts = getCountsForCurrentThread().minus(before);
+    assertThat(counts.transactions()).isEqualTo(1);
+    assertThat(counts.gets()).isEqualTo(1);
+    assertThat(counts.puts()).isEqualTo(1);
+    assertThat(counts.rpcs()).isEqualTo(3);
+  }
+}
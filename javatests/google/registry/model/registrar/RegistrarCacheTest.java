@@ -0,0 +1,156 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.model.registrar;
+
+import static com.google.common.truth.Truth.assertThat;
+import static google.registry.testing.DatastoreHelper.deleteResource;
+import static google.registry.testing.DatastoreHelper.loadRegistrar;
+import static google.registry.testing.DatastoreHelper.persistNewRegistrar;
+import static google.registry.testing.DatastoreHelper.persistResource;
+import static org.joda.time.Duration.standardMinutes;
+
+import com.google.common.collect.ImmutableMap;
+import google.registry.model.ofy.Ofy;
+import google.registry.model.registrar.Registrar.State;
+import google.registry.model.registrar.Registrar.Type;
+import google.registry.testing.AppEngineRule;
+import google.registry.testing.FakeClock;
+import google.registry.testing.InjectRule;
+import google.registry.testing.ShardableTestCase;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import org.joda.time.DateTime;
+import org.joda.time.Duration;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link RegistrarCache}. */
+@RunWith(JUnit4.class)
+public class RegistrarCacheTest extends ShardableTestCase {
+
+  @Rule
+  public final AppEngineRule appEngine = AppEngineRule.builder().withDatastore().build();
+
+  @Rule
+  public final InjectRule inject = new InjectRule();
+
+  private static final Duration REFRESH_INTERVAL = standardMinutes(10);
+
+  private final FakeClock clock = new FakeClock(DateTime.parse("2018-06-01T00:00:00Z"));
+
+  /** Refreshes started by the cache, which are run when a test chooses. */
+  private final List<Runnable> refreshes = new ArrayList<>();
+
+  private final RegistrarCache cache = new RegistrarCache(REFRESH_INTERVAL, refreshes::add, clock);
+
+  @Before
+  public void before() {
+    inject.setStaticField(Ofy.class, "clock", clock);
+    // Save the registrars far enough apart that a refresh, which looks back from the latest save
+    // by the transaction margin, won't reload the earlier one.
+    persistResource(loadRegistrar("NewRegistrar"));
+    clock.advanceBy(RegistrarCache.TRANSACTION_MARGIN.multipliedBy(5));
+    persistResource(loadRegistrar("TheRegistrar"));
+  }
+
+  private void runRefreshes() {
+    refreshes.forEach(Runnable::run);
+    refreshes.clear();
+  }
+
+  @Test
+  public void testGet_loadsAllRegistrars() {
+    assertThat(cache.get().keySet()).containsExactly("NewRegistrar", "TheRegistrar").inOrder();
+    assertThat(cache.get()).containsEntry("TheRegistrar", loadRegistrar("TheRegistrar"));
+    assertThat(refreshes).isEmpty();
+  }
+
+  @Test
+  public void testGet_beforeRefreshInterval_returnsSameMap() {
+    ImmutableMap<String, Registrar> registrars = cache.get();
+    persistResource(loadRegistrar("TheRegistrar").asBuilder().setState(State.SUSPENDED).build());
+    clock.advanceBy(REFRESH_INTERVAL.minus(1));
+    assertThat(cache.get()).isSameAs(registrars);
+    assertThat(refreshes).isEmpty();
+  }
+
+  @Test
+  public void testGet_afterRefreshInterval_servesOldMapWhileRefreshing() {
+    ImmutableMap<String, Registrar> registrars = cache.get();
+    Registrar newRegistrar = registrars.get("NewRegistrar");
+    persistResource(loadRegistrar("TheRegistrar").asBuilder().setState(State.SUSPENDED).build());
+    clock.advanceBy(REFRESH_INTERVAL);
+    assertThat(cache.get()).isSameAs(registrars);
+    assertThat(cache.get()).isSameAs(registrars);
+    // Only one refresh is started at a time.
+    assertThat(refreshes).hasSize(1);
+    runRefreshes();
+    assertThat(cache.get().get("TheRegistrar").getState()).isEqualTo(State.SUSPENDED);
+    // Registrars that haven't been saved since the last load aren't loaded again.
+    assertThat(cache.get().get("NewRegistrar")).isSameAs(newRegistrar);
+    assertThat(refreshes).isEmpty();
+  }
+
+  @Test
+  public void testGet_afterRefresh_includesAddedAndDropsDeletedRegistrars() {
+    cache.get();
+    persistNewRegistrar("AddedRegistrar", "Added Registrar", Type.REAL, 8L);
+    deleteResource(loadRegistrar("NewRegistrar"));
+    clock.advanceBy(REFRESH_INTERVAL);
+    cache.get();
+    runRefreshes();
+    assertThat(cache.get().keySet()).containsExactly("AddedRegistrar", "TheRegistrar").inOrder();
+    assertThat(cache.get().get("AddedRegistrar")).isEqualTo(loadRegistrar("AddedRegistrar"));
+  }
+
+  @Test
+  public void testGet_afterTwiceRefreshInterval_refreshesSynchronously() {
+    cache.get();
+    persistResource(loadRegistrar("TheRegistrar").asBuilder().setState(State.SUSPENDED).build());
+    clock.advanceBy(REFRESH_INTERVAL.multipliedBy(2));
+    assertThat(cache.get().get("TheRegistrar").getState()).isEqualTo(State.SUSPENDED);
+    assertThat(refreshes).isEmpty();
+  }
+
+  @Test
+  public void testGet_executorRejects_refreshesInCallingThread() {
+    RegistrarCache cache =
+        new RegistrarCache(
+            REFRESH_INTERVAL,
+            runnable -> {
+              throw new RejectedExecutionException();
+            },
+            clock);
+    ImmutableMap<String, Registrar> registrars = cache.get();
+    persistResource(loadRegistrar("TheRegistrar").asBuilder().setState(State.SUSPENDED).build());
+    clock.advanceBy(REFRESH_INTERVAL);
+    // The map that was current when the refresh was started is still returned.
+    assertThat(cache.get()).isSameAs(registrars);
+    assertThat(cache.get().get("TheRegistrar").getState()).isEqualTo(State.SUSPENDED);
+  }
+
+  @Test
+  public void testGet_zeroRefreshInterval_alwaysReloads() {
+    RegistrarCache cache = new RegistrarCache(Duration.ZERO, refreshes::add, clock);
+    cache.get();
+    persistResource(loadRegistrar("TheRegistrar").asBuilder().setState(State.SUSPENDED).build());
+    assertThat(cache.get().get("TheRegistrar").getState()).isEqualTo(State.SUSPENDED);
+    assertThat(refreshes).isEmpty();
+  }
+}
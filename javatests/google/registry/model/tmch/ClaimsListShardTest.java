@@ -73,7 +73,7 @@ public class ClaimsListShardTest {
 
   @Test
   public void testGet_safelyLoadsEmptyClaimsList_whenNoShardsExist() {
-    assertThat(ClaimsListShard.get().labelsToKeys).isEmpty();
+    assertThat(ClaimsListShard.get().getLabelsToKeys()).isEmpty();
     assertThat(ClaimsListShard.get().creationTime).isEqualTo(START_OF_TIME);
   }
 
@@ -88,11 +88,14 @@ public class ClaimsListShardTest {
     // Save it with sharding, and make sure that reloading it works.
     ClaimsListShard unsharded = ClaimsListShard.create(now, ImmutableMap.copyOf(labelsToKeys));
     unsharded.save();
-    assertThat(ClaimsListShard.get().labelsToKeys).isEqualTo(unsharded.labelsToKeys);
+    assertThat(ClaimsListShard.get().getLabelsToKeys()).isEqualTo(unsharded.labelsToKeys);
     List<ClaimsListShard> shards1 = ofy().load().type(ClaimsListShard.class).list();
     assertThat(shards1).hasSize(4);
     assertThat(ClaimsListShard.get().getClaimKey("1")).hasValue("1");
     assertThat(ClaimsListShard.get().getClaimKey("a")).isEmpty();
+    assertThat(ClaimsListShard.get().getClaimKey("30")).hasValue("30");
+    assertThat(ClaimsListShard.get().getClaimKey("31")).isEmpty();
+    assertThat(ClaimsListShard.get().size()).isEqualTo(31);
     assertThat(ClaimsListShard.getCurrentRevision()).isEqualTo(shards1.get(0).parent);
 
     // Create a smaller ClaimsList that will need only 2 shards to save.
@@ -103,8 +106,8 @@ public class ClaimsListShardTest {
     unsharded = ClaimsListShard.create(now.plusDays(1), ImmutableMap.copyOf(labelsToKeys));
     unsharded.save();
     ofy().clearSessionCache();
-    assertThat(ClaimsListShard.get().labelsToKeys).hasSize(unsharded.labelsToKeys.size());
-    assertThat(ClaimsListShard.get().labelsToKeys).isEqualTo(unsharded.labelsToKeys);
+    assertThat(ClaimsListShard.get().getLabelsToKeys()).hasSize(unsharded.labelsToKeys.size());
+    assertThat(ClaimsListShard.get().getLabelsToKeys()).isEqualTo(unsharded.labelsToKeys);
     List<ClaimsListShard> shards2 = ofy().load().type(ClaimsListShard.class).list();
     assertThat(shards2).hasSize(2);
 
@@ -112,6 +115,57 @@ public class ClaimsListShardTest {
     assertThat(ClaimsListShard.getCurrentRevision()).isEqualTo(shards2.get(0).parent);
   }
 
+  @Test
+  public void test_save_onlyWritesChangedShards() {
+    Map<String, String> labelsToKeys = new HashMap<>();
+    for (int i = 0; i <= ClaimsListShard.shardSize * 3; i++) {
+      labelsToKeys.put(Integer.toString(i), Integer.toString(i));
+    }
+    DateTime now = DateTime.now(UTC);
+    ClaimsListShard.create(now, ImmutableMap.copyOf(labelsToKeys)).save();
+    Key<ClaimsListRevision> oldRevision = ClaimsListShard.getCurrentRevision();
+    assertThat(ofy().load().type(ClaimsListShard.class).ancestor(oldRevision).count())
+        .isEqualTo(4);
+
+    // Change the claims key of a single label, so that only the shard holding it is rewritten.
+    labelsToKeys.put("15", "changed");
+    ClaimsListShard.create(now.plusDays(1), ImmutableMap.copyOf(labelsToKeys)).save();
+    ofy().clearSessionCache();
+    Key<ClaimsListRevision> newRevision = ClaimsListShard.getCurrentRevision();
+    assertThat(newRevision).isNotEqualTo(oldRevision);
+    assertThat(ofy().load().type(ClaimsListShard.class).list()).hasSize(4);
+    assertThat(ofy().load().type(ClaimsListShard.class).ancestor(oldRevision).count())
+        .isEqualTo(3);
+    assertThat(ofy().load().type(ClaimsListShard.class).ancestor(newRevision).count())
+        .isEqualTo(1);
+    ClaimsListShard claimsList = ClaimsListShard.get();
+    assertThat(claimsList.getLabelsToKeys()).isEqualTo(labelsToKeys);
+    assertThat(claimsList.getClaimKey("15")).hasValue("changed");
+    assertThat(claimsList.getCreationTime()).isEqualTo(now.plusDays(1));
+  }
+
+  @Test
+  public void testGet_reusesListUntilNewRevision() {
+    DateTime now = DateTime.now(UTC);
+    ClaimsListShard.create(now, ImmutableMap.of("a", "1")).save();
+    ClaimsListShard claimsList = ClaimsListShard.get();
+    assertThat(ClaimsListShard.get()).isSameAs(claimsList);
+
+    ClaimsListShard.create(now.plusDays(1), ImmutableMap.of("b", "2")).save();
+    assertThat(ClaimsListShard.get()).isNotSameAs(claimsList);
+    assertThat(ClaimsListShard.get().getLabelsToKeys()).containsExactly("b", "2");
+  }
+
+  @Test
+  public void testSave_listThatWasLoaded() {
+    DateTime now = DateTime.now(UTC);
+    ClaimsListShard.create(now, ImmutableMap.of("a", "1", "b", "2")).save();
+    Key<ClaimsListRevision> oldRevision = ClaimsListShard.getCurrentRevision();
+    ClaimsListShard.get().save();
+    assertThat(ClaimsListShard.getCurrentRevision()).isNotEqualTo(oldRevision);
+    assertThat(ClaimsListShard.get().getLabelsToKeys()).containsExactly("a", "1", "b", "2");
+  }
+
   /**
    * Returns a created claims list shard with the specified parent key for testing purposes only.
    */
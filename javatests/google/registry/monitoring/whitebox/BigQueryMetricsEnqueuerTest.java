@@ -15,22 +15,29 @@
 package google.registry.monitoring.whitebox;
 
 import static com.google.appengine.api.taskqueue.QueueFactory.getQueue;
+import static com.google.monitoring.metrics.contrib.LongMetricSubject.assertThat;
 import static google.registry.bigquery.BigqueryUtils.toBigqueryTimestamp;
 import static google.registry.monitoring.whitebox.BigQueryMetricsEnqueuer.QUEUE_BIGQUERY_STREAMING_METRICS;
+import static google.registry.testing.TaskQueueHelper.assertNoTasksEnqueued;
 import static google.registry.testing.TaskQueueHelper.assertTasksEnqueued;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import com.google.api.services.bigquery.model.TableFieldSchema;
 import com.google.appengine.api.modules.ModulesService;
+import com.google.appengine.api.taskqueue.Queue;
+import com.google.appengine.api.taskqueue.TaskOptions;
+import com.google.appengine.api.taskqueue.TransientFailureException;
 import com.google.auto.value.AutoValue;
 import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import google.registry.testing.AppEngineRule;
+import google.registry.testing.FakeClock;
 import google.registry.testing.InjectRule;
 import google.registry.testing.TaskQueueHelper.TaskMatcher;
 import org.joda.time.DateTime;
+import org.joda.time.Duration;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -42,6 +49,10 @@ import org.mockito.Matchers;
 @RunWith(JUnit4.class)
 public class BigQueryMetricsEnqueuerTest {
 
+  private static final String ENCODED_ROW =
+      "{\"insertId\":\"laffo\","
+          + "\"json\":{\"startTime\":\"472176000.000000\",\"endTime\":\"472176000.001000\"}}";
+
   @Rule
   public final InjectRule inject = new InjectRule();
 
@@ -54,6 +65,8 @@ public class BigQueryMetricsEnqueuerTest {
 
   private final ModulesService modulesService = mock(ModulesService.class);
 
+  private final FakeClock clock = new FakeClock(DateTime.parse("1984-12-18T00:00:00Z"));
+
   private BigQueryMetricsEnqueuer enqueuer;
 
   @Before
@@ -62,26 +75,135 @@ public class BigQueryMetricsEnqueuerTest {
     enqueuer.idGenerator = Suppliers.ofInstance("laffo");
     enqueuer.modulesService = modulesService;
     enqueuer.queue = getQueue(QUEUE_BIGQUERY_STREAMING_METRICS);
+    enqueuer.clock = clock;
+    enqueuer.buffer = new MetricRowBuffer(2, 10, Duration.standardSeconds(5));
     when(modulesService.getVersionHostname(Matchers.anyString(), Matchers.anyString()))
         .thenReturn("1.backend.test.localhost");
   }
 
   @Test
-  public void testExport() {
+  public void testExport_fullBatch() {
     TestMetric metric =
         TestMetric.create(
             DateTime.parse("1984-12-18TZ"), DateTime.parse("1984-12-18TZ").plusMillis(1));
 
     enqueuer.export(metric);
+    assertNoTasksEnqueued("bigquery-streaming-metrics");
+    enqueuer.export(metric);
 
     assertTasksEnqueued("bigquery-streaming-metrics",
         new TaskMatcher()
             .url("/_dr/task/metrics")
             .header("Host", "1.backend.test.localhost")
             .param("tableId", "test")
-            .param("startTime", "472176000.000000")
-            .param("endTime", "472176000.001000")
-            .param("insertId", "laffo"));
+            .param("row", ENCODED_ROW)
+            .param("row", ENCODED_ROW));
+  }
+
+  @Test
+  public void testExport_afterMaxDelay() {
+    TestMetric metric =
+        TestMetric.create(
+            DateTime.parse("1984-12-18TZ"), DateTime.parse("1984-12-18TZ").plusMillis(1));
+
+    enqueuer.export(metric);
+    clock.advanceBy(Duration.standardSeconds(4));
+    enqueuer.export(new OtherTableMetric());
+    assertNoTasksEnqueued("bigquery-streaming-metrics");
+    clock.advanceBy(Duration.standardSeconds(1));
+    enqueuer.export(new OtherTableMetric());
+
+    assertTasksEnqueued("bigquery-streaming-metrics",
+        new TaskMatcher()
+            .url("/_dr/task/metrics")
+            .param("tableId", "test")
+            .param("row", ENCODED_ROW),
+        new TaskMatcher()
+            .url("/_dr/task/metrics")
+            .param("tableId", "other")
+            .param("row", "{\"insertId\":\"laffo\",\"json\":{}}")
+            .param("row", "{\"insertId\":\"laffo\",\"json\":{}}"));
+  }
+
+  @Test
+  public void testFlushReady_enqueuesOverdueRowsWithoutFurtherExports() {
+    enqueuer.export(new OtherTableMetric());
+    clock.advanceBy(Duration.standardSeconds(4));
+    enqueuer.flushReady();
+    assertNoTasksEnqueued("bigquery-streaming-metrics");
+    clock.advanceBy(Duration.standardSeconds(1));
+
+    enqueuer.flushReady();
+
+    assertTasksEnqueued("bigquery-streaming-metrics",
+        new TaskMatcher()
+            .url("/_dr/task/metrics")
+            .param("tableId", "other")
+            .param("row", "{\"insertId\":\"laffo\",\"json\":{}}"));
+  }
+
+  @Test
+  public void testExport_transientFailure_keepsRowsForLater() {
+    MetricRowBuffer.droppedRows.reset();
+    Queue queue = mock(Queue.class);
+    when(queue.add(Matchers.any(TaskOptions.class)))
+        .thenThrow(new TransientFailureException("oops"));
+    enqueuer.queue = queue;
+    enqueuer.export(new OtherTableMetric());
+    enqueuer.export(new OtherTableMetric());
+    enqueuer.queue = getQueue(QUEUE_BIGQUERY_STREAMING_METRICS);
+
+    enqueuer.flush();
+
+    assertTasksEnqueued("bigquery-streaming-metrics",
+        new TaskMatcher()
+            .url("/_dr/task/metrics")
+            .param("tableId", "other")
+            .param("row", "{\"insertId\":\"laffo\",\"json\":{}}")
+            .param("row", "{\"insertId\":\"laffo\",\"json\":{}}"));
+    assertThat(MetricRowBuffer.droppedRows).hasNoOtherValues();
+  }
+
+  @Test
+  public void testExport_otherFailure_countsRowsAsDropped() {
+    MetricRowBuffer.droppedRows.reset();
+    Queue queue = mock(Queue.class);
+    when(queue.add(Matchers.any(TaskOptions.class)))
+        .thenThrow(new IllegalArgumentException("Task size too large"));
+    enqueuer.queue = queue;
+    enqueuer.export(new OtherTableMetric());
+
+    enqueuer.export(new OtherTableMetric());
+
+    assertThat(MetricRowBuffer.droppedRows).hasValueForLabels(2, "other").and().hasNoOtherValues();
+  }
+
+  @Test
+  public void testFlush_enqueuesRowsThatArentReady() {
+    enqueuer.export(new OtherTableMetric());
+    assertNoTasksEnqueued("bigquery-streaming-metrics");
+
+    enqueuer.flush();
+
+    assertTasksEnqueued("bigquery-streaming-metrics",
+        new TaskMatcher()
+            .url("/_dr/task/metrics")
+            .param("tableId", "other")
+            .param("row", "{\"insertId\":\"laffo\",\"json\":{}}"));
+  }
+
+  @Test
+  public void testFlush_countsRowsThatCantBeEnqueuedAsDropped() {
+    MetricRowBuffer.droppedRows.reset();
+    Queue queue = mock(Queue.class);
+    when(queue.add(Matchers.any(TaskOptions.class)))
+        .thenThrow(new TransientFailureException("oops"));
+    enqueuer.queue = queue;
+    enqueuer.export(new OtherTableMetric());
+
+    enqueuer.flush();
+
+    assertThat(MetricRowBuffer.droppedRows).hasValueForLabels(1, "other").and().hasNoOtherValues();
   }
 
   /** A stub implementation of {@link BigQueryMetric}. */
@@ -113,4 +235,23 @@ public class BigQueryMetricsEnqueuerTest {
 
     abstract DateTime getEndTimestamp();
   }
+
+  /** A stub implementation of {@link BigQueryMetric} for another table, with no columns. */
+  static class OtherTableMetric implements BigQueryMetric {
+
+    @Override
+    public String getTableId() {
+      return "other";
+    }
+
+    @Override
+    public ImmutableList<TableFieldSchema> getSchemaFields() {
+      return null;
+    }
+
+    @Override
+    public ImmutableMap<String, String> getBigQueryRowEncoding() {
+      return ImmutableMap.of();
+    }
+  }
 }
@@ -0,0 +1,93 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.monitoring.whitebox;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.monitoring.metrics.contrib.DistributionMetricSubject.assertThat;
+import static google.registry.model.ofy.ObjectifyService.ofy;
+import static google.registry.testing.LogsSubject.assertAboutLogs;
+import static java.util.logging.Level.WARNING;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.testing.TestLogHandler;
+import google.registry.model.ofy.CommitLogBucket;
+import google.registry.model.ofy.DatastoreRpcCounts;
+import google.registry.testing.AppEngineRule;
+import java.util.logging.Logger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link DatastoreRpcMonitor}. */
+@RunWith(JUnit4.class)
+public class DatastoreRpcMonitorTest {
+
+  @Rule
+  public final AppEngineRule appEngine = AppEngineRule.builder().withDatastore().build();
+
+  private final TestLogHandler logHandler = new TestLogHandler();
+  private final Logger loggerToIntercept =
+      Logger.getLogger(DatastoreRpcMonitor.class.getCanonicalName());
+
+  @Before
+  public void before() {
+    loggerToIntercept.addHandler(logHandler);
+    DatastoreRpcMonitor.rpcsPerRequest.reset();
+    DatastoreRpcMonitor.waitTimePerRequest.reset();
+  }
+
+  @After
+  public void after() {
+    loggerToIntercept.removeHandler(logHandler);
+  }
+
+  /** Runs a request that makes three gets. */
+  private void runRequest(DatastoreRpcMonitor monitor) {
+    DatastoreRpcCounts countsAtStart = monitor.startRequest();
+    for (int i = 1; i <= 3; i++) {
+      ofy().load().key(CommitLogBucket.getBucketKey(i)).now();
+    }
+    monitor.recordRequest("backend", "/_dr/task/someAction", countsAtStart);
+  }
+
+  @Test
+  public void testRecordRequest_recordsRpcs() {
+    runRequest(new DatastoreRpcMonitor(10));
+    assertThat(DatastoreRpcMonitor.rpcsPerRequest)
+        .hasDataSetForLabels(ImmutableSet.of(3), "backend")
+        .and()
+        .hasNoOtherValues();
+    assertThat(DatastoreRpcMonitor.waitTimePerRequest).hasAnyValueForLabels("backend");
+    assertThat(logHandler.getStoredLogRecords()).isEmpty();
+  }
+
+  @Test
+  public void testRecordRequest_overBudget_logs() {
+    runRequest(new DatastoreRpcMonitor(2));
+    assertAboutLogs()
+        .that(logHandler)
+        .hasLogAtLevelWithMessage(
+            WARNING, "Request to /_dr/task/someAction made 3 Datastore RPCs, over the budget of 2");
+  }
+
+  @Test
+  public void testRecordRequest_noBudget_doesNotLog() {
+    runRequest(new DatastoreRpcMonitor(0));
+    assertThat(logHandler.getStoredLogRecords()).isEmpty();
+  }
+}
@@ -23,6 +23,7 @@ import com.google.api.services.bigquery.model.TableFieldSchema;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import google.registry.model.eppoutput.Result.Code;
+import google.registry.model.ofy.DatastoreRpcCounts;
 import google.registry.testing.AppEngineRule;
 import google.registry.testing.FakeClock;
 import org.joda.time.DateTime;
@@ -75,6 +76,42 @@ public class EppMetricTest {
     assertThat(metric.getTld()).isEmpty();
   }
 
+  @Test
+  public void test_datastoreRpcs_areSummedOverAttempts() {
+    DatastoreRpcCounts attempt =
+        DatastoreRpcCounts.builder()
+            .setGets(2)
+            .setEntitiesRead(5)
+            .setQueries(1)
+            .setPuts(1)
+            .setEntitiesWritten(4)
+            .setDeletes(1)
+            .setEntitiesDeleted(1)
+            .setTransactions(1)
+            .setWaitNanos(7_500_000)
+            .build();
+    EppMetric metric =
+        EppMetric.builderForRequest("request-id-1", new FakeClock())
+            .incrementAttempts()
+            .addDatastoreRpcs(attempt)
+            .incrementAttempts()
+            .addDatastoreRpcs(attempt)
+            .build();
+    assertThat(metric.getDatastoreRpcCounts())
+        .isEqualTo(
+            DatastoreRpcCounts.builder()
+                .setGets(4)
+                .setEntitiesRead(10)
+                .setQueries(2)
+                .setPuts(2)
+                .setEntitiesWritten(8)
+                .setDeletes(2)
+                .setEntitiesDeleted(2)
+                .setTransactions(2)
+                .setWaitNanos(15_000_000)
+                .build());
+  }
+
   @Test
   public void testGetBigQueryRowEncoding_encodesCorrectly() {
     EppMetric metric =
@@ -89,6 +126,17 @@ public class EppMetricTest {
             .setEppTarget("target")
             .setStatus(Code.COMMAND_USE_ERROR)
             .incrementAttempts()
+            .addDatastoreRpcs(
+                DatastoreRpcCounts.builder()
+                    .setGets(1)
+                    .setEntitiesRead(3)
+                    .setQueries(1)
+                    .setPuts(1)
+                    .setEntitiesWritten(2)
+                    .setTransactions(1)
+                    .setIdAllocations(1)
+                    .setWaitNanos(7_500_000)
+                    .build())
             .build();
 
     assertThat(metric.getBigQueryRowEncoding())
@@ -104,6 +152,16 @@ public class EppMetricTest {
                 .put("eppTarget", "target")
                 .put("eppStatus", "2002")
                 .put("attempts", "1")
+                .put("datastoreGets", "1")
+                .put("datastoreEntitiesRead", "3")
+                .put("datastoreQueries", "1")
+                .put("datastorePuts", "1")
+                .put("datastoreEntitiesWritten", "2")
+                .put("datastoreDeletes", "0")
+                .put("datastoreEntitiesDeleted", "0")
+                .put("datastoreTransactions", "1")
+                .put("datastoreIdAllocations", "1")
+                .put("datastoreWaitMillis", "7")
                 .build());
   }
 
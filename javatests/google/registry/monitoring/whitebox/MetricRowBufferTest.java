@@ -0,0 +1,121 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.monitoring.whitebox;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.monitoring.metrics.contrib.LongMetricSubject.assertThat;
+import static google.registry.monitoring.whitebox.MetricRowBuffer.droppedRows;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import google.registry.monitoring.whitebox.MetricRowBuffer.MetricBatch;
+import google.registry.monitoring.whitebox.MetricRowBuffer.MetricRow;
+import org.joda.time.DateTime;
+import org.joda.time.Duration;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link MetricRowBuffer}. */
+@RunWith(JUnit4.class)
+public class MetricRowBufferTest {
+
+  private static final DateTime START = DateTime.parse("2018-01-01T00:00:00Z");
+
+  private final MetricRowBuffer buffer = new MetricRowBuffer(3, 4, Duration.standardSeconds(10));
+
+  @Before
+  public void before() {
+    droppedRows.reset();
+  }
+
+  private static MetricRow row(String insertId) {
+    return MetricRow.create(insertId, ImmutableMap.of("id", insertId));
+  }
+
+  @Test
+  public void testAdd_batchesByTable() {
+    assertThat(buffer.add("a", row("a1"), START)).isEmpty();
+    assertThat(buffer.add("b", row("b1"), START)).isEmpty();
+    assertThat(buffer.add("a", row("a2"), START)).isEmpty();
+    assertThat(buffer.add("a", row("a3"), START))
+        .containsExactly(
+            MetricBatch.create("a", ImmutableList.of(row("a1"), row("a2"), row("a3"))));
+    assertThat(buffer.add("b", row("b2"), START.plusSeconds(10)))
+        .containsExactly(MetricBatch.create("b", ImmutableList.of(row("b1"), row("b2"))));
+  }
+
+  @Test
+  public void testAdd_dropsRowsThatDontFit() {
+    buffer.add("a", row("a1"), START);
+    buffer.add("a", row("a2"), START);
+    buffer.add("b", row("b1"), START);
+    buffer.add("b", row("b2"), START);
+    assertThat(buffer.add("c", row("c1"), START)).isEmpty();
+    assertThat(droppedRows).hasValueForLabels(1, "c").and().hasNoOtherValues();
+  }
+
+  @Test
+  public void testPutBack_keepsRowsForLater() {
+    MetricBatch batch = MetricBatch.create("a", ImmutableList.of(row("a1"), row("a2")));
+    buffer.putBack(batch, START);
+    assertThat(buffer.add("b", row("b1"), START.plusSeconds(9))).isEmpty();
+    assertThat(buffer.add("b", row("b2"), START.plusSeconds(10))).containsExactly(batch);
+    assertThat(droppedRows).hasNoOtherValues();
+  }
+
+  @Test
+  public void testPutBack_dropsRowsThatDontFit() {
+    buffer.add("b", row("b1"), START);
+    buffer.add("b", row("b2"), START);
+    buffer.putBack(
+        MetricBatch.create("a", ImmutableList.of(row("a1"), row("a2"), row("a3"))), START);
+    assertThat(droppedRows).hasValueForLabels(1, "a").and().hasNoOtherValues();
+    assertThat(buffer.add("a", row("a4"), START.plusSeconds(10)))
+        .containsExactly(
+            MetricBatch.create("a", ImmutableList.of(row("a1"), row("a2"))),
+            MetricBatch.create("b", ImmutableList.of(row("b1"), row("b2"))));
+    assertThat(droppedRows).hasValueForLabels(2, "a").and().hasNoOtherValues();
+  }
+
+  @Test
+  public void testDrainReady_returnsOverdueBatchesWithoutNewRows() {
+    buffer.add("a", row("a1"), START);
+    buffer.add("b", row("b1"), START.plusSeconds(5));
+    assertThat(buffer.drainReady(START.plusSeconds(9))).isEmpty();
+    assertThat(buffer.drainReady(START.plusSeconds(10)))
+        .containsExactly(MetricBatch.create("a", ImmutableList.of(row("a1"))));
+    assertThat(buffer.drainReady(START.plusSeconds(15)))
+        .containsExactly(MetricBatch.create("b", ImmutableList.of(row("b1"))));
+  }
+
+  @Test
+  public void testDrainAll_returnsBatchesThatArentReady() {
+    buffer.add("a", row("a1"), START);
+    buffer.add("b", row("b1"), START);
+    assertThat(buffer.drainAll())
+        .containsExactly(
+            MetricBatch.create("a", ImmutableList.of(row("a1"))),
+            MetricBatch.create("b", ImmutableList.of(row("b1"))));
+    assertThat(buffer.drainAll()).isEmpty();
+  }
+
+  @Test
+  public void testDrop_countsRows() {
+    buffer.drop(MetricBatch.create("a", ImmutableList.of(row("a1"), row("a2"))));
+    assertThat(droppedRows).hasValueForLabels(2, "a").and().hasNoOtherValues();
+  }
+}
@@ -14,8 +14,10 @@
 
 package google.registry.monitoring.whitebox;
 
+import static com.google.common.truth.Truth.assertThat;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -38,6 +40,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Matchers;
 
 /** Unit tests for {@link MetricsExportAction}. */
@@ -63,6 +66,8 @@ public class MetricsExportActionTest {
           .put("jobname", "test job")
           .put("status", "success")
           .put("tld", "test")
+          .put("tableId", "eppMetrics")
+          .put("insertId", "insert id")
           .build();
 
   MetricsExportAction action;
@@ -85,7 +90,6 @@ public class MetricsExportActionTest {
         Matchers.any(TableDataInsertAllRequest.class))).thenReturn(insertAll);
     action = new MetricsExportAction();
     action.bigqueryFactory = bigqueryFactory;
-    action.insertId = "insert id";
     action.parameters = parameters;
     action.projectId = "project id";
     action.tableId = "eppMetrics";
@@ -107,6 +111,49 @@ public class MetricsExportActionTest {
     verify(insertAll).execute();
   }
 
+  @Test
+  public void testSuccess_singleRow() throws Exception {
+    when(insertAll.execute()).thenReturn(response);
+    action.run();
+    ArgumentCaptor<TableDataInsertAllRequest> request =
+        ArgumentCaptor.forClass(TableDataInsertAllRequest.class);
+    verify(tabledata)
+        .insertAll(eq("project id"), eq("metrics"), eq("eppMetrics"), request.capture());
+    assertThat(request.getValue().getRows()).hasSize(1);
+    assertThat(request.getValue().getRows().get(0).getInsertId()).isEqualTo("insert id");
+    assertThat(request.getValue().getRows().get(0).getJson())
+        .containsExactly(
+            "startTime", String.valueOf(MILLISECONDS.toSeconds(currentTimeMillis - 100)),
+            "endTime", String.valueOf(MILLISECONDS.toSeconds(currentTimeMillis)),
+            "jobname", "test job",
+            "status", "success",
+            "tld", "test");
+  }
+
+  @Test
+  public void testSuccess_batchedRows() throws Exception {
+    when(insertAll.execute()).thenReturn(response);
+    action.parameters =
+        new ImmutableListMultimap.Builder<String, String>()
+            .put("tableId", "eppMetrics")
+            .put("row", "{\"insertId\":\"id1\",\"json\":{\"status\":\"success\"}}")
+            .put("row", "{\"insertId\":\"id2\",\"json\":{\"status\":\"failure\"}}")
+            .build();
+    action.run();
+    ArgumentCaptor<TableDataInsertAllRequest> request =
+        ArgumentCaptor.forClass(TableDataInsertAllRequest.class);
+    verify(tabledata)
+        .insertAll(eq("project id"), eq("metrics"), eq("eppMetrics"), request.capture());
+    verify(insertAll).execute();
+    assertThat(request.getValue().getRows()).hasSize(2);
+    assertThat(request.getValue().getRows().get(0).getInsertId()).isEqualTo("id1");
+    assertThat(request.getValue().getRows().get(0).getJson())
+        .containsExactly("status", "success");
+    assertThat(request.getValue().getRows().get(1).getInsertId()).isEqualTo("id2");
+    assertThat(request.getValue().getRows().get(1).getJson())
+        .containsExactly("status", "failure");
+  }
+
   @Test
   public void testFailure_errors() throws Exception {
     when(insertAll.execute()).thenReturn(response);
@@ -0,0 +1,247 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.proxy;
+
+import static com.google.common.truth.Truth.assertThat;
+import static google.registry.proxy.TestUtils.makeHttpPostRequest;
+import static google.registry.proxy.TestUtils.makeHttpResponse;
+import static google.registry.proxy.handler.RelayHandler.RELAY_CHANNEL_KEY;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableList;
+import google.registry.proxy.BackendChannelPool.InFlightRequestCounter;
+import google.registry.proxy.Protocol.BackendProtocol;
+import google.registry.proxy.metric.BackendMetrics;
+import google.registry.testing.FakeClock;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import java.net.InetSocketAddress;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link BackendChannelPool}. */
+@RunWith(JUnit4.class)
+public class BackendChannelPoolTest {
+
+  private static final String PROTOCOL_NAME = "backend";
+
+  private final EventLoopGroup eventLoopGroup = new NioEventLoopGroup(1);
+  private final EventLoop eventLoop = eventLoopGroup.next();
+  private final BackendMetrics metrics = mock(BackendMetrics.class);
+
+  private Channel serverChannel;
+  private BackendProtocol protocol;
+
+  @Before
+  public void setUp() throws Exception {
+    serverChannel =
+        new ServerBootstrap()
+            .group(eventLoopGroup)
+            .channel(NioServerSocketChannel.class)
+            .childHandler(new ChannelInboundHandlerAdapter())
+            .bind("127.0.0.1", 0)
+            .sync()
+            .channel();
+    protocol =
+        Protocol.backendBuilder()
+            .name(PROTOCOL_NAME)
+            .host("127.0.0.1")
+            .port(((InetSocketAddress) serverChannel.localAddress()).getPort())
+            .handlerProviders(ImmutableList.of())
+            .build();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    serverChannel.close().sync();
+    eventLoopGroup.shutdownGracefully().sync();
+  }
+
+  private Channel acquire(BackendChannelPool pool) throws Exception {
+    // Acquisition must happen on the event loop, but waiting for it must not.
+    return eventLoop.submit(() -> pool.acquire(eventLoop, protocol)).get().sync().getNow();
+  }
+
+  private void release(BackendChannelPool pool, Channel channel) throws Exception {
+    eventLoop.submit(() -> pool.release(channel)).get();
+  }
+
+  private BackendChannelPool newPool(int maxIdleConnections) {
+    return newPool(maxIdleConnections, 0);
+  }
+
+  private BackendChannelPool newPool(int maxIdleConnections, long idleTimeoutMillis) {
+    return new BackendChannelPool(
+        ProxyTransport.nio(), maxIdleConnections, idleTimeoutMillis, metrics, new FakeClock());
+  }
+
+  /** Waits until the event loop has run all the tasks that are due in the given time. */
+  private void waitForEventLoop(long millis) throws Exception {
+    eventLoop.schedule(() -> null, millis, MILLISECONDS).get();
+  }
+
+  @Test
+  public void testSuccess_releasedChannelIsReused() throws Exception {
+    BackendChannelPool pool = newPool(1);
+    Channel channel = acquire(pool);
+    assertThat(channel.isActive()).isTrue();
+    channel.attr(RELAY_CHANNEL_KEY).set(new EmbeddedChannel());
+    release(pool, channel);
+    assertThat(channel.isActive()).isTrue();
+    assertThat(channel.attr(RELAY_CHANNEL_KEY).get()).isNull();
+    assertThat(acquire(pool)).isSameAs(channel);
+    verify(metrics).connectionAcquired(eq(PROTOCOL_NAME), eq(false), anyLong());
+    verify(metrics).connectionAcquired(eq(PROTOCOL_NAME), eq(true), anyLong());
+    verify(metrics).registerOpenConnection(PROTOCOL_NAME, channel);
+  }
+
+  @Test
+  public void testSuccess_closedIdleChannelIsNotReused() throws Exception {
+    BackendChannelPool pool = newPool(1);
+    Channel channel = acquire(pool);
+    release(pool, channel);
+    channel.close().sync();
+    Channel newChannel = acquire(pool);
+    assertThat(newChannel).isNotSameAs(channel);
+    assertThat(newChannel.isActive()).isTrue();
+    verify(metrics, times(2)).connectionAcquired(eq(PROTOCOL_NAME), eq(false), anyLong());
+  }
+
+  @Test
+  public void testSuccess_channelReleasedToFullPoolIsClosed() throws Exception {
+    BackendChannelPool pool = newPool(1);
+    Channel channel1 = acquire(pool);
+    Channel channel2 = acquire(pool);
+    release(pool, channel1);
+    release(pool, channel2);
+    channel2.closeFuture().sync();
+    assertThat(channel1.isActive()).isTrue();
+  }
+
+  @Test
+  public void testSuccess_poolingDisabled_releasedChannelIsClosed() throws Exception {
+    BackendChannelPool pool = newPool(0);
+    Channel channel = acquire(pool);
+    release(pool, channel);
+    channel.closeFuture().sync();
+    assertThat(channel.isActive()).isFalse();
+  }
+
+  @Test
+  public void testSuccess_channelWithRequestInFlightIsClosed() throws Exception {
+    BackendChannelPool pool = newPool(1);
+    Channel channel = acquire(pool);
+    // The socket rejects the request since there is no HTTP codec in the pipeline, but it has been
+    // counted by then.
+    ChannelFuture unusedFuture = channel.write(makeHttpPostRequest("request", "host.tld", "/"));
+    release(pool, channel);
+    channel.closeFuture().sync();
+    assertThat(channel.isActive()).isFalse();
+  }
+
+  @Test
+  public void testInFlightRequestCounter_countsUnansweredRequests() {
+    InFlightRequestCounter counter = new InFlightRequestCounter();
+    EmbeddedChannel channel = new EmbeddedChannel(counter);
+    assertThat(counter.hasNoRequestsInFlight()).isTrue();
+    channel.writeOutbound(makeHttpPostRequest("request 1", "host.tld", "/"));
+    channel.writeOutbound(makeHttpPostRequest("request 2", "host.tld", "/"));
+    channel.writeInbound(makeHttpResponse("response 1", HttpResponseStatus.OK));
+    assertThat(counter.hasNoRequestsInFlight()).isFalse();
+    channel.writeInbound(makeHttpResponse("response 2", HttpResponseStatus.OK));
+    assertThat(counter.hasNoRequestsInFlight()).isTrue();
+  }
+
+  @Test
+  public void testSuccess_idleChannelIsClosedAfterTimeout() throws Exception {
+    BackendChannelPool pool = newPool(1, 100);
+    Channel channel = acquire(pool);
+    release(pool, channel);
+    assertThat(channel.closeFuture().await(5, SECONDS)).isTrue();
+    Channel newChannel = acquire(pool);
+    assertThat(newChannel).isNotSameAs(channel);
+    assertThat(newChannel.isActive()).isTrue();
+    verify(metrics, times(2)).connectionAcquired(eq(PROTOCOL_NAME), eq(false), anyLong());
+  }
+
+  @Test
+  public void testSuccess_reusedChannelIsNotClosedByIdleTimeout() throws Exception {
+    BackendChannelPool pool = newPool(1, 100);
+    Channel channel = acquire(pool);
+    release(pool, channel);
+    assertThat(acquire(pool)).isSameAs(channel);
+    waitForEventLoop(300);
+    assertThat(channel.isActive()).isTrue();
+  }
+
+  @Test
+  public void testSuccess_closedChannelWithoutRequestInFlight_keepsClientChannel()
+      throws Exception {
+    BackendChannelPool pool = newPool(1);
+    Channel channel = acquire(pool);
+    EmbeddedChannel clientChannel = new EmbeddedChannel();
+    channel.attr(RELAY_CHANNEL_KEY).set(clientChannel);
+    channel.close().sync();
+    waitForEventLoop(0);
+    assertThat(clientChannel.isActive()).isTrue();
+  }
+
+  @Test
+  public void testSuccess_closedChannelWithRequestInFlight_closesClientChannel()
+      throws Exception {
+    BackendChannelPool pool = newPool(1);
+    Channel channel = acquire(pool);
+    EmbeddedChannel clientChannel = new EmbeddedChannel();
+    channel.attr(RELAY_CHANNEL_KEY).set(clientChannel);
+    // The socket rejects the request since there is no HTTP codec in the pipeline, but it has been
+    // counted by then.
+    ChannelFuture unusedFuture = channel.write(makeHttpPostRequest("request", "host.tld", "/"));
+    channel.close().sync();
+    waitForEventLoop(0);
+    assertThat(clientChannel.isActive()).isFalse();
+  }
+
+  @Test
+  public void testSuccess_replaceClosedChannel() throws Exception {
+    BackendChannelPool pool = newPool(1);
+    Channel channel = acquire(pool);
+    channel.close().sync();
+    Channel clientChannel = mock(Channel.class);
+    when(clientChannel.eventLoop()).thenReturn(eventLoop);
+    Channel newChannel =
+        eventLoop.submit(() -> pool.replace(clientChannel, channel)).get().sync().getNow();
+    assertThat(newChannel).isNotSameAs(channel);
+    assertThat(newChannel.isActive()).isTrue();
+    verify(metrics, times(2)).connectionAcquired(eq(PROTOCOL_NAME), eq(false), anyLong());
+  }
+}
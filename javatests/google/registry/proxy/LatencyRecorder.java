@@ -0,0 +1,94 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.proxy;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.util.Arrays;
+
+/**
+ * Thread-safe recorder of round trip latencies, used by {@link ProxyLoadHarness}.
+ *
+ * <p>Every sample is kept so that percentiles are exact. The histogram has power-of-two buckets in
+ * milliseconds, the first of which covers everything below one millisecond.
+ */
+final class LatencyRecorder {
+
+  private static final int NUM_BUCKETS = 20;
+
+  private final String name;
+  private final long[] bucketCounts = new long[NUM_BUCKETS];
+  private long[] latenciesNanos = new long[1024];
+  private int count = 0;
+
+  LatencyRecorder(String name) {
+    this.name = name;
+  }
+
+  synchronized void record(long latencyNanos) {
+    if (count == latenciesNanos.length) {
+      latenciesNanos = Arrays.copyOf(latenciesNanos, count * 2);
+    }
+    latenciesNanos[count++] = latencyNanos;
+    long millis = NANOSECONDS.toMillis(latencyNanos);
+    int bucket = millis == 0 ? 0 : 64 - Long.numberOfLeadingZeros(millis);
+    bucketCounts[Math.min(bucket, NUM_BUCKETS - 1)]++;
+  }
+
+  synchronized int count() {
+    return count;
+  }
+
+  /** Returns a human readable summary, with throughput computed over the given elapsed time. */
+  synchronized String report(long elapsedNanos) {
+    StringBuilder report = new StringBuilder();
+    double seconds = elapsedNanos / 1e9;
+    double throughput = seconds > 0 ? count / seconds : 0;
+    report.append(String.format("%s: %d round trips, %.1f per second%n", name, count, throughput));
+    if (count == 0) {
+      return report.toString();
+    }
+    long[] sorted = Arrays.copyOf(latenciesNanos, count);
+    Arrays.sort(sorted);
+    report.append(
+        String.format(
+            "  latency ms: p50 %.2f, p90 %.2f, p99 %.2f, p99.9 %.2f, max %.2f%n",
+            percentileMillis(sorted, 50),
+            percentileMillis(sorted, 90),
+            percentileMillis(sorted, 99),
+            percentileMillis(sorted, 99.9),
+            sorted[count - 1] / 1e6));
+    for (int i = 0; i < NUM_BUCKETS; i++) {
+      if (bucketCounts[i] == 0) {
+        continue;
+      }
+      String range =
+          i == 0
+              ? "[0, 1)"
+              : i == NUM_BUCKETS - 1
+                  ? String.format("[%d, inf)", 1L << (i - 1))
+                  : String.format("[%d, %d)", 1L << (i - 1), 1L << i);
+      report.append(
+          String.format(
+              "  %-16s %10d %6.2f%%%n", range, bucketCounts[i], 100.0 * bucketCounts[i] / count));
+    }
+    return report.toString();
+  }
+
+  private static double percentileMillis(long[] sorted, double percentile) {
+    int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+    return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+  }
+}
@@ -0,0 +1,58 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.proxy;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link LatencyRecorder}. */
+@RunWith(JUnit4.class)
+public class LatencyRecorderTest {
+
+  private final LatencyRecorder recorder = new LatencyRecorder("test");
+
+  @Test
+  public void testReport_empty() {
+    assertThat(recorder.report(SECONDS.toNanos(1)))
+        .isEqualTo(String.format("test: 0 round trips, 0.0 per second%n"));
+  }
+
+  @Test
+  public void testReport_percentilesAndHistogram() {
+    for (int i = 1; i <= 100; i++) {
+      recorder.record(MILLISECONDS.toNanos(i));
+    }
+    String report = recorder.report(SECONDS.toNanos(2));
+    assertThat(recorder.count()).isEqualTo(100);
+    assertThat(report).contains("test: 100 round trips, 50.0 per second");
+    assertThat(report).contains("p50 50.00, p90 90.00, p99 99.00, p99.9 100.00, max 100.00");
+    assertThat(report).contains(String.format("  %-16s %10d %6.2f%%%n", "[1, 2)", 1, 1.0));
+    assertThat(report).contains(String.format("  %-16s %10d %6.2f%%%n", "[64, 128)", 37, 37.0));
+  }
+
+  @Test
+  public void testRecord_growsBeyondInitialCapacity() {
+    for (int i = 0; i < 5000; i++) {
+      recorder.record(1000);
+    }
+    assertThat(recorder.count()).isEqualTo(5000);
+    assertThat(recorder.report(SECONDS.toNanos(1))).contains("[0, 1)");
+  }
+}
@@ -0,0 +1,274 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.proxy;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import com.google.common.collect.ImmutableList;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.LengthFieldPrepender;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslProvider;
+import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import io.netty.handler.ssl.util.SelfSignedCertificate;
+import io.netty.util.concurrent.Future;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.net.ssl.SSLException;
+
+/**
+ * Drives concurrent EPP and WHOIS clients against a local proxy for {@link ProxyLoadHarness}.
+ *
+ * <p>Each EPP client connects with one of a fixed set of client certificates, i. e. as one of a
+ * fixed set of registrars, waits for the greeting that the proxy solicits with a {@code <hello>}
+ * on its behalf, sends a number of {@code <login>} commands one after another and disconnects. The
+ * latency of the greeting includes the TCP and TLS handshakes with the proxy.
+ *
+ * <p>Each WHOIS client sends a number of queries one after another, each on a new connection as
+ * WHOIS clients do, and reads each response until the proxy closes the connection.
+ *
+ * <p>A connection that the proxy closes before the client is done, e. g. because of a quota
+ * rejection, is counted as closed early.
+ */
+final class LoadGenerator {
+
+  /** Size of the EPP frame header, which holds the frame length, header included. */
+  private static final int EPP_HEADER_LENGTH = 4;
+
+  private final EventLoopGroup eventLoopGroup;
+  private final ProxyTransport transport;
+  private final ImmutableList<SslContext> registrarSslContexts;
+  private final byte[] eppCommand;
+  private final byte[] whoisQuery;
+
+  final LatencyRecorder eppGreetings = new LatencyRecorder("EPP greeting");
+  final LatencyRecorder eppCommands = new LatencyRecorder("EPP command");
+  final LatencyRecorder whoisQueries = new LatencyRecorder("WHOIS query");
+  final AtomicLong eppClosedEarly = new AtomicLong();
+  final AtomicLong whoisClosedEarly = new AtomicLong();
+  final AtomicLong connectFailures = new AtomicLong();
+
+  LoadGenerator(
+      EventLoopGroup eventLoopGroup,
+      ProxyTransport transport,
+      int numRegistrars,
+      byte[] eppCommand,
+      String whoisQuery)
+      throws Exception {
+    this.eventLoopGroup = eventLoopGroup;
+    this.transport = transport;
+    ImmutableList.Builder<SslContext> sslContexts = new ImmutableList.Builder<>();
+    for (int i = 0; i < numRegistrars; i++) {
+      sslContexts.add(makeClientSslContext(new SelfSignedCertificate()));
+    }
+    this.registrarSslContexts = sslContexts.build();
+    this.eppCommand = eppCommand;
+    this.whoisQuery = (whoisQuery + "\r\n").getBytes(US_ASCII);
+  }
+
+  private static SslContext makeClientSslContext(SelfSignedCertificate certificate)
+      throws SSLException {
+    return SslContextBuilder.forClient()
+        .sslProvider(SslProvider.JDK)
+        .keyManager(certificate.key(), certificate.cert())
+        // The proxy presents the self-signed certificate from CertificateModule.
+        .trustManager(InsecureTrustManagerFactory.INSTANCE)
+        .build();
+  }
+
+  /**
+   * Starts the clients, spreading their first connections evenly over the ramp-up period.
+   *
+   * <p>The latch is counted down once for each client when it is done, successfully or not.
+   */
+  void start(
+      int eppPort,
+      int eppClients,
+      int eppCommandsPerClient,
+      int whoisPort,
+      int whoisClients,
+      int whoisQueriesPerClient,
+      long rampUpMillis,
+      CountDownLatch done) {
+    int totalClients = eppClients + whoisClients;
+    for (int i = 0; i < totalClients; i++) {
+      long delayMillis = totalClients > 1 ? rampUpMillis * i / (totalClients - 1) : 0;
+      // Interleave the two protocols so that they ramp up together.
+      boolean isEpp =
+          (long) (i + 1) * eppClients / totalClients > (long) i * eppClients / totalClients;
+      SslContext sslContext = registrarSslContexts.get(i % registrarSslContexts.size());
+      Runnable client =
+          isEpp
+              ? () -> connectEpp(eppPort, sslContext, eppCommandsPerClient, done)
+              : () -> connectWhois(whoisPort, whoisQueriesPerClient, done);
+      Future<?> unusedFuture = eventLoopGroup.schedule(client, delayMillis, MILLISECONDS);
+    }
+  }
+
+  private Bootstrap bootstrap(int port) {
+    return new Bootstrap()
+        .group(eventLoopGroup)
+        .channel(transport.channelClass())
+        .option(ChannelOption.TCP_NODELAY, true)
+        .remoteAddress(StubHttpsBackend.HOST, port);
+  }
+
+  private void connectEpp(int port, SslContext sslContext, int commandsLeft, CountDownLatch done) {
+    long startNanos = System.nanoTime();
+    ChannelFuture connectFuture =
+        bootstrap(port)
+            .handler(
+                new ChannelInitializer<SocketChannel>() {
+                  @Override
+                  protected void initChannel(SocketChannel channel) throws Exception {
+                    channel
+                        .pipeline()
+                        .addLast(
+                            sslContext.newHandler(channel.alloc()),
+                            new LengthFieldBasedFrameDecoder(
+                                Integer.MAX_VALUE,
+                                0,
+                                EPP_HEADER_LENGTH,
+                                -EPP_HEADER_LENGTH,
+                                EPP_HEADER_LENGTH),
+                            new LengthFieldPrepender(EPP_HEADER_LENGTH, true),
+                            new EppClientHandler(startNanos, commandsLeft, done));
+                  }
+                })
+            .connect();
+    connectFuture.addListener(future -> onConnect(future, done));
+  }
+
+  private void connectWhois(int port, int queriesLeft, CountDownLatch done) {
+    if (queriesLeft == 0) {
+      done.countDown();
+      return;
+    }
+    long startNanos = System.nanoTime();
+    ChannelFuture connectFuture =
+        bootstrap(port)
+            .handler(new WhoisClientHandler(port, startNanos, queriesLeft, done))
+            .connect();
+    connectFuture.addListener(future -> onConnect(future, done));
+  }
+
+  private void onConnect(Future<?> connectFuture, CountDownLatch done) {
+    if (!connectFuture.isSuccess()) {
+      connectFailures.incrementAndGet();
+      done.countDown();
+    }
+  }
+
+  /** Client side of an EPP session, which sends the next command when a response arrives. */
+  private class EppClientHandler extends SimpleChannelInboundHandler<ByteBuf> {
+
+    private final CountDownLatch done;
+    private long sentNanos;
+    private boolean greeted = false;
+    private int commandsLeft;
+
+    EppClientHandler(long startNanos, int commandsLeft, CountDownLatch done) {
+      this.sentNanos = startNanos;
+      this.commandsLeft = commandsLeft;
+      this.done = done;
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, ByteBuf frame) {
+      long latencyNanos = System.nanoTime() - sentNanos;
+      if (greeted) {
+        eppCommands.record(latencyNanos);
+        commandsLeft--;
+      } else {
+        eppGreetings.record(latencyNanos);
+        greeted = true;
+      }
+      if (commandsLeft > 0) {
+        sentNanos = System.nanoTime();
+        ChannelFuture unusedFuture = ctx.writeAndFlush(Unpooled.wrappedBuffer(eppCommand));
+      } else {
+        ChannelFuture unusedFuture = ctx.close();
+      }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) {
+      if (!greeted || commandsLeft > 0) {
+        eppClosedEarly.incrementAndGet();
+      }
+      done.countDown();
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+      ChannelFuture unusedFuture = ctx.close();
+    }
+  }
+
+  /** Client side of a WHOIS query, which starts the next query when the proxy disconnects. */
+  private class WhoisClientHandler extends SimpleChannelInboundHandler<ByteBuf> {
+
+    private final int port;
+    private final long startNanos;
+    private final int queriesLeft;
+    private final CountDownLatch done;
+    private boolean answered = false;
+
+    WhoisClientHandler(int port, long startNanos, int queriesLeft, CountDownLatch done) {
+      this.port = port;
+      this.startNanos = startNanos;
+      this.queriesLeft = queriesLeft;
+      this.done = done;
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) {
+      ChannelFuture unusedFuture = ctx.writeAndFlush(Unpooled.wrappedBuffer(whoisQuery));
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, ByteBuf msg) {
+      answered = true;
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) {
+      if (answered) {
+        whoisQueries.record(System.nanoTime() - startNanos);
+        connectWhois(port, queriesLeft - 1, done);
+      } else {
+        whoisClosedEarly.incrementAndGet();
+        done.countDown();
+      }
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+      ChannelFuture unusedFuture = ctx.close();
+    }
+  }
+}
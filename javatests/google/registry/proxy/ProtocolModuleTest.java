@@ -47,12 +47,14 @@ import io.netty.channel.embedded.EmbeddedChannel;
 import io.netty.handler.logging.LoggingHandler;
 import io.netty.handler.ssl.SslProvider;
 import io.netty.handler.timeout.ReadTimeoutHandler;
+import java.security.cert.X509Certificate;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
+import javax.annotation.Nullable;
 import javax.inject.Named;
 import javax.inject.Provider;
 import javax.inject.Singleton;
@@ -232,6 +234,13 @@ public abstract class ProtocolModuleTest {
       return SslProvider.JDK;
     }
 
+    @Nullable
+    @Provides
+    @HttpsRelayProtocol
+    static X509Certificate[] provideTrustedCertificates() {
+      return null;
+    }
+
     @Singleton
     @Provides
     @Named("accessToken")
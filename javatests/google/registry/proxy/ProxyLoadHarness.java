@@ -0,0 +1,438 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.proxy;
+
+import static google.registry.proxy.ProxyConfig.Environment.LOCAL;
+import static google.registry.proxy.ProxyConfig.getProxyConfig;
+import static google.registry.util.ResourceUtils.readResourceBytes;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.flogger.LoggerConfig;
+import com.google.monitoring.metrics.Metric;
+import com.google.monitoring.metrics.MetricPoint;
+import com.google.monitoring.metrics.MetricRegistryImpl;
+import dagger.Component;
+import dagger.Module;
+import dagger.Provides;
+import google.registry.proxy.EppProtocolModule.EppProtocol;
+import google.registry.proxy.HealthCheckProtocolModule.HealthCheckProtocol;
+import google.registry.proxy.HttpsRelayProtocolModule.HttpsRelayProtocol;
+import google.registry.proxy.Protocol.FrontendProtocol;
+import google.registry.proxy.ProxyConfig.Environment;
+import google.registry.proxy.ProxyConfig.Quota;
+import google.registry.proxy.WhoisProtocolModule.WhoisProtocol;
+import google.registry.util.Clock;
+import google.registry.util.SystemClock;
+import io.netty.channel.EventLoopGroup;
+import io.netty.handler.logging.LogLevel;
+import io.netty.handler.logging.LoggingHandler;
+import io.netty.handler.ssl.SslProvider;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.cert.X509Certificate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+/**
+ * A self-contained load test of the proxy over loopback.
+ *
+ * <p>The harness starts a {@link ProxyServer} wired with the production protocol modules, the
+ * self-signed certificate from {@link CertificateModule} for EPP, and a {@link StubHttpsBackend} in
+ * place of App Engine. It then drives concurrent EPP and WHOIS clients against it with a {@link
+ * LoadGenerator}, and reports:
+ *
+ * <ul>
+ *   <li>throughput and latency histograms of EPP greetings, EPP commands and WHOIS queries;
+ *   <li>bytes allocated by the JVM and garbage collections during the run;
+ *   <li>quota rejections recorded by {@link google.registry.proxy.handler.QuotaHandler}, and
+ *       connections that clients saw closed early.
+ * </ul>
+ *
+ * <p>Clients, proxy and backend all run in the same JVM, so the numbers are only meaningful when
+ * compared with each other, e. g. before and after a change to a handler, or between transports.
+ * Run it with:
+ *
+ * <pre>
+ * bazel run //javatests/google/registry/proxy:proxy_load_harness -- --transport EPOLL
+ * </pre>
+ */
+public class ProxyLoadHarness {
+
+  private static final String QUOTA_REJECTIONS_METRIC = "/proxy/frontend/quota_rejections";
+
+  @Parameter(names = "--transport", description = "Transport of the proxy, backend and clients")
+  private ProxyTransport.Type transportType = ProxyTransport.Type.NIO;
+
+  @Parameter(names = "--epp_clients", description = "Number of concurrent EPP clients")
+  private int eppClients = 1000;
+
+  @Parameter(
+      names = "--epp_commands_per_client",
+      description = "Number of commands each EPP client sends after the greeting")
+  private int eppCommandsPerClient = 10;
+
+  @Parameter(names = "--whois_clients", description = "Number of concurrent WHOIS clients")
+  private int whoisClients = 1000;
+
+  @Parameter(
+      names = "--whois_queries_per_client",
+      description = "Number of queries each WHOIS client sends, one connection each")
+  private int whoisQueriesPerClient = 5;
+
+  @Parameter(names = "--registrars", description = "Number of distinct EPP client certificates")
+  private int registrars = 10;
+
+  @Parameter(
+      names = "--ramp_up_millis",
+      description = "Period over which the clients' first connections are spread")
+  private long rampUpMillis = 1000;
+
+  @Parameter(
+      names = "--backend_latency_millis",
+      description = "Time the stub backend waits before answering each request")
+  private long backendLatencyMillis = 0;
+
+  @Parameter(
+      names = "--epp_quota_tokens",
+      description = "Concurrent EPP connections allowed per registrar, -1 for unlimited")
+  private int eppQuotaTokens = -1;
+
+  @Parameter(
+      names = "--whois_quota_tokens",
+      description = "WHOIS queries allowed per refill period per IP address, -1 for unlimited")
+  private int whoisQuotaTokens = -1;
+
+  @Parameter(names = "--timeout_seconds", description = "Time to wait for all clients to finish")
+  private long timeoutSeconds = 600;
+
+  public static void main(String[] args) throws Exception {
+    ProxyLoadHarness harness = new ProxyLoadHarness();
+    JCommander jCommander = new JCommander(harness);
+    jCommander.setProgramName("proxy_load_harness");
+    jCommander.parse(args);
+    // Per-connection logs would dominate the run.
+    LoggerConfig.getConfig("").setLevel(Level.WARNING);
+    harness.run();
+    // The proxy server has no way to be stopped, and its event loops are not daemon threads.
+    System.exit(0);
+  }
+
+  private void run() throws Exception {
+    ProxyConfig config = getProxyConfig(LOCAL);
+    config.transport = transportType;
+    config.epp.port = findFreePort();
+    config.whois.port = findFreePort();
+    config.healthCheck.port = findFreePort();
+    config.epp.relayHost = StubHttpsBackend.HOST;
+    config.whois.relayHost = StubHttpsBackend.HOST;
+    setDefaultQuota(config.epp.quota, eppQuotaTokens);
+    setDefaultQuota(config.whois.quota, whoisQuotaTokens);
+
+    ProxyTransport transport = ProxyTransport.create(transportType);
+    EventLoopGroup backendGroup = transport.newEventLoopGroup();
+    StubHttpsBackend backend =
+        new StubHttpsBackend(
+            config.epp.relayPath,
+            readResourceBytes(ProxyLoadHarness.class, "testdata/login_response.xml").read(),
+            "Domain Name: EXAMPLE.TLD\r\n".getBytes(US_ASCII),
+            backendLatencyMillis);
+    config.httpsRelay.port =
+        ((InetSocketAddress) backend.start(backendGroup, transport).localAddress()).getPort();
+
+    HarnessComponent component =
+        DaggerProxyLoadHarness_HarnessComponent.builder()
+            .harnessModule(new HarnessModule(config, backend.certificate().cert()))
+            .build();
+    Thread serverThread =
+        new Thread(
+            new ProxyServer(
+                component.portToProtocolMap(),
+                component.proxyTransport(),
+                component.backendChannelPool()),
+            "proxy-server");
+    serverThread.setDaemon(true);
+    serverThread.start();
+    for (int port : component.portToProtocolMap().keySet()) {
+      waitForPort(port);
+    }
+
+    EventLoopGroup clientGroup = transport.newEventLoopGroup();
+    LoadGenerator loadGenerator =
+        new LoadGenerator(
+            clientGroup,
+            transport,
+            registrars,
+            readResourceBytes(ProxyLoadHarness.class, "testdata/login.xml").read(),
+            "example.tld");
+    CountDownLatch done = new CountDownLatch(eppClients + whoisClients);
+
+    ImmutableMap<String, Long> rejectionsBefore = getQuotaRejections();
+    long allocatedBytesBefore = getAllocatedBytes();
+    long gcCountBefore = getGcCount();
+    long gcMillisBefore = getGcMillis();
+    long startNanos = System.nanoTime();
+    loadGenerator.start(
+        config.epp.port,
+        eppClients,
+        eppCommandsPerClient,
+        config.whois.port,
+        whoisClients,
+        whoisQueriesPerClient,
+        rampUpMillis,
+        done);
+    boolean finished = done.await(timeoutSeconds, SECONDS);
+    long elapsedNanos = System.nanoTime() - startNanos;
+    long allocatedBytes = getAllocatedBytes() - allocatedBytesBefore;
+    long gcCount = getGcCount() - gcCountBefore;
+    long gcMillis = getGcMillis() - gcMillisBefore;
+    ImmutableMap<String, Long> rejectionsAfter = getQuotaRejections();
+
+    double seconds = elapsedNanos / 1e9;
+    System.out.printf(
+        "Transport: %s (requested %s)%n", component.proxyTransport().type(), transportType);
+    System.out.printf(
+        "Clients: %d EPP, %d WHOIS; %s in %.2f s%n",
+        eppClients,
+        whoisClients,
+        finished ? "finished" : "TIMED OUT with " + done.getCount() + " unfinished",
+        seconds);
+    System.out.print(loadGenerator.eppGreetings.report(elapsedNanos));
+    System.out.print(loadGenerator.eppCommands.report(elapsedNanos));
+    System.out.print(loadGenerator.whoisQueries.report(elapsedNanos));
+    System.out.printf(
+        "Allocated: %.1f MB, %.1f MB/s; GC: %d collections, %d ms%n",
+        allocatedBytes / 1e6, allocatedBytes / 1e6 / seconds, gcCount, gcMillis);
+    for (String protocol : rejectionsAfter.keySet()) {
+      System.out.printf(
+          "Quota rejections (%s): %d%n",
+          protocol, rejectionsAfter.get(protocol) - rejectionsBefore.getOrDefault(protocol, 0L));
+    }
+    System.out.printf(
+        "Closed early: %d EPP, %d WHOIS; connect failures: %d%n",
+        loadGenerator.eppClosedEarly.get(),
+        loadGenerator.whoisClosedEarly.get(),
+        loadGenerator.connectFailures.get());
+  }
+
+  private static void setDefaultQuota(Quota quota, int tokenAmount) {
+    quota.defaultQuota.tokenAmount = tokenAmount;
+    if (quota.customQuota != null) {
+      quota.customQuota.clear();
+    }
+  }
+
+  private static int findFreePort() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+
+  private static void waitForPort(int port) throws InterruptedException {
+    for (int attempt = 0; attempt < 100; attempt++) {
+      try (Socket unused = new Socket(StubHttpsBackend.HOST, port)) {
+        return;
+      } catch (IOException e) {
+        Thread.sleep(100);
+      }
+    }
+    throw new IllegalStateException("Proxy is not listening on port " + port);
+  }
+
+  /** Bytes allocated so far by all live threads, which include the event loops. */
+  private static long getAllocatedBytes() {
+    com.sun.management.ThreadMXBean threadBean =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long total = 0;
+    for (long allocatedBytes : threadBean.getThreadAllocatedBytes(threadBean.getAllThreadIds())) {
+      total += Math.max(allocatedBytes, 0);
+    }
+    return total;
+  }
+
+  private static long getGcCount() {
+    long total = 0;
+    for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+      total += Math.max(bean.getCollectionCount(), 0);
+    }
+    return total;
+  }
+
+  private static long getGcMillis() {
+    long total = 0;
+    for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+      total += Math.max(bean.getCollectionTime(), 0);
+    }
+    return total;
+  }
+
+  /** Returns the quota rejections recorded by the proxy so far, summed by protocol. */
+  private static ImmutableMap<String, Long> getQuotaRejections() {
+    Map<String, Long> rejections = new HashMap<>();
+    for (Metric<?> metric : MetricRegistryImpl.getDefault().getRegisteredMetrics()) {
+      if (metric.getMetricSchema().name().equals(QUOTA_REJECTIONS_METRIC)) {
+        for (MetricPoint<?> point : metric.getTimestampedValues()) {
+          rejections.merge(point.labelValues().get(0), (Long) point.value(), Long::sum);
+        }
+      }
+    }
+    return ImmutableMap.copyOf(rejections);
+  }
+
+  /** Component that exposes what {@link ProxyServer} needs, wired for the harness. */
+  @Singleton
+  @Component(
+    modules = {
+      HarnessModule.class,
+      CertificateModule.class,
+      HttpsRelayProtocolModule.class,
+      WhoisProtocolModule.class,
+      EppProtocolModule.class,
+      HealthCheckProtocolModule.class
+    }
+  )
+  interface HarnessComponent {
+
+    ImmutableMap<Integer, FrontendProtocol> portToProtocolMap();
+
+    ProxyTransport proxyTransport();
+
+    BackendChannelPool backendChannelPool();
+  }
+
+  /**
+   * Module that replaces {@link ProxyModule} in the harness.
+   *
+   * <p>It provides the modified config, trusts the stub backend's certificate, and fakes the
+   * bindings that would otherwise need GCP credentials.
+   */
+  @Module
+  static class HarnessModule {
+
+    private final ProxyConfig config;
+    private final X509Certificate backendCertificate;
+
+    HarnessModule(ProxyConfig config, X509Certificate backendCertificate) {
+      this.config = config;
+      this.backendCertificate = backendCertificate;
+    }
+
+    @Provides
+    ProxyConfig provideProxyConfig() {
+      return config;
+    }
+
+    @Provides
+    @HttpsRelayProtocol
+    X509Certificate[] provideTrustedCertificates() {
+      return new X509Certificate[] {backendCertificate};
+    }
+
+    @Provides
+    @WhoisProtocol
+    static int provideWhoisPort(ProxyConfig config) {
+      return config.whois.port;
+    }
+
+    @Provides
+    @EppProtocol
+    static int provideEppPort(ProxyConfig config) {
+      return config.epp.port;
+    }
+
+    @Provides
+    @HealthCheckProtocol
+    static int provideHealthCheckPort(ProxyConfig config) {
+      return config.healthCheck.port;
+    }
+
+    @Provides
+    static ImmutableMap<Integer, FrontendProtocol> providePortToProtocolMap(
+        Set<FrontendProtocol> protocolSet) {
+      return Maps.uniqueIndex(protocolSet, Protocol::port);
+    }
+
+    @Provides
+    static Environment provideEnvironment() {
+      return Environment.LOCAL;
+    }
+
+    @Singleton
+    @Provides
+    static ProxyTransport provideProxyTransport(ProxyConfig config) {
+      return ProxyTransport.create(config.transport);
+    }
+
+    @Singleton
+    @Provides
+    static LoggingHandler provideLoggingHandler() {
+      return new LoggingHandler(LogLevel.DEBUG);
+    }
+
+    @Provides
+    static SslProvider provideSslProvider() {
+      return SslProvider.JDK;
+    }
+
+    @Provides
+    @Named("accessToken")
+    static Supplier<String> provideFakeAccessToken() {
+      return Suppliers.ofInstance("fake.load.test.token");
+    }
+
+    // Only here to satisfy Dagger, the self-signed certificate is used in the local environment.
+    @Provides
+    @Named("pemBytes")
+    static byte[] providePemBytes() {
+      return new byte[0];
+    }
+
+    @Singleton
+    @Provides
+    static Clock provideClock() {
+      return new SystemClock();
+    }
+
+    @Singleton
+    @Provides
+    static ExecutorService provideExecutorService() {
+      return Executors.newWorkStealingPool();
+    }
+
+    @Singleton
+    @Provides
+    static ScheduledExecutorService provideScheduledExecutorService() {
+      return Executors.newSingleThreadScheduledExecutor();
+    }
+  }
+}
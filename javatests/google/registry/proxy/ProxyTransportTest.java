@@ -0,0 +1,59 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.proxy;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import google.registry.proxy.ProxyTransport.Type;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link ProxyTransport}. */
+@RunWith(JUnit4.class)
+public class ProxyTransportTest {
+
+  private static void assertIsNio(ProxyTransport transport) throws Exception {
+    assertThat(transport.type()).isEqualTo(Type.NIO);
+    assertThat(transport.serverChannelClass()).isEqualTo(NioServerSocketChannel.class);
+    assertThat(transport.channelClass()).isEqualTo(NioSocketChannel.class);
+    EventLoopGroup eventLoopGroup = transport.newEventLoopGroup();
+    try {
+      assertThat(eventLoopGroup).isInstanceOf(NioEventLoopGroup.class);
+    } finally {
+      eventLoopGroup.shutdownGracefully().sync();
+    }
+  }
+
+  @Test
+  public void testSuccess_nio() throws Exception {
+    assertIsNio(ProxyTransport.create(Type.NIO));
+  }
+
+  @Test
+  public void testSuccess_notSpecified_usesNio() throws Exception {
+    assertIsNio(ProxyTransport.create(null));
+  }
+
+  @Test
+  public void testSuccess_epollNotOnClasspath_fallsBackToNio() throws Exception {
+    // The native epoll transport is not a dependency of the tests.
+    assertIsNio(ProxyTransport.create(Type.EPOLL));
+  }
+}
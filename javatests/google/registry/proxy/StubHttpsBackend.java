@@ -0,0 +1,140 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.proxy;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslProvider;
+import io.netty.handler.ssl.util.SelfSignedCertificate;
+import io.netty.util.concurrent.Future;
+
+/**
+ * An HTTPS server that stands in for the App Engine backend in {@link ProxyLoadHarness}.
+ *
+ * <p>Every EPP request is answered with the same canned EPP response, and every WHOIS request with
+ * the same canned text, optionally after a fixed delay that simulates backend processing time. The
+ * connection is closed after the response if the request asks for it, as WHOIS requests do.
+ */
+final class StubHttpsBackend {
+
+  /** The host name that the proxy relays to, which the stub certificate is issued for. */
+  static final String HOST = "localhost";
+
+  private final SelfSignedCertificate certificate;
+  private final String eppPath;
+  private final byte[] eppResponse;
+  private final byte[] whoisResponse;
+  private final long latencyMillis;
+
+  StubHttpsBackend(String eppPath, byte[] eppResponse, byte[] whoisResponse, long latencyMillis)
+      throws Exception {
+    this.certificate = new SelfSignedCertificate(HOST);
+    this.eppPath = eppPath;
+    this.eppResponse = eppResponse;
+    this.whoisResponse = whoisResponse;
+    this.latencyMillis = latencyMillis;
+  }
+
+  /** The self-signed certificate that the proxy must trust to connect to this backend. */
+  SelfSignedCertificate certificate() {
+    return certificate;
+  }
+
+  /** Starts listening on a loopback port chosen by the system, and returns the server channel. */
+  Channel start(EventLoopGroup eventLoopGroup, ProxyTransport transport) throws Exception {
+    SslContext sslContext =
+        SslContextBuilder.forServer(certificate.key(), certificate.cert())
+            .sslProvider(SslProvider.JDK)
+            .build();
+    return new ServerBootstrap()
+        .group(eventLoopGroup)
+        .channel(transport.serverChannelClass())
+        .childHandler(
+            new ChannelInitializer<SocketChannel>() {
+              @Override
+              protected void initChannel(SocketChannel channel) throws Exception {
+                channel
+                    .pipeline()
+                    .addLast(
+                        sslContext.newHandler(channel.alloc()),
+                        new HttpServerCodec(),
+                        new HttpObjectAggregator(1024 * 1024),
+                        new StubHandler());
+              }
+            })
+        .bind(HOST, 0)
+        .sync()
+        .channel();
+  }
+
+  private class StubHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest request) {
+      boolean isEpp = request.uri().equals(eppPath);
+      boolean keepAlive = HttpUtil.isKeepAlive(request);
+      FullHttpResponse response =
+          new DefaultFullHttpResponse(
+              HttpVersion.HTTP_1_1,
+              HttpResponseStatus.OK,
+              Unpooled.wrappedBuffer(isEpp ? eppResponse : whoisResponse));
+      response
+          .headers()
+          .set(HttpHeaderNames.CONTENT_TYPE, isEpp ? "application/epp+xml" : "text/plain")
+          .setInt(HttpHeaderNames.CONTENT_LENGTH, response.content().readableBytes());
+      HttpUtil.setKeepAlive(response, keepAlive);
+      if (latencyMillis > 0) {
+        Future<?> unusedFuture =
+            ctx.executor()
+                .schedule(() -> respond(ctx, response, keepAlive), latencyMillis, MILLISECONDS);
+      } else {
+        respond(ctx, response, keepAlive);
+      }
+    }
+
+    private void respond(ChannelHandlerContext ctx, FullHttpResponse response, boolean keepAlive) {
+      ChannelFuture writeFuture = ctx.writeAndFlush(response);
+      if (!keepAlive) {
+        ChannelFuture unusedFuture = writeFuture.addListener(ChannelFutureListener.CLOSE);
+      }
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+      ChannelFuture unusedFuture = ctx.close();
+    }
+  }
+}
@@ -16,9 +16,15 @@ package google.registry.proxy.handler;
 
 import static com.google.common.truth.Truth.assertThat;
 import static google.registry.proxy.handler.RelayHandler.RELAY_CHANNEL_KEY;
+import static google.registry.proxy.handler.RelayHandler.RELAY_CHANNEL_RELEASER_KEY;
+import static google.registry.proxy.handler.RelayHandler.RELAY_CHANNEL_REPLACER_KEY;
 
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.concurrent.Promise;
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -79,6 +85,15 @@ public class RelayHandlerTest {
     assertThat(outboundChannel.isActive()).isFalse();
   }
 
+  @Test
+  public void testSuccess_releaseRelayChannelIfInactive() {
+    List<Channel> releasedChannels = new ArrayList<>();
+    inboundChannel.attr(RELAY_CHANNEL_RELEASER_KEY).set(releasedChannels::add);
+    ChannelFuture unusedFuture = inboundChannel.close();
+    assertThat(releasedChannels).containsExactly(outboundChannel);
+    assertThat(outboundChannel.isActive()).isTrue();
+  }
+
   @Test
   public void testSuccess_channelRead_relayNotSet() {
     ExpectedType inboundMessage = new ExpectedType();
@@ -88,4 +103,77 @@ public class RelayHandlerTest {
     // Inbound channel is closed.
     assertThat(inboundChannel.isActive()).isFalse();
   }
+
+  @Test
+  public void testSuccess_relayToNewChannelIfRelayChannelIsClosed() {
+    EmbeddedChannel newOutboundChannel = new EmbeddedChannel();
+    List<Channel> replacedChannels = new ArrayList<>();
+    inboundChannel
+        .attr(RELAY_CHANNEL_REPLACER_KEY)
+        .set(
+            channel -> {
+              replacedChannels.add(channel);
+              return inboundChannel.eventLoop().newSucceededFuture(newOutboundChannel);
+            });
+    outboundChannel.finish();
+    ExpectedType inboundMessage = new ExpectedType();
+    assertThat(inboundChannel.writeInbound(inboundMessage)).isFalse();
+    assertThat(replacedChannels).containsExactly(outboundChannel);
+    ExpectedType relayedMessage = newOutboundChannel.readOutbound();
+    assertThat(relayedMessage).isEqualTo(inboundMessage);
+    assertThat(inboundChannel.isActive()).isTrue();
+    assertThat(inboundChannel.attr(RELAY_CHANNEL_KEY).get()).isEqualTo(newOutboundChannel);
+    assertThat(newOutboundChannel.attr(RELAY_CHANNEL_KEY).get()).isEqualTo(inboundChannel);
+  }
+
+  @Test
+  public void testSuccess_relayInOrderWhileNewRelayChannelIsAcquired() {
+    EmbeddedChannel newOutboundChannel = new EmbeddedChannel();
+    Promise<Channel> newOutboundChannelPromise = inboundChannel.eventLoop().newPromise();
+    inboundChannel.attr(RELAY_CHANNEL_REPLACER_KEY).set(channel -> newOutboundChannelPromise);
+    outboundChannel.finish();
+    ExpectedType inboundMessage1 = new ExpectedType();
+    ExpectedType inboundMessage2 = new ExpectedType();
+    assertThat(inboundChannel.writeInbound(inboundMessage1)).isFalse();
+    assertThat(inboundChannel.writeInbound(inboundMessage2)).isFalse();
+    assertThat((Object) newOutboundChannel.readOutbound()).isNull();
+
+    newOutboundChannelPromise.setSuccess(newOutboundChannel);
+    ExpectedType relayedMessage1 = newOutboundChannel.readOutbound();
+    ExpectedType relayedMessage2 = newOutboundChannel.readOutbound();
+    assertThat(relayedMessage1).isEqualTo(inboundMessage1);
+    assertThat(relayedMessage2).isEqualTo(inboundMessage2);
+    assertThat(inboundChannel.isActive()).isTrue();
+  }
+
+  @Test
+  public void testSuccess_disconnectIfRelayChannelCannotBeReplaced() {
+    inboundChannel
+        .attr(RELAY_CHANNEL_REPLACER_KEY)
+        .set(
+            channel ->
+                inboundChannel.eventLoop().newFailedFuture(new Exception("Cannot connect.")));
+    outboundChannel.finish();
+    assertThat(inboundChannel.writeInbound(new ExpectedType())).isFalse();
+    assertThat(inboundChannel.isActive()).isFalse();
+  }
+
+  @Test
+  public void testSuccess_disconnectIfRelayChannelIsClosed() {
+    EmbeddedChannel backendChannel = new EmbeddedChannel(new RelayHandler<>(ExpectedType.class));
+    backendChannel.attr(RELAY_CHANNEL_KEY).set(inboundChannel);
+    ChannelFuture unusedFuture = backendChannel.close();
+    assertThat(inboundChannel.isActive()).isFalse();
+  }
+
+  @Test
+  public void testSuccess_keepConnectionIfReplaceableRelayChannelIsClosed() {
+    inboundChannel
+        .attr(RELAY_CHANNEL_REPLACER_KEY)
+        .set(channel -> inboundChannel.eventLoop().newSucceededFuture(new EmbeddedChannel()));
+    EmbeddedChannel backendChannel = new EmbeddedChannel(new RelayHandler<>(ExpectedType.class));
+    backendChannel.attr(RELAY_CHANNEL_KEY).set(inboundChannel);
+    ChannelFuture unusedFuture = backendChannel.close();
+    assertThat(inboundChannel.isActive()).isTrue();
+  }
 }
@@ -16,17 +16,20 @@ package google.registry.proxy.handler;
 
 import static com.google.common.truth.Truth.assertThat;
 import static google.registry.proxy.Protocol.PROTOCOL_KEY;
+import static google.registry.proxy.handler.SslInitializerTestUtils.getDefaultTlsConfig;
 import static google.registry.proxy.handler.SslInitializerTestUtils.getKeyPair;
 import static google.registry.proxy.handler.SslInitializerTestUtils.setUpClient;
 import static google.registry.proxy.handler.SslInitializerTestUtils.setUpServer;
 import static google.registry.proxy.handler.SslInitializerTestUtils.signKeyPair;
 import static google.registry.proxy.handler.SslInitializerTestUtils.verifySslChannel;
+import static org.mockito.Mockito.mock;
 
 import com.google.common.collect.ImmutableList;
 import google.registry.proxy.Protocol;
 import google.registry.proxy.Protocol.BackendProtocol;
 import google.registry.proxy.handler.SslInitializerTestUtils.DumpHandler;
 import google.registry.proxy.handler.SslInitializerTestUtils.EchoHandler;
+import google.registry.proxy.metric.BackendMetrics;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
@@ -85,6 +88,8 @@ public class SslClientInitializerTest {
           .handlerProviders(ImmutableList.of())
           .build();
 
+  private final BackendMetrics metrics = mock(BackendMetrics.class);
+
   private ChannelInitializer<LocalChannel> getServerInitializer(
       PrivateKey privateKey,
       X509Certificate certificate,
@@ -119,7 +124,8 @@ public class SslClientInitializerTest {
   @Test
   public void testSuccess_swappedInitializerWithSslHandler() throws Exception {
     SslClientInitializer<EmbeddedChannel> sslClientInitializer =
-        new SslClientInitializer<>(SslProvider.JDK, (X509Certificate[]) null);
+        new SslClientInitializer<>(
+            SslProvider.JDK, getDefaultTlsConfig(), metrics, (X509Certificate[]) null);
     EmbeddedChannel channel = new EmbeddedChannel();
     channel.attr(PROTOCOL_KEY).set(PROTOCOL);
     ChannelPipeline pipeline = channel.pipeline();
@@ -135,7 +141,8 @@ public class SslClientInitializerTest {
   @Test
   public void testSuccess_protocolAttributeNotSet() {
     SslClientInitializer<EmbeddedChannel> sslClientInitializer =
-        new SslClientInitializer<>(SslProvider.JDK, (X509Certificate[]) null);
+        new SslClientInitializer<>(
+            SslProvider.JDK, getDefaultTlsConfig(), metrics, (X509Certificate[]) null);
     EmbeddedChannel channel = new EmbeddedChannel();
     ChannelPipeline pipeline = channel.pipeline();
     pipeline.addLast(sslClientInitializer);
@@ -156,7 +163,8 @@ public class SslClientInitializerTest {
         setUpServer(
             getServerInitializer(ssc.key(), ssc.cert(), serverLock, serverException), localAddress);
     SslClientInitializer<LocalChannel> sslClientInitializer =
-        new SslClientInitializer<>(SslProvider.JDK, (X509Certificate[]) null);
+        new SslClientInitializer<>(
+            SslProvider.JDK, getDefaultTlsConfig(), metrics, (X509Certificate[]) null);
     Channel channel =
         setUpClient(
             eventLoopGroup,
@@ -206,7 +214,8 @@ public class SslClientInitializerTest {
 
     // Set up the client to trust the self signed cert used to sign the cert that server provides.
     SslClientInitializer<LocalChannel> sslClientInitializer =
-        new SslClientInitializer<>(SslProvider.JDK, ssc.cert());
+        new SslClientInitializer<>(
+            SslProvider.JDK, getDefaultTlsConfig(), metrics, ssc.cert());
     Channel channel =
         setUpClient(
             eventLoopGroup,
@@ -243,7 +252,8 @@ public class SslClientInitializerTest {
 
     // Set up the client to trust the self signed cert used to sign the cert that server provides.
     SslClientInitializer<LocalChannel> sslClientInitializer =
-        new SslClientInitializer<>(SslProvider.JDK, ssc.cert());
+        new SslClientInitializer<>(
+            SslProvider.JDK, getDefaultTlsConfig(), metrics, ssc.cert());
     Channel channel =
         setUpClient(
             eventLoopGroup,
@@ -0,0 +1,217 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.proxy.handler;
+
+import static com.google.common.base.Preconditions.checkState;
+import static google.registry.proxy.handler.SslInitializerTestUtils.getDefaultTlsConfig;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import com.google.common.flogger.LoggerConfig;
+import google.registry.proxy.ProxyConfig;
+import google.registry.proxy.metric.FrontendMetrics;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.ssl.SslProvider;
+import io.netty.handler.ssl.util.SelfSignedCertificate;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.logging.Level;
+import javax.net.ssl.SSLSession;
+
+/**
+ * A local benchmark of the TLS handshakes performed by {@link SslServerInitializer}.
+ *
+ * <p>Clients connect to the server over a {@link LocalChannel}, one after another, and close each
+ * connection as soon as its handshake completes. The benchmark is run twice: once with a new client
+ * {@link SslContext} for every connection, so that every handshake is a full one, and once with a
+ * shared client context, so that the client offers to resume its previous session. It reports the
+ * handshakes per second of each run and how many handshakes of the second run were resumptions.
+ * The time taken to build the client contexts of the first run is included in its numbers.
+ *
+ * <p>Clients and server run in the same JVM and on the same event loop, so the numbers are only
+ * meaningful when compared with each other, e. g. between SSL providers or session settings. Run it
+ * with:
+ *
+ * <pre>
+ * bazel run //javatests/google/registry/proxy:ssl_handshake_benchmark -- --provider OPENSSL
+ * </pre>
+ */
+public class SslHandshakeBenchmark {
+
+  private static final String SSL_HOST = "www.example.tld";
+  private static final int SSL_PORT = 12345;
+
+  @Parameter(names = "--provider", description = "SSL provider of the server")
+  private SslProvider sslProvider = SslProvider.JDK;
+
+  @Parameter(names = "--handshakes", description = "Number of handshakes measured in each run")
+  private int handshakes = 2000;
+
+  @Parameter(
+      names = "--warmup_handshakes",
+      description = "Number of handshakes performed before each run is measured")
+  private int warmupHandshakes = 500;
+
+  @Parameter(
+      names = "--session_cache_size",
+      description = "Server session cache size, 0 for the SSL provider's default")
+  private int sessionCacheSize = 20000;
+
+  @Parameter(
+      names = "--session_timeout_seconds",
+      description = "Server session timeout, 0 for the SSL provider's default")
+  private int sessionTimeoutSeconds = 3600;
+
+  private final SelfSignedCertificate serverSsc;
+  private final SelfSignedCertificate clientSsc;
+
+  private SslHandshakeBenchmark() throws Exception {
+    serverSsc = new SelfSignedCertificate(SSL_HOST);
+    clientSsc = new SelfSignedCertificate();
+  }
+
+  public static void main(String[] args) throws Exception {
+    SslHandshakeBenchmark benchmark = new SslHandshakeBenchmark();
+    JCommander jCommander = new JCommander(benchmark);
+    jCommander.setProgramName("ssl_handshake_benchmark");
+    jCommander.parse(args);
+    // Per-connection logs would dominate the run.
+    LoggerConfig.getConfig("").setLevel(Level.WARNING);
+    benchmark.run();
+  }
+
+  private void run() throws Exception {
+    ProxyConfig config = getDefaultTlsConfig();
+    config.tls.sessionCacheSize = sessionCacheSize;
+    config.tls.sessionTimeoutSeconds = sessionTimeoutSeconds;
+    // Long enough that the ticket keys set up by the initializer are not rotated during the run.
+    config.tls.sessionTicketKeyRotationSeconds = 3600;
+    ScheduledExecutorService rotationExecutor = Executors.newSingleThreadScheduledExecutor();
+    SslServerInitializer<LocalChannel> sslServerInitializer =
+        new SslServerInitializer<>(
+            sslProvider,
+            config,
+            new FrontendMetrics(),
+            rotationExecutor,
+            serverSsc.key(),
+            serverSsc.cert());
+    LocalAddress localAddress = new LocalAddress("SSL_HANDSHAKE_BENCHMARK");
+    // A single thread, as in the proxy each connection is handled by one event loop thread.
+    EventLoopGroup eventLoopGroup = new NioEventLoopGroup(1);
+    Channel serverChannel =
+        new ServerBootstrap()
+            .group(eventLoopGroup)
+            .channel(LocalServerChannel.class)
+            .childHandler(
+                new ChannelInitializer<LocalChannel>() {
+                  @Override
+                  protected void initChannel(LocalChannel ch) {
+                    ch.pipeline().addLast(sslServerInitializer);
+                  }
+                })
+            .bind(localAddress)
+            .syncUninterruptibly()
+            .channel();
+
+    try {
+      System.out.printf("Server SSL provider: %s%n", sslProvider);
+      runHandshakes(eventLoopGroup, localAddress, false);
+      runHandshakes(eventLoopGroup, localAddress, true);
+    } finally {
+      serverChannel.close().syncUninterruptibly();
+      eventLoopGroup.shutdownGracefully().syncUninterruptibly();
+      rotationExecutor.shutdownNow();
+    }
+  }
+
+  /**
+   * Measures sequential handshakes, with or without a client context shared between connections.
+   */
+  private void runHandshakes(
+      EventLoopGroup eventLoopGroup, LocalAddress localAddress, boolean shareClientContext)
+      throws Exception {
+    SslContext sharedContext = newClientContext();
+    for (int i = 0; i < warmupHandshakes; i++) {
+      SslContext clientContext = shareClientContext ? sharedContext : newClientContext();
+      SSLSession unusedSession = handshake(eventLoopGroup, localAddress, clientContext);
+    }
+    byte[] previousSessionId = null;
+    int resumed = 0;
+    long startNanos = System.nanoTime();
+    for (int i = 0; i < handshakes; i++) {
+      SslContext clientContext = shareClientContext ? sharedContext : newClientContext();
+      byte[] sessionId = handshake(eventLoopGroup, localAddress, clientContext).getId();
+      if (Arrays.equals(sessionId, previousSessionId)) {
+        resumed++;
+      }
+      previousSessionId = sessionId;
+    }
+    long elapsedNanos = System.nanoTime() - startNanos;
+    System.out.printf(
+        "%s client context: %d handshakes, %.1f handshakes per second, %d resumed%n",
+        shareClientContext ? "Shared" : "New",
+        handshakes,
+        handshakes / (elapsedNanos / 1e9),
+        resumed);
+  }
+
+  /** Connects to the server and returns the client's session once the handshake completes. */
+  private static SSLSession handshake(
+      EventLoopGroup eventLoopGroup, LocalAddress localAddress, SslContext clientContext)
+      throws Exception {
+    Channel channel =
+        new Bootstrap()
+            .group(eventLoopGroup)
+            .channel(LocalChannel.class)
+            .handler(
+                new ChannelInitializer<LocalChannel>() {
+                  @Override
+                  protected void initChannel(LocalChannel ch) {
+                    ch.pipeline()
+                        .addLast(clientContext.newHandler(ch.alloc(), SSL_HOST, SSL_PORT));
+                  }
+                })
+            .connect(localAddress)
+            .syncUninterruptibly()
+            .channel();
+    SslHandler sslHandler = channel.pipeline().get(SslHandler.class);
+    checkState(sslHandler.handshakeFuture().await().isSuccess(), "Handshake failed");
+    SSLSession session = sslHandler.engine().getSession();
+    channel.close().syncUninterruptibly();
+    return session;
+  }
+
+  private SslContext newClientContext() throws Exception {
+    // TLS 1.2, so that a session can be resumed as soon as its handshake completes.
+    return SslContextBuilder.forClient()
+        .sslProvider(SslProvider.JDK)
+        .trustManager(serverSsc.cert())
+        .keyManager(clientSsc.key(), clientSsc.cert())
+        .protocols("TLSv1.2")
+        .build();
+  }
+}
@@ -20,6 +20,7 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.google.common.collect.ImmutableList;
 import google.registry.proxy.Protocol.BackendProtocol;
+import google.registry.proxy.ProxyConfig;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.buffer.ByteBuf;
@@ -62,6 +63,13 @@ public class SslInitializerTestUtils {
     Security.addProvider(new BouncyCastleProvider());
   }
 
+  /** Returns a config that leaves TLS session caching to the SSL provider's defaults. */
+  static ProxyConfig getDefaultTlsConfig() {
+    ProxyConfig config = new ProxyConfig();
+    config.tls = new ProxyConfig.Tls();
+    return config;
+  }
+
   /**
    * Sets up a server channel bound to the given local address.
    *
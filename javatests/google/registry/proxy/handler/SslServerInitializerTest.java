@@ -15,17 +15,24 @@
 package google.registry.proxy.handler;
 
 import static com.google.common.truth.Truth.assertThat;
+import static google.registry.proxy.handler.SslInitializerTestUtils.getDefaultTlsConfig;
 import static google.registry.proxy.handler.SslInitializerTestUtils.getKeyPair;
 import static google.registry.proxy.handler.SslInitializerTestUtils.setUpClient;
 import static google.registry.proxy.handler.SslInitializerTestUtils.setUpServer;
 import static google.registry.proxy.handler.SslInitializerTestUtils.signKeyPair;
 import static google.registry.proxy.handler.SslInitializerTestUtils.verifySslChannel;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 
 import com.google.common.collect.ImmutableList;
 import google.registry.proxy.Protocol;
 import google.registry.proxy.Protocol.BackendProtocol;
 import google.registry.proxy.handler.SslInitializerTestUtils.DumpHandler;
 import google.registry.proxy.handler.SslInitializerTestUtils.EchoHandler;
+import google.registry.proxy.metric.FrontendMetrics;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
@@ -37,6 +44,8 @@ import io.netty.channel.embedded.EmbeddedChannel;
 import io.netty.channel.local.LocalAddress;
 import io.netty.channel.local.LocalChannel;
 import io.netty.handler.codec.DecoderException;
+import io.netty.handler.ssl.OpenSsl;
+import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
 import io.netty.handler.ssl.SslHandler;
 import io.netty.handler.ssl.SslProvider;
@@ -46,6 +55,9 @@ import java.security.KeyPair;
 import java.security.PrivateKey;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import javax.net.ssl.SSLEngine;
@@ -86,6 +98,9 @@ public class SslServerInitializerTest {
           .handlerProviders(ImmutableList.of())
           .build();
 
+  private final FrontendMetrics metrics = mock(FrontendMetrics.class);
+  private final ScheduledExecutorService rotationExecutor = mock(ScheduledExecutorService.class);
+
   private ChannelInitializer<LocalChannel> getServerInitializer(
       Lock serverLock,
       Exception serverException,
@@ -97,7 +112,13 @@ public class SslServerInitializerTest {
       protected void initChannel(LocalChannel ch) throws Exception {
         ch.pipeline()
             .addLast(
-                new SslServerInitializer<LocalChannel>(SslProvider.JDK, privateKey, certificates),
+                new SslServerInitializer<LocalChannel>(
+                    SslProvider.JDK,
+                    getDefaultTlsConfig(),
+                    metrics,
+                    rotationExecutor,
+                    privateKey,
+                    certificates),
                 new EchoHandler(serverLock, serverException));
       }
     };
@@ -137,7 +158,13 @@ public class SslServerInitializerTest {
   public void testSuccess_swappedInitializerWithSslHandler() throws Exception {
     SelfSignedCertificate ssc = new SelfSignedCertificate(SSL_HOST);
     SslServerInitializer<EmbeddedChannel> sslServerInitializer =
-        new SslServerInitializer<>(SslProvider.JDK, ssc.key(), ssc.cert());
+        new SslServerInitializer<>(
+            SslProvider.JDK,
+            getDefaultTlsConfig(),
+            metrics,
+            rotationExecutor,
+            ssc.key(),
+            ssc.cert());
     EmbeddedChannel channel = new EmbeddedChannel();
     ChannelPipeline pipeline = channel.pipeline();
     pipeline.addLast(sslServerInitializer);
@@ -344,4 +371,92 @@ public class SslServerInitializerTest {
 
     Future<?> unusedFuture = eventLoopGroup.shutdownGracefully().syncUninterruptibly();
   }
+
+  @Test
+  public void testSuccess_sessionResumedOnReconnect() throws Exception {
+    assertSessionResumedOnReconnect(SslProvider.JDK, "SESSION_RESUMED_ON_RECONNECT");
+  }
+
+  @Test
+  public void testSuccess_sessionResumedOnReconnect_openSsl() throws Exception {
+    assumeTrue(OpenSsl.isAvailable());
+    assertSessionResumedOnReconnect(SslProvider.OPENSSL, "SESSION_RESUMED_ON_RECONNECT_OPENSSL");
+  }
+
+  /**
+   * Asserts that a client that reconnects resumes its session, and that only the second handshake
+   * is counted as resumed.
+   *
+   * <p>OpenSSL only records session creation times in whole seconds, so with it the creation time
+   * of the first session is usually earlier than the start of its handshake.
+   */
+  private void assertSessionResumedOnReconnect(SslProvider sslProvider, String address)
+      throws Exception {
+    SelfSignedCertificate serverSsc = new SelfSignedCertificate(SSL_HOST);
+    SelfSignedCertificate clientSsc = new SelfSignedCertificate();
+    LocalAddress localAddress = new LocalAddress(address);
+    SslServerInitializer<LocalChannel> sslServerInitializer =
+        new SslServerInitializer<>(
+            sslProvider,
+            getDefaultTlsConfig(),
+            metrics,
+            rotationExecutor,
+            serverSsc.key(),
+            serverSsc.cert());
+    BlockingQueue<Channel> serverChannels = new LinkedBlockingQueue<>();
+    EventLoopGroup eventLoopGroup =
+        setUpServer(
+            new ChannelInitializer<LocalChannel>() {
+              @Override
+              protected void initChannel(LocalChannel ch) {
+                serverChannels.add(ch);
+                ch.pipeline().addLast(sslServerInitializer);
+              }
+            },
+            localAddress);
+    // The client only resumes sessions if it reuses its SSL context too. TLS 1.2 is used so that
+    // the session is ready to be resumed as soon as the handshake completes.
+    SslContext clientSslContext =
+        SslContextBuilder.forClient()
+            .trustManager(serverSsc.cert())
+            .keyManager(clientSsc.key(), clientSsc.cert())
+            .protocols("TLSv1.2")
+            .build();
+    ChannelInitializer<LocalChannel> clientInitializer =
+        new ChannelInitializer<LocalChannel>() {
+          @Override
+          protected void initChannel(LocalChannel ch) {
+            ch.pipeline().addLast(clientSslContext.newHandler(ch.alloc(), SSL_HOST, SSL_PORT));
+          }
+        };
+
+    SSLSession firstSession = connectAndHandshake(eventLoopGroup, clientInitializer, localAddress);
+    assertThat(getClientCertificate(serverChannels.take())).isEqualTo(clientSsc.cert());
+    verify(metrics).registerHandshake(eq("none"), eq(false), anyLong());
+
+    SSLSession secondSession = connectAndHandshake(eventLoopGroup, clientInitializer, localAddress);
+    assertThat(secondSession.getId()).isEqualTo(firstSession.getId());
+    // The client certificate is still available although it wasn't sent again.
+    assertThat(getClientCertificate(serverChannels.take())).isEqualTo(clientSsc.cert());
+    verify(metrics).registerHandshake(eq("none"), eq(true), anyLong());
+
+    Future<?> unusedFuture = eventLoopGroup.shutdownGracefully().syncUninterruptibly();
+  }
+
+  private static SSLSession connectAndHandshake(
+      EventLoopGroup eventLoopGroup,
+      ChannelInitializer<LocalChannel> clientInitializer,
+      LocalAddress localAddress)
+      throws Exception {
+    Channel channel = setUpClient(eventLoopGroup, clientInitializer, localAddress, PROTOCOL);
+    SslHandler sslHandler = channel.pipeline().get(SslHandler.class);
+    assertThat(sslHandler.handshakeFuture().get()).isSameAs(channel);
+    SSLSession session = sslHandler.engine().getSession();
+    channel.close().syncUninterruptibly();
+    return session;
+  }
+
+  private static X509Certificate getClientCertificate(Channel serverChannel) throws Exception {
+    return serverChannel.attr(SslServerInitializer.CLIENT_CERTIFICATE_PROMISE_KEY).get().get();
+  }
 }
@@ -0,0 +1,108 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.proxy.handler;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link SslSessionTracker}. */
+@RunWith(JUnit4.class)
+public class SslSessionTrackerTest {
+
+  private static final long HANDSHAKE_START_MILLIS = 1_500_000_000_700L;
+
+  private final SSLSessionContext sessionContext = mock(SSLSessionContext.class);
+
+  private SslSessionTracker tracker;
+
+  @Before
+  public void setUp() {
+    when(sessionContext.getSessionCacheSize()).thenReturn(10);
+    when(sessionContext.getSessionTimeout()).thenReturn(3600);
+    tracker = new SslSessionTracker(sessionContext);
+  }
+
+  private static SSLSession mockSession(byte[] id, long creationTimeMillis) {
+    SSLSession session = mock(SSLSession.class);
+    when(session.getId()).thenReturn(id);
+    when(session.getCreationTime()).thenReturn(creationTimeMillis);
+    return session;
+  }
+
+  @Test
+  public void testSuccess_newSession_notResumed() {
+    assertThat(
+            tracker.isResumed(
+                mockSession(new byte[] {1, 2, 3}, HANDSHAKE_START_MILLIS + 5),
+                HANDSHAKE_START_MILLIS))
+        .isFalse();
+  }
+
+  @Test
+  public void testSuccess_newSessionWithCreationTimeInSeconds_notResumed() {
+    // OpenSSL truncates the creation time to the second, which is before the handshake started.
+    assertThat(
+            tracker.isResumed(
+                mockSession(new byte[] {1, 2, 3}, 1_500_000_000_000L), HANDSHAKE_START_MILLIS))
+        .isFalse();
+  }
+
+  @Test
+  public void testSuccess_sessionIdSeenBefore_resumed() {
+    assertThat(
+            tracker.isResumed(
+                mockSession(new byte[] {1, 2, 3}, 1_500_000_000_000L), HANDSHAKE_START_MILLIS))
+        .isFalse();
+    assertThat(
+            tracker.isResumed(
+                mockSession(new byte[] {1, 2, 3}, 1_500_000_000_000L),
+                HANDSHAKE_START_MILLIS + 200))
+        .isTrue();
+    assertThat(
+            tracker.isResumed(
+                mockSession(new byte[] {4, 5, 6}, 1_500_000_000_000L),
+                HANDSHAKE_START_MILLIS + 200))
+        .isFalse();
+  }
+
+  @Test
+  public void testSuccess_emptySessionId_neverTakenAsSeen() {
+    assertThat(
+            tracker.isResumed(
+                mockSession(new byte[0], 1_500_000_000_000L), HANDSHAKE_START_MILLIS))
+        .isFalse();
+    assertThat(
+            tracker.isResumed(
+                mockSession(new byte[0], 1_500_000_000_000L), HANDSHAKE_START_MILLIS + 200))
+        .isFalse();
+  }
+
+  @Test
+  public void testSuccess_sessionCreatedInEarlierSecond_resumed() {
+    // A session resumed from a ticket has an ID chosen by the client, which is new to the server.
+    assertThat(
+            tracker.isResumed(
+                mockSession(new byte[] {7, 8, 9}, 1_499_999_990_000L), HANDSHAKE_START_MILLIS))
+        .isTrue();
+  }
+}
@@ -98,6 +98,18 @@ public class WhoisServiceHandlerTest {
     assertThat(channel.isActive()).isTrue();
   }
 
+  @Test
+  public void testSuccess_inboundContentIsNotCopied() {
+    ByteBuf inputBuffer = Unpooled.wrappedBuffer(QUERY_CONTENT.getBytes(US_ASCII));
+    assertThat(channel.writeInbound(inputBuffer)).isTrue();
+    FullHttpRequest inputRequest = channel.readInbound();
+    // The request content is a view of the inbound buffer, which it keeps alive until released.
+    assertThat(inputRequest.content().unwrap()).isSameAs(inputBuffer);
+    assertThat(inputBuffer.refCnt()).isEqualTo(1);
+    assertThat(inputRequest.release()).isTrue();
+    assertThat(inputBuffer.refCnt()).isEqualTo(0);
+  }
+
   @Test
   public void testSuccess_parseOutboundHttpResponse() {
     String outputString = "line1\r\nline2\r\n";
@@ -170,4 +170,44 @@ public class BackendMetricsTest {
         .and()
         .hasNoOtherValues();
   }
+
+  @Test
+  public void testSuccess_connectionsAcquired() {
+    metrics.connectionAcquired("backend", false, 20);
+    metrics.connectionAcquired("backend", true, 0);
+    metrics.connectionAcquired("backend", true, 1);
+
+    assertThat(BackendMetrics.connectionsAcquiredCounter)
+        .hasValueForLabels(1, "backend", "new")
+        .and()
+        .hasValueForLabels(2, "backend", "pool")
+        .and()
+        .hasNoOtherValues();
+    assertThat(BackendMetrics.acquireLatencyMs)
+        .hasDataSetForLabels(ImmutableSet.of(20), "backend", "new")
+        .and()
+        .hasDataSetForLabels(ImmutableSet.of(0, 1), "backend", "pool")
+        .and()
+        .hasNoOtherValues();
+  }
+
+  @Test
+  public void testSuccess_handshakesCompleted() {
+    metrics.handshakeCompleted("backend", false, 30);
+    metrics.handshakeCompleted("backend", true, 4);
+    metrics.handshakeCompleted("backend", true, 6);
+
+    assertThat(BackendMetrics.handshakesCounter)
+        .hasValueForLabels(1, "backend", "new")
+        .and()
+        .hasValueForLabels(2, "backend", "resumed")
+        .and()
+        .hasNoOtherValues();
+    assertThat(BackendMetrics.handshakeLatencyMs)
+        .hasDataSetForLabels(ImmutableSet.of(30), "backend", "new")
+        .and()
+        .hasDataSetForLabels(ImmutableSet.of(4, 6), "backend", "resumed")
+        .and()
+        .hasNoOtherValues();
+  }
 }
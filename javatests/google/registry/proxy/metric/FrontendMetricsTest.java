@@ -15,8 +15,10 @@
 package google.registry.proxy.metric;
 
 import static com.google.common.truth.Truth.assertThat;
+import static com.google.monitoring.metrics.contrib.DistributionMetricSubject.assertThat;
 import static com.google.monitoring.metrics.contrib.LongMetricSubject.assertThat;
 
+import com.google.common.collect.ImmutableSet;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.DefaultChannelId;
 import io.netty.channel.embedded.EmbeddedChannel;
@@ -182,4 +184,24 @@ public class FrontendMetricsTest {
         .and()
         .hasNoOtherValues();
   }
+
+  @Test
+  public void testSuccess_handshakes() {
+    metrics.registerHandshake(PROTOCOL, false, 25);
+    metrics.registerHandshake(PROTOCOL, true, 3);
+    metrics.registerHandshake(PROTOCOL, true, 5);
+
+    assertThat(FrontendMetrics.handshakesCounter)
+        .hasValueForLabels(1, PROTOCOL, "new")
+        .and()
+        .hasValueForLabels(2, PROTOCOL, "resumed")
+        .and()
+        .hasNoOtherValues();
+    assertThat(FrontendMetrics.handshakeLatencyMs)
+        .hasDataSetForLabels(ImmutableSet.of(25), PROTOCOL, "new")
+        .and()
+        .hasDataSetForLabels(ImmutableSet.of(3, 5), PROTOCOL, "resumed")
+        .and()
+        .hasNoOtherValues();
+  }
 }
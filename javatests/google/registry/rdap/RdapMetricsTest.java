@@ -18,6 +18,7 @@ import static com.google.monitoring.metrics.contrib.DistributionMetricSubject.as
 import static com.google.monitoring.metrics.contrib.LongMetricSubject.assertThat;
 
 import com.google.common.collect.ImmutableSet;
+import google.registry.model.ofy.DatastoreRpcCounts;
 import google.registry.rdap.RdapMetrics.EndpointType;
 import google.registry.rdap.RdapMetrics.SearchType;
 import google.registry.rdap.RdapMetrics.WildcardType;
@@ -41,6 +42,8 @@ public class RdapMetricsTest {
     RdapMetrics.numberOfDomainsRetrieved.reset();
     RdapMetrics.numberOfHostsRetrieved.reset();
     RdapMetrics.numberOfContactsRetrieved.reset();
+    RdapMetrics.datastoreRpcs.reset();
+    RdapMetrics.datastoreWaitTime.reset();
   }
 
   private RdapMetrics.RdapMetricInformation.Builder getBuilder() {
@@ -288,4 +291,20 @@ public class RdapMetricsTest {
         .and()
         .hasNoOtherValues();
   }
+
+  @Test
+  public void testDatastoreRpcs() {
+    rdapMetrics.recordDatastoreRpcs(
+        getBuilder().setSearchType(SearchType.BY_DOMAIN_NAME).build(),
+        DatastoreRpcCounts.builder().setGets(2).setQueries(1).setWaitNanos(4_000_000).build());
+    assertThat(RdapMetrics.datastoreRpcs)
+        .hasDataSetForLabels(ImmutableSet.of(3), "DOMAINS", "BY_DOMAIN_NAME")
+        .and()
+        .hasNoOtherValues();
+    assertThat(RdapMetrics.datastoreWaitTime)
+        .hasDataSetForLabels(ImmutableSet.of(4), "DOMAINS", "BY_DOMAIN_NAME")
+        .and()
+        .hasNoOtherValues();
+    assertThat(RdapMetrics.requests).hasNoOtherValues();
+  }
 }
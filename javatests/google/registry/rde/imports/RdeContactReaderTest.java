@@ -25,6 +25,7 @@ import com.google.common.io.ByteSource;
 import com.google.common.io.ByteStreams;
 import google.registry.config.RegistryConfig.ConfigModule;
 import google.registry.gcs.GcsUtils;
+import google.registry.rde.imports.RdeIndex.IndexedType;
 import google.registry.testing.AppEngineRule;
 import google.registry.xjc.JaxbFragment;
 import google.registry.xjc.rdecontact.XjcRdeContact;
@@ -169,6 +170,31 @@ public class RdeContactReaderTest {
     assertThrows(NoSuchElementException.class, reader::next);
   }
 
+  /** Seeks to the nearest checkpoint before the offset when given an index of the file */
+  @Test
+  public void testThreeOffsetTwoResult_withCheckpoints_readsFourAndFive() throws Exception {
+    pushToGcs(DEPOSIT_10_CONTACT);
+    RdeContactReader reader = getIndexedReader(DEPOSIT_10_CONTACT, 3, 2);
+    checkContact(reader.next(), "contact4", "contact4-TEST");
+    checkContact(reader.next(), "contact5", "contact5-TEST");
+    assertThrows(NoSuchElementException.class, reader::next);
+  }
+
+  /** Seeks past already-processed records after rehydration when given an index of the file */
+  @Test
+  public void testThreeOffsetFourResult_withCheckpoints_skipsAfterRehydration() throws Exception {
+    pushToGcs(DEPOSIT_10_CONTACT);
+    RdeContactReader reader = getIndexedReader(DEPOSIT_10_CONTACT, 3, 4);
+    checkContact(reader.next(), "contact4", "contact4-TEST");
+    checkContact(reader.next(), "contact5", "contact5-TEST");
+    checkContact(reader.next(), "contact6", "contact6-TEST");
+    reader.endSlice();
+    reader = cloneReader(reader);
+    reader.beginSlice();
+    checkContact(reader.next(), "contact7", "contact7-TEST");
+    assertThrows(NoSuchElementException.class, reader::next);
+  }
+
   private void pushToGcs(ByteSource source) throws IOException {
     try (OutputStream outStream =
             new GcsUtils(GCS_SERVICE, ConfigModule.provideGcsBufferSize())
@@ -205,4 +231,19 @@ public class RdeContactReaderTest {
     reader.beginSlice();
     return reader;
   }
+
+  /** Gets a new {@link RdeContactReader} that seeks using an index with checkpoints every 2 */
+  private RdeContactReader getIndexedReader(ByteSource source, int offset, int maxResults)
+      throws Exception {
+    RdeIndex index = RdeIndex.build(source.openStream(), 2);
+    RdeContactReader reader =
+        new RdeContactReader(
+            IMPORT_BUCKET_NAME,
+            IMPORT_FILE_NAME,
+            offset,
+            maxResults,
+            index.getCheckpoints(IndexedType.CONTACT, offset, maxResults));
+    reader.beginSlice();
+    return reader;
+  }
 }
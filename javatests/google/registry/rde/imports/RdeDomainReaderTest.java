@@ -28,6 +28,7 @@ import com.google.common.io.ByteSource;
 import com.google.common.io.ByteStreams;
 import google.registry.config.RegistryConfig.ConfigModule;
 import google.registry.gcs.GcsUtils;
+import google.registry.rde.imports.RdeIndex.IndexedType;
 import google.registry.testing.AppEngineRule;
 import google.registry.xjc.JaxbFragment;
 import google.registry.xjc.rdedomain.XjcRdeDomain;
@@ -180,6 +181,31 @@ public class RdeDomainReaderTest {
     assertThrows(NoSuchElementException.class, reader::next);
   }
 
+  /** Seeks to the nearest checkpoint before the offset when given an index of the file */
+  @Test
+  public void testThreeOffsetTwoResult_withCheckpoints_readsFourAndFive() throws Exception {
+    pushToGcs(DEPOSIT_10_DOMAIN);
+    RdeDomainReader reader = getIndexedReader(DEPOSIT_10_DOMAIN, 3, 2);
+    checkDomain(reader.next(), "example4.test", "Dexample4-TEST");
+    checkDomain(reader.next(), "example5.test", "Dexample5-TEST");
+    assertThrows(NoSuchElementException.class, reader::next);
+  }
+
+  /** Seeks past already-processed records after rehydration when given an index of the file */
+  @Test
+  public void testThreeOffsetFourResult_withCheckpoints_skipsAfterRehydration() throws Exception {
+    pushToGcs(DEPOSIT_10_DOMAIN);
+    RdeDomainReader reader = getIndexedReader(DEPOSIT_10_DOMAIN, 3, 4);
+    checkDomain(reader.next(), "example4.test", "Dexample4-TEST");
+    checkDomain(reader.next(), "example5.test", "Dexample5-TEST");
+    checkDomain(reader.next(), "example6.test", "Dexample6-TEST");
+    reader.endSlice();
+    reader = cloneObject(reader);
+    reader.beginSlice();
+    checkDomain(reader.next(), "example7.test", "Dexample7-TEST");
+    assertThrows(NoSuchElementException.class, reader::next);
+  }
+
   private void pushToGcs(ByteSource source) throws IOException {
     try (OutputStream outStream =
           new GcsUtils(GCS_SERVICE, ConfigModule.provideGcsBufferSize())
@@ -218,4 +244,19 @@ public class RdeDomainReaderTest {
     reader.beginSlice();
     return reader;
   }
+
+  /** Gets a new {@link RdeDomainReader} that seeks using an index with checkpoints every 2 */
+  private RdeDomainReader getIndexedReader(ByteSource source, int offset, int maxResults)
+      throws Exception {
+    RdeIndex index = RdeIndex.build(source.openStream(), 2);
+    RdeDomainReader reader =
+        new RdeDomainReader(
+            IMPORT_BUCKET_NAME,
+            IMPORT_FILE_NAME,
+            offset,
+            maxResults,
+            index.getCheckpoints(IndexedType.DOMAIN, offset, maxResults));
+    reader.beginSlice();
+    return reader;
+  }
 }
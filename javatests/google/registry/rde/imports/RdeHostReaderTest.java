@@ -26,6 +26,7 @@ import com.google.common.io.ByteSource;
 import com.google.common.io.ByteStreams;
 import google.registry.config.RegistryConfig.ConfigModule;
 import google.registry.gcs.GcsUtils;
+import google.registry.rde.imports.RdeIndex.IndexedType;
 import google.registry.testing.AppEngineRule;
 import google.registry.xjc.JaxbFragment;
 import google.registry.xjc.rdehost.XjcRdeHost;
@@ -166,6 +167,31 @@ public class RdeHostReaderTest {
     assertThrows(NoSuchElementException.class, reader::next);
   }
 
+  /** Seeks to the nearest checkpoint before the offset when given an index of the file */
+  @Test
+  public void testThreeOffsetTwoResult_withCheckpoints_readsFourAndFive() throws Exception {
+    pushToGcs(DEPOSIT_10_HOST);
+    RdeHostReader reader = getIndexedReader(DEPOSIT_10_HOST, 3, 2);
+    checkHost(reader.next(), "ns1.example4.test", "Hns1_example4_test-TEST");
+    checkHost(reader.next(), "ns1.example5.test", "Hns1_example5_test-TEST");
+    assertThrows(NoSuchElementException.class, reader::next);
+  }
+
+  /** Seeks past already-processed records after rehydration when given an index of the file */
+  @Test
+  public void testThreeOffsetFourResult_withCheckpoints_skipsAfterRehydration() throws Exception {
+    pushToGcs(DEPOSIT_10_HOST);
+    RdeHostReader reader = getIndexedReader(DEPOSIT_10_HOST, 3, 4);
+    checkHost(reader.next(), "ns1.example4.test", "Hns1_example4_test-TEST");
+    checkHost(reader.next(), "ns1.example5.test", "Hns1_example5_test-TEST");
+    checkHost(reader.next(), "ns1.example6.test", "Hns1_example6_test-TEST");
+    reader.endSlice();
+    reader = cloneReader(reader);
+    reader.beginSlice();
+    checkHost(reader.next(), "ns1.example7.test", "Hns1_example7_test-TEST");
+    assertThrows(NoSuchElementException.class, reader::next);
+  }
+
   private void pushToGcs(ByteSource source) throws IOException {
     try (OutputStream outStream =
             new GcsUtils(GCS_SERVICE, ConfigModule.provideGcsBufferSize())
@@ -201,4 +227,19 @@ public class RdeHostReaderTest {
     reader.beginSlice();
     return reader;
   }
+
+  /** Gets a new {@link RdeHostReader} that seeks using an index with checkpoints every 2 */
+  private RdeHostReader getIndexedReader(ByteSource source, int offset, int maxResults)
+      throws Exception {
+    RdeIndex index = RdeIndex.build(source.openStream(), 2);
+    RdeHostReader reader =
+        new RdeHostReader(
+            IMPORT_BUCKET_NAME,
+            IMPORT_FILE_NAME,
+            offset,
+            maxResults,
+            index.getCheckpoints(IndexedType.HOST, offset, maxResults));
+    reader.beginSlice();
+    return reader;
+  }
 }
@@ -0,0 +1,108 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.rde.imports;
+
+import static com.google.common.truth.Truth.assertThat;
+import static google.registry.rde.imports.RdeImportsTestData.loadBytes;
+import static google.registry.testing.JUnitBackports.assertThrows;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.io.ByteSource;
+import google.registry.rde.imports.RdeIndex.IndexedType;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link RdeIndex}. */
+@RunWith(JUnit4.class)
+public class RdeIndexTest {
+
+  private static final ByteSource DEPOSIT_10_DOMAIN = loadBytes("deposit_10_domain.xml");
+  private static final ByteSource DEPOSIT_FULL = loadBytes("deposit_full_parser.xml");
+
+  @Test
+  public void testBuild_recordsEveryIntervalthElement() throws Exception {
+    RdeIndex index = RdeIndex.build(DEPOSIT_10_DOMAIN.openStream(), 3);
+    assertThat(index.getInterval()).isEqualTo(3);
+    assertThat(index.getDepositLength()).isEqualTo(DEPOSIT_10_DOMAIN.size());
+    long[] offsets = index.getOffsets(IndexedType.DOMAIN);
+    assertThat(offsets).hasLength(4);
+    byte[] deposit = DEPOSIT_10_DOMAIN.read();
+    for (long offset : offsets) {
+      assertThat(new String(deposit, (int) offset, 15, UTF_8)).isEqualTo("<rdeDom:domain>");
+    }
+  }
+
+  @Test
+  public void testBuild_indexesEachTypeSeparately() throws Exception {
+    RdeIndex index = RdeIndex.build(DEPOSIT_FULL.openStream(), 1);
+    assertThat(index.getOffsets(IndexedType.DOMAIN)).hasLength(2);
+    assertThat(index.getOffsets(IndexedType.HOST)).hasLength(2);
+    assertThat(index.getOffsets(IndexedType.CONTACT)).hasLength(1);
+  }
+
+  @Test
+  public void testBuild_noContents_throws() {
+    IllegalArgumentException thrown =
+        assertThrows(
+            IllegalArgumentException.class,
+            () ->
+                RdeIndex.build(
+                    new ByteArrayInputStream(
+                        "<rde:deposit xmlns:rde=\"urn:ietf:params:xml:ns:rde-1.0\"/>"
+                            .getBytes(UTF_8)),
+                    1));
+    assertThat(thrown).hasMessageThat().contains("No RDE contents found");
+  }
+
+  @Test
+  public void testBuild_prefixNotDeclaredOnRoot_throws() {
+    IllegalArgumentException thrown =
+        assertThrows(
+            IllegalArgumentException.class,
+            () ->
+                RdeIndex.build(
+                    new ByteArrayInputStream(
+                        ("<rde:deposit xmlns:rde=\"urn:ietf:params:xml:ns:rde-1.0\">"
+                                + "<rde:contents>"
+                                + "<host:host xmlns:host=\"urn:ietf:params:xml:ns:rdeHost-1.0\"/>"
+                                + "</rde:contents></rde:deposit>")
+                            .getBytes(UTF_8)),
+                    1));
+    assertThat(thrown).hasMessageThat().contains("Namespace prefix 'host' of <host:host>");
+  }
+
+  @Test
+  public void testGetCheckpoints_typeNotPresent_returnsNull() throws Exception {
+    RdeIndex index = RdeIndex.build(DEPOSIT_10_DOMAIN.openStream(), 3);
+    assertThat(index.getCheckpoints(IndexedType.HOST, 0, 10)).isNull();
+    assertThat(index.getCheckpoints(IndexedType.DOMAIN, 0, 10)).isNotNull();
+  }
+
+  @Test
+  public void testWriteTo_readFrom_roundTrips() throws Exception {
+    RdeIndex index = RdeIndex.build(DEPOSIT_FULL.openStream(), 1);
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    index.writeTo(output);
+    RdeIndex copy = RdeIndex.readFrom(new ByteArrayInputStream(output.toByteArray()));
+    assertThat(copy.getInterval()).isEqualTo(index.getInterval());
+    assertThat(copy.getDepositLength()).isEqualTo(index.getDepositLength());
+    for (IndexedType type : IndexedType.values()) {
+      assertThat(copy.getOffsets(type)).isEqualTo(index.getOffsets(type));
+    }
+  }
+}
@@ -0,0 +1,168 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.request.auth;
+
+import static com.google.common.net.HttpHeaders.AUTHORIZATION;
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.monitoring.metrics.contrib.LongMetricSubject.assertThat;
+import static google.registry.request.auth.AuthMetrics.oauthTokenCacheLookups;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.appengine.api.users.User;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import google.registry.testing.FakeClock;
+import google.registry.testing.FakeOAuthService;
+import javax.servlet.http.HttpServletRequest;
+import org.joda.time.Duration;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link OAuthAuthenticationMechanism}. */
+@RunWith(JUnit4.class)
+public class OAuthAuthenticationMechanismTest {
+
+  private final User testUser = new User("test@google.com", "test@google.com");
+  private final FakeClock clock = new FakeClock();
+  private final FakeOAuthService fakeOAuthService =
+      new FakeOAuthService(
+          true /* isOAuthEnabled */,
+          testUser,
+          false /* isUserAdmin */,
+          "test-client-id",
+          ImmutableList.of("test-scope1", "test-scope2"));
+  private final OAuthTokenCache tokenCache = new OAuthTokenCache(clock);
+  private final OAuthAuthenticationMechanism oauthAuthenticationMechanism =
+      new OAuthAuthenticationMechanism(
+          fakeOAuthService,
+          ImmutableSet.of("test-scope1", "test-scope2", "test-scope3"),
+          ImmutableSet.of("test-scope1", "test-scope2"),
+          ImmutableSet.of("test-client-id"),
+          tokenCache);
+
+  @Before
+  public void before() {
+    oauthTokenCacheLookups.reset();
+  }
+
+  private AuthResult authenticate(String authorizationHeader) {
+    HttpServletRequest req = mock(HttpServletRequest.class);
+    when(req.getHeader(AUTHORIZATION)).thenReturn(authorizationHeader);
+    return oauthAuthenticationMechanism.authenticate(req);
+  }
+
+  @Test
+  public void testSuccess_validTokenIsCached() {
+    AuthResult authResult = authenticate("Bearer TOKEN");
+    assertThat(authResult.authLevel()).isEqualTo(AuthLevel.USER);
+    assertThat(authResult.userAuthInfo().get().user()).isEqualTo(testUser);
+    assertThat(authenticate("Bearer TOKEN")).isEqualTo(authResult);
+    assertThat(fakeOAuthService.getCurrentUserCallCount()).isEqualTo(1);
+    assertThat(oauthTokenCacheLookups)
+        .hasValueForLabels(1, "MISS")
+        .and()
+        .hasValueForLabels(1, "VALID_HIT")
+        .and()
+        .hasNoOtherValues();
+  }
+
+  @Test
+  public void testSuccess_validTokenExpiresFromCache() {
+    authenticate("Bearer TOKEN");
+    clock.advanceBy(Duration.standardMinutes(4));
+    authenticate("Bearer TOKEN");
+    assertThat(fakeOAuthService.getCurrentUserCallCount()).isEqualTo(1);
+    clock.advanceBy(Duration.standardMinutes(2));
+    assertThat(authenticate("Bearer TOKEN").authLevel()).isEqualTo(AuthLevel.USER);
+    assertThat(fakeOAuthService.getCurrentUserCallCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void testSuccess_tokensAreCachedSeparately() {
+    authenticate("Bearer TOKEN");
+    fakeOAuthService.setOAuthEnabled(false);
+    assertThat(authenticate("Bearer OTHER-TOKEN").authLevel()).isEqualTo(AuthLevel.NONE);
+    assertThat(authenticate("Bearer TOKEN").authLevel()).isEqualTo(AuthLevel.USER);
+    assertThat(fakeOAuthService.getCurrentUserCallCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void testFailure_cachedTokenStillChecksClientIdAndScopes() {
+    authenticate("Bearer TOKEN");
+    OAuthAuthenticationMechanism stricterMechanism =
+        new OAuthAuthenticationMechanism(
+            fakeOAuthService,
+            ImmutableSet.of("test-scope1", "test-scope2", "test-scope3"),
+            ImmutableSet.of("test-scope1", "test-scope2", "test-scope3"),
+            ImmutableSet.of("test-client-id"),
+            tokenCache);
+    HttpServletRequest req = mock(HttpServletRequest.class);
+    when(req.getHeader(AUTHORIZATION)).thenReturn("Bearer TOKEN");
+    assertThat(stricterMechanism.authenticate(req).authLevel()).isEqualTo(AuthLevel.NONE);
+    assertThat(fakeOAuthService.getCurrentUserCallCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void testFailure_invalidTokenIsCached() {
+    fakeOAuthService.setOAuthEnabled(false);
+    assertThat(authenticate("Bearer TOKEN").authLevel()).isEqualTo(AuthLevel.NONE);
+    fakeOAuthService.setOAuthEnabled(true);
+    assertThat(authenticate("Bearer TOKEN").authLevel()).isEqualTo(AuthLevel.NONE);
+    assertThat(fakeOAuthService.getCurrentUserCallCount()).isEqualTo(1);
+    assertThat(oauthTokenCacheLookups)
+        .hasValueForLabels(1, "MISS")
+        .and()
+        .hasValueForLabels(1, "INVALID_HIT")
+        .and()
+        .hasNoOtherValues();
+  }
+
+  @Test
+  public void testFailure_invalidTokenExpiresFromCache() {
+    fakeOAuthService.setOAuthEnabled(false);
+    authenticate("Bearer TOKEN");
+    fakeOAuthService.setOAuthEnabled(true);
+    clock.advanceBy(Duration.standardMinutes(2));
+    assertThat(authenticate("Bearer TOKEN").authLevel()).isEqualTo(AuthLevel.USER);
+    assertThat(fakeOAuthService.getCurrentUserCallCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void testFailure_serviceFailureIsNotCached() {
+    fakeOAuthService.setServiceFailing(true);
+    assertThat(authenticate("Bearer TOKEN").authLevel()).isEqualTo(AuthLevel.NONE);
+    fakeOAuthService.setServiceFailing(false);
+    assertThat(authenticate("Bearer TOKEN").authLevel()).isEqualTo(AuthLevel.USER);
+    assertThat(fakeOAuthService.getCurrentUserCallCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void testFailure_malformedTokenIsNotSentToService() {
+    assertThat(authenticate("Bearer not a token").authLevel()).isEqualTo(AuthLevel.NONE);
+    assertThat(authenticate("Bearer ").authLevel()).isEqualTo(AuthLevel.NONE);
+    assertThat(fakeOAuthService.getCurrentUserCallCount()).isEqualTo(0);
+    assertThat(oauthTokenCacheLookups).hasNoOtherValues();
+  }
+
+  @Test
+  public void testFailure_noBearerToken() {
+    assertThat(authenticate(null).authLevel()).isEqualTo(AuthLevel.NONE);
+    assertThat(authenticate("Basic dXNlcjpwYXNz").authLevel()).isEqualTo(AuthLevel.NONE);
+    assertThat(fakeOAuthService.getCurrentUserCallCount()).isEqualTo(0);
+  }
+}
@@ -125,7 +125,8 @@ public class RequestAuthenticatorTest {
                 fakeOAuthService,
                 ImmutableSet.of("test-scope1", "test-scope2", "test-scope3"),
                 ImmutableSet.of("test-scope1", "test-scope2"),
-                ImmutableSet.of("test-client-id", "other-test-client-id"))),
+                ImmutableSet.of("test-client-id", "other-test-client-id"),
+                new OAuthTokenCache(new FakeClock()))),
         new LegacyAuthenticationMechanism(userService, xsrfTokenManager));
   }
 
@@ -39,6 +39,7 @@ import google.registry.model.registrar.Registrar;
 import google.registry.model.registrar.Registrar.State;
 import google.registry.model.registrar.RegistrarAddress;
 import google.registry.model.registrar.RegistrarContact;
+import google.registry.model.tmch.ClaimsListShard;
 import google.registry.util.Clock;
 import java.io.ByteArrayInputStream;
 import java.io.File;
@@ -312,6 +313,8 @@ public final class AppEngineRule extends ExternalResource {
       ObjectifyService.initOfy();
       // Reset id allocation in ObjectifyService so that ids are deterministic in tests.
       ObjectifyService.resetNextTestId();
+      // Since ids are reused, a claims list loaded by an earlier test mustn't be reused.
+      ClaimsListShard.clearLastLoadedForTesting();
       loadInitialData();
     }
   }
@@ -16,6 +16,7 @@ package google.registry.testing;
 
 import com.google.appengine.api.oauth.OAuthRequestException;
 import com.google.appengine.api.oauth.OAuthService;
+import com.google.appengine.api.oauth.OAuthServiceFailureException;
 import com.google.appengine.api.users.User;
 import com.google.common.collect.ImmutableList;
 import java.util.List;
@@ -28,6 +29,8 @@ public class FakeOAuthService implements OAuthService {
   private boolean isUserAdmin;
   private String clientId;
   private ImmutableList<String> authorizedScopes;
+  private boolean isServiceFailing;
+  private int getCurrentUserCallCount;
 
   public FakeOAuthService(
       boolean isOAuthEnabled,
@@ -62,11 +65,23 @@ public class FakeOAuthService implements OAuthService {
     this.authorizedScopes = ImmutableList.copyOf(scopes);
   }
 
+  /** Makes every call throw {@link OAuthServiceFailureException}, as if the service were down. */
+  public void setServiceFailing(boolean isServiceFailing) {
+    this.isServiceFailing = isServiceFailing;
+  }
+
+  /**
+   * Returns how many times the current user has been requested, which is how many times an access
+   * token has been checked with the service.
+   */
+  public int getCurrentUserCallCount() {
+    return getCurrentUserCallCount;
+  }
+
   @Override
   public User getCurrentUser() throws OAuthRequestException {
-    if (!isOAuthEnabled) {
-      throw new OAuthRequestException("invalid OAuth request");
-    }
+    getCurrentUserCallCount++;
+    checkService();
     return currentUser;
   }
 
@@ -82,9 +97,7 @@ public class FakeOAuthService implements OAuthService {
 
   @Override
   public boolean isUserAdmin() throws OAuthRequestException {
-    if (!isOAuthEnabled) {
-      throw new OAuthRequestException("invalid OAuth request");
-    }
+    checkService();
     return isUserAdmin;
   }
 
@@ -100,26 +113,29 @@ public class FakeOAuthService implements OAuthService {
 
   @Override
   public String getClientId(String scope) throws OAuthRequestException {
-    if (!isOAuthEnabled) {
-      throw new OAuthRequestException("invalid OAuth request");
-    }
+    checkService();
     return clientId;
   }
 
   @Override
   public String getClientId(String... scopes) throws OAuthRequestException {
-    if (!isOAuthEnabled) {
-      throw new OAuthRequestException("invalid OAuth request");
-    }
+    checkService();
     return clientId;
   }
 
   @Override
   public String[] getAuthorizedScopes(String... scopes) throws OAuthRequestException {
+    checkService();
+    return authorizedScopes.toArray(new String[0]);
+  }
+
+  private void checkService() throws OAuthRequestException {
+    if (isServiceFailing) {
+      throw new OAuthServiceFailureException("OAuth service failure");
+    }
     if (!isOAuthEnabled) {
       throw new OAuthRequestException("invalid OAuth request");
     }
-    return authorizedScopes.toArray(new String[0]);
   }
 
   @Deprecated
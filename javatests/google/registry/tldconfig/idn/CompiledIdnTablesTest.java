@@ -0,0 +1,113 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.tldconfig.idn;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.truth.Truth.assertThat;
+import static google.registry.testing.JUnitBackports.assertThrows;
+
+import com.google.common.collect.ImmutableList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link CompiledIdnTables}. */
+@RunWith(JUnit4.class)
+public class CompiledIdnTablesTest {
+
+  private static IdnTable createTable(String name, String... codepoints) {
+    return IdnTable.createFrom(
+        name,
+        new ImmutableList.Builder<String>()
+            .add("# URL: https://love.example/" + name + ".txt")
+            .add("# Policy: https://love.example/policy.html")
+            .add(codepoints)
+            .build(),
+        Optional.empty());
+  }
+
+  private final CompiledIdnTables compiledTables =
+      CompiledIdnTables.compile(
+          ImmutableList.of(
+              createTable("digits", "U+0030", "U+0031", "U+0032"),
+              createTable("letters", "U+0061", "U+0062", "U+0032"),
+              createTable("surrogates", "U+0030", "U+1F508", "U+10FFFF")));
+
+  @Test
+  public void testFindTablesContainingCodepoints() {
+    assertThat(compiledTables.findTablesContainingCodepoints("012")).isEqualTo(0b001L);
+    assertThat(compiledTables.findTablesContainingCodepoints("ab2")).isEqualTo(0b010L);
+    assertThat(compiledTables.findTablesContainingCodepoints("2")).isEqualTo(0b011L);
+    assertThat(compiledTables.findTablesContainingCodepoints("0")).isEqualTo(0b101L);
+    assertThat(compiledTables.findTablesContainingCodepoints("0a")).isEqualTo(0L);
+    assertThat(compiledTables.findTablesContainingCodepoints("c")).isEqualTo(0L);
+  }
+
+  @Test
+  public void testFindTablesContainingCodepoints_emptyLabel_matchesAllTables() {
+    assertThat(compiledTables.findTablesContainingCodepoints("")).isEqualTo(0b111L);
+  }
+
+  @Test
+  public void testFindTablesContainingCodepoints_surrogates() {
+    assertThat(compiledTables.findTablesContainingCodepoints("0\uD83D\uDD08\uDBFF\uDFFF"))
+        .isEqualTo(0b100L);
+    // Neither half of a surrogate pair is in a table on its own.
+    assertThat(compiledTables.findTablesContainingCodepoints("\uD83D")).isEqualTo(0L);
+    assertThat(compiledTables.findTablesContainingCodepoints("\uDD08")).isEqualTo(0L);
+  }
+
+  @Test
+  public void testCompile_sharesEmptyBlocks() {
+    // U+0030 to U+0062 are all in the first block, and the other two codepoints in two more.
+    assertThat(compiledTables.countNonEmptyBlocks()).isEqualTo(3);
+  }
+
+  @Test
+  public void testCompile_tooManyTables_throws() {
+    IdnTable table = createTable("digits", "U+0030");
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> CompiledIdnTables.compile(Collections.nCopies(65, table)));
+  }
+
+  @Test
+  public void testCompile_64Tables() {
+    IdnTable table = createTable("digits", "U+0030");
+    CompiledIdnTables compiled = CompiledIdnTables.compile(Collections.nCopies(64, table));
+    assertThat(compiled.findTablesContainingCodepoints("0")).isEqualTo(-1L);
+    assertThat(compiled.findTablesContainingCodepoints("1")).isEqualTo(0L);
+  }
+
+  @Test
+  public void testShippedTables_matchRangeSets() {
+    ImmutableList<IdnTable> tables =
+        Arrays.stream(IdnTableEnum.values())
+            .map(IdnTableEnum::getTable)
+            .collect(toImmutableList());
+    CompiledIdnTables compiled = CompiledIdnTables.compile(tables);
+    for (int codepoint = 0; codepoint <= Character.MAX_CODE_POINT; codepoint++) {
+      String label = new String(Character.toChars(codepoint));
+      long tableMask = compiled.findTablesContainingCodepoints(label);
+      for (int i = 0; i < tables.size(); i++) {
+        assertThat((tableMask & (1L << i)) != 0)
+            .isEqualTo(tables.get(i).getValidCodepoints().contains(codepoint));
+      }
+    }
+  }
+}
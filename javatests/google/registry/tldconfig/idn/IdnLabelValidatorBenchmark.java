@@ -0,0 +1,120 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.tldconfig.idn;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
+import com.google.common.collect.ImmutableList;
+import google.registry.util.Idn;
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+/**
+ * Compares checking labels against every IDN table with {@link CompiledIdnTables} to checking them
+ * against the {@code RangeSet} of each table in turn, as {@link IdnLabelValidator} used to.
+ *
+ * <p>The labels are a mix of ASCII, Latin, Japanese and invalid labels, both in Unicode and in
+ * Punycode. Usage:
+ *
+ * <pre>
+ * IdnLabelValidatorBenchmark [number of validations, default 5000000]
+ * </pre>
+ */
+public final class IdnLabelValidatorBenchmark {
+
+  private static final int ROUNDS = 5;
+
+  private static final ImmutableList<String> UNICODE_LABELS =
+      ImmutableList.of(
+          "example",
+          "ite-love-you",
+          "abcdefghæ",
+          "straße",
+          "みんなアシヨわみけabc",
+          "カレー・ライス",
+          "日々の生活",
+          "visaクレジットカード",
+          "みんなアシヨわみけæ",
+          "aЖЗ",
+          "eco・driving",
+          "1000万円");
+
+  public static void main(String[] args) {
+    int numValidations = (args.length > 0) ? Integer.parseInt(args[0]) : 5_000_000;
+    ImmutableList<IdnTable> tables =
+        Arrays.stream(IdnTableEnum.values())
+            .map(IdnTableEnum::getTable)
+            .collect(toImmutableList());
+    CompiledIdnTables compiledTables = CompiledIdnTables.compile(tables);
+    System.out.printf(
+        "%d tables compiled into %d blocks of 256 codepoints%n",
+        tables.size(), compiledTables.countNonEmptyBlocks());
+
+    String[] unicodeLabels = UNICODE_LABELS.toArray(new String[0]);
+    String[] punycodeLabels =
+        UNICODE_LABELS.stream().map(Idn::toASCII).toArray(String[]::new);
+    for (int round = 1; round <= ROUNDS; round++) {
+      System.out.printf("Round %d of %,d validations%n", round, numValidations);
+      runValidations(
+          "RangeSet, each table",
+          label -> tables.stream().anyMatch(table -> table.isValidLabel(label)),
+          unicodeLabels,
+          numValidations);
+      runValidations(
+          "CompiledIdnTables",
+          label -> {
+            long tableMask = compiledTables.findTablesContainingCodepoints(label);
+            for (int i = 0; i < tables.size(); i++) {
+              if ((tableMask & (1L << i)) != 0 && tables.get(i).isValidForLanguage(label)) {
+                return true;
+              }
+            }
+            return false;
+          },
+          unicodeLabels,
+          numValidations);
+      runValidations(
+          "Idn.toUnicode + RangeSet",
+          label -> {
+            String unicodeLabel = Idn.toUnicode(label);
+            return tables.stream().anyMatch(table -> table.isValidLabel(unicodeLabel));
+          },
+          punycodeLabels,
+          numValidations);
+      runValidations(
+          "IdnLabelValidator",
+          label -> IdnLabelValidator.findValidIdnTableForTld(label, "tld").isPresent(),
+          punycodeLabels,
+          numValidations);
+    }
+  }
+
+  private static void runValidations(
+      String name, Predicate<String> validation, String[] labels, int numValidations) {
+    long startNanos = System.nanoTime();
+    int valid = 0;
+    for (int i = 0; i < numValidations; i++) {
+      if (validation.test(labels[i % labels.length])) {
+        valid++;
+      }
+    }
+    long elapsedNanos = System.nanoTime() - startNanos;
+    System.out.printf(
+        "  %-26s %7.1f ns/validation (%d valid)%n",
+        name, (double) elapsedNanos / numValidations, valid);
+  }
+
+  private IdnLabelValidatorBenchmark() {}
+}
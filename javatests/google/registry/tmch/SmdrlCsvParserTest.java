@@ -50,6 +50,15 @@ public class SmdrlCsvParserTest {
     assertThat(smdrl.getCreationTime()).isEqualTo(DateTime.parse("2013-11-24T23:30:04.3Z"));
   }
 
+  @Test
+  public void testParse_streaming() throws Exception {
+    SignedMarkRevocationList smdrl = SmdrlCsvParser.parse(SMDRL_LATEST_CSV);
+    assertThat(smdrl.size()).isEqualTo(150);
+    assertThat(smdrl.getCreationTime()).isEqualTo(DateTime.parse("2013-11-24T23:30:04.3Z"));
+    assertThat(smdrl.isSmdRevoked("0000002211373633641407-65535", smdrl.getCreationTime()))
+        .isTrue();
+  }
+
   @Test
   public void testFirstRow() throws Exception {
     SignedMarkRevocationList smdrl = SmdrlCsvParser.parse(SMDRL_LATEST_CSV.readLines());
@@ -95,6 +95,16 @@ public class TmchCertificateAuthorityTest {
     tmchCertificateAuthority.verify(loadCertificate(GOOD_TEST_CERTIFICATE));
   }
 
+  @Test
+  public void testFailure_verifyCachedCertificateThatHasSinceExpired() throws Exception {
+    TmchCertificateAuthority tmchCertificateAuthority = new TmchCertificateAuthority(PILOT);
+    tmchCertificateAuthority.verify(loadCertificate(GOOD_TEST_CERTIFICATE));
+    clock.setTo(DateTime.parse("2018-07-01T00:00:00Z"));
+    assertThrows(
+        CertificateExpiredException.class,
+        () -> tmchCertificateAuthority.verify(loadCertificate(GOOD_TEST_CERTIFICATE)));
+  }
+
   @Test
   public void testFailure_verifySignatureDoesntMatch() {
     TmchCertificateAuthority tmchCertificateAuthority = new TmchCertificateAuthority(PRODUCTION);
@@ -30,6 +30,7 @@ public class TmchDnlActionTest extends TmchActionTestCase {
 
   private TmchDnlAction newTmchDnlAction() {
     TmchDnlAction action = new TmchDnlAction();
+    action.clock = clock;
     action.marksdb = marksdb;
     action.marksdbDnlLogin = Optional.of(MARKSDB_LOGIN);
     return action;
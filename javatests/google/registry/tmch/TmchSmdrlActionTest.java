@@ -32,6 +32,7 @@ public class TmchSmdrlActionTest extends TmchActionTestCase {
 
   private TmchSmdrlAction newTmchSmdrlAction() {
     TmchSmdrlAction action = new TmchSmdrlAction();
+    action.clock = clock;
     action.marksdb = marksdb;
     action.marksdbSmdrlLogin = Optional.empty();
     return action;
@@ -103,6 +103,29 @@ public class TmchXmlSignatureTest {
     assertThrows(CertificateExpiredException.class, () -> tmchXmlSignature.verify(smdData));
   }
 
+  @Test
+  public void testVerifyTwice_succeedsFromCache() throws Exception {
+    smdData = loadSmd("active/Court-Agent-Arab-Active.smd");
+    tmchXmlSignature.verify(smdData);
+    tmchXmlSignature.verify(smdData);
+  }
+
+  @Test
+  public void testCachedSmd_certificateHasSinceExpired() throws Exception {
+    smdData = loadSmd("active/Court-Agent-Arab-Active.smd");
+    tmchXmlSignature.verify(smdData);
+    clock.setTo(DateTime.parse("2023-06-01T00:00:00Z"));
+    assertThrows(CertificateExpiredException.class, () -> tmchXmlSignature.verify(smdData));
+  }
+
+  @Test
+  public void testCachedSmd_wrongCertificateAuthority() throws Exception {
+    smdData = loadSmd("active/Court-Agent-Arab-Active.smd");
+    tmchXmlSignature.verify(smdData);
+    tmchXmlSignature = new TmchXmlSignature(new TmchCertificateAuthority(TmchCaMode.PRODUCTION));
+    assertThrows(CertificateSignatureException.class, () -> tmchXmlSignature.verify(smdData));
+  }
+
   @Test
   public void testActiveCourtAgentArabActive() throws Exception {
     smdData = loadSmd("active/Court-Agent-Arab-Active.smd");
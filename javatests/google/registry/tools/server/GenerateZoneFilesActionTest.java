@@ -16,6 +16,8 @@ package google.registry.tools.server;
 
 import static com.google.appengine.tools.cloudstorage.GcsServiceFactory.createGcsService;
 import static com.google.common.truth.Truth.assertThat;
+import static google.registry.model.EppResourceUtils.loadByForeignKey;
+import static google.registry.model.ofy.ObjectifyService.ofy;
 import static google.registry.testing.DatastoreHelper.createTld;
 import static google.registry.testing.DatastoreHelper.newDomainResource;
 import static google.registry.testing.DatastoreHelper.newHostResource;
@@ -24,6 +26,7 @@ import static google.registry.testing.DatastoreHelper.persistActiveDomain;
 import static google.registry.testing.DatastoreHelper.persistActiveDomainApplication;
 import static google.registry.testing.DatastoreHelper.persistActiveHost;
 import static google.registry.testing.DatastoreHelper.persistResource;
+import static google.registry.testing.DatastoreHelper.persistResourceWithCommitLog;
 import static google.registry.testing.GcsTestingUtils.readGcsFile;
 import static google.registry.testing.TestDataHelper.loadFile;
 import static java.nio.charset.StandardCharsets.UTF_8;
@@ -36,16 +39,21 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.googlecode.objectify.Key;
+import google.registry.gcs.GcsUtils;
+import google.registry.model.domain.DomainResource;
 import google.registry.model.domain.secdns.DelegationSignerData;
 import google.registry.model.eppcommon.StatusValue;
 import google.registry.model.host.HostResource;
 import google.registry.testing.FakeClock;
+import google.registry.testing.InjectRule;
 import google.registry.testing.mapreduce.MapreduceTestCase;
 import java.net.InetAddress;
 import java.util.Map;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.joda.time.Duration;
+import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -54,12 +62,18 @@ import org.junit.runners.JUnit4;
 @RunWith(JUnit4.class)
 public class GenerateZoneFilesActionTest extends MapreduceTestCase<GenerateZoneFilesAction> {
 
+  private static final Splitter SPLITTER = Splitter.on('\n').omitEmptyStrings();
+
+  @Rule public final InjectRule inject = new InjectRule();
+
   private final GcsService gcsService = createGcsService();
 
-  @Test
-  public void testGenerate() throws Exception {
-    DateTime now = DateTime.now(DateTimeZone.UTC).withTimeAtStartOfDay();
+  private final DateTime now = DateTime.now(DateTimeZone.UTC).withTimeAtStartOfDay();
+
+  private ImmutableSet<Key<HostResource>> nameservers;
 
+  @Before
+  public void before() throws Exception {
     createTld("tld");
     createTld("com");
 
@@ -70,8 +84,7 @@ public class GenerateZoneFilesActionTest extends MapreduceTestCase<GenerateZoneF
     HostResource host2 =
         persistResource(newHostResource("ns.bar.tld").asBuilder().addInetAddresses(ips).build());
 
-    ImmutableSet<Key<HostResource>> nameservers =
-        ImmutableSet.of(Key.create(host1), Key.create(host2));
+    nameservers = ImmutableSet.of(Key.create(host1), Key.create(host2));
     // This domain will have glue records, because it has a subordinate host which is its own
     // nameserver. None of the other domains should have glue records, because their nameservers are
     // subordinate to different domains.
@@ -117,7 +130,9 @@ public class GenerateZoneFilesActionTest extends MapreduceTestCase<GenerateZoneF
         .addNameservers(nameservers)
         .setDsData(ImmutableSet.of(DelegationSignerData.create(1, 2, 3, new byte[] {0, 1, 2})))
         .build());
+  }
 
+  private GenerateZoneFilesAction createAction(DateTime clockTime) {
     GenerateZoneFilesAction action = new GenerateZoneFilesAction();
     action.mrRunner = makeDefaultRunner();
     action.bucket = "zonefiles-bucket";
@@ -126,28 +141,164 @@ public class GenerateZoneFilesActionTest extends MapreduceTestCase<GenerateZoneF
     action.dnsDefaultATtl = Duration.standardSeconds(11);
     action.dnsDefaultNsTtl = Duration.standardSeconds(222);
     action.dnsDefaultDsTtl = Duration.standardSeconds(3333);
-    action.clock = new FakeClock(now.plusMinutes(2));  // Move past the actions' 2 minute check.
+    action.clock = new FakeClock(clockTime);
+    return action;
+  }
 
-    Map<String, Object> response = action.handleJsonRequest(ImmutableMap.<String, Object>of(
-        "tlds", ImmutableList.of("tld"),
-        "exportTime", now));
+  private void generateFully() throws Exception {
+    // Move past the actions' 2 minute check.
+    Map<String, Object> response =
+        createAction(now.plusMinutes(2))
+            .handleJsonRequest(
+                ImmutableMap.<String, Object>of(
+                    "tlds", ImmutableList.of("tld"),
+                    "exportTime", now));
+    assertThat(response).containsKey("jobPath");
     assertThat(response).containsEntry(
         "filenames",
         ImmutableList.of("gs://zonefiles-bucket/tld-" + now + ".zone"));
-
     executeTasksUntilEmpty("mapreduce");
+  }
 
+  private ImmutableList<String> readZoneFileLines(DateTime exportTime) throws Exception {
     GcsFilename gcsFilename =
-        new GcsFilename("zonefiles-bucket", String.format("tld-%s.zone", now));
+        new GcsFilename("zonefiles-bucket", String.format("tld-%s.zone", exportTime));
     String generatedFile = new String(readGcsFile(gcsService, gcsFilename), UTF_8);
     // The generated file contains spaces and tabs, but the golden file contains only spaces, as
     // files with literal tabs irritate our build tools.
-    Splitter splitter = Splitter.on('\n').omitEmptyStrings();
-    Iterable<String> generatedFileLines = splitter.split(generatedFile.replaceAll("\t", " "));
-    Iterable<String> goldenFileLines = splitter.split(loadFile(getClass(), "tld.zone"));
+    return ImmutableList.copyOf(SPLITTER.split(generatedFile.replaceAll("\t", " ")));
+  }
+
+  @Test
+  public void testGenerate() throws Exception {
+    generateFully();
+
+    ImmutableList<String> generatedFileLines = readZoneFileLines(now);
+    ImmutableList<String> goldenFileLines = loadGoldenFileLines();
     // The first line needs to be the same as the golden file.
-    assertThat(generatedFileLines.iterator().next()).isEqualTo(goldenFileLines.iterator().next());
+    assertThat(generatedFileLines.get(0)).isEqualTo(goldenFileLines.get(0));
     // The remaining lines can be in any order.
     assertThat(generatedFileLines).containsExactlyElementsIn(goldenFileLines);
   }
+
+  @Test
+  public void testGenerate_ignoresChunksLeftByEarlierRun() throws Exception {
+    // Leave a full set of chunks from an earlier run for the same export time that never finished.
+    ZoneFileSnapshots snapshots =
+        new ZoneFileSnapshots(new GcsUtils(gcsService, 123), "zonefiles-bucket");
+    for (int chunk = 0; chunk < ZoneFileSnapshots.NUM_CHUNKS; chunk++) {
+      snapshots.writeChunk(
+          "tld", now, "earlier-run", chunk, ImmutableList.of("stale\t222\tIN\tNS\tns.foo.tld.\n"));
+    }
+    generateFully();
+
+    assertThat(readZoneFileLines(now)).containsExactlyElementsIn(loadGoldenFileLines());
+  }
+
+  @Test
+  public void testGenerate_incremental() throws Exception {
+    generateFully();
+    // Take one domain out of the zone, change the records of another and add a new one. These
+    // have to be saved with commit logs, since that's where an incremental export finds them.
+    persistResourceWithCommitLog(
+        loadByForeignKey(DomainResource.class, "ns-only.tld", now.plusDays(1))
+            .asBuilder()
+            .setStatusValues(ImmutableSet.of(StatusValue.CLIENT_HOLD))
+            .build());
+    persistResourceWithCommitLog(
+        loadByForeignKey(DomainResource.class, "ns-and-ds.tld", now.plusDays(1))
+            .asBuilder()
+            .setDsData(ImmutableSet.of())
+            .build());
+    persistResourceWithCommitLog(
+        newDomainResource("new.tld").asBuilder().addNameservers(nameservers).build());
+
+    DateTime exportTime = now.plusDays(1);
+    Map<String, Object> response =
+        createAction(exportTime.plusMinutes(2))
+            .handleJsonRequest(
+                ImmutableMap.<String, Object>of(
+                    "tlds", ImmutableList.of("tld"),
+                    "exportTime", exportTime,
+                    "incremental", true));
+    assertThat(response).doesNotContainKey("jobPath");
+    assertThat(response).containsEntry(
+        "filenames",
+        ImmutableList.of("gs://zonefiles-bucket/tld-" + exportTime + ".zone"));
+    assertThat(response)
+        .containsEntry("snapshotTimes", ImmutableMap.of("tld", now.toString()));
+
+    ImmutableList<String> generatedFileLines = readZoneFileLines(exportTime);
+    assertThat(generatedFileLines.get(0)).isEqualTo("$ORIGIN tld.");
+    assertThat(generatedFileLines)
+        .containsExactly(
+            "$ORIGIN tld.",
+            "bar 222 IN NS ns.bar.tld.",
+            "bar 222 IN NS ns.foo.tld.",
+            "ns.bar 11 IN A 127.0.0.1",
+            "ns.bar 11 IN AAAA 0:0:0:0:0:0:0:1",
+            "ns-and-ds 222 IN NS ns.foo.tld.",
+            "ns-and-ds 222 IN NS ns.bar.tld.",
+            "new 222 IN NS ns.foo.tld.",
+            "new 222 IN NS ns.bar.tld.");
+    // The earlier zone file is left as it was.
+    assertThat(readZoneFileLines(now)).containsExactlyElementsIn(loadGoldenFileLines());
+  }
+
+  @Test
+  public void testGenerate_incrementalWithoutSnapshot_fallsBackToMapreduce() throws Exception {
+    Map<String, Object> response =
+        createAction(now.plusMinutes(2))
+            .handleJsonRequest(
+                ImmutableMap.<String, Object>of(
+                    "tlds", ImmutableList.of("tld"),
+                    "exportTime", now,
+                    "incremental", true));
+    assertThat(response).containsKey("jobPath");
+    executeTasksUntilEmpty("mapreduce");
+    assertThat(readZoneFileLines(now)).containsExactlyElementsIn(loadGoldenFileLines());
+  }
+
+  @Test
+  public void testGenerate_incrementalAfterHardDelete_fallsBackToMapreduce() throws Exception {
+    generateFully();
+    DomainResource domain = loadByForeignKey(DomainResource.class, "ns-only.tld", now.plusDays(1));
+    ofy().transact(() -> ofy().delete().entity(domain).now());
+
+    DateTime exportTime = now.plusDays(1);
+    Map<String, Object> response =
+        createAction(exportTime.plusMinutes(2))
+            .handleJsonRequest(
+                ImmutableMap.<String, Object>of(
+                    "tlds", ImmutableList.of("tld"),
+                    "exportTime", exportTime,
+                    "incremental", true));
+    assertThat(response).containsKey("jobPath");
+    executeTasksUntilEmpty("mapreduce");
+    assertThat(readZoneFileLines(exportTime)).doesNotContain("ns-only 222 IN NS ns.foo.tld.");
+  }
+
+  @Test
+  public void testGenerate_incrementalWithTooManyChanges_fallsBackToMapreduce() throws Exception {
+    generateFully();
+    inject.setStaticField(GenerateZoneFilesAction.class, "maxIncrementalCommitLogEntries", 1);
+    persistResourceWithCommitLog(
+        newDomainResource("new.tld").asBuilder().addNameservers(nameservers).build());
+
+    DateTime exportTime = now.plusDays(1);
+    Map<String, Object> response =
+        createAction(exportTime.plusMinutes(2))
+            .handleJsonRequest(
+                ImmutableMap.<String, Object>of(
+                    "tlds", ImmutableList.of("tld"),
+                    "exportTime", exportTime,
+                    "incremental", true));
+    assertThat(response).containsKey("jobPath");
+    executeTasksUntilEmpty("mapreduce");
+    assertThat(readZoneFileLines(exportTime)).contains("new 222 IN NS ns.foo.tld.");
+  }
+
+  private ImmutableList<String> loadGoldenFileLines() {
+    return ImmutableList.copyOf(SPLITTER.split(loadFile(getClass(), "tld.zone")));
+  }
 }
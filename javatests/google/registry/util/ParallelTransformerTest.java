@@ -0,0 +1,206 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.util;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.util.concurrent.Uninterruptibles.awaitUninterruptibly;
+import static com.google.common.util.concurrent.Uninterruptibles.sleepUninterruptibly;
+import static google.registry.testing.JUnitBackports.assertThrows;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import google.registry.testing.AppEngineRule;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.joda.time.Duration;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link ParallelTransformer}. */
+@RunWith(JUnit4.class)
+public class ParallelTransformerTest {
+
+  @Rule
+  public final AppEngineRule appEngine = AppEngineRule.builder().withDatastore().build();
+
+  private final ParallelTransformer transformer = ParallelTransformer.builder("test").build();
+
+  private static ImmutableList<Integer> range(int size) {
+    ImmutableList.Builder<Integer> items = new ImmutableList.Builder<>();
+    for (int i = 0; i < size; i++) {
+      items.add(i);
+    }
+    return items.build();
+  }
+
+  @Test
+  public void testTransform_emptyList_returnsEmptyList() {
+    assertThat(transformer.transform(ImmutableList.of(), x -> x)).isEmpty();
+  }
+
+  @Test
+  public void testTransform_keepsOrder() {
+    assertThat(transformer.transform(range(100), x -> x * 2))
+        .isEqualTo(range(100).stream().map(x -> x * 2).collect(toImmutableList()));
+  }
+
+  @Test
+  public void testForEachInCompletionOrder_slowItemComesLast() {
+    CountDownLatch othersConsumed = new CountDownLatch(2);
+    List<Integer> consumed = new ArrayList<>();
+    transformer.forEachInCompletionOrder(
+        ImmutableList.of(0, 1, 2),
+        x -> {
+          if (x == 0) {
+            assertThat(awaitUninterruptibly(othersConsumed, 10, SECONDS)).isTrue();
+          }
+          return x;
+        },
+        (item, result) -> {
+          consumed.add(result);
+          othersConsumed.countDown();
+        });
+    assertThat(consumed).containsExactly(1, 2, 0);
+  }
+
+  @Test
+  public void testForEachInCompletionOrder_reportsParallelism() {
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger mostRunning = new AtomicInteger();
+    ParallelTransformer.Stats stats =
+        ParallelTransformer.builder("test")
+            .setInitialThreads(2)
+            .setMaxThreads(3)
+            .build()
+            .forEachInCompletionOrder(
+                range(30),
+                x -> {
+                  mostRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                  sleepUninterruptibly(5, MILLISECONDS);
+                  return running.decrementAndGet();
+                },
+                (item, result) -> {});
+    assertThat(stats.getItems()).isEqualTo(30);
+    assertThat(stats.getThreadsStarted()).isAtMost(3);
+    assertThat(stats.getPeakParallelism()).isAtMost(3);
+    assertThat(stats.getPeakParallelism()).isAtLeast(mostRunning.get());
+    assertThat(stats.getEffectiveParallelism()).isGreaterThan(0.0);
+    assertThat(stats.getEffectiveParallelism()).isAtMost(3.0);
+  }
+
+  /**
+   * Feeds a limit 16 fast items followed by 40 that are 20 times slower, and returns where it ends
+   * up.
+   */
+  private static int limitAfterSlowdown(ParallelTransformer.ThreadLimit limit) {
+    for (int i = 0; i < 16; i++) {
+      limit.update(MILLISECONDS.toNanos(1));
+    }
+    for (int i = 0; i < 40; i++) {
+      limit.update(MILLISECONDS.toNanos(20));
+    }
+    return limit.get();
+  }
+
+  @Test
+  public void testThreadLimit_itemsSlowDown_threadsAreCutBack() {
+    // Each slow item halves the limit and adds back its square root, which settles at 4 threads.
+    assertThat(limitAfterSlowdown(new ParallelTransformer.ThreadLimit(1, 8, 8))).isEqualTo(4);
+  }
+
+  @Test
+  public void testThreadLimit_itemsSlowDown_threadsStayAtMinimum() {
+    assertThat(limitAfterSlowdown(new ParallelTransformer.ThreadLimit(6, 8, 8))).isEqualTo(6);
+  }
+
+  @Test
+  public void testThreadLimit_itemsSpeedUp_threadsGrowToMaximum() {
+    ParallelTransformer.ThreadLimit limit = new ParallelTransformer.ThreadLimit(1, 8, 8);
+    limitAfterSlowdown(limit);
+    for (int i = 0; i < 3; i++) {
+      limit.update(MILLISECONDS.toNanos(1));
+    }
+    assertThat(limit.get()).isEqualTo(8);
+  }
+
+  @Test
+  public void testTransform_throwsException_isSinglyWrappedByUee() {
+    UncheckedExecutionException e =
+        assertThrows(
+            UncheckedExecutionException.class,
+            () ->
+                transformer.transform(
+                    range(3),
+                    input -> {
+                      throw new RuntimeException("hello");
+                    }));
+    assertThat(e).hasCauseThat().isInstanceOf(RuntimeException.class);
+    assertThat(e).hasCauseThat().hasMessageThat().isEqualTo("hello");
+  }
+
+  @Test
+  public void testTransform_itemPastDeadline_isInterrupted() throws Exception {
+    CountDownLatch interrupted = new CountDownLatch(1);
+    ParallelTransformer withDeadline =
+        ParallelTransformer.builder("test").setItemDeadline(Duration.millis(50)).build();
+    UncheckedExecutionException e =
+        assertThrows(
+            UncheckedExecutionException.class,
+            () ->
+                withDeadline.transform(
+                    range(3),
+                    x -> {
+                      if (x == 1) {
+                        try {
+                          Thread.sleep(60000);
+                        } catch (InterruptedException expected) {
+                          interrupted.countDown();
+                        }
+                      }
+                      return x;
+                    }));
+    assertThat(e).hasCauseThat().isInstanceOf(TimeoutException.class);
+    assertThat(e).hasCauseThat().hasMessageThat().contains("Item 1");
+    assertThat(interrupted.await(10, SECONDS)).isTrue();
+  }
+
+  @Test
+  public void testBuilder_rejectsNonPositiveThreads() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> ParallelTransformer.builder("test").setMaxThreads(0));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> ParallelTransformer.builder("test").setInitialThreads(0));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> ParallelTransformer.builder("test").setMinThreads(0));
+  }
+
+  @Test
+  public void testBuilder_rejectsMinThreadsAboveMax() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> ParallelTransformer.builder("test").setMinThreads(4).setMaxThreads(3).build());
+  }
+}
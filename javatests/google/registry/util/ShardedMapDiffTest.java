@@ -0,0 +1,142 @@
+// Copyright 2018 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.util;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedMap;
+import java.util.Map;
+import java.util.TreeMap;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link ShardedMapDiff}. */
+@RunWith(JUnit4.class)
+public class ShardedMapDiffTest {
+
+  /** Returns a map of the integers in the range, as zero-padded strings, to themselves. */
+  private static ImmutableSortedMap<String, Integer> numbers(int from, int to) {
+    ImmutableSortedMap.Builder<String, Integer> builder = ImmutableSortedMap.naturalOrder();
+    for (int i = from; i < to; i++) {
+      builder.put(String.format("%03d", i), i);
+    }
+    return builder.build();
+  }
+
+  /** The shards of the numbers from 0 to 40, as they'd be stored with a shard size of 10. */
+  private static final ImmutableMap<String, ImmutableSortedMap<String, Integer>> SHARDS =
+      ImmutableMap.of(
+          "a", numbers(0, 10), "b", numbers(10, 20), "c", numbers(20, 30), "d", numbers(30, 40));
+
+  @Test
+  public void testCreate_noCurrentShards_splitsEvenly() {
+    ShardedMapDiff<String, Integer, String> diff =
+        ShardedMapDiff.create(numbers(0, 31), ImmutableMap.of(), 10);
+    assertThat(diff.getKeptShards()).isEmpty();
+    assertThat(diff.getRemovedShards()).isEmpty();
+    assertThat(diff.getNewShards())
+        .containsExactly(numbers(0, 7), numbers(7, 15), numbers(15, 23), numbers(23, 31))
+        .inOrder();
+  }
+
+  @Test
+  public void testCreate_unchanged_keepsEverything() {
+    ShardedMapDiff<String, Integer, String> diff =
+        ShardedMapDiff.create(numbers(0, 40), SHARDS, 10);
+    assertThat(diff.getKeptShards()).containsExactly("a", "b", "c", "d");
+    assertThat(diff.getRemovedShards()).isEmpty();
+    assertThat(diff.getNewShards()).isEmpty();
+    assertThat(diff.toString()).isEqualTo("4 shards kept, 0 removed, 0 written");
+  }
+
+  @Test
+  public void testCreate_changedEntry_rewritesOnlyItsShard() {
+    Map<String, Integer> newMap = new TreeMap<>(numbers(0, 40));
+    newMap.put("015", -15);
+    ShardedMapDiff<String, Integer, String> diff = ShardedMapDiff.create(newMap, SHARDS, 10);
+    assertThat(diff.getKeptShards()).containsExactly("a", "c", "d");
+    assertThat(diff.getRemovedShards()).containsExactly("b");
+    assertThat(diff.getNewShards())
+        .containsExactly(ImmutableSortedMap.copyOf(new TreeMap<>(newMap).subMap("010", "020")));
+  }
+
+  @Test
+  public void testCreate_addedEntries_splitTheirShard() {
+    Map<String, Integer> newMap = new TreeMap<>(numbers(0, 40));
+    newMap.put("0305", 305);
+    newMap.put("0355", 355);
+    ShardedMapDiff<String, Integer, String> diff = ShardedMapDiff.create(newMap, SHARDS, 10);
+    assertThat(diff.getKeptShards()).containsExactly("a", "b", "c");
+    assertThat(diff.getRemovedShards()).containsExactly("d");
+    assertThat(diff.getNewShards()).hasSize(2);
+    assertThat(diff.getNewShards().get(0)).hasSize(6);
+    assertThat(diff.getNewShards().get(1)).hasSize(6);
+  }
+
+  @Test
+  public void testCreate_entriesBeforeFirstShard_belongToIt() {
+    Map<String, Integer> newMap = new TreeMap<>(numbers(0, 40));
+    newMap.put("", -1);
+    ShardedMapDiff<String, Integer, String> diff = ShardedMapDiff.create(newMap, SHARDS, 10);
+    assertThat(diff.getKeptShards()).containsExactly("b", "c", "d");
+    assertThat(diff.getRemovedShards()).containsExactly("a");
+  }
+
+  @Test
+  public void testCreate_removedShardRange_deletesShard() {
+    Map<String, Integer> newMap = new TreeMap<>(numbers(0, 40));
+    newMap.keySet().removeAll(numbers(20, 30).keySet());
+    ShardedMapDiff<String, Integer, String> diff = ShardedMapDiff.create(newMap, SHARDS, 10);
+    assertThat(diff.getKeptShards()).containsExactly("a", "b", "d");
+    assertThat(diff.getRemovedShards()).containsExactly("c");
+    assertThat(diff.getNewShards()).isEmpty();
+  }
+
+  @Test
+  public void testCreate_mostShardsChanged_reshardsEverything() {
+    Map<String, Integer> newMap = new TreeMap<>(numbers(0, 40));
+    newMap.put("005", -5);
+    newMap.put("015", -15);
+    newMap.put("025", -25);
+    ShardedMapDiff<String, Integer, String> diff = ShardedMapDiff.create(newMap, SHARDS, 10);
+    assertThat(diff.getKeptShards()).isEmpty();
+    assertThat(diff.getRemovedShards()).containsExactly("a", "b", "c", "d");
+    assertThat(diff.getNewShards()).hasSize(4);
+  }
+
+  @Test
+  public void testCreate_unsortedShards_reshardsEverything() {
+    ShardedMapDiff<String, Integer, String> diff =
+        ShardedMapDiff.create(
+            numbers(0, 4),
+            ImmutableMap.of(
+                "a", ImmutableMap.of("000", 0, "002", 2), "b", ImmutableMap.of("001", 1, "003", 3)),
+            2);
+    assertThat(diff.getKeptShards()).isEmpty();
+    assertThat(diff.getRemovedShards()).containsExactly("a", "b");
+    assertThat(diff.getNewShards()).containsExactly(numbers(0, 2), numbers(2, 4)).inOrder();
+  }
+
+  @Test
+  public void testCreate_emptyMap_removesEverything() {
+    ShardedMapDiff<String, Integer, String> diff =
+        ShardedMapDiff.create(ImmutableMap.of(), SHARDS, 10);
+    assertThat(diff.getKeptShards()).isEmpty();
+    assertThat(diff.getRemovedShards()).containsExactly("a", "b", "c", "d");
+    assertThat(diff.getNewShards()).isEmpty();
+  }
+}